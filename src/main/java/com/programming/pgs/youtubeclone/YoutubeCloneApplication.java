@@ -3,9 +3,11 @@ package com.programming.pgs.youtubeclone;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoAuditing  // Enabling Mongo Auditing
+@EnableScheduling  // Periodic flushes of buffered counters
 public class YoutubeCloneApplication {
 
 	public static void main(String[] args) {
@@ -2,13 +2,17 @@ package com.programming.pgs.youtubeclone.config;
 
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
 public class S3Config {
 
 	@Value("${cloud.aws.credentials.access-key}")
@@ -20,13 +24,21 @@ public class S3Config {
 	@Value("${cloud.aws.region.static}")
 	private String region;
 
+	// Optional endpoint of an S3-compatible store (e.g. a local MinIO)
+	@Value("${storage.s3.endpoint:}")
+	private String endpoint;
+
+	@Value("${storage.s3.path-style-access:false}")
+	private boolean pathStyleAccess;
 	
 	/*
 	 * Creates and returns an instance of AmazonS3 client using the provided AWS
 	 * credentials and region. <p> This method initializes the AWS SDK client for
 	 * Amazon S3 using the access key, secret key, and region that are provided. It
 	 * uses the `BasicAWSCredentials` for authentication and sets up the client with
-	 * static credentials. </p>
+	 * static credentials. When {@code storage.s3.endpoint} is set, the client talks
+	 * to that endpoint instead of AWS, which allows running against a local
+	 * S3-compatible stand-in. </p>
 	 *
 	 * @return An instance of {@link AmazonS3} configured with the provided
 	 * credentials and region.
@@ -35,7 +47,15 @@ public class S3Config {
 	AmazonS3 amazonS3() {
 		var credentials = new BasicAWSCredentials(accessKey, secretKey);
 
-		return AmazonS3ClientBuilder.standard().withRegion(region)
-				.withCredentials(new AWSStaticCredentialsProvider(credentials)).build();
+		var builder = AmazonS3ClientBuilder.standard()
+				.withCredentials(new AWSStaticCredentialsProvider(credentials))
+				.withPathStyleAccessEnabled(pathStyleAccess);
+
+		if (StringUtils.hasText(endpoint)) {
+			builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, region));
+		} else {
+			builder.withRegion(region);
+		}
+		return builder.build();
 	}
 }
@@ -3,6 +3,7 @@ package com.programming.pgs.youtubeclone.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -26,6 +27,11 @@ public class SecurityConfig {
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
             .authorizeHttpRequests(auth -> auth
+                // Stored files are public, like the public-read objects of the S3 backend
+                .requestMatchers(HttpMethod.GET, "/api/files/**").permitAll()
+                // Players fetch video content without a bearer token; the stream
+                // service only serves public videos to anyone but their owner
+                .requestMatchers(HttpMethod.GET, "/api/videos/*/stream").permitAll()
                 .anyRequest().authenticated()
             )
             .sessionManagement(sess -> sess
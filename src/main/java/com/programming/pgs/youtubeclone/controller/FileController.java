@@ -0,0 +1,64 @@
+package com.programming.pgs.youtubeclone.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.service.FileMetadata;
+import com.programming.pgs.youtubeclone.service.LocalFileService;
+import com.programming.pgs.youtubeclone.util.Sendfile;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Serves the objects of the {@link LocalFileService}, which is what their public
+ * URLs point to when {@code storage.backend=local}.
+ */
+@RestController
+@RequestMapping("/api/files")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class FileController {
+
+	private final LocalFileService localFileService;
+
+	/**
+	 * Writes an object to the response without copying it through the heap.
+	 *
+	 * <p>
+	 * When the container supports sendfile, it is handed the file and sends it
+	 * straight from the page cache to the socket after this method returns.
+	 * Otherwise the file is written with {@link java.nio.channels.FileChannel#transferTo}.
+	 * </p>
+	 */
+	@GetMapping("/{key}")
+	public void getFile(@PathVariable String key, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		Path path = localFileService.resolve(key)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found - " + key));
+		FileMetadata metadata = localFileService.stat(key)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found - " + key));
+		long length = metadata.contentLength();
+
+		response.setContentType(metadata.contentType() != null ? metadata.contentType()
+				: MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		response.setContentLengthLong(length);
+		// Keys are never reused, so stored objects never change
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+
+		if (!Sendfile.offer(request, path, 0, length)) {
+			localFileService.transfer(key, 0, length, response.getOutputStream());
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package com.programming.pgs.youtubeclone.controller;
 
-import java.util.Set;
-
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -9,9 +7,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.programming.pgs.youtubeclone.dto.CursorPage;
 import com.programming.pgs.youtubeclone.service.UserRegistrationService;
 import com.programming.pgs.youtubeclone.service.UserService;
 
@@ -48,8 +48,23 @@ public class UserController {
 	
 	@GetMapping("/{userId}/history")
 	@ResponseStatus(HttpStatus.OK)
-	public Set<String> userHistory(@PathVariable String userId) {
-		return this.userService.userHistory(userId);
+	public CursorPage<String> userHistory(@PathVariable String userId,
+			@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit) {
+		return this.userService.userHistory(userId, after, limit);
+	}
+	
+	@GetMapping("/{userId}/subscribers")
+	@ResponseStatus(HttpStatus.OK)
+	public CursorPage<String> userSubscribers(@PathVariable String userId,
+			@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit) {
+		return this.userService.userSubscribers(userId, after, limit);
+	}
+	
+	@GetMapping("/{userId}/subscriptions")
+	@ResponseStatus(HttpStatus.OK)
+	public CursorPage<String> userSubscriptions(@PathVariable String userId,
+			@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit) {
+		return this.userService.userSubscriptions(userId, after, limit);
 	}
 
 }
@@ -1,8 +1,13 @@
 package com.programming.pgs.youtubeclone.controller;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,13 +17,31 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.programming.pgs.youtubeclone.dto.CommentDto;
+import com.programming.pgs.youtubeclone.dto.CompleteUploadRequest;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.dto.TagCountDto;
+import com.programming.pgs.youtubeclone.dto.UploadJobDto;
+import com.programming.pgs.youtubeclone.dto.UploadUrlRequest;
+import com.programming.pgs.youtubeclone.dto.UploadUrlResponse;
 import com.programming.pgs.youtubeclone.dto.UploadVideoResponse;
 import com.programming.pgs.youtubeclone.dto.VideoDto;
+import com.programming.pgs.youtubeclone.dto.VideoField;
+import com.programming.pgs.youtubeclone.service.CommentService;
+import com.programming.pgs.youtubeclone.service.PresignedUploadService;
+import com.programming.pgs.youtubeclone.service.TagService;
+import com.programming.pgs.youtubeclone.service.UploadJobService;
+import com.programming.pgs.youtubeclone.service.VideoSearchService;
 import com.programming.pgs.youtubeclone.service.VideoService;
+import com.programming.pgs.youtubeclone.service.VideoStreamService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -27,11 +50,48 @@ import lombok.RequiredArgsConstructor;
 public class VideoController {
 
 	private final VideoService videoService;
+	private final CommentService commentService;
+	private final ObjectProvider<PresignedUploadService> presignedUploadService;
+	private final UploadJobService uploadJobService;
+	private final VideoStreamService videoStreamService;
+	private final VideoSearchService videoSearchService;
+	private final TagService tagService;
 
-    @PostMapping
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UploadJobDto> uploadVideo(@RequestParam("file") MultipartFile file) {
+        return accepted(uploadJobService.submit(file));
+    }
+
+    @PostMapping(consumes = { MediaType.APPLICATION_OCTET_STREAM_VALUE, "video/*" })
+    public ResponseEntity<?> uploadVideoStream(HttpServletRequest request, @RequestParam("filename") String filename,
+            @RequestParam(name = "async", defaultValue = "true") boolean async) throws IOException {
+        if (!async) {
+            // Streamed straight to storage without a local copy, answered once stored
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadJobService.store(request.getInputStream(),
+                    filename, request.getContentType(), request.getContentLengthLong()));
+        }
+        return accepted(uploadJobService.submit(request.getInputStream(), filename, request.getContentType(),
+                request.getContentLengthLong()));
+    }
+
+    @GetMapping("/upload-jobs/{jobId}")
+    @ResponseStatus(HttpStatus.OK)
+    public UploadJobDto getUploadJob(@PathVariable String jobId) {
+        return uploadJobService.getJob(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown upload job - " + jobId));
+    }
+
+    @PostMapping("/upload-url")
     @ResponseStatus(HttpStatus.CREATED)
-    public UploadVideoResponse uploadVideo(@RequestParam("file") MultipartFile file) {
-        return videoService.uploadVideo(file);
+    public UploadUrlResponse createUploadUrl(@RequestBody UploadUrlRequest uploadUrlRequest) {
+        return presignedUploads().createUpload(uploadUrlRequest);
+    }
+
+    @PostMapping("/{videoId}/upload-complete")
+    @ResponseStatus(HttpStatus.OK)
+    public UploadVideoResponse completeUpload(@PathVariable String videoId,
+            @RequestBody(required = false) CompleteUploadRequest completeUploadRequest) {
+        return presignedUploads().completeUpload(videoId, completeUploadRequest);
     }
 	
     @PostMapping("/thumbnail")
@@ -47,11 +107,35 @@ public class VideoController {
     }
     
     @GetMapping("/{videoId}")
-    @ResponseStatus(HttpStatus.OK)
-    public VideoDto getVideoDetails(@PathVariable String videoId) {
+    public VideoDto getVideoDetails(@PathVariable String videoId, WebRequest webRequest) {
+        if (videoService.getVideoVersion(videoId).checkNotModified(webRequest)) {
+            // A revalidated page load is still a view
+            videoService.recordView(videoId);
+            return null;
+        }
     	return videoService.getVideoDetails(videoId);
     }
+
+    @GetMapping("/{videoId}/stream")
+    public void streamVideo(@PathVariable String videoId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        videoStreamService.stream(videoId, request, response);
+    }
     
+	@GetMapping("/{videoId}/related")
+	@ResponseStatus(HttpStatus.OK)
+	public List<VideoDto> getRelatedVideos(@PathVariable String videoId,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String fields) {
+		return this.videoService.getRelatedVideos(videoId, limit, VideoField.parse(fields));
+	}
+	
+	@GetMapping("/{videoId}/similar")
+	@ResponseStatus(HttpStatus.OK)
+	public List<VideoDto> getSimilarVideos(@PathVariable String videoId,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String fields) {
+		return this.videoService.getSimilarVideos(videoId, limit, VideoField.parse(fields));
+	}
+	
 	@PostMapping("/{videoId}/like")
 	@ResponseStatus(HttpStatus.OK)
 	public VideoDto likeVideo(@PathVariable String videoId) {
@@ -66,39 +150,114 @@ public class VideoController {
 	
 	@PostMapping("/{videoId}/comment")
 	@ResponseStatus(HttpStatus.OK)
-	public void addComment(@PathVariable String videoId, @RequestBody CommentDto commentDto) {
-		this.videoService.addComment(videoId, commentDto);
+	public CommentDto addComment(@PathVariable String videoId, @RequestBody CommentDto commentDto) {
+		return this.commentService.addComment(videoId, commentDto);
 	}
 	
 	@GetMapping("/{videoId}/comment") 
-	@ResponseStatus(HttpStatus.OK)
-	public List<CommentDto> getAllComments(@PathVariable String videoId)
+	public CursorPage<CommentDto> getAllComments(@PathVariable String videoId,
+			@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit,
+			WebRequest webRequest)
 	{
-		return this.videoService.getAllComments(videoId);
+		if (this.commentService.getCommentsVersion(videoId).checkNotModified(webRequest)) {
+			return null;
+		}
+		return this.commentService.getComments(videoId, after, limit);
 	}
 	
 	@GetMapping
+	public CursorPage<VideoDto> getAllVideos(@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String fields,
+			WebRequest webRequest) {
+		var videoFields = VideoField.parse(fields);
+		if (this.videoService.getCatalogVersion(after, limit).checkNotModified(webRequest)) {
+			return null;
+		}
+		return this.videoService.getAllVideos(after, limit, videoFields);
+	}
+	
+	@GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamAllVideos(@RequestParam(required = false) String fields) {
+		var videoFields = VideoField.parse(fields);
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(outputStream -> this.videoService.streamAllVideos(videoFields, outputStream));
+	}
+	
+	@GetMapping("/feed")
+	@ResponseStatus(HttpStatus.OK)
+	public CursorPage<VideoDto> getFeed(@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String fields) {
+	    return this.videoService.getFeed(after, limit, VideoField.parse(fields));
+	}
+	
+	@GetMapping("/trending")
+	@ResponseStatus(HttpStatus.OK)
+	public List<VideoDto> getTrendingVideos(@RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) String fields) {
+	    return this.videoService.getTrendingVideos(limit, VideoField.parse(fields));
+	}
+	
+	@GetMapping("/search")
+	@ResponseStatus(HttpStatus.OK)
+	public List<VideoDto> searchVideos(@RequestParam String q, @RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) String fields) {
+	    return this.videoService.searchVideos(q, limit, VideoField.parse(fields));
+	}
+	
+	@GetMapping("/search/suggestions")
 	@ResponseStatus(HttpStatus.OK)
-	public List<VideoDto> getAllVideos() {
-		return this.videoService.getAllVideos();
+	public List<String> getSearchSuggestions(@RequestParam String q,
+			@RequestParam(required = false, defaultValue = "10") int limit) {
+	    return this.videoSearchService.suggest(q, Math.min(Math.max(limit, 1), 50));
+	}
+	
+	@GetMapping("/tags")
+	@ResponseStatus(HttpStatus.OK)
+	public List<TagCountDto> getTopTags(@RequestParam(required = false) Integer limit) {
+	    return this.tagService.getTopTags(limit);
+	}
+	
+	@GetMapping("/tags/{tag}")
+	@ResponseStatus(HttpStatus.OK)
+	public CursorPage<VideoDto> getVideosByTag(@PathVariable String tag,
+			@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) String fields) {
+	    return this.videoService.getVideosByTag(tag, after, limit, VideoField.parse(fields));
 	}
 	
 	@GetMapping("/liked")
 	@ResponseStatus(HttpStatus.OK)
-	public List<VideoDto> getLikedVideos() {
-	    return this.videoService.getLikedVideos();
+	public List<VideoDto> getLikedVideos(@RequestParam(required = false) String fields) {
+	    return this.videoService.getLikedVideos(VideoField.parse(fields));
 	}
 	
 	@GetMapping("/disliked")
 	@ResponseStatus(HttpStatus.OK)
-	public List<VideoDto> getDislikedVideos() {
-	    return this.videoService.getDisLikedVideos();
+	public List<VideoDto> getDislikedVideos(@RequestParam(required = false) String fields) {
+	    return this.videoService.getDisLikedVideos(VideoField.parse(fields));
 	}
 	
 	@GetMapping("/history")
 	@ResponseStatus(HttpStatus.OK)
-	public List<VideoDto> getVideoHistory() {
-	    return this.videoService.getVideoHistory();
+	public CursorPage<VideoDto> getVideoHistory(@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String fields) {
+	    return this.videoService.getVideoHistory(after, limit, VideoField.parse(fields));
+	}
+
+	private PresignedUploadService presignedUploads() {
+		PresignedUploadService service = presignedUploadService.getIfAvailable();
+		if (service == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+					"Direct uploads require the S3 storage backend");
+		}
+		return service;
+	}
+
+	private static ResponseEntity<UploadJobDto> accepted(UploadJobDto uploadJob) {
+		return ResponseEntity.accepted()
+				.location(URI.create("/api/videos/upload-jobs/" + uploadJob.getJobId()))
+				.body(uploadJob);
 	}
 
 }
\ No newline at end of file
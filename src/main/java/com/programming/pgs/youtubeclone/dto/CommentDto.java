@@ -1,5 +1,7 @@
 package com.programming.pgs.youtubeclone.dto;
 
+import java.time.Instant;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -10,6 +12,8 @@ import lombok.Setter;
 @NoArgsConstructor
 @AllArgsConstructor
 public class CommentDto {
+    private String id;
     private String commentText;
     private String authorId;
+    private Instant createdAt;
 }
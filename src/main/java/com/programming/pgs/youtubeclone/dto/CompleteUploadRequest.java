@@ -0,0 +1,26 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompleteUploadRequest {
+    private String uploadId;
+    private List<Part> parts;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Part {
+        private Integer partNumber;
+        @JsonProperty("eTag")
+        private String eTag;
+    }
+}
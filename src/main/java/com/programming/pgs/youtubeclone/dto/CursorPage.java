@@ -0,0 +1,58 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.programming.pgs.youtubeclone.util.PageCursor;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is {@code null} on
+ * the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private List<T> items;
+    private String nextCursor;
+
+    /**
+     * Clamps a requested page size to {@code [1, MAX_LIMIT]}, using
+     * {@code DEFAULT_LIMIT} when none was requested.
+     *
+     * @param limit the requested page size, may be {@code null}
+     * @return the page size to use
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Builds a page from rows fetched with {@code limit + 1}; the extra row only
+     * signals that there is a next page and is not returned.
+     *
+     * @param rows     the fetched rows, at most {@code limit + 1}
+     * @param limit    the page size
+     * @param cursorOf extracts the cursor of a row
+     * @param mapper   maps a row to the returned item
+     * @return the page
+     */
+    public static <E, T> CursorPage<T> of(List<E> rows, int limit, Function<E, PageCursor> cursorOf,
+            Function<E, T> mapper) {
+        boolean hasMore = rows.size() > limit;
+        List<E> pageRows = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(pageRows.get(pageRows.size() - 1)).encode() : null;
+        return new CursorPage<>(pageRows.stream().map(mapper).toList(), nextCursor);
+    }
+}
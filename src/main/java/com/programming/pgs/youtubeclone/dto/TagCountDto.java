@@ -0,0 +1,17 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A tag and the number of videos carrying it, as returned by
+ * {@code GET /api/videos/tags}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TagCountDto {
+    private String tag;
+    private long count;
+}
@@ -0,0 +1,28 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a background video upload, as returned by
+ * {@code GET /api/videos/upload-jobs/{jobId}}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadJobDto {
+    private String jobId;
+    private String videoId;
+    private UploadJobStatus status;
+    private int attempts;
+    private String videoUrl;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,5 @@
+package com.programming.pgs.youtubeclone.dto;
+
+public enum UploadJobStatus {
+    QUEUED, RUNNING, SUCCEEDED, FAILED
+}
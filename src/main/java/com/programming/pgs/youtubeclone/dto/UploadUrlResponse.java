@@ -0,0 +1,34 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Where and how to upload the bytes of a pending video.
+ * <p>
+ * Small files get a single {@code uploadUrl} that must be called with
+ * {@code PUT} and the given {@code headers}. Large files get an {@code uploadId}
+ * and one presigned URL per part of {@code partSize} bytes; the ETag returned
+ * for each part must be sent back when completing the upload.
+ * </p>
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadUrlResponse {
+    private String videoId;
+    private String uploadUrl;
+    private Map<String, String> headers;
+    private String uploadId;
+    private Long partSize;
+    private List<String> partUrls;
+    private Instant expiresAt;
+}
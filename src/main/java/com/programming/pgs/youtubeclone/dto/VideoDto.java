@@ -1,8 +1,10 @@
 package com.programming.pgs.youtubeclone.dto;
 
 import java.time.Instant;
+import java.util.SortedMap;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.programming.pgs.youtubeclone.model.VideoStatus;
 
 import lombok.AllArgsConstructor;
@@ -12,6 +14,7 @@ import lombok.NoArgsConstructor;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class VideoDto {
     private String id;
     private String title;
@@ -20,9 +23,17 @@ public class VideoDto {
     private String videoUrl;
     private VideoStatus videoStatus;
     private String thumbnailUrl;
+    // Rendition URLs keyed by width in pixels, in ascending order
+    private SortedMap<Integer, String> thumbnails;
+    private Long durationMillis;
+    private Integer width;
+    private Integer height;
+    private String videoCodec;
+    private String audioCodec;
     private Integer likeCount;
     private Integer dislikeCount;
     private Integer viewCount;
+    private Integer commentCount;
     private Instant createdAt;
     private Instant lastModifiedAt;
 }
\ No newline at end of file
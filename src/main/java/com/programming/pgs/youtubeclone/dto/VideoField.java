@@ -0,0 +1,88 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The properties of a {@link VideoDto} that can be requested through the
+ * {@code fields=} query parameter of the listing endpoints, together with the
+ * {@code Video} document field each of them is read from.
+ */
+public enum VideoField {
+
+    ID("id", "_id"),
+    TITLE("title", "title"),
+    DESCRIPTION("description", "description"),
+    TAGS("tags", "tags"),
+    VIDEO_URL("videoUrl", "videoUrl"),
+    VIDEO_STATUS("videoStatus", "videoStatus"),
+    THUMBNAIL_URL("thumbnailUrl", "thumbnailUrl"),
+    THUMBNAILS("thumbnails", "thumbnails"),
+    DURATION_MILLIS("durationMillis", "durationMillis"),
+    WIDTH("width", "width"),
+    HEIGHT("height", "height"),
+    VIDEO_CODEC("videoCodec", "videoCodec"),
+    AUDIO_CODEC("audioCodec", "audioCodec"),
+    LIKE_COUNT("likeCount", "likes"),
+    DISLIKE_COUNT("dislikeCount", "disLikes"),
+    VIEW_COUNT("viewCount", "viewCount"),
+    COMMENT_COUNT("commentCount", "commentCount"),
+    CREATED_AT("createdAt", "createdAt"),
+    LAST_MODIFIED_AT("lastModifiedAt", "lastModifiedAt");
+
+    /** Fields rendered by video cards, returned when no {@code fields=} is given. */
+    public static final Set<VideoField> SUMMARY = Collections.unmodifiableSet(EnumSet.of(ID, TITLE, VIDEO_STATUS,
+            THUMBNAIL_URL, THUMBNAILS, DURATION_MILLIS, LIKE_COUNT, DISLIKE_COUNT, VIEW_COUNT, COMMENT_COUNT,
+            CREATED_AT));
+
+    public static final Set<VideoField> ALL = Collections.unmodifiableSet(EnumSet.allOf(VideoField.class));
+
+    private static final Map<String, VideoField> BY_PROPERTY = Arrays.stream(values())
+            .collect(Collectors.toMap(VideoField::getProperty, Function.identity()));
+
+    private final String property;
+    private final String documentField;
+
+    VideoField(String property, String documentField) {
+        this.property = property;
+        this.documentField = documentField;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getDocumentField() {
+        return documentField;
+    }
+
+    /**
+     * Parses a comma-separated list of {@link VideoDto} property names.
+     *
+     * @param fields the requested properties, may be {@code null} or blank
+     * @return the requested fields, or {@link #SUMMARY} if none were requested
+     * @throws ResponseStatusException with {@code 400 Bad Request} for unknown properties
+     */
+    public static Set<VideoField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return SUMMARY;
+        }
+        Set<VideoField> parsed = EnumSet.noneOf(VideoField.class);
+        for (String property : fields.split(",")) {
+            VideoField field = BY_PROPERTY.get(property.trim());
+            if (field == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown video field - " + property.trim());
+            }
+            parsed.add(field);
+        }
+        return parsed;
+    }
+}
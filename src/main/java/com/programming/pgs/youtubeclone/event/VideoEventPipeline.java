@@ -0,0 +1,209 @@
+package com.programming.pgs.youtubeclone.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.service.RecommendationService;
+import com.programming.pgs.youtubeclone.service.TrendingService;
+import com.programming.pgs.youtubeclone.service.ViewCountAggregator;
+import com.programming.pgs.youtubeclone.service.WatchHistoryService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process pipeline that moves the side effects of watching a video off the
+ * request thread.
+ *
+ * <p>
+ * The read path only publishes a {@link VideoViewed} event into a bounded queue.
+ * A background consumer collects events into batches of up to
+ * {@code video.events.batch-size}, waiting at most {@code video.events.linger}
+ * for a batch to fill, and applies each batch in bulk: view counts go to the
+ * {@link ViewCountAggregator} and the {@link TrendingService}, history
+ * entries are written with one bulk upsert, and the views of signed-in users
+ * are passed on to the {@link RecommendationService}. When the queue is full, publishers wait up to
+ * {@code video.events.offer-timeout} and the event is dropped after that.
+ * </p>
+ * <p>
+ * Queued events are drained on shutdown. Queue depth, published, dropped and
+ * failed events are exposed as {@code video.events.*} meters.
+ * </p>
+ */
+@Component
+public class VideoEventPipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoEventPipeline.class);
+	private static final long POLL_TIMEOUT_MILLIS = 200;
+
+	private final ViewCountAggregator viewCountAggregator;
+	private final WatchHistoryService watchHistoryService;
+	private final TrendingService trendingService;
+	private final RecommendationService recommendationService;
+
+	private final BlockingQueue<VideoViewed> queue;
+	private final int batchSize;
+	private final Duration linger;
+	private final Duration offerTimeout;
+	private final Duration shutdownTimeout;
+
+	private final Counter publishedEvents;
+	private final Counter droppedEvents;
+	private final Counter failedEvents;
+	private final DistributionSummary batchSizes;
+
+	private final Thread consumer;
+	private volatile boolean running;
+
+	public VideoEventPipeline(ViewCountAggregator viewCountAggregator, WatchHistoryService watchHistoryService,
+			TrendingService trendingService, RecommendationService recommendationService, MeterRegistry meterRegistry,
+			@Value("${video.events.queue-capacity:10000}") int queueCapacity,
+			@Value("${video.events.batch-size:500}") int batchSize,
+			@Value("${video.events.linger:50ms}") Duration linger,
+			@Value("${video.events.offer-timeout:0ms}") Duration offerTimeout,
+			@Value("${video.events.shutdown-timeout:10s}") Duration shutdownTimeout) {
+		this.viewCountAggregator = viewCountAggregator;
+		this.watchHistoryService = watchHistoryService;
+		this.trendingService = trendingService;
+		this.recommendationService = recommendationService;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.linger = linger;
+		this.offerTimeout = offerTimeout;
+		this.shutdownTimeout = shutdownTimeout;
+
+		Gauge.builder("video.events.queue.depth", queue, Collection::size)
+				.description("Video view events waiting to be applied")
+				.register(meterRegistry);
+		this.publishedEvents = Counter.builder("video.events.published").register(meterRegistry);
+		this.droppedEvents = Counter.builder("video.events.dropped")
+				.description("Video view events dropped because the queue was full")
+				.register(meterRegistry);
+		this.failedEvents = Counter.builder("video.events.failed")
+				.description("Video view events whose batch could not be applied")
+				.register(meterRegistry);
+		this.batchSizes = DistributionSummary.builder("video.events.batch.size").register(meterRegistry);
+
+		this.consumer = new Thread(this::consume, "video-events");
+	}
+
+	/**
+	 * Publishes an event without blocking longer than the configured offer timeout.
+	 *
+	 * @param event the event to publish
+	 * @return {@code true} if the event was queued, {@code false} if it was dropped
+	 */
+	public boolean publish(VideoViewed event) {
+		boolean accepted;
+		try {
+			accepted = offerTimeout.isZero()
+					? queue.offer(event)
+					: queue.offer(event, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			accepted = false;
+		}
+
+		if (accepted) {
+			publishedEvents.increment();
+		} else {
+			droppedEvents.increment();
+			LOGGER.debug("Dropped view event of video {}, the queue is full", event.videoId());
+		}
+		return accepted;
+	}
+
+	@PostConstruct
+	void start() {
+		running = true;
+		consumer.start();
+	}
+
+	/**
+	 * Stops the consumer and applies every event that is still queued.
+	 */
+	@PreDestroy
+	void stop() throws InterruptedException {
+		running = false;
+		consumer.join(shutdownTimeout.toMillis());
+
+		List<VideoViewed> remaining = new ArrayList<>();
+		while (queue.drainTo(remaining, batchSize) > 0) {
+			apply(remaining);
+			remaining.clear();
+		}
+		LOGGER.info("Video event pipeline stopped");
+	}
+
+	private void consume() {
+		List<VideoViewed> batch = new ArrayList<>(batchSize);
+		while (running) {
+			try {
+				VideoViewed first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				fillBatch(batch);
+				apply(batch);
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds events to the batch until it is full or the linger time has passed.
+	 */
+	private void fillBatch(List<VideoViewed> batch) throws InterruptedException {
+		long deadline = System.nanoTime() + linger.toNanos();
+		while (batch.size() < batchSize) {
+			queue.drainTo(batch, batchSize - batch.size());
+			long remainingNanos = deadline - System.nanoTime();
+			if (batch.size() >= batchSize || remainingNanos <= 0) {
+				return;
+			}
+			VideoViewed next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void apply(List<VideoViewed> batch) {
+		batchSizes.record(batch.size());
+		try {
+			Map<String, Long> viewsByVideo = new HashMap<>();
+			batch.forEach(event -> viewsByVideo.merge(event.videoId(), 1L, Long::sum));
+			viewsByVideo.forEach(viewCountAggregator::addViews);
+			viewsByVideo.forEach(trendingService::recordViews);
+
+			watchHistoryService.recordViews(batch);
+			recommendationService.recordViews(batch);
+			LOGGER.debug("Applied {} video view events", batch.size());
+		} catch (RuntimeException exception) {
+			failedEvents.increment(batch.size());
+			LOGGER.error("Failed to apply {} video view events", batch.size(), exception);
+		}
+	}
+}
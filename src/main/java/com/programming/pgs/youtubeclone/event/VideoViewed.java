@@ -0,0 +1,13 @@
+package com.programming.pgs.youtubeclone.event;
+
+import java.time.Instant;
+
+/**
+ * Published when a user opens the details of a video.
+ *
+ * @param userId    the ID of the viewing user
+ * @param videoId   the ID of the viewed video
+ * @param timestamp the time of the view
+ */
+public record VideoViewed(String userId, String videoId, Instant timestamp) {
+}
@@ -0,0 +1,14 @@
+package com.programming.pgs.youtubeclone.media;
+
+/**
+ * Properties of a media file read from its container metadata. Properties that
+ * are not present in the file are {@code null}.
+ *
+ * @param durationMillis the duration of the presentation in milliseconds
+ * @param width          the display width of the video track in pixels
+ * @param height         the display height of the video track in pixels
+ * @param videoCodec     the sample entry type of the video track, e.g. {@code avc1}
+ * @param audioCodec     the sample entry type of the audio track, e.g. {@code mp4a}
+ */
+public record MediaInfo(Long durationMillis, Integer width, Integer height, String videoCodec, String audioCodec) {
+}
@@ -0,0 +1,384 @@
+package com.programming.pgs.youtubeclone.media;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader for the box structure of ISO base media files (MP4, M4V, MOV).
+ *
+ * <p>
+ * Only the top-level box headers are read from the file, with positional reads
+ * on a {@link FileChannel}; media data is never loaded. The {@code moov} box,
+ * which holds all metadata, is read into memory once and parsed from there. It
+ * provides the {@link MediaInfo} of the file and can write a faststart copy in
+ * which {@code moov} precedes the media data, so players can start before the
+ * whole file has been downloaded.
+ * </p>
+ */
+public final class Mp4File implements Closeable {
+
+	// Metadata larger than this is not a plausible upload and is not loaded
+	private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+	private static final long UINT32_MAX = 0xFFFF_FFFFL;
+
+	/**
+	 * A box: its type, the offset of its header and its total size including the
+	 * header.
+	 */
+	private record Box(String type, long offset, long size, int headerSize) {
+
+		long contentOffset() {
+			return offset + headerSize;
+		}
+
+		long end() {
+			return offset + size;
+		}
+	}
+
+	private final FileChannel channel;
+	private final List<Box> topLevelBoxes;
+	private final Box moovBox;
+	private final ByteBuffer moov;
+
+	private Mp4File(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.topLevelBoxes = readTopLevelBoxes();
+		if (topLevelBoxes.isEmpty() || !topLevelBoxes.get(0).type().equals("ftyp")) {
+			throw new Mp4FormatException("Not an ISO base media file");
+		}
+		this.moovBox = topLevelBoxes.stream()
+				.filter(box -> box.type().equals("moov"))
+				.findFirst()
+				.orElseThrow(() -> new Mp4FormatException("No moov box"));
+		if (moovBox.size() > MAX_MOOV_SIZE) {
+			throw new Mp4FormatException("moov box of " + moovBox.size() + " bytes is too large");
+		}
+		this.moov = readFully(moovBox.offset(), (int) moovBox.size());
+	}
+
+	/**
+	 * Opens a file and reads its metadata.
+	 *
+	 * @param path the file to open
+	 * @return the opened file, which must be closed
+	 * @throws Mp4FormatException if the file is not a well-formed MP4 file
+	 * @throws IOException        if the file cannot be read
+	 */
+	public static Mp4File open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new Mp4File(channel);
+		} catch (IOException | RuntimeException exception) {
+			channel.close();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Extracts the duration, display size and codecs of the file.
+	 *
+	 * @return the media properties found in the {@code moov} box
+	 */
+	public MediaInfo mediaInfo() {
+		Long durationMillis = null;
+		Integer width = null;
+		Integer height = null;
+		String videoCodec = null;
+		String audioCodec = null;
+
+		for (Box child : children(moovBox(), 0)) {
+			switch (child.type()) {
+			case "mvhd" -> durationMillis = durationMillis(child);
+			case "trak" -> {
+				String handler = null;
+				String codec = null;
+				Box trackHeader = null;
+				for (Box trackChild : children(child, 0)) {
+					if (trackChild.type().equals("tkhd")) {
+						trackHeader = trackChild;
+					} else if (trackChild.type().equals("mdia")) {
+						for (Box mediaChild : children(trackChild, 0)) {
+							if (mediaChild.type().equals("hdlr")) {
+								handler = fourCc((int) mediaChild.contentOffset() + 8);
+							} else if (mediaChild.type().equals("minf")) {
+								codec = sampleEntryType(mediaChild);
+							}
+						}
+					}
+				}
+				if ("vide".equals(handler) && videoCodec == null) {
+					videoCodec = codec;
+					if (trackHeader != null) {
+						int[] size = displaySize(trackHeader);
+						width = size[0];
+						height = size[1];
+					}
+				} else if ("soun".equals(handler) && audioCodec == null) {
+					audioCodec = codec;
+				}
+			}
+			default -> {
+				// Other boxes carry nothing we extract
+			}
+			}
+		}
+		return new MediaInfo(durationMillis, width, height, videoCodec, audioCodec);
+	}
+
+	/**
+	 * Whether the {@code moov} box already precedes all media data.
+	 */
+	public boolean isFaststart() {
+		for (Box box : topLevelBoxes) {
+			if (box.type().equals("mdat")) {
+				return false;
+			}
+			if (box == moovBox) {
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a copy of the file in which {@code moov} is moved in front of the
+	 * first {@code mdat} box. Chunk offsets that point into the moved range are
+	 * shifted by the size of {@code moov}; media data is copied with
+	 * {@link FileChannel#transferTo} and never passes through the heap.
+	 *
+	 * @param target the file to write, replaced if it exists
+	 * @throws Mp4FormatException if the file is already faststart, its metadata is
+	 *                            compressed, or shifted offsets no longer fit in
+	 *                            32-bit chunk offset tables
+	 * @throws IOException        if writing fails
+	 */
+	public void writeFaststart(Path target) throws IOException {
+		if (isFaststart()) {
+			throw new Mp4FormatException("moov already precedes the media data");
+		}
+		Box firstMdat = topLevelBoxes.stream().filter(box -> box.type().equals("mdat")).findFirst().orElseThrow();
+		ByteBuffer patchedMoov = patchChunkOffsets(firstMdat.offset(), moovBox.offset(), moovBox.size());
+
+		try (FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (Box box : topLevelBoxes) {
+				if (box == moovBox) {
+					continue;
+				}
+				if (box == firstMdat) {
+					while (patchedMoov.hasRemaining()) {
+						output.write(patchedMoov);
+					}
+				}
+				long position = box.offset();
+				while (position < box.end()) {
+					long transferred = channel.transferTo(position, box.end() - position, output);
+					if (transferred <= 0) {
+						throw new IOException("Could not copy box " + box.type() + " at " + box.offset());
+					}
+					position += transferred;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private List<Box> readTopLevelBoxes() throws IOException {
+		long fileSize = channel.size();
+		List<Box> boxes = new ArrayList<>();
+		long position = 0;
+		while (position < fileSize) {
+			ByteBuffer header = readFully(position, (int) Math.min(16, fileSize - position));
+			Box box = parseHeader(header, 0, header.limit(), position, fileSize - position);
+			boxes.add(box);
+			position = box.end();
+		}
+		return boxes;
+	}
+
+	/**
+	 * Parses a box header.
+	 *
+	 * @param buffer     the buffer holding the header
+	 * @param index      the index of the header in the buffer
+	 * @param limit      the end of the readable part of the buffer
+	 * @param offset     the offset to record for the box
+	 * @param available  how many bytes the box can span at most
+	 */
+	private static Box parseHeader(ByteBuffer buffer, int index, int limit, long offset, long available)
+			throws Mp4FormatException {
+		if (limit - index < 8) {
+			throw new Mp4FormatException("Truncated box header at " + offset);
+		}
+		long size = Integer.toUnsignedLong(buffer.getInt(index));
+		String type = new String(buffer.array(), buffer.arrayOffset() + index + 4, 4, StandardCharsets.ISO_8859_1);
+		int headerSize = 8;
+		if (size == 1) {
+			if (limit - index < 16) {
+				throw new Mp4FormatException("Truncated box header at " + offset);
+			}
+			size = buffer.getLong(index + 8);
+			headerSize = 16;
+		} else if (size == 0) {
+			// The box extends to the end of its container
+			size = available;
+		}
+		if (size < headerSize || size > available) {
+			throw new Mp4FormatException("Invalid size " + size + " of box " + type + " at " + offset);
+		}
+		return new Box(type, offset, size, headerSize);
+	}
+
+	/** The {@code moov} box, with offsets relative to the {@link #moov} buffer. */
+	private Box moovBox() {
+		return new Box("moov", 0, moovBox.size(), moovBox.headerSize());
+	}
+
+	/**
+	 * Parses the child boxes of a box in the {@link #moov} buffer.
+	 *
+	 * @param parent the container box
+	 * @param skip   bytes to skip at the start of the content, for boxes that
+	 *               have fields before their children
+	 */
+	private List<Box> children(Box parent, int skip) {
+		List<Box> children = new ArrayList<>();
+		int position = (int) parent.contentOffset() + skip;
+		int end = (int) parent.end();
+		try {
+			while (position < end) {
+				Box child = parseHeader(moov, position, end, position, end - position);
+				children.add(child);
+				position = (int) child.end();
+			}
+		} catch (Mp4FormatException malformed) {
+			// Keep the well-formed children; trailing garbage is common in the wild
+		}
+		return children;
+	}
+
+	private Long durationMillis(Box mvhd) {
+		int content = (int) mvhd.contentOffset();
+		int version = moov.get(content);
+		long timescale;
+		long duration;
+		if (version == 1) {
+			timescale = Integer.toUnsignedLong(moov.getInt(content + 20));
+			duration = moov.getLong(content + 24);
+			if (duration == -1) {
+				return null;
+			}
+		} else {
+			timescale = Integer.toUnsignedLong(moov.getInt(content + 12));
+			duration = Integer.toUnsignedLong(moov.getInt(content + 16));
+			if (duration == UINT32_MAX) {
+				return null;
+			}
+		}
+		return timescale == 0 ? null : duration * 1000 / timescale;
+	}
+
+	/** Reads the 16.16 fixed-point display width and height of a track header. */
+	private int[] displaySize(Box tkhd) {
+		int content = (int) tkhd.contentOffset();
+		int sizeOffset = moov.get(content) == 1 ? 88 : 76;
+		if (content + sizeOffset + 8 > tkhd.end()) {
+			return new int[] { 0, 0 };
+		}
+		return new int[] { moov.getInt(content + sizeOffset) >>> 16, moov.getInt(content + sizeOffset + 4) >>> 16 };
+	}
+
+	/** Returns the type of the first sample entry in {@code minf/stbl/stsd}. */
+	private String sampleEntryType(Box minf) {
+		for (Box stbl : children(minf, 0)) {
+			if (stbl.type().equals("stbl")) {
+				for (Box table : children(stbl, 0)) {
+					// Version, flags and entry count precede the first sample entry
+					if (table.type().equals("stsd") && table.size() >= table.headerSize() + 16) {
+						return fourCc((int) table.contentOffset() + 12);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private String fourCc(int index) {
+		byte[] bytes = new byte[4];
+		moov.get(index, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1).trim();
+	}
+
+	/**
+	 * Returns a copy of the {@code moov} box in which every chunk offset in
+	 * {@code [from, to)} is increased by {@code delta}.
+	 */
+	private ByteBuffer patchChunkOffsets(long from, long to, long delta) throws Mp4FormatException {
+		ByteBuffer patched = ByteBuffer.allocate(moov.capacity());
+		patched.put(moov.duplicate().clear());
+		patched.flip();
+
+		List<Box> tables = new ArrayList<>();
+		collectChunkOffsetTables(moovBox(), tables);
+		for (Box table : tables) {
+			int content = (int) table.contentOffset();
+			long entryCount = Integer.toUnsignedLong(patched.getInt(content + 4));
+			boolean wide = table.type().equals("co64");
+			int entrySize = wide ? 8 : 4;
+			if (content + 8 + entryCount * entrySize > table.end()) {
+				throw new Mp4FormatException("Truncated chunk offset table");
+			}
+			for (int i = 0; i < entryCount; i++) {
+				int index = content + 8 + i * entrySize;
+				long offset = wide ? patched.getLong(index) : Integer.toUnsignedLong(patched.getInt(index));
+				if (offset < from || offset >= to) {
+					continue;
+				}
+				offset += delta;
+				if (wide) {
+					patched.putLong(index, offset);
+				} else if (offset > UINT32_MAX) {
+					throw new Mp4FormatException("Shifted chunk offsets do not fit in stco");
+				} else {
+					patched.putInt(index, (int) offset);
+				}
+			}
+		}
+		return patched;
+	}
+
+	private void collectChunkOffsetTables(Box container, List<Box> tables) throws Mp4FormatException {
+		for (Box child : children(container, 0)) {
+			switch (child.type()) {
+			case "cmov" -> throw new Mp4FormatException("Compressed moov boxes are not supported");
+			case "stco", "co64" -> tables.add(child);
+			case "trak", "mdia", "minf", "stbl" -> collectChunkOffsetTables(child, tables);
+			default -> {
+				// Leaf or unrelated box
+			}
+			}
+		}
+	}
+
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new Mp4FormatException("Unexpected end of file at " + (position + buffer.position()));
+			}
+		}
+		return buffer.flip();
+	}
+}
@@ -0,0 +1,16 @@
+package com.programming.pgs.youtubeclone.media;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a file is not a well-formed ISO base media (MP4) file, or uses a
+ * feature that cannot be processed.
+ */
+public class Mp4FormatException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public Mp4FormatException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,115 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.model.Comment;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One-shot migration of the comments that used to be embedded in the
+ * {@code Video} document ({@code commentList}) into the {@code Comment}
+ * collection.
+ *
+ * <p>
+ * Videos are streamed one at a time with only their comments projected, so the
+ * migration runs in constant memory. Embedded comments had no timestamp; they
+ * get the creation time of their video plus their position in milliseconds to
+ * keep their original order. Each migrated video gets its {@code commentCount}
+ * and loses its {@code commentList}, which makes the migration a no-op on the
+ * next start.
+ * </p>
+ * <p>
+ * Every step can be repeated: comments are upserted on their (videoId,
+ * createdAt) key, which only depends on the video and the position of the
+ * comment, and {@code commentCount} is recounted from the collection. A run
+ * interrupted between the two writes of a video therefore neither duplicates
+ * its comments nor loses comments added to it in the meantime.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class CommentMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommentMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Query legacyVideos = Query.query(Criteria.where("commentList").exists(true));
+		legacyVideos.fields().include("commentList", "createdAt");
+
+		int migratedVideos = 0;
+		try (Stream<Document> videos = mongoTemplate.stream(legacyVideos, Document.class, "Video")) {
+			for (Document video : (Iterable<Document>) videos::iterator) {
+				migrateVideo(video);
+				migratedVideos++;
+			}
+		}
+
+		if (migratedVideos > 0) {
+			LOGGER.info("Migrated embedded comments of {} videos to the Comment collection", migratedVideos);
+		}
+	}
+
+	private void migrateVideo(Document video) {
+		Object videoId = video.get("_id");
+		List<Document> embeddedComments = video.getList("commentList", Document.class, List.of());
+		Instant base = baseTime(video);
+
+		// Raw upserts so that auditing does not overwrite createdAt
+		if (!embeddedComments.isEmpty()) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED,
+					mongoTemplate.getCollectionName(Comment.class));
+			for (int i = 0; i < embeddedComments.size(); i++) {
+				Document embedded = embeddedComments.get(i);
+				bulkOperations.upsert(
+						Query.query(Criteria.where("videoId").is(videoId.toString())
+								.and("createdAt").is(Date.from(base.plusMillis(i)))),
+						new Update().setOnInsert("text", embedded.getString("text"))
+								.setOnInsert("authorId", embedded.getString("authorId"))
+								.setOnInsert("likeCount", embedded.getInteger("likeCount"))
+								.setOnInsert("disLikeCount", embedded.getInteger("disLikeCount")));
+			}
+			bulkOperations.execute();
+		}
+
+		long commentCount = mongoTemplate.count(Query.query(Criteria.where("videoId").is(videoId.toString())),
+				Comment.class);
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(videoId).and("commentList").exists(true)),
+				new Update().unset("commentList").set("commentCount", Math.toIntExact(commentCount)), "Video");
+		LOGGER.debug("Migrated {} comments of video {}", embeddedComments.size(), videoId);
+	}
+
+	/**
+	 * The time of the first comment of a video: its creation time, or the time
+	 * in its ObjectId, so that it is the same on every run.
+	 */
+	private static Instant baseTime(Document video) {
+		if (video.getDate("createdAt") != null) {
+			return video.getDate("createdAt").toInstant();
+		}
+		if (video.get("_id") instanceof ObjectId objectId) {
+			return objectId.getDate().toInstant();
+		}
+		return Instant.EPOCH;
+	}
+}
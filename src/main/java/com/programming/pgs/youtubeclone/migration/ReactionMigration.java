@@ -0,0 +1,89 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.model.Reaction;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One-shot migration of the likes and dislikes that used to be embedded in the
+ * {@code User} document ({@code likedVideos} / {@code disLikedVideos}) into the
+ * {@code Reaction} collection.
+ *
+ * <p>
+ * Video counters already include these reactions, so only the reaction
+ * documents are created. The embedded sets are removed afterwards, which makes
+ * the migration a no-op on the next start.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class ReactionMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactionMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Query legacyUsers = Query.query(new Criteria().orOperator(
+				Criteria.where("likedVideos.0").exists(true),
+				Criteria.where("disLikedVideos.0").exists(true)));
+		legacyUsers.fields().include("likedVideos", "disLikedVideos");
+
+		int migratedUsers = 0;
+		try (Stream<Document> users = mongoTemplate.stream(legacyUsers, Document.class, "User")) {
+			for (Document user : (Iterable<Document>) users::iterator) {
+				migrateUser(user);
+				migratedUsers++;
+			}
+		}
+
+		if (migratedUsers > 0) {
+			LOGGER.info("Migrated embedded reactions of {} users to the Reaction collection", migratedUsers);
+		}
+	}
+
+	private void migrateUser(Document user) {
+		String userId = user.getObjectId("_id").toHexString();
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Reaction.class);
+
+		int reactions = addReactions(bulkOperations, userId, user.getList("likedVideos", String.class), ReactionType.LIKE)
+				+ addReactions(bulkOperations, userId, user.getList("disLikedVideos", String.class), ReactionType.DISLIKE);
+		if (reactions > 0) {
+			bulkOperations.execute();
+		}
+
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(user.getObjectId("_id"))),
+				new Update().unset("likedVideos").unset("disLikedVideos"), "User");
+	}
+
+	private static int addReactions(BulkOperations bulkOperations, String userId, List<String> videoIds,
+			ReactionType type) {
+		if (videoIds == null) {
+			return 0;
+		}
+		for (String videoId : videoIds) {
+			bulkOperations.upsert(Query.query(Criteria.where("userId").is(userId).and("videoId").is(videoId)),
+					new Update().setOnInsert("type", type).setOnInsert("lastModifiedAt", Instant.now()));
+		}
+		return videoIds.size();
+	}
+}
@@ -0,0 +1,114 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation.WhenDocumentsDontMatch;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation.WhenDocumentsMatch;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.model.Subscription;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One-shot migration of the subscriptions that used to be embedded in the
+ * {@code User} document ({@code subscribedToUsers} / {@code subscribers}) into
+ * the {@code Subscription} collection.
+ *
+ * <p>
+ * Both sets were written with read-modify-write cycles, so either side of a
+ * subscription may have been lost; an edge is created if either side recorded
+ * it. The counters of all users are then recomputed from the edges, and only
+ * after that are the embedded sets removed, which makes the migration a no-op
+ * on the next start. Edges are upserted, so a run interrupted before the sets
+ * are removed is redone by the next one, counters included.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class SubscriptionMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Criteria legacy = new Criteria().orOperator(
+				Criteria.where("subscribedToUsers").exists(true),
+				Criteria.where("subscribers").exists(true));
+		Query legacyUsers = Query.query(legacy);
+		legacyUsers.fields().include("subscribedToUsers", "subscribers");
+
+		int migratedUsers = 0;
+		try (Stream<Document> users = mongoTemplate.stream(legacyUsers, Document.class, "User")) {
+			for (Document user : (Iterable<Document>) users::iterator) {
+				migrateUser(user);
+				migratedUsers++;
+			}
+		}
+		if (migratedUsers == 0) {
+			return;
+		}
+
+		// The sets are the only trace of an unfinished run, so they go last
+		updateCounters("followeeId", "subscriberCount");
+		updateCounters("followerId", "subscriptionCount");
+		mongoTemplate.updateMulti(Query.query(legacy), new Update().unset("subscribedToUsers").unset("subscribers"),
+				"User");
+		LOGGER.info("Migrated embedded subscriptions of {} users to the Subscription collection", migratedUsers);
+	}
+
+	private void migrateUser(Document user) {
+		String userId = user.getObjectId("_id").toHexString();
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Subscription.class);
+
+		List<String> followees = user.getList("subscribedToUsers", String.class, List.of());
+		List<String> followers = user.getList("subscribers", String.class, List.of());
+		followees.forEach(followeeId -> addEdge(bulkOperations, userId, followeeId));
+		followers.forEach(followerId -> addEdge(bulkOperations, followerId, userId));
+		if (!followees.isEmpty() || !followers.isEmpty()) {
+			bulkOperations.execute();
+		}
+	}
+
+	private static void addEdge(BulkOperations bulkOperations, String followerId, String followeeId) {
+		if (!followerId.equals(followeeId)) {
+			bulkOperations.upsert(
+					Query.query(Criteria.where("followerId").is(followerId).and("followeeId").is(followeeId)),
+					new Update().setOnInsert("createdAt", Instant.now()));
+		}
+	}
+
+	/**
+	 * Sets a counter of every user with edges to the number of their edges, in
+	 * one server-side aggregation.
+	 */
+	private void updateCounters(String userField, String counter) {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.group(userField).count().as(counter),
+				Aggregation.project(counter).and(ConvertOperators.ToObjectId.toObjectId("$_id")).as("_id"),
+				MergeOperation.builder()
+						.intoCollection("User")
+						.whenMatched(WhenDocumentsMatch.mergeDocuments())
+						.whenDocumentsDontMatch(WhenDocumentsDontMatch.discardDocument())
+						.build());
+		mongoTemplate.aggregate(aggregation, Subscription.class, Document.class);
+	}
+}
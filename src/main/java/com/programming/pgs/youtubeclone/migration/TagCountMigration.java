@@ -0,0 +1,66 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.merge;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation.WhenDocumentsDontMatch;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation.WhenDocumentsMatch;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.model.TagCount;
+import com.programming.pgs.youtubeclone.service.VideoService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One-shot backfill of the {@code TagCount} collection from the tags of the
+ * existing videos.
+ *
+ * <p>
+ * Tag counts are maintained incrementally from then on, so the aggregation only
+ * runs while the collection is empty and some listed video has tags. Only
+ * listed videos are counted, as by the {@code TagService}. The counts are
+ * computed by the database and merged into the collection without reading the
+ * videos into the application.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class TagCountMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TagCountMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Criteria counted = VideoService.listed().and("tags.0").exists(true);
+		if (mongoTemplate.exists(new Query(), TagCount.class) || !mongoTemplate.exists(Query.query(counted), "Video")) {
+			return;
+		}
+
+		Aggregation backfill = newAggregation(
+				match(counted),
+				unwind("tags"),
+				group("tags").count().as("count"),
+				merge().intoCollection(mongoTemplate.getCollectionName(TagCount.class))
+						.whenMatched(WhenDocumentsMatch.replaceDocument())
+						.whenNotMatched(WhenDocumentsDontMatch.insertNewDocument())
+						.build());
+		mongoTemplate.aggregate(backfill, "Video", Document.class);
+
+		LOGGER.info("Backfilled the counts of {} tags", mongoTemplate.count(new Query(), TagCount.class));
+	}
+}
@@ -0,0 +1,78 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.programming.pgs.youtubeclone.model.WatchHistory;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One-shot migration of the watch history that used to be embedded in the
+ * {@code User} document ({@code videoHistory}) into the {@code WatchHistory}
+ * collection.
+ *
+ * <p>
+ * The embedded history was an unordered set without timestamps, so migrated
+ * entries are stamped with the time of the migration. The embedded set is
+ * removed afterwards, which makes the migration a no-op on the next start.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class WatchHistoryMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WatchHistoryMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Query legacyUsers = Query.query(Criteria.where("videoHistory").exists(true));
+		legacyUsers.fields().include("videoHistory");
+
+		Instant migratedAt = Instant.now();
+		int migratedUsers = 0;
+		try (Stream<Document> users = mongoTemplate.stream(legacyUsers, Document.class, "User")) {
+			for (Document user : (Iterable<Document>) users::iterator) {
+				migrateUser(user, migratedAt);
+				migratedUsers++;
+			}
+		}
+
+		if (migratedUsers > 0) {
+			LOGGER.info("Migrated embedded watch history of {} users to the WatchHistory collection", migratedUsers);
+		}
+	}
+
+	private void migrateUser(Document user, Instant migratedAt) {
+		String userId = user.getObjectId("_id").toHexString();
+		List<String> videoIds = user.getList("videoHistory", String.class, List.of());
+
+		if (!videoIds.isEmpty()) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, WatchHistory.class);
+			for (String videoId : videoIds) {
+				bulkOperations.upsert(Query.query(Criteria.where("userId").is(userId).and("videoId").is(videoId)),
+						new Update().setOnInsert("watchedAt", migratedAt));
+			}
+			bulkOperations.execute();
+		}
+
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(user.getObjectId("_id"))),
+				new Update().unset("videoHistory"), "User");
+	}
+}
@@ -1,10 +1,17 @@
 package com.programming.pgs.youtubeclone.model;
 
+import java.time.Instant;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
+@Document(value = "Comment")
+@CompoundIndex(name = "video_created", def = "{'videoId': 1, 'createdAt': -1, '_id': -1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,8 +19,11 @@ public class Comment {
 
     @Id
     private String id;
+    private String videoId;
     private String text;
     private String authorId;
     private Integer likeCount;
     private Integer disLikeCount;
-}
\ No newline at end of file
+    @CreatedDate
+    private Instant createdAt;
+}
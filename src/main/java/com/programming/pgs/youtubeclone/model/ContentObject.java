@@ -0,0 +1,33 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A stored object identified by the SHA-256 of its content, with the number of
+ * videos and thumbnails that point at it.
+ */
+@Document(value = "ContentObject")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentObject {
+
+    // Hex-encoded SHA-256 of the content
+    @Id
+    private String id;
+    @Indexed(name = "key_unique", unique = true)
+    private String key;
+    private String url;
+    private String contentType;
+    private long contentLength;
+    private long refCount;
+    private Instant createdAt;
+}
@@ -0,0 +1,33 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The reaction of one user to one video. There is at most one document per
+ * (user, video) pair, enforced by a unique index.
+ */
+@Document(value = "Reaction")
+@CompoundIndex(name = "user_video_unique", def = "{'userId': 1, 'videoId': 1}", unique = true)
+@CompoundIndex(name = "video_type", def = "{'videoId': 1, 'type': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Reaction {
+
+	@Id
+	private String id;
+	private String userId;
+	private String videoId;
+	private ReactionType type;
+	@Indexed(name = "modified")
+	private Instant lastModifiedAt;
+}
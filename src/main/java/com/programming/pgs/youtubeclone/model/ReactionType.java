@@ -0,0 +1,5 @@
+package com.programming.pgs.youtubeclone.model;
+
+public enum ReactionType {
+    NONE, LIKE, DISLIKE
+}
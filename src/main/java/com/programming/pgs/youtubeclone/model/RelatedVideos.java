@@ -0,0 +1,29 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Precomputed recommendations for a video: the videos most often liked or
+ * watched by the same users, most similar first.
+ */
+@Document(value = "RelatedVideos")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedVideos {
+
+    // The ID of the video
+    @Id
+    private String id;
+    private List<String> videoIds;
+    private List<Double> scores;
+    private Instant computedAt;
+}
@@ -0,0 +1,32 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user following another user. There is at most one document per
+ * (follower, followee) pair, enforced by a unique index; both directions are
+ * listed newest first through their own index.
+ */
+@Document(value = "Subscription")
+@CompoundIndex(name = "follower_followee_unique", def = "{'followerId': 1, 'followeeId': 1}", unique = true)
+@CompoundIndex(name = "follower_created", def = "{'followerId': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "followee_created", def = "{'followeeId': 1, 'createdAt': -1, '_id': -1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Subscription {
+
+	@Id
+	private String id;
+	private String followerId;
+	private String followeeId;
+	private Instant createdAt;
+}
@@ -0,0 +1,26 @@
+package com.programming.pgs.youtubeclone.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of videos carrying a tag. Maintained incrementally when the tags of a
+ * video change; tags that no video carries any more are removed.
+ */
+@Document(value = "TagCount")
+@CompoundIndex(name = "count_id", def = "{'count': -1, '_id': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TagCount {
+
+    // The tag itself
+    @Id
+    private String id;
+    private long count;
+}
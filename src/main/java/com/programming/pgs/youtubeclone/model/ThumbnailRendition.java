@@ -0,0 +1,19 @@
+package com.programming.pgs.youtubeclone.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A thumbnail of a video scaled to a fixed width, stored as a JPEG image.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThumbnailRendition {
+
+    private int width;
+    private int height;
+    private String key;
+    private String url;
+}
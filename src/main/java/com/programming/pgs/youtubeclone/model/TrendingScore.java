@@ -0,0 +1,28 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Checkpoint of the trending score of a video. The score is forward-decayed
+ * relative to the landmark: its value at time {@code t} is
+ * {@code score * exp(-lambda * (t - landmark))}.
+ */
+@Document(value = "TrendingScore")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingScore {
+
+    // The ID of the video
+    @Id
+    private String id;
+    private double score;
+    private Instant landmark;
+}
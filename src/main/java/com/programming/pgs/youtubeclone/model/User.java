@@ -6,9 +6,6 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
 @Document(value = "User")
 @Data
 @NoArgsConstructor
@@ -22,45 +19,7 @@ public class User {
     private String fullName;
     private String emailAddress;
     private String sub;
-    private Set<String> subscribedToUsers = ConcurrentHashMap.newKeySet();
-    private Set<String> subscribers = ConcurrentHashMap.newKeySet();
-    private Set<String> videoHistory = ConcurrentHashMap.newKeySet();
-    private Set<String> likedVideos = ConcurrentHashMap.newKeySet();
-    private Set<String> disLikedVideos = ConcurrentHashMap.newKeySet();
-
-    public void addToLikeVideos(String videoId) {
-        likedVideos.add(videoId);
-    }
-
-    public void removeFromLikedVideos(String videoId) {
-        likedVideos.remove(videoId);
-    }
-
-    public void removeFromDislikedVideos(String videoId) {
-        disLikedVideos.remove(videoId);
-    }
-
-    public void addToDislikedVideos(String videoId) {
-        disLikedVideos.add(videoId);
-    }
-
-    public void addToVideoHistory(String videoId) {
-        videoHistory.add(videoId);
-    }
-
-    public void addToSubscribedToUsers(String userId) {
-        subscribedToUsers.add(userId);
-    }
-
-    public void addToSubscribers(String userId) {
-        subscribers.add(userId);
-    }
-
-    public void removeFromSubscribedToUsers(String userId) {
-        subscribedToUsers.remove(userId);
-    }
-
-    public void removeFromSubscribers(String userId) {
-        subscribers.remove(userId);
-    }
-}
\ No newline at end of file
+    // Maintained with $inc from the Subscription collection
+    private long subscriberCount;
+    private long subscriptionCount;
+}
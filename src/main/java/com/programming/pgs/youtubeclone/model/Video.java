@@ -3,12 +3,13 @@ package com.programming.pgs.youtubeclone.model;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -16,6 +17,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(value = "Video")
+@CompoundIndex(name = "created_id", def = "{'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "tags_created_id", def = "{'tags': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "user_status_created_id",
+		def = "{'userId': 1, 'videoStatus': 1, 'createdAt': -1, '_id': -1, 'uploadStatus': 1}")
+@CompoundIndex(name = "status_created", def = "{'uploadStatus': 1, 'createdAt': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,10 +36,29 @@ public class Video {
 	private AtomicInteger disLikes = new AtomicInteger(0);
 	private Set<String> tags;
 	private String videoUrl;
+	private String videoKey;
+	private String contentType;
+	private Long contentLength;
+	private Long durationMillis;
+	private Integer width;
+	private Integer height;
+	private String videoCodec;
+	private String audioCodec;
+	private UploadStatus uploadStatus;
+	// ID of the multipart upload of a pending direct upload
+	private String uploadId;
 	private VideoStatus videoStatus;
 	private AtomicInteger viewCount = new AtomicInteger(0);
+	private AtomicLong bytesServed = new AtomicLong(0);
+	// Bytes and nanoseconds of the transfers timed by the application, whose
+	// ratio is the transfer rate of the video
+	private AtomicLong timedBytesServed = new AtomicLong(0);
+	private AtomicLong transferNanos = new AtomicLong(0);
 	private String thumbnailUrl;
-	private List<Comment> commentList = new CopyOnWriteArrayList<>();
+	private String thumbnailKey;
+	// Ordered by ascending width
+	private List<ThumbnailRendition> thumbnails;
+	private AtomicInteger commentCount = new AtomicInteger(0);
 	@CreatedDate
     private Instant createdAt;
 	@LastModifiedDate
@@ -63,8 +88,4 @@ public class Video {
 	public void incrementViewCount() {
 		viewCount.incrementAndGet();
 	}
-
-	public void addComment(Comment comment) {
-		commentList.add(comment);
-	}
 }
\ No newline at end of file
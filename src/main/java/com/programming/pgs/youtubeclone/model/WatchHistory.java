@@ -0,0 +1,33 @@
+package com.programming.pgs.youtubeclone.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a user's watch history. There is one entry per (user, video)
+ * pair holding the time of the latest view; entries expire after
+ * {@code history.ttl}.
+ */
+@Document(value = "WatchHistory")
+@CompoundIndex(name = "user_video_unique", def = "{'userId': 1, 'videoId': 1}", unique = true)
+@CompoundIndex(name = "user_watched", def = "{'userId': 1, 'watchedAt': -1, '_id': -1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatchHistory {
+
+	@Id
+	private String id;
+	private String userId;
+	private String videoId;
+	@Indexed(name = "watched_ttl", expireAfter = "#{@environment.getProperty('history.ttl', '180d')}")
+	private Instant watchedAt;
+}
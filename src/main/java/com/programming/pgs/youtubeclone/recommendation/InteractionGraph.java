@@ -0,0 +1,160 @@
+package com.programming.pgs.youtubeclone.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implicit feedback of users on items, as a bipartite graph indexed in both
+ * directions.
+ *
+ * <p>
+ * Users and items are numbered densely in the order they are first seen, so
+ * that adjacency lists are plain {@code int} arrays and similarity computations
+ * can count co-occurrences in an array indexed by item number. Every
+ * (user, item) pair is stored at most once, and the items of a user keep the
+ * order in which they were added.
+ * </p>
+ * <p>
+ * The graph is not thread-safe. It is either modified by a single thread, or
+ * only read, for instance by the tasks of a parallel build.
+ * </p>
+ */
+public final class InteractionGraph {
+
+	/** A growable list of {@code int}. */
+	static final class IntList {
+
+		private int[] values = new int[4];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		boolean contains(int value) {
+			for (int i = 0; i < size; i++) {
+				if (values[i] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	private final Map<String, Integer> userNumbers = new HashMap<>();
+	private final Map<String, Integer> itemNumbers = new HashMap<>();
+	private final List<String> itemIds = new ArrayList<>();
+	private final List<IntList> itemsByUser = new ArrayList<>();
+	private final List<IntList> usersByItem = new ArrayList<>();
+
+	/**
+	 * Records that a user interacted with an item.
+	 *
+	 * @param userId the ID of the user
+	 * @param itemId the ID of the item
+	 * @return {@code true} if the pair was not in the graph yet
+	 */
+	public boolean add(String userId, String itemId) {
+		int user = userNumbers.computeIfAbsent(userId, id -> {
+			itemsByUser.add(new IntList());
+			return itemsByUser.size() - 1;
+		});
+		int item = itemNumbers.computeIfAbsent(itemId, id -> {
+			itemIds.add(id);
+			usersByItem.add(new IntList());
+			return itemIds.size() - 1;
+		});
+
+		IntList items = itemsByUser.get(user);
+		if (items.contains(item)) {
+			return false;
+		}
+		items.add(item);
+		usersByItem.get(item).add(user);
+		return true;
+	}
+
+	/**
+	 * @return the number of items with at least one interaction
+	 */
+	public int itemCount() {
+		return itemIds.size();
+	}
+
+	/**
+	 * @return the number of users with at least one interaction
+	 */
+	public int userCount() {
+		return itemsByUser.size();
+	}
+
+	/**
+	 * Returns the number of an item.
+	 *
+	 * @param itemId the ID of the item
+	 * @return the number of the item, or {@code -1} if nobody interacted with it
+	 */
+	public int itemNumber(String itemId) {
+		return itemNumbers.getOrDefault(itemId, -1);
+	}
+
+	/**
+	 * Returns the number of a user.
+	 *
+	 * @param userId the ID of the user
+	 * @return the number of the user, or {@code -1} if the user has no interactions
+	 */
+	public int userNumber(String userId) {
+		return userNumbers.getOrDefault(userId, -1);
+	}
+
+	/**
+	 * Returns the items a user interacted with last.
+	 *
+	 * @param userId the ID of the user
+	 * @param limit  the maximum number of items
+	 * @return the IDs of at most {@code limit} items, in the order they were added
+	 */
+	public List<String> recentItemIds(String userId, int limit) {
+		int user = userNumber(userId);
+		if (user < 0) {
+			return List.of();
+		}
+		IntList items = itemsByUser.get(user);
+		List<String> recentItemIds = new ArrayList<>(Math.min(limit, items.size()));
+		for (int i = Math.max(0, items.size() - limit); i < items.size(); i++) {
+			recentItemIds.add(itemIds.get(items.get(i)));
+		}
+		return recentItemIds;
+	}
+
+	String itemId(int item) {
+		return itemIds.get(item);
+	}
+
+	IntList items(int user) {
+		return itemsByUser.get(user);
+	}
+
+	IntList users(int item) {
+		return usersByItem.get(item);
+	}
+}
@@ -0,0 +1,165 @@
+package com.programming.pgs.youtubeclone.recommendation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.programming.pgs.youtubeclone.recommendation.InteractionGraph.IntList;
+
+/**
+ * Item-to-item similarity from co-occurrence in the interactions of users.
+ *
+ * <p>
+ * Two items co-occur when the same user interacted with both. Their similarity
+ * is the cosine of their binary user vectors,
+ * {@code cooccurrences / sqrt(users(a) * users(b))}, which discounts items that
+ * co-occur with everything only because they are popular. Pairs that co-occur
+ * fewer than {@code minCooccurrence} times are ignored as noise.
+ * </p>
+ * <p>
+ * The similar items of one item are found by walking its users and, for each of
+ * them, their items, counting co-occurrences in an array indexed by item number.
+ * Only the last {@code maxItemsPerUser} items of a user are walked, which bounds
+ * the cost of very active users. {@link #computeAll} runs this for every item as
+ * fork/join tasks over ranges of items; each worker thread reuses its own
+ * counting array and every item writes only its own result, so the tasks share
+ * nothing but the read-only graph.
+ * </p>
+ */
+public final class ItemSimilarity {
+
+	// Items per leaf task, small enough to balance the skewed cost of popular items
+	private static final int ITEMS_PER_TASK = 64;
+
+	private static final Comparator<SimilarItem> BY_SCORE = Comparator.comparingDouble(SimilarItem::score)
+			.thenComparing(SimilarItem::itemId, Comparator.reverseOrder());
+
+	/** Co-occurrence counts of one computation, reset after use. */
+	private static final class Scratch {
+
+		private int[] counts = new int[0];
+		private final IntList touched = new IntList();
+	}
+
+	private final InteractionGraph graph;
+	private final int topN;
+	private final int maxItemsPerUser;
+	private final int minCooccurrence;
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	public ItemSimilarity(InteractionGraph graph, int topN, int maxItemsPerUser, int minCooccurrence) {
+		this.graph = graph;
+		this.topN = topN;
+		this.maxItemsPerUser = maxItemsPerUser;
+		this.minCooccurrence = Math.max(1, minCooccurrence);
+	}
+
+	/**
+	 * Finds the items most similar to one item.
+	 *
+	 * @param itemId the ID of the item
+	 * @return at most {@code topN} similar items, most similar first
+	 */
+	public List<SimilarItem> similarTo(String itemId) {
+		int item = graph.itemNumber(itemId);
+		return item < 0 ? List.of() : similarTo(item);
+	}
+
+	/**
+	 * Finds the similar items of every item in parallel.
+	 *
+	 * @param pool the pool to run the tasks in
+	 * @return the similar items, indexed by item number
+	 */
+	public List<List<SimilarItem>> computeAll(ForkJoinPool pool) {
+		@SuppressWarnings("unchecked")
+		List<SimilarItem>[] results = new List[graph.itemCount()];
+		pool.invoke(new ItemRange(results, 0, results.length));
+		return List.of(results);
+	}
+
+	/**
+	 * Returns the ID of an item, for reading the results of {@link #computeAll}.
+	 *
+	 * @param item the number of the item
+	 * @return the ID of the item
+	 */
+	public String itemId(int item) {
+		return graph.itemId(item);
+	}
+
+	private List<SimilarItem> similarTo(int item) {
+		Scratch state = scratch.get();
+		if (state.counts.length < graph.itemCount()) {
+			state.counts = new int[graph.itemCount()];
+		}
+		int[] counts = state.counts;
+		IntList touched = state.touched;
+
+		IntList users = graph.users(item);
+		for (int u = 0; u < users.size(); u++) {
+			IntList items = graph.items(users.get(u));
+			for (int i = Math.max(0, items.size() - maxItemsPerUser); i < items.size(); i++) {
+				int other = items.get(i);
+				if (other != item && counts[other]++ == 0) {
+					touched.add(other);
+				}
+			}
+		}
+
+		PriorityQueue<SimilarItem> top = new PriorityQueue<>(BY_SCORE);
+		double itemUsers = users.size();
+		for (int t = 0; t < touched.size(); t++) {
+			int other = touched.get(t);
+			int cooccurrences = counts[other];
+			counts[other] = 0;
+			if (cooccurrences < minCooccurrence) {
+				continue;
+			}
+			double score = cooccurrences / Math.sqrt(itemUsers * graph.users(other).size());
+			if (top.size() == topN && score <= top.peek().score()) {
+				continue;
+			}
+			top.add(new SimilarItem(graph.itemId(other), score));
+			if (top.size() > topN) {
+				top.poll();
+			}
+		}
+		touched.clear();
+
+		List<SimilarItem> similarItems = new ArrayList<>(top);
+		similarItems.sort(BY_SCORE.reversed());
+		return similarItems;
+	}
+
+	/** Computes the similar items of a range of item numbers. */
+	private final class ItemRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<SimilarItem>[] results;
+		private final int from;
+		private final int to;
+
+		ItemRange(List<SimilarItem>[] results, int from, int to) {
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ITEMS_PER_TASK) {
+				for (int item = from; item < to; item++) {
+					results[item] = similarTo(item);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ItemRange(results, from, middle), new ItemRange(results, middle, to));
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.programming.pgs.youtubeclone.recommendation;
+
+/**
+ * An item similar to another one.
+ *
+ * @param itemId the ID of the similar item
+ * @param score  the cosine similarity of both items, in {@code (0, 1]}
+ */
+public record SimilarItem(String itemId, double score) {
+}
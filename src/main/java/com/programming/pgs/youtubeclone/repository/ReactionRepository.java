@@ -0,0 +1,12 @@
+package com.programming.pgs.youtubeclone.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import com.programming.pgs.youtubeclone.model.Reaction;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+
+public interface ReactionRepository extends MongoRepository<Reaction, String> {
+    List<Reaction> findByUserIdAndType(String userId, ReactionType type);
+}
@@ -0,0 +1,426 @@
+package com.programming.pgs.youtubeclone.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the title, tags and description of documents,
+ * ranked with BM25.
+ *
+ * <p>
+ * Each term maps to a postings list of document numbers and weighted term
+ * frequencies, where a term counts {@value #TITLE_WEIGHT} times in a title,
+ * {@value #TAG_WEIGHT} times in a tag and once in a description. Terms are kept
+ * in a sorted dictionary, so the last term of a query is also matched as a
+ * prefix and completions are found without scanning the whole vocabulary.
+ * </p>
+ * <p>
+ * Replacing or removing a document only marks its number as dead; postings of
+ * dead documents are skipped while searching and dropped by a compaction once
+ * they make up a quarter of the index. Every document carries a version, and
+ * changes older than the indexed version are ignored, so a bulk build can run
+ * concurrently with incremental updates. The versions of removed documents are
+ * kept as tombstones until the build has finished and {@link #clearTombstones()}
+ * is called. Reads and writes are guarded by a read-write lock.
+ * </p>
+ */
+public final class InvertedIndex {
+
+	public static final float TITLE_WEIGHT = 3;
+	public static final float TAG_WEIGHT = 2;
+	public static final float DESCRIPTION_WEIGHT = 1;
+
+	// Standard BM25 parameters
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	// How many completions of the last query term are searched
+	private static final int MAX_EXPANSIONS = 16;
+	private static final float EXPANSION_WEIGHT = 0.5f;
+	private static final int MIN_DEAD_FOR_COMPACTION = 1024;
+
+	/** The postings of one term, in ascending document number order. */
+	private static final class Postings {
+
+		private int[] documents = new int[2];
+		private float[] frequencies = new float[2];
+		private int size;
+
+		void add(int document, float frequency) {
+			if (size == documents.length) {
+				documents = Arrays.copyOf(documents, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			documents[size] = document;
+			frequencies[size] = frequency;
+			size++;
+		}
+	}
+
+	/** An indexed document: its ID, version and weighted length. */
+	private record Document(String id, long version, float length) {
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<String, Postings> terms = new TreeMap<>();
+	// Indexed by document number, null once the document is replaced or removed
+	private final List<Document> documents = new ArrayList<>();
+	private final Map<String, Integer> documentNumbers = new HashMap<>();
+	private final Map<String, Long> removedVersions = new HashMap<>();
+	// Weighted length by document number, negative once the document is dead; kept
+	// apart from the documents so scoring reads one contiguous array
+	private float[] lengths = new float[16];
+	private double totalLength;
+	private int deadCount;
+
+	/**
+	 * Adds or replaces a document.
+	 *
+	 * @param id          the ID of the document
+	 * @param version     the version of the document; older versions than the
+	 *                    indexed one are ignored
+	 * @param title       the title, may be {@code null}
+	 * @param description the description, may be {@code null}
+	 * @param tags        the tags, may be {@code null}
+	 * @return {@code true} if the index was changed
+	 */
+	public boolean put(String id, long version, String title, String description, Collection<String> tags) {
+		Map<String, Float> frequencies = new HashMap<>();
+		addTerms(frequencies, Tokenizer.tokenize(title), TITLE_WEIGHT);
+		addTerms(frequencies, Tokenizer.tokenize(description), DESCRIPTION_WEIGHT);
+		if (tags != null) {
+			tags.forEach(tag -> addTerms(frequencies, Tokenizer.tokenize(tag), TAG_WEIGHT));
+		}
+		float length = 0;
+		for (float frequency : frequencies.values()) {
+			length += frequency;
+		}
+
+		lock.writeLock().lock();
+		try {
+			if (version < indexedVersion(id)) {
+				return false;
+			}
+			removeLive(id);
+			removedVersions.remove(id);
+
+			int number = documents.size();
+			documents.add(new Document(id, version, length));
+			if (number == lengths.length) {
+				lengths = Arrays.copyOf(lengths, number * 2);
+			}
+			lengths[number] = length;
+			documentNumbers.put(id, number);
+			totalLength += length;
+			frequencies.forEach((term, frequency) -> terms.computeIfAbsent(term, t -> new Postings())
+					.add(number, frequency));
+			maybeCompact();
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a document.
+	 *
+	 * @param id      the ID of the document
+	 * @param version the version in which the document stopped being searchable
+	 * @return {@code true} if the index was changed
+	 */
+	public boolean remove(String id, long version) {
+		lock.writeLock().lock();
+		try {
+			if (version < indexedVersion(id)) {
+				return false;
+			}
+			boolean removed = removeLive(id);
+			removedVersions.put(id, version);
+			maybeCompact();
+			return removed;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the documents that best match a query.
+	 *
+	 * @param query the query text; its last term also matches as a prefix
+	 * @param limit the maximum number of hits
+	 * @return the hits, best first
+	 */
+	public List<SearchHit> search(String query, int limit) {
+		List<String> queryTerms = Tokenizer.tokenize(query);
+		if (queryTerms.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+
+		lock.readLock().lock();
+		try {
+			int liveCount = documentNumbers.size();
+			if (liveCount == 0) {
+				return List.of();
+			}
+			Map<Postings, Float> weightedPostings = new HashMap<>();
+			for (int i = 0; i < queryTerms.size(); i++) {
+				String term = queryTerms.get(i);
+				Postings exact = terms.get(term);
+				if (exact != null) {
+					weightedPostings.merge(exact, 1f, Float::sum);
+				}
+				if (i == queryTerms.size() - 1) {
+					for (Map.Entry<String, Postings> completion : completions(term, MAX_EXPANSIONS)) {
+						if (!completion.getKey().equals(term)) {
+							weightedPostings.merge(completion.getValue(), EXPANSION_WEIGHT, Float::sum);
+						}
+					}
+				}
+			}
+
+			double averageLength = totalLength / liveCount;
+			long candidates = weightedPostings.keySet().stream().mapToLong(postings -> postings.size).sum();
+			Accumulator accumulator = candidates > documents.size() / 8
+					? new DenseAccumulator(documents.size())
+					: new SparseAccumulator();
+			weightedPostings.forEach((postings, weight) -> score(postings, weight, liveCount, averageLength,
+					accumulator));
+			return accumulator.top(limit, documents);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Completes the last term of a partial query with the indexed terms that start
+	 * with it, most frequent first.
+	 *
+	 * @param query the partial query
+	 * @param limit the maximum number of completions
+	 * @return the query with its last term completed, in order of document
+	 *         frequency
+	 */
+	public List<String> suggest(String query, int limit) {
+		List<String> queryTerms = Tokenizer.tokenize(query);
+		if (queryTerms.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+		String prefix = queryTerms.get(queryTerms.size() - 1);
+		String leading = String.join(" ", queryTerms.subList(0, queryTerms.size() - 1));
+
+		lock.readLock().lock();
+		try {
+			return completions(prefix, limit).stream()
+					.map(completion -> leading.isEmpty() ? completion.getKey() : leading + " " + completion.getKey())
+					.toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Forgets the versions of removed documents. They are only needed while a
+	 * bulk build may still put older versions of those documents.
+	 */
+	public void clearTombstones() {
+		lock.writeLock().lock();
+		try {
+			removedVersions.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of searchable documents
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documentNumbers.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the terms with the given prefix that occur in the most documents.
+	 * Must be called with the lock held.
+	 */
+	private List<Map.Entry<String, Postings>> completions(String prefix, int limit) {
+		Comparator<Map.Entry<String, Postings>> byFrequency = Comparator
+				.comparingInt((Map.Entry<String, Postings> entry) -> entry.getValue().size)
+				.thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+		PriorityQueue<Map.Entry<String, Postings>> top = new PriorityQueue<>(byFrequency);
+		for (Map.Entry<String, Postings> entry : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+				.entrySet()) {
+			top.add(entry);
+			if (top.size() > limit) {
+				top.poll();
+			}
+		}
+		List<Map.Entry<String, Postings>> completions = new ArrayList<>(top);
+		completions.sort(byFrequency.reversed());
+		return completions;
+	}
+
+	private void score(Postings postings, float weight, int liveCount, double averageLength,
+			Accumulator accumulator) {
+		// Postings may still contain dead documents, which slightly overstates the document frequency
+		int documentFrequency = Math.min(postings.size, liveCount);
+		double idf = Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+		double factor = weight * idf * (K1 + 1);
+		double lengthFactor = K1 * B / averageLength;
+		double constantNorm = K1 * (1 - B);
+		for (int i = 0; i < postings.size; i++) {
+			int document = postings.documents[i];
+			float length = lengths[document];
+			if (length < 0) {
+				continue;
+			}
+			float frequency = postings.frequencies[i];
+			accumulator.add(document, factor * frequency / (frequency + constantNorm + lengthFactor * length));
+		}
+	}
+
+	private long indexedVersion(String id) {
+		Integer number = documentNumbers.get(id);
+		if (number != null) {
+			return documents.get(number).version();
+		}
+		return removedVersions.getOrDefault(id, Long.MIN_VALUE);
+	}
+
+	private boolean removeLive(String id) {
+		Integer number = documentNumbers.remove(id);
+		if (number == null) {
+			return false;
+		}
+		totalLength -= documents.get(number).length();
+		documents.set(number, null);
+		lengths[number] = -1;
+		deadCount++;
+		return true;
+	}
+
+	/**
+	 * Renumbers the live documents and rewrites every postings list without the
+	 * dead ones, once they make up a quarter of all document numbers.
+	 */
+	private void maybeCompact() {
+		if (deadCount < MIN_DEAD_FOR_COMPACTION || deadCount < documents.size() / 4) {
+			return;
+		}
+		int[] renumbered = new int[documents.size()];
+		List<Document> live = new ArrayList<>(documentNumbers.size());
+		for (int number = 0; number < documents.size(); number++) {
+			Document document = documents.get(number);
+			renumbered[number] = document == null ? -1 : live.size();
+			if (document != null) {
+				documentNumbers.put(document.id(), live.size());
+				live.add(document);
+			}
+		}
+		terms.values().removeIf(postings -> {
+			int size = 0;
+			for (int i = 0; i < postings.size; i++) {
+				int number = renumbered[postings.documents[i]];
+				if (number >= 0) {
+					postings.documents[size] = number;
+					postings.frequencies[size] = postings.frequencies[i];
+					size++;
+				}
+			}
+			postings.size = size;
+			return size == 0;
+		});
+		documents.clear();
+		documents.addAll(live);
+		for (int number = 0; number < live.size(); number++) {
+			lengths[number] = live.get(number).length();
+		}
+		deadCount = 0;
+	}
+
+	private static void addTerms(Map<String, Float> frequencies, List<String> terms, float weight) {
+		terms.forEach(term -> frequencies.merge(term, weight, Float::sum));
+	}
+
+	/** Sums the scores of the documents matched by a query. */
+	private interface Accumulator {
+
+		void add(int document, double score);
+
+		default List<SearchHit> top(int limit, List<Document> documents) {
+			PriorityQueue<SearchHit> top = new PriorityQueue<>(Comparator.comparingDouble(SearchHit::score));
+			forEach((document, score) -> {
+				// Most candidates score below the current top hits and are skipped without allocating
+				if (top.size() == limit && score <= top.peek().score()) {
+					return;
+				}
+				top.add(new SearchHit(documents.get(document).id(), score));
+				if (top.size() > limit) {
+					top.poll();
+				}
+			});
+			List<SearchHit> hits = new ArrayList<>(top);
+			hits.sort(Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(SearchHit::documentId));
+			return hits;
+		}
+
+		void forEach(ScoreConsumer consumer);
+	}
+
+	@FunctionalInterface
+	private interface ScoreConsumer {
+
+		void accept(int document, double score);
+	}
+
+	/** Accumulator for selective queries, which touch few documents. */
+	private static final class SparseAccumulator implements Accumulator {
+
+		private final Map<Integer, Double> scores = new HashMap<>();
+
+		@Override
+		public void add(int document, double score) {
+			scores.merge(document, score, Double::sum);
+		}
+
+		@Override
+		public void forEach(ScoreConsumer consumer) {
+			scores.forEach(consumer::accept);
+		}
+	}
+
+	/** Accumulator for queries with frequent terms, indexed by document number. */
+	private static final class DenseAccumulator implements Accumulator {
+
+		private final float[] scores;
+
+		DenseAccumulator(int documentCount) {
+			this.scores = new float[documentCount];
+		}
+
+		@Override
+		public void add(int document, double score) {
+			scores[document] += (float) score;
+		}
+
+		@Override
+		public void forEach(ScoreConsumer consumer) {
+			for (int document = 0; document < scores.length; document++) {
+				if (scores[document] > 0) {
+					consumer.accept(document, scores[document]);
+				}
+			}
+		}
+	}
+}
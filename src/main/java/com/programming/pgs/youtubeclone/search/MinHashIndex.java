@@ -0,0 +1,324 @@
+package com.programming.pgs.youtubeclone.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Content similarity index over the title and tags of documents, using MinHash
+ * signatures and locality-sensitive hashing.
+ *
+ * <p>
+ * A document is described by a set of features: its tags, the words of its
+ * title and the pairs of consecutive title words. Its signature holds, for each
+ * of {@value #HASHES} hash functions, the minimum hash over those features; the
+ * fraction of positions where two signatures agree estimates the Jaccard
+ * similarity of the feature sets. Signatures are cut into {@value #BANDS} bands
+ * of {@value #ROWS} rows, and documents that agree on a whole band share a
+ * bucket. Similar documents are found by only comparing the signatures of the
+ * documents sharing at least one bucket, so a query does not depend on the size
+ * of the index. Titles and tag lists are short, so the bands are narrow: pairs
+ * with a Jaccard similarity of 0.3 end up in a common bucket with a probability
+ * of about 95%.
+ * </p>
+ * <p>
+ * Like the {@link InvertedIndex}, every document carries a version and changes
+ * older than the indexed version are ignored, and the versions of removed
+ * documents are kept until {@link #clearTombstones()} is called. Reads and
+ * writes are guarded by a read-write lock.
+ * </p>
+ */
+public final class MinHashIndex {
+
+	static final int BANDS = 32;
+	static final int ROWS = 2;
+	static final int HASHES = BANDS * ROWS;
+	// Bounds the cost of a query when a band bucket is very large, e.g. a common tag alone
+	private static final int MAX_CANDIDATES = 2000;
+	private static final long[] SEEDS = new SplittableRandom(0x5DEECE66DL).longs(HASHES).toArray();
+
+	/** The document numbers in one bucket, unordered. */
+	private static final class Bucket {
+
+		private int[] documents = new int[2];
+		private int size;
+
+		void add(int document) {
+			if (size == documents.length) {
+				documents = Arrays.copyOf(documents, size * 2);
+			}
+			documents[size++] = document;
+		}
+
+		void remove(int document) {
+			for (int i = 0; i < size; i++) {
+				if (documents[i] == document) {
+					documents[i] = documents[--size];
+					return;
+				}
+			}
+		}
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<Map<Long, Bucket>> bands = new ArrayList<>(BANDS);
+	private final Map<String, Integer> documentNumbers = new HashMap<>();
+	private final Map<String, Long> versions = new HashMap<>();
+	// Indexed by document number; numbers of removed documents are reused
+	private final List<String> ids = new ArrayList<>();
+	private int[] signatures = new int[16 * HASHES];
+	private final Deque<Integer> freeNumbers = new ArrayDeque<>();
+
+	public MinHashIndex() {
+		for (int band = 0; band < BANDS; band++) {
+			bands.add(new HashMap<>());
+		}
+	}
+
+	/**
+	 * Adds or replaces a document. Documents without title and tags are removed.
+	 *
+	 * @param id      the ID of the document
+	 * @param version the version of the document; older versions than the
+	 *                indexed one are ignored
+	 * @param title   the title, may be {@code null}
+	 * @param tags    the tags, may be {@code null}
+	 * @return {@code true} if the index was changed
+	 */
+	public boolean put(String id, long version, String title, Collection<String> tags) {
+		Set<String> features = features(title, tags);
+		int[] signature = features.isEmpty() ? null : signature(features);
+
+		lock.writeLock().lock();
+		try {
+			if (version < versions.getOrDefault(id, Long.MIN_VALUE)) {
+				return false;
+			}
+			versions.put(id, version);
+			removeLive(id);
+			if (signature != null) {
+				addLive(id, signature);
+			}
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a document.
+	 *
+	 * @param id      the ID of the document
+	 * @param version the version in which the document was removed
+	 * @return {@code true} if the index was changed
+	 */
+	public boolean remove(String id, long version) {
+		lock.writeLock().lock();
+		try {
+			if (version < versions.getOrDefault(id, Long.MIN_VALUE)) {
+				return false;
+			}
+			versions.put(id, version);
+			return removeLive(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the documents most similar to an indexed document.
+	 *
+	 * @param id    the ID of the document
+	 * @param limit the maximum number of hits
+	 * @return the similar documents, with their estimated Jaccard similarity as
+	 *         score, most similar first; empty if the document is not indexed
+	 */
+	public List<SearchHit> similarTo(String id, int limit) {
+		lock.readLock().lock();
+		try {
+			Integer number = documentNumbers.get(id);
+			if (number == null || limit <= 0) {
+				return List.of();
+			}
+			int offset = number * HASHES;
+
+			Set<Integer> candidates = new HashSet<>();
+			candidates.add(number);
+			PriorityQueue<SearchHit> top = new PriorityQueue<>(Comparator.comparingDouble(SearchHit::score));
+			for (int band = 0; band < BANDS && candidates.size() <= MAX_CANDIDATES; band++) {
+				Bucket bucket = bands.get(band).get(bandKey(signatures, offset, band));
+				for (int i = 0; i < bucket.size && candidates.size() <= MAX_CANDIDATES; i++) {
+					int candidate = bucket.documents[i];
+					if (!candidates.add(candidate)) {
+						continue;
+					}
+					double score = agreement(offset, candidate * HASHES);
+					if (top.size() == limit && score <= top.peek().score()) {
+						continue;
+					}
+					top.add(new SearchHit(ids.get(candidate), score));
+					if (top.size() > limit) {
+						top.poll();
+					}
+				}
+			}
+
+			List<SearchHit> hits = new ArrayList<>(top);
+			hits.sort(Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(SearchHit::documentId));
+			return hits;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Forgets the versions of removed documents. They are only needed while a
+	 * bulk build may still put older versions of those documents.
+	 */
+	public void clearTombstones() {
+		lock.writeLock().lock();
+		try {
+			versions.keySet().retainAll(documentNumbers.keySet());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of indexed documents
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documentNumbers.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the features of a document: its normalized tags, title words and
+	 * pairs of consecutive title words, prefixed so they cannot collide.
+	 */
+	static Set<String> features(String title, Collection<String> tags) {
+		Set<String> features = new HashSet<>();
+		if (tags != null) {
+			for (String tag : tags) {
+				List<String> terms = Tokenizer.tokenize(tag);
+				if (!terms.isEmpty()) {
+					features.add("t:" + String.join(" ", terms));
+				}
+			}
+		}
+		List<String> words = Tokenizer.tokenize(title);
+		for (int i = 0; i < words.size(); i++) {
+			features.add("w:" + words.get(i));
+			if (i > 0) {
+				features.add("b:" + words.get(i - 1) + " " + words.get(i));
+			}
+		}
+		return features;
+	}
+
+	private static int[] signature(Set<String> features) {
+		int[] signature = new int[HASHES];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		for (String feature : features) {
+			long hash = hash(feature);
+			for (int i = 0; i < HASHES; i++) {
+				int value = (int) mix(hash ^ SEEDS[i]);
+				if (value < signature[i]) {
+					signature[i] = value;
+				}
+			}
+		}
+		return signature;
+	}
+
+	private void addLive(String id, int[] signature) {
+		int number;
+		if (freeNumbers.isEmpty()) {
+			number = ids.size();
+			ids.add(id);
+			if (signatures.length < (number + 1) * HASHES) {
+				signatures = Arrays.copyOf(signatures, signatures.length * 2);
+			}
+		} else {
+			number = freeNumbers.pop();
+			ids.set(number, id);
+		}
+		System.arraycopy(signature, 0, signatures, number * HASHES, HASHES);
+		documentNumbers.put(id, number);
+		for (int band = 0; band < BANDS; band++) {
+			bands.get(band).computeIfAbsent(bandKey(signatures, number * HASHES, band), key -> new Bucket())
+					.add(number);
+		}
+	}
+
+	private boolean removeLive(String id) {
+		Integer number = documentNumbers.remove(id);
+		if (number == null) {
+			return false;
+		}
+		for (int band = 0; band < BANDS; band++) {
+			long key = bandKey(signatures, number * HASHES, band);
+			Bucket bucket = bands.get(band).get(key);
+			bucket.remove(number);
+			if (bucket.size == 0) {
+				bands.get(band).remove(key);
+			}
+		}
+		ids.set(number, null);
+		freeNumbers.push(number);
+		return true;
+	}
+
+	private double agreement(int offset, int otherOffset) {
+		int equal = 0;
+		for (int i = 0; i < HASHES; i++) {
+			if (signatures[offset + i] == signatures[otherOffset + i]) {
+				equal++;
+			}
+		}
+		return (double) equal / HASHES;
+	}
+
+	private static long bandKey(int[] signatures, int offset, int band) {
+		long key = band;
+		for (int row = 0; row < ROWS; row++) {
+			key = mix(key * 31 + signatures[offset + band * ROWS + row]);
+		}
+		return key;
+	}
+
+	// 64-bit FNV-1a
+	private static long hash(String feature) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < feature.length(); i++) {
+			hash ^= feature.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	// Finalizer of MurmurHash3, spreads every input bit over the whole output
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
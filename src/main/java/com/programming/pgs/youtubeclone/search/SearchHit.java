@@ -0,0 +1,7 @@
+package com.programming.pgs.youtubeclone.search;
+
+/**
+ * A document matching a search, with its relevance score.
+ */
+public record SearchHit(String documentId, double score) {
+}
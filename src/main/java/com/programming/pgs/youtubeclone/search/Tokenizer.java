@@ -0,0 +1,44 @@
+package com.programming.pgs.youtubeclone.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into index terms: runs of letters and digits, lower-cased and
+ * with diacritics removed, so {@code "Crème Brûlée"} yields {@code creme} and
+ * {@code brulee}.
+ */
+public final class Tokenizer {
+
+	// Longer runs are hashes, URLs or garbage rather than words
+	private static final int MAX_TERM_LENGTH = 40;
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private Tokenizer() {
+	}
+
+	/**
+	 * Tokenizes a text.
+	 *
+	 * @param text the text, may be {@code null}
+	 * @return the terms in order of appearance, including duplicates
+	 */
+	public static List<String> tokenize(String text) {
+		if (text == null || text.isBlank()) {
+			return List.of();
+		}
+		String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		List<String> terms = new ArrayList<>();
+		for (String term : SEPARATORS.split(normalized)) {
+			if (!term.isEmpty() && term.length() <= MAX_TERM_LENGTH) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,147 @@
+package com.programming.pgs.youtubeclone.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.dto.CommentDto;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.model.Comment;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+import com.programming.pgs.youtubeclone.util.ResourceVersion;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Service for the comments of a video.
+ *
+ * <p>
+ * Comments live in their own collection, indexed by (videoId, createdAt), and are
+ * only ever appended. The {@link Video} document keeps a denormalized
+ * {@code commentCount} that is maintained with {@code $inc}.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class CommentService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommentService.class);
+
+	private final MongoTemplate mongoTemplate;
+	private final VideoCache videoCache;
+	private final TrendingService trendingService;
+
+	/**
+	 * Adds a new comment to a video.
+	 *
+	 * <p>
+	 * The comment count of the video is incremented first, which also verifies
+	 * that the video exists, and the comment is then inserted on its own. The
+	 * video document itself is never loaded or rewritten.
+	 * </p>
+	 *
+	 * @param videoId    the unique identifier of the video to which the comment is added
+	 * @param commentDto the data transfer object containing the comment text and author ID
+	 * @return the stored comment
+	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 */
+	public CommentDto addComment(String videoId, CommentDto commentDto) {
+		LOGGER.info("Adding comment to video with ID: {}", videoId);
+
+		var result = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(videoId)),
+				new Update().inc("commentCount", 1), Video.class);
+		if (result.getMatchedCount() == 0) {
+			LOGGER.error("Video not found for ID: {}", videoId);
+			throw new IllegalArgumentException("Cannot find video by id - " + videoId);
+		}
+
+		Comment comment = new Comment();
+		comment.setVideoId(videoId);
+		comment.setText(commentDto.getCommentText());
+		comment.setAuthorId(commentDto.getAuthorId());
+
+		try {
+			comment = mongoTemplate.insert(comment);
+		} catch (RuntimeException exception) {
+			mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(videoId)),
+					new Update().inc("commentCount", -1), Video.class);
+			throw exception;
+		}
+		videoCache.invalidate(videoId);
+		trendingService.recordComment(videoId);
+		LOGGER.debug("Added comment {} by user {} to video {}", comment.getId(), comment.getAuthorId(), videoId);
+
+		return mapToCommentDto(comment);
+	}
+
+	/**
+	 * Retrieves one page of the comments of a video, newest first.
+	 *
+	 * @param videoId the unique identifier of the video
+	 * @param after   the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit   the requested page size, or {@code null} for the default
+	 * @return a page of {@link CommentDto}
+	 */
+	public CursorPage<CommentDto> getComments(String videoId, String after, Integer limit) {
+		int pageSize = CursorPage.normalizeLimit(limit);
+		PageCursor cursor = PageCursor.decode(after);
+
+		Criteria criteria = Criteria.where("videoId").is(videoId);
+		if (cursor != null) {
+			criteria = new Criteria().andOperator(criteria, cursor.after("createdAt"));
+		}
+
+		Query query = Query.query(criteria)
+				.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+				.limit(pageSize + 1);
+
+		var comments = mongoTemplate.find(query, Comment.class);
+		LOGGER.debug("Fetched {} comments of video {}", comments.size(), videoId);
+
+		return CursorPage.of(comments, pageSize,
+				comment -> PageCursor.of(comment.getCreatedAt(), comment.getId()),
+				this::mapToCommentDto);
+	}
+
+	/**
+	 * Reads the version of the comments of a video from its newest comment, which
+	 * is found through the (videoId, createdAt) index without loading any
+	 * comment text. As comments are only ever appended, every page changes
+	 * exactly when a comment is added.
+	 *
+	 * @param videoId the unique identifier of the video
+	 * @return the version of the comment pages of the video
+	 */
+	public ResourceVersion getCommentsVersion(String videoId) {
+		Query query = Query.query(Criteria.where("videoId").is(videoId))
+				.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"));
+		query.fields().include("_id", "createdAt");
+		Comment newest = mongoTemplate.findOne(query, Comment.class);
+
+		if (newest == null) {
+			return ResourceVersion.of(null, videoId);
+		}
+		return ResourceVersion.of(newest.getCreatedAt(), videoId, newest.getId());
+	}
+
+	/**
+	 * Maps a {@link Comment} entity to a {@link CommentDto}.
+	 *
+	 * @param comment the {@link Comment} to be mapped
+	 * @return the corresponding {@link CommentDto}
+	 */
+	private CommentDto mapToCommentDto(Comment comment) {
+		CommentDto commentDto = new CommentDto();
+		commentDto.setId(comment.getId());
+		commentDto.setCommentText(comment.getText());
+		commentDto.setAuthorId(comment.getAuthorId());
+		commentDto.setCreatedAt(comment.getCreatedAt());
+		return commentDto;
+	}
+}
@@ -0,0 +1,266 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.ContentObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Content-addressed layer on top of the {@link FileService}.
+ *
+ * <p>
+ * Streamed content is hashed with SHA-256 while it is spooled to a local file,
+ * so the hash costs no extra pass over the bytes. Multipart files are moved into
+ * place with {@link MultipartFile#transferTo(java.io.File)}, usually a rename,
+ * and then hashed in one read pass instead of being copied. Objects are keyed by that hash, and a
+ * {@link ContentObject} per hash counts the references to it. Storing content
+ * that is already known only increments its reference count and returns the
+ * existing object, without writing anything to storage.
+ * </p>
+ * <p>
+ * Objects whose count drops to zero are kept, so identical content uploaded
+ * again is still deduplicated. Hits and the bytes they saved are counted by
+ * {@code storage.dedup.hits} and {@code storage.dedup.bytes.saved}.
+ * </p>
+ */
+@Service
+public class ContentStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ContentStore.class);
+
+	private final FileService fileService;
+	private final MongoTemplate mongoTemplate;
+	private final Counter dedupHits;
+	private final Counter bytesSaved;
+
+	/**
+	 * Content spooled to a local file.
+	 *
+	 * @param file          the file holding the content
+	 * @param sha256        the hex-encoded SHA-256 of the content
+	 * @param contentLength the length of the content
+	 */
+	public record SpooledContent(Path file, String sha256, long contentLength) {
+	}
+
+	public ContentStore(FileService fileService, MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+		this.fileService = fileService;
+		this.mongoTemplate = mongoTemplate;
+		this.dedupHits = Counter.builder("storage.dedup.hits")
+				.description("Uploads whose content was already stored")
+				.register(meterRegistry);
+		this.bytesSaved = Counter.builder("storage.dedup.bytes.saved")
+				.baseUnit("bytes")
+				.description("Bytes not written to storage thanks to deduplication")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Copies a stream to a file while computing the SHA-256 of the bytes.
+	 *
+	 * @param inputStream the content, read until the end of the stream
+	 * @param file        the file to write, replaced if it exists
+	 * @return the spooled content
+	 * @throws IOException if reading the stream or writing the file fails
+	 */
+	public static SpooledContent spool(InputStream inputStream, Path file) throws IOException {
+		MessageDigest digest = sha256();
+		try (var digestStream = new DigestInputStream(inputStream, digest);
+				OutputStream outputStream = Files.newOutputStream(file)) {
+			long contentLength = digestStream.transferTo(outputStream);
+			return new SpooledContent(file, HexFormat.of().formatHex(digest.digest()), contentLength);
+		}
+	}
+
+	/**
+	 * Moves a multipart file to the given file and computes the SHA-256 of its
+	 * bytes. Parts that the container already wrote to disk are renamed rather
+	 * than copied, so the content is written once and read once.
+	 *
+	 * @param multipartFile the uploaded file
+	 * @param file          the file to write, replaced if it exists
+	 * @return the spooled content
+	 * @throws IOException if moving or reading the file fails
+	 */
+	public static SpooledContent spool(MultipartFile multipartFile, Path file) throws IOException {
+		Files.deleteIfExists(file);
+		multipartFile.transferTo(file.toFile());
+		return hash(file);
+	}
+
+	/**
+	 * Computes the SHA-256 of a local file in one read pass.
+	 *
+	 * @param file the file holding the content
+	 * @return the content of the file
+	 * @throws IOException if reading the file fails
+	 */
+	public static SpooledContent hash(Path file) throws IOException {
+		MessageDigest digest = sha256();
+		try (var digestStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+			long contentLength = digestStream.transferTo(OutputStream.nullOutputStream());
+			return new SpooledContent(file, HexFormat.of().formatHex(digest.digest()), contentLength);
+		}
+	}
+
+	/**
+	 * Stores spooled content unless identical content is already stored, and adds
+	 * a reference to the resulting object.
+	 *
+	 * @param content     the spooled content
+	 * @param filename    the original file name, used for the extension of a new key
+	 * @param contentType the media type of the content
+	 * @return the key and public URL of the object holding the content
+	 * @throws IOException if the spooled file cannot be read
+	 */
+	public StoredFile store(SpooledContent content, String filename, String contentType) throws IOException {
+		return store(content.sha256(), content.contentLength(), filename, contentType,
+				() -> Files.newInputStream(content.file()));
+	}
+
+	/**
+	 * Stores content held in memory unless identical content is already stored,
+	 * and adds a reference to the resulting object.
+	 *
+	 * @param content     the content
+	 * @param filename    the file name, used for the extension of a new key
+	 * @param contentType the media type of the content
+	 * @return the key and public URL of the object holding the content
+	 */
+	public StoredFile store(byte[] content, String filename, String contentType) {
+		String sha256 = HexFormat.of().formatHex(sha256().digest(content));
+		try {
+			return store(sha256, content.length, filename, contentType, () -> new ByteArrayInputStream(content));
+		} catch (IOException ioException) {
+			// Reading a byte array cannot fail
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	private StoredFile store(String sha256, long contentLength, String filename, String contentType,
+			InputStreamSource source) throws IOException {
+		ContentObject existing = addReference(sha256);
+		if (existing != null) {
+			dedupHits.increment();
+			bytesSaved.increment(contentLength);
+			LOGGER.debug("Content {} is already stored as {}", sha256, existing.getKey());
+			return new StoredFile(existing.getKey(), existing.getUrl());
+		}
+
+		var filenameExtension = StringUtils.getFilenameExtension(filename);
+		var key = sha256 + (filenameExtension != null ? "." + filenameExtension.toLowerCase(Locale.ROOT) : "");
+		StoredFile storedFile;
+		try (InputStream inputStream = source.getInputStream()) {
+			storedFile = fileService.storeAs(key, inputStream, contentType, contentLength);
+		}
+
+		ContentObject contentObject = register(sha256, contentLength, storedFile, contentType);
+		if (!contentObject.getKey().equals(key)) {
+			// A concurrent upload of the same content under another extension won
+			LOGGER.debug("Content {} was stored concurrently as {}, deleting {}", sha256, contentObject.getKey(), key);
+			fileService.delete(key);
+		}
+		return new StoredFile(contentObject.getKey(), contentObject.getUrl());
+	}
+
+	/**
+	 * Spools and stores a multipart file.
+	 *
+	 * @param multipartFile the file to store
+	 * @return the key and public URL of the object holding the content
+	 * @throws ResponseStatusException if the file cannot be stored
+	 */
+	public StoredFile store(MultipartFile multipartFile) {
+		Path file = null;
+		try {
+			file = Files.createTempFile("content-", ".part");
+			return store(spool(multipartFile, file), multipartFile.getOriginalFilename(),
+					multipartFile.getContentType());
+		} catch (IOException ioException) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"An Exception occurred while uploading the file");
+		} finally {
+			if (file != null) {
+				file.toFile().delete();
+			}
+		}
+	}
+
+	/**
+	 * Removes a reference to an object. Keys that are not content-addressed, such
+	 * as those of objects stored before deduplication, are ignored.
+	 *
+	 * @param key the key of the object
+	 */
+	public void release(String key) {
+		if (key == null) {
+			return;
+		}
+		mongoTemplate.updateFirst(Query.query(Criteria.where("key").is(key).and("refCount").gt(0)),
+				new Update().inc("refCount", -1), ContentObject.class);
+	}
+
+	private ContentObject addReference(String sha256) {
+		return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(sha256)),
+				new Update().inc("refCount", 1), FindAndModifyOptions.options().returnNew(true), ContentObject.class);
+	}
+
+	/**
+	 * Records a newly written object with one reference, or adds a reference to
+	 * the object registered by a concurrent upload of the same content.
+	 */
+	private ContentObject register(String sha256, long contentLength, StoredFile storedFile, String contentType) {
+		Update update = new Update()
+				.setOnInsert("key", storedFile.key())
+				.setOnInsert("url", storedFile.url())
+				.setOnInsert("contentType", contentType)
+				.setOnInsert("contentLength", contentLength)
+				.setOnInsert("createdAt", Instant.now())
+				.inc("refCount", 1);
+		FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+		Query byHash = Query.query(Criteria.where("_id").is(sha256));
+		try {
+			return mongoTemplate.findAndModify(byHash, update, options, ContentObject.class);
+		} catch (DuplicateKeyException duplicateKeyException) {
+			// Two upserts of the same hash raced; the document exists now
+			return mongoTemplate.findAndModify(byHash, update, options, ContentObject.class);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new IllegalStateException("SHA-256 is not available", noSuchAlgorithmException);
+		}
+	}
+}
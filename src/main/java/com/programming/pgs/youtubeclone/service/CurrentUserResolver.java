@@ -0,0 +1,114 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Resolves {@link User} documents by their JWT subject with two cache levels.
+ *
+ * <p>
+ * The first lookup in a request is memoized as a request attribute, so repeated
+ * calls within the same request never leave the JVM. Behind that, a bounded,
+ * size-evicting cache keyed by {@code sub} with a short TTL is shared across
+ * requests. {@link UserService} and {@link SubscriptionService} evict a user
+ * whenever they write that user.
+ * </p>
+ * <p>
+ * Cache statistics are published to Micrometer as {@code cache.*} meters tagged
+ * {@code cache=currentUser}; request-level hits are counted by
+ * {@code user.current.request.hits}.
+ * </p>
+ */
+@Component
+public class CurrentUserResolver {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CurrentUserResolver.class);
+	private static final String REQUEST_ATTRIBUTE = CurrentUserResolver.class.getName() + ".currentUser";
+
+	private final UserRepository userRepository;
+	private final Cache<String, User> usersBySub;
+	private final Counter requestHits;
+
+	public CurrentUserResolver(UserRepository userRepository, MeterRegistry meterRegistry,
+			@Value("${user.cache.maximum-size:10000}") long maximumSize,
+			@Value("${user.cache.ttl:30s}") Duration ttl) {
+		this.userRepository = userRepository;
+		this.usersBySub = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.requestHits = Counter.builder("user.current.request.hits")
+				.description("Current user lookups answered by the per-request memo")
+				.register(meterRegistry);
+		CaffeineCacheMetrics.monitor(meterRegistry, usersBySub, "currentUser");
+	}
+
+	/**
+	 * Returns the user with the given subject, loading it from the database only
+	 * if it is neither memoized for the current request nor cached.
+	 *
+	 * @param sub the subject claim of the JWT
+	 * @return the matching user
+	 * @throws IllegalArgumentException if the user cannot be found
+	 */
+	public User resolve(String sub) {
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+		if (requestAttributes != null
+				&& requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User memoized
+				&& sub.equals(memoized.getSub())) {
+			requestHits.increment();
+			return memoized;
+		}
+
+		User user = usersBySub.get(sub, this::loadUser);
+
+		if (requestAttributes != null) {
+			requestAttributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+		}
+		return user;
+	}
+
+	/**
+	 * Drops a user from both cache levels after it has been written.
+	 *
+	 * @param user the user that was modified
+	 */
+	public void evict(User user) {
+		if (user.getSub() == null) {
+			return;
+		}
+		usersBySub.invalidate(user.getSub());
+
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+		if (requestAttributes != null
+				&& requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User memoized
+				&& user.getSub().equals(memoized.getSub())) {
+			requestAttributes.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		}
+	}
+
+	private User loadUser(String sub) {
+		LOGGER.debug("Fetching user with sub: {}", sub);
+		return userRepository.findBySub(sub)
+				.orElseThrow(() -> {
+					LOGGER.error("Cannot find user with sub - {}", sub);
+					return new IllegalArgumentException("Cannot find user with sub - " + sub);
+				});
+	}
+}
@@ -0,0 +1,184 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+
+/**
+ * Builds the subscription feed: the listed videos of the followed channels,
+ * newest first.
+ *
+ * <p>
+ * A page is a k-way merge of the channels' own newest videos. Every channel
+ * first contributes a small batch of its newest videos after the page cursor,
+ * with one {@code $unionWith} aggregation per {@code video.feed.channels-per-query}
+ * channels, so following hundreds of channels costs a few round trips. The
+ * batches are merged with a heap ordered by upload time; only when the batch of
+ * a channel runs out before the page is full is that channel fetched again,
+ * for at most the rest of the page. No channel is ever asked for more than one
+ * page, and every fetch is a bounded scan of the (userId, videoStatus,
+ * createdAt, _id, uploadStatus) index, whose trailing upload status lets
+ * pending and failed uploads be skipped without reading their documents.
+ * </p>
+ */
+@Service
+public class FeedService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FeedService.class);
+
+	// Smallest first batch per channel, so a page rarely needs a second fetch
+	private static final int MIN_CHANNEL_FETCH = 2;
+
+	private static final Comparator<Video> NEWEST_FIRST = Comparator
+			.comparing((Video video) -> video.getCreatedAt() != null ? video.getCreatedAt() : Instant.EPOCH)
+			.thenComparing(Video::getId)
+			.reversed();
+
+	/** The fetched but not yet merged videos of one channel. */
+	private static final class Channel {
+
+		private final String userId;
+		private final Deque<Video> buffer = new ArrayDeque<>();
+		private boolean hasMore;
+
+		Channel(String userId) {
+			this.userId = userId;
+		}
+	}
+
+	private final MongoTemplate mongoTemplate;
+	private final int channelsPerQuery;
+
+	public FeedService(MongoTemplate mongoTemplate,
+			@Value("${video.feed.channels-per-query:100}") int channelsPerQuery) {
+		this.mongoTemplate = mongoTemplate;
+		this.channelsPerQuery = channelsPerQuery;
+	}
+
+	/**
+	 * Retrieves one page of the feed of the given channels.
+	 *
+	 * @param channelIds the IDs of the followed users
+	 * @param after      the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit      the requested page size, or {@code null} for the default
+	 * @return a page of video IDs, newest first
+	 */
+	public CursorPage<String> getFeed(Collection<String> channelIds, String after, Integer limit) {
+		int pageSize = CursorPage.normalizeLimit(limit);
+		PageCursor cursor = PageCursor.decode(after);
+		if (channelIds.isEmpty()) {
+			return new CursorPage<>(List.of(), null);
+		}
+
+		// One extra video tells whether there is a next page
+		int wanted = pageSize + 1;
+		int firstFetch = Math.min(wanted, Math.max(MIN_CHANNEL_FETCH, 2 * wanted / channelIds.size() + 1));
+		Map<String, Channel> channels = new HashMap<>();
+		channelIds.forEach(channelId -> channels.put(channelId, new Channel(channelId)));
+		fill(channels, fetch(List.copyOf(channelIds), cursor, firstFetch), firstFetch);
+
+		PriorityQueue<Channel> heads = new PriorityQueue<>(
+				Comparator.comparing((Channel channel) -> channel.buffer.peek(), NEWEST_FIRST));
+		channels.values().stream().filter(channel -> !channel.buffer.isEmpty()).forEach(heads::add);
+
+		List<Video> page = new ArrayList<>(wanted);
+		int refills = 0;
+		while (page.size() < wanted && !heads.isEmpty()) {
+			Channel channel = heads.poll();
+			Video video = channel.buffer.poll();
+			page.add(video);
+
+			int remaining = wanted - page.size();
+			if (channel.buffer.isEmpty() && channel.hasMore && remaining > 0) {
+				fill(Map.of(channel.userId, channel),
+						fetch(List.of(channel.userId), PageCursor.of(video.getCreatedAt(), video.getId()), remaining),
+						remaining);
+				refills++;
+			}
+			if (!channel.buffer.isEmpty()) {
+				heads.add(channel);
+			}
+		}
+		LOGGER.debug("Merged a feed page of {} videos from {} channels with {} refills", page.size(),
+				channels.size(), refills);
+
+		return CursorPage.of(page, pageSize,
+				video -> PageCursor.of(video.getCreatedAt(), video.getId()),
+				Video::getId);
+	}
+
+	/**
+	 * Fetches the newest listed videos of each channel after a cursor. Only the
+	 * ID, owner and upload time are read.
+	 *
+	 * @param channelIds the IDs of the channels
+	 * @param after      the cursor, or {@code null} to start with the newest video
+	 * @param size       the maximum number of videos per channel
+	 * @return the videos of all channels, in no particular order
+	 */
+	List<Video> fetch(List<String> channelIds, PageCursor after, int size) {
+		List<Video> videos = new ArrayList<>();
+		for (int from = 0; from < channelIds.size(); from += channelsPerQuery) {
+			List<String> chunk = channelIds.subList(from, Math.min(from + channelsPerQuery, channelIds.size()));
+			List<AggregationOperation> operations = new ArrayList<>(channelPipeline(chunk.get(0), after, size));
+			for (String channelId : chunk.subList(1, chunk.size())) {
+				operations.add(UnionWithOperation.unionWith(mongoTemplate.getCollectionName(Video.class))
+						.pipeline(channelPipeline(channelId, after, size)));
+			}
+			videos.addAll(mongoTemplate.aggregate(Aggregation.newAggregation(operations),
+					mongoTemplate.getCollectionName(Video.class), Video.class).getMappedResults());
+		}
+		return videos;
+	}
+
+	private static List<AggregationOperation> channelPipeline(String channelId, PageCursor after, int size) {
+		Criteria criteria = VideoService.listed().and("userId").is(channelId);
+		if (after != null) {
+			criteria = new Criteria().andOperator(criteria, after.after("createdAt"));
+		}
+		return List.of(
+				Aggregation.match(criteria),
+				Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "_id")),
+				Aggregation.limit(size),
+				Aggregation.project("userId", "createdAt"));
+	}
+
+	/**
+	 * Adds fetched videos to the buffers of their channels, newest first. A
+	 * channel that returned a full batch may have more videos.
+	 */
+	private static void fill(Map<String, Channel> channels, List<Video> videos, int size) {
+		Map<String, List<Video>> byChannel = new HashMap<>();
+		videos.forEach(video -> byChannel.computeIfAbsent(video.getUserId(), userId -> new ArrayList<>()).add(video));
+		byChannel.forEach((userId, channelVideos) -> {
+			Channel channel = channels.get(userId);
+			if (channel != null) {
+				channelVideos.sort(NEWEST_FIRST);
+				channel.buffer.addAll(channelVideos);
+				channel.hasMore = channelVideos.size() >= size;
+			}
+		});
+	}
+}
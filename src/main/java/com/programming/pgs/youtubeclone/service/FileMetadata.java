@@ -0,0 +1,14 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a stored object, as needed to serve it over HTTP.
+ *
+ * @param contentLength the size of the object in bytes
+ * @param contentType   the media type of the object, or {@code null} if unknown
+ * @param lastModified  when the object was written
+ * @param eTag          a quoted strong entity tag of the object
+ */
+public record FileMetadata(long contentLength, String contentType, Instant lastModified, String eTag) {
+}
@@ -1,7 +1,91 @@
 package com.programming.pgs.youtubeclone.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 public interface FileService {
-    String uploadFile(MultipartFile file);
+
+    /**
+     * Stores the content of a stream under the given key, replacing any object
+     * with that key, and returns where it was written.
+     *
+     * @param key           the key of the object
+     * @param inputStream   the content to store, read until the end of the stream
+     * @param contentType   the media type of the content
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return the key and public URL of the stored file
+     */
+    StoredFile storeAs(String key, InputStream inputStream, String contentType, long contentLength);
+
+    /**
+     * Stores the content of a stream under a new random key and returns where it
+     * was written.
+     *
+     * @param inputStream   the content to store, read until the end of the stream
+     * @param filename      the original file name, used for the extension of the key
+     * @param contentType   the media type of the content
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return the key and public URL of the stored file
+     */
+    default StoredFile store(InputStream inputStream, String filename, String contentType, long contentLength) {
+        var filenameExtension = StringUtils.getFilenameExtension(filename);
+        var key = UUID.randomUUID() + (filenameExtension != null ? "." + filenameExtension : "");
+        return storeAs(key, inputStream, contentType, contentLength);
+    }
+
+    /**
+     * Deletes an object if it exists.
+     *
+     * @param key the key of the object
+     */
+    void delete(String key);
+
+    /**
+     * Reads the metadata of a stored object without reading its content.
+     *
+     * @param key the key of the object
+     * @return the metadata, or empty if the object does not exist
+     */
+    Optional<FileMetadata> stat(String key);
+
+    /**
+     * Writes a byte range of a stored object to a stream. Only the requested range
+     * is read from the backend, and it is copied through a bounded buffer.
+     *
+     * @param key          the key of the object
+     * @param start        the offset of the first byte to write
+     * @param length       the number of bytes to write
+     * @param outputStream where to write the bytes
+     * @throws IOException if reading the object or writing the stream fails
+     */
+    void transfer(String key, long start, long length, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the local file that holds an object, for backends that keep objects
+     * on the filesystem so they can be sent without copying.
+     *
+     * @param key the key of the object
+     * @return the file, or empty if the object is not stored locally
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    default String uploadFile(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(inputStream, file.getOriginalFilename(), file.getContentType(), file.getSize()).url();
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "An Exception occurred while uploading the file");
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and fails the read that goes past a
+ * limit, so an oversized upload is stopped as soon as it is detected rather
+ * than after it has been written out.
+ */
+final class LimitedInputStream extends FilterInputStream {
+
+	private final long limit;
+	private long count;
+	private volatile boolean limitExceeded;
+
+	LimitedInputStream(InputStream inputStream, long limit) {
+		super(inputStream);
+		this.limit = limit;
+	}
+
+	/**
+	 * Tells whether a read failed because the stream went past the limit. Callers
+	 * use it to tell an oversized upload from a failed one, whatever the read
+	 * failure was wrapped in.
+	 */
+	boolean isLimitExceeded() {
+		return limitExceeded;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int read = super.read();
+		if (read >= 0) {
+			count(1);
+		}
+		return read;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		int read = super.read(buffer, offset, length);
+		if (read > 0) {
+			count(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long length) throws IOException {
+		long skipped = super.skip(length);
+		count(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void count(long read) throws IOException {
+		count += read;
+		if (count > limit) {
+			limitExceeded = true;
+			throw new IOException("Upload exceeds the limit of " + limit + " bytes");
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * {@link FileService} that keeps objects on the local filesystem, selected with
+ * {@code storage.backend=local}.
+ *
+ * <p>
+ * Objects are sharded into two levels of directories named after the first
+ * characters of their key ({@code ab/cd/abcd...mp4}), so no directory grows
+ * beyond a few thousand entries. Content is written through a
+ * {@link FileChannel} to a temporary file under the same root and atomically
+ * renamed into place once complete, so readers never see a partial object. How
+ * much is flushed to the device before the rename is controlled by
+ * {@code storage.local.fsync}.
+ * </p>
+ * <p>
+ * Objects are served by the application under {@code storage.local.public-url},
+ * which uses sendfile where the container supports it.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalFileService implements FileService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileService.class);
+
+	// Keys are generated by this service; anything else could escape the root
+	private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{4}[0-9a-f-]*(\\.[A-Za-z0-9]+)?");
+
+	/** How much of a stored object is forced to the device before it becomes visible. */
+	public enum FsyncPolicy {
+		/** Leave flushing to the operating system. */
+		NONE,
+		/** Flush the file content before the rename. */
+		DATA,
+		/** Flush content and metadata, and the directory entry after the rename. */
+		ALL
+	}
+
+	private final Path rootDirectory;
+	private final Path tempDirectory;
+	private final String publicUrl;
+	private final FsyncPolicy fsyncPolicy;
+	private final int bufferSize;
+
+	public LocalFileService(@Value("${storage.local.root-directory:storage}") String rootDirectory,
+			@Value("${storage.local.public-url:http://localhost:8080/api/files}") String publicUrl,
+			@Value("${storage.local.fsync:DATA}") FsyncPolicy fsyncPolicy,
+			@Value("${storage.local.buffer-size:256KB}") DataSize bufferSize) throws IOException {
+		this.rootDirectory = Files.createDirectories(Path.of(rootDirectory).toAbsolutePath().normalize());
+		this.tempDirectory = Files.createDirectories(this.rootDirectory.resolve(".tmp"));
+		this.publicUrl = StringUtils.trimTrailingCharacter(publicUrl, '/');
+		this.fsyncPolicy = fsyncPolicy;
+		this.bufferSize = (int) bufferSize.toBytes();
+		LOGGER.info("Storing files under {} with fsync policy {}", this.rootDirectory, fsyncPolicy);
+	}
+
+	/**
+	 * Writes a stream to a temporary file and renames it to its sharded location
+	 * once the whole content has been written.
+	 *
+	 * @throws IllegalArgumentException if the key is not a hexadecimal key
+	 *                                  generated by a {@link FileService}
+	 * @throws ResponseStatusException  if the content cannot be written
+	 */
+	@Override
+	public StoredFile storeAs(String key, InputStream inputStream, String contentType, long contentLength) {
+		if (!KEY_PATTERN.matcher(key).matches()) {
+			throw new IllegalArgumentException("Invalid key - " + key);
+		}
+
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(tempDirectory, "store-", ".part");
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				write(inputStream, channel);
+				if (fsyncPolicy != FsyncPolicy.NONE) {
+					channel.force(fsyncPolicy == FsyncPolicy.ALL);
+				}
+			}
+
+			Path target = pathOf(key);
+			Files.createDirectories(target.getParent());
+			Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+			if (fsyncPolicy == FsyncPolicy.ALL) {
+				forceDirectory(target.getParent());
+			}
+			LOGGER.debug("Stored {} at {}", key, target);
+		} catch (IOException ioException) {
+			deleteQuietly(tempFile);
+			LOGGER.error("Could not store {}", key, ioException);
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"An Exception occurred while uploading the file");
+		}
+
+		return new StoredFile(key, publicUrl + "/" + key);
+	}
+
+	/**
+	 * Resolves the file that holds an object.
+	 *
+	 * @param key the key of the object
+	 * @return the path of the object, or empty if the key is invalid or the object
+	 *         does not exist
+	 */
+	public Optional<Path> resolve(String key) {
+		if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+			return Optional.empty();
+		}
+		Path path = pathOf(key);
+		return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+	}
+
+	@Override
+	public void delete(String key) {
+		resolve(key).ifPresent(LocalFileService::deleteQuietly);
+	}
+
+	@Override
+	public Optional<Path> localPath(String key) {
+		return resolve(key);
+	}
+
+	/**
+	 * Reads the size and modification time of a local object. As keys are never
+	 * reused, the key itself serves as a strong entity tag.
+	 */
+	@Override
+	public Optional<FileMetadata> stat(String key) {
+		Optional<Path> path = resolve(key);
+		if (path.isEmpty()) {
+			return Optional.empty();
+		}
+		try {
+			var attributes = Files.readAttributes(path.get(), BasicFileAttributes.class);
+			String contentType = MediaTypeFactory.getMediaType(key).map(MediaType::toString).orElse(null);
+			return Optional.of(new FileMetadata(attributes.size(), contentType,
+					attributes.lastModifiedTime().toInstant(), "\"" + key + "\""));
+		} catch (NoSuchFileException noSuchFileException) {
+			return Optional.empty();
+		} catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * Writes a range of a local object with {@link FileChannel#transferTo}. Callers
+	 * that can hand the file to the container's sendfile support should do so
+	 * through {@link #localPath(String)} instead.
+	 */
+	@Override
+	public void transfer(String key, long start, long length, OutputStream outputStream) throws IOException {
+		Path path = resolve(key).orElseThrow(() -> new NoSuchFileException(key));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(outputStream);
+			long position = start;
+			long end = start + length;
+			while (position < end) {
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0) {
+					throw new EOFException("Object " + key + " ended at " + position + " of " + end);
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	private Path pathOf(String key) {
+		return rootDirectory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+	}
+
+	private void write(InputStream inputStream, FileChannel channel) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(inputStream);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+		while (source.read(buffer) >= 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	private static void forceDirectory(Path directory) {
+		// Not every platform can open a directory as a channel; the rename is still atomic there
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ioException) {
+			LOGGER.debug("Could not fsync directory {}", directory, ioException);
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ioException) {
+			LOGGER.warn("Could not delete temporary file {}", path, ioException);
+		}
+	}
+}
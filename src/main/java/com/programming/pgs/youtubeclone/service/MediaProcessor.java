@@ -0,0 +1,96 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.media.MediaInfo;
+import com.programming.pgs.youtubeclone.media.Mp4File;
+import com.programming.pgs.youtubeclone.media.Mp4FormatException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Upload pipeline stage that inspects spooled videos before they are stored.
+ *
+ * <p>
+ * MP4 files are parsed for their duration, display size and codecs. Files whose
+ * {@code moov} box follows the media data are rewritten in place so that it
+ * comes first, unless {@code video.media.faststart} is disabled. Files that are
+ * not MP4, or that cannot be parsed, are stored unchanged without metadata.
+ * Rewrites are counted by {@code video.media.faststart.rewrites}. A rewrite
+ * changes the bytes of the file, so callers that hashed it must hash it again.
+ * </p>
+ */
+@Service
+public class MediaProcessor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaProcessor.class);
+
+	private final boolean faststart;
+	private final Counter faststartRewrites;
+
+	/**
+	 * The outcome of processing a spooled file.
+	 *
+	 * @param mediaInfo the media properties, or {@code null} if the file is not a readable MP4 file
+	 * @param rewritten whether the file was rewritten for faststart
+	 */
+	public record ProcessedMedia(MediaInfo mediaInfo, boolean rewritten) {
+	}
+
+	public MediaProcessor(MeterRegistry meterRegistry, @Value("${video.media.faststart:true}") boolean faststart) {
+		this.faststart = faststart;
+		this.faststartRewrites = Counter.builder("video.media.faststart.rewrites")
+				.description("Uploaded MP4 files rewritten to put moov before mdat")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Extracts the media properties of a spooled file and, if needed, rewrites it
+	 * for faststart. The size of the file does not change.
+	 *
+	 * @param file the spooled file
+	 * @return the media properties and whether the file was rewritten
+	 */
+	public ProcessedMedia process(Path file) {
+		try (Mp4File mp4File = Mp4File.open(file)) {
+			MediaInfo mediaInfo = mp4File.mediaInfo();
+			boolean rewritten = faststart && !mp4File.isFaststart() && rewriteFaststart(mp4File, file);
+			return new ProcessedMedia(mediaInfo, rewritten);
+		} catch (Mp4FormatException formatException) {
+			LOGGER.debug("Not processing {}: {}", file, formatException.getMessage());
+			return new ProcessedMedia(null, false);
+		} catch (IOException | RuntimeException exception) {
+			LOGGER.warn("Could not process media file {}", file, exception);
+			return new ProcessedMedia(null, false);
+		}
+	}
+
+	/**
+	 * Writes a faststart copy next to the file and moves it over the original.
+	 * The original is kept if the copy cannot be written.
+	 *
+	 * @return whether the original was replaced
+	 */
+	private boolean rewriteFaststart(Mp4File mp4File, Path file) throws IOException {
+		Path rewritten = file.resolveSibling(file.getFileName() + ".faststart");
+		try {
+			mp4File.writeFaststart(rewritten);
+			Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			faststartRewrites.increment();
+			return true;
+		} catch (IOException | RuntimeException exception) {
+			LOGGER.warn("Could not rewrite {} for faststart, storing it as uploaded", file, exception);
+			Files.deleteIfExists(rewritten);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.PartETag;
+import com.programming.pgs.youtubeclone.dto.CompleteUploadRequest;
+import com.programming.pgs.youtubeclone.dto.UploadUrlRequest;
+import com.programming.pgs.youtubeclone.dto.UploadUrlResponse;
+import com.programming.pgs.youtubeclone.dto.UploadVideoResponse;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+/**
+ * Two-phase upload flow in which clients send video bytes directly to S3.
+ *
+ * <p>
+ * The first phase creates a {@link UploadStatus#PENDING} {@link Video} and hands
+ * out presigned URLs: a single PUT for files up to one part, or one URL per part
+ * of a multipart upload. The second phase completes the multipart upload if
+ * there is one, checks the stored object against the declared size and content
+ * type, and marks the video {@link UploadStatus#READY}. The API nodes only ever
+ * handle metadata. Only available with the S3 storage backend.
+ * </p>
+ * <p>
+ * Only the owner of a pending video can complete its upload, and only with the
+ * multipart upload ID it was given. Uploads that are never completed are swept
+ * periodically: once a pending video is older than
+ * {@code storage.s3.pending-upload-expiry}, its multipart upload is aborted, any
+ * object uploaded for it is deleted and it is marked {@link UploadStatus#FAILED}.
+ * The same sweep aborts multipart uploads in the bucket that no video tracks.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class PresignedUploadService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PresignedUploadService.class);
+
+	// S3 allows at most 10 000 parts per multipart upload
+	private static final int MAX_PARTS = 10_000;
+
+	private final S3Service s3Service;
+	private final VideoRepository videoRepository;
+	private final VideoCache videoCache;
+	private final VideoSearchService videoSearchService;
+	private final TagService tagService;
+	private final UserService userService;
+	private final MongoTemplate mongoTemplate;
+	private final Duration urlTtl;
+	private final long maxUploadSize;
+	private final Duration pendingUploadExpiry;
+
+	public PresignedUploadService(S3Service s3Service, VideoRepository videoRepository, VideoCache videoCache,
+			VideoSearchService videoSearchService, TagService tagService, UserService userService,
+			MongoTemplate mongoTemplate,
+			@Value("${storage.s3.presigned-url-ttl:15m}") Duration urlTtl,
+			@Value("${storage.s3.presigned-max-upload-size:5GB}") DataSize maxUploadSize,
+			@Value("${storage.s3.pending-upload-expiry:24h}") Duration pendingUploadExpiry) {
+		if (pendingUploadExpiry.compareTo(urlTtl) <= 0) {
+			throw new IllegalArgumentException(
+					"storage.s3.pending-upload-expiry must be longer than storage.s3.presigned-url-ttl");
+		}
+		this.s3Service = s3Service;
+		this.videoRepository = videoRepository;
+		this.videoCache = videoCache;
+		this.videoSearchService = videoSearchService;
+		this.tagService = tagService;
+		this.userService = userService;
+		this.mongoTemplate = mongoTemplate;
+		this.urlTtl = urlTtl;
+		this.maxUploadSize = maxUploadSize.toBytes();
+		this.pendingUploadExpiry = pendingUploadExpiry;
+	}
+
+	/**
+	 * Creates a pending video and returns the presigned URLs to upload its bytes.
+	 *
+	 * @param request the name, content type and size of the file to upload
+	 * @return the ID of the pending video and where to upload it
+	 * @throws ResponseStatusException with {@code 400 Bad Request} if the file is
+	 *                                 not a video or its size is out of bounds
+	 */
+	public UploadUrlResponse createUpload(UploadUrlRequest request) {
+		validate(request);
+
+		var filenameExtension = StringUtils.getFilenameExtension(request.getFileName());
+		String key = UUID.randomUUID() + (filenameExtension != null ? "." + filenameExtension : "");
+		long contentLength = request.getContentLength();
+
+		var video = new Video();
+		video.setUserId(userService.getCurrentUser().getId());
+		video.setVideoKey(key);
+		video.setContentType(request.getContentType());
+		video.setContentLength(contentLength);
+		video.setUploadStatus(UploadStatus.PENDING);
+
+		Instant expiresAt = Instant.now().plus(urlTtl);
+		Date expiration = Date.from(expiresAt);
+		var response = new UploadUrlResponse();
+		response.setExpiresAt(expiresAt);
+
+		long partSize = Math.max(s3Service.getPartSize(), (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+		if (contentLength <= partSize) {
+			response.setUploadUrl(s3Service.presignPut(key, request.getContentType(), expiration).toString());
+			response.setHeaders(Map.of(
+					HttpHeaders.CONTENT_TYPE, request.getContentType(),
+					Headers.S3_CANNED_ACL, CannedAccessControlList.PublicRead.toString()));
+		} else {
+			String uploadId = s3Service.initiateMultipartUpload(key, request.getContentType());
+			video.setUploadId(uploadId);
+			int partCount = (int) ((contentLength + partSize - 1) / partSize);
+			List<String> partUrls = new ArrayList<>(partCount);
+			for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+				partUrls.add(s3Service.presignPart(key, uploadId, partNumber, expiration).toString());
+			}
+			response.setUploadId(uploadId);
+			response.setPartSize(partSize);
+			response.setPartUrls(partUrls);
+		}
+
+		var savedVideo = videoRepository.save(video);
+		response.setVideoId(savedVideo.getId());
+		LOGGER.info("Created pending video {} for a direct upload of {} bytes", savedVideo.getId(), contentLength);
+		return response;
+	}
+
+	/**
+	 * Finalizes a direct upload once the client has sent all bytes.
+	 *
+	 * <p>
+	 * If the upload was a multipart upload, it is completed from the part ETags
+	 * in the request. The stored object must then match the declared size and
+	 * content type; if it does not, the object is deleted and the video is marked
+	 * {@link UploadStatus#FAILED}.
+	 * </p>
+	 *
+	 * @param videoId the ID of the pending video
+	 * @param request the multipart upload ID and part ETags, if any
+	 * @return an {@link UploadVideoResponse} containing the ID and URL of the video
+	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 * @throws ResponseStatusException  with {@code 403 Forbidden} if the video
+	 *                                  belongs to another user, {@code 409 Conflict}
+	 *                                  if the video is not pending, or
+	 *                                  {@code 400 Bad Request} if the upload ID is
+	 *                                  not the one of the video or the uploaded
+	 *                                  object does not match
+	 */
+	public UploadVideoResponse completeUpload(String videoId, CompleteUploadRequest request) {
+		Video video = videoRepository.findById(videoId).orElseThrow(() -> {
+			LOGGER.error("Video not found for ID: {}", videoId);
+			return new IllegalArgumentException("Cannot find video by id - " + videoId);
+		});
+		if (!Objects.equals(video.getUserId(), userService.getCurrentUser().getId())) {
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Video " + videoId + " belongs to another user");
+		}
+		if (video.getUploadStatus() != UploadStatus.PENDING) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Video " + videoId + " is not awaiting an upload");
+		}
+		String uploadId = request != null && StringUtils.hasText(request.getUploadId()) ? request.getUploadId() : null;
+		if (!Objects.equals(uploadId, video.getUploadId())) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Upload ID does not match the upload of video " + videoId);
+		}
+
+		String key = video.getVideoKey();
+		if (uploadId != null) {
+			List<PartETag> partETags = request.getParts() == null ? List.of() : request.getParts().stream()
+					.sorted(Comparator.comparing(CompleteUploadRequest.Part::getPartNumber))
+					.map(part -> new PartETag(part.getPartNumber(), part.getETag()))
+					.toList();
+			s3Service.completeMultipartUpload(key, uploadId, partETags);
+		}
+
+		var metadata = s3Service.getObjectMetadata(key).orElseThrow(() ->
+				new ResponseStatusException(HttpStatus.BAD_REQUEST, "No uploaded object found for video " + videoId));
+
+		if (metadata.getContentLength() != video.getContentLength()
+				|| !Objects.equals(metadata.getContentType(), video.getContentType())) {
+			LOGGER.error("Uploaded object of video {} does not match: {} bytes of {}, expected {} bytes of {}", videoId,
+					metadata.getContentLength(), metadata.getContentType(), video.getContentLength(),
+					video.getContentType());
+			s3Service.delete(key);
+			mongoTemplate.updateFirst(pendingVideoQuery(videoId), new Update().set("uploadStatus", UploadStatus.FAILED)
+					.unset("uploadId").currentDate("lastModifiedAt"), Video.class);
+			videoCache.invalidate(videoId);
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Uploaded object does not match the declared size and content type");
+		}
+
+		// Only the upload fields are set, so metadata edited meanwhile is kept
+		String videoUrl = s3Service.getObjectUrl(key);
+		Video completed = mongoTemplate.findAndModify(pendingVideoQuery(videoId), new Update().set("videoUrl", videoUrl)
+				.set("uploadStatus", UploadStatus.READY).unset("uploadId").currentDate("lastModifiedAt"),
+				FindAndModifyOptions.options().returnNew(true), Video.class);
+		videoCache.invalidate(videoId);
+		if (completed == null) {
+			// Expired by the sweep while it was being completed
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Video " + videoId + " is not awaiting an upload");
+		}
+		// It can be listed now, so it is indexed and its tags counted with any metadata
+		// edited while it was pending
+		videoSearchService.update(completed);
+		tagService.updateCounts(null, TagService.countedTags(completed));
+		LOGGER.info("Direct upload of video {} completed", videoId);
+
+		return new UploadVideoResponse(videoId, videoUrl);
+	}
+
+	private static Query pendingVideoQuery(String videoId) {
+		return Query.query(Criteria.where("_id").is(videoId).and("uploadStatus").is(UploadStatus.PENDING));
+	}
+
+	/**
+	 * Expires direct uploads that were never completed, along with placeholders
+	 * of upload jobs lost with the node that ran them. Each expired video is
+	 * marked {@link UploadStatus#FAILED} only if it is still pending, so an upload
+	 * completed concurrently is left alone.
+	 */
+	@Scheduled(fixedDelayString = "${storage.s3.pending-upload-sweep-interval-ms:3600000}")
+	public void sweepExpiredUploads() {
+		Instant cutoff = Instant.now().minus(pendingUploadExpiry);
+		Query expired = Query.query(Criteria.where("uploadStatus").is(UploadStatus.PENDING).and("createdAt").lt(cutoff));
+		expired.fields().include("_id", "videoKey", "uploadId");
+
+		int failed = 0;
+		for (Video video : mongoTemplate.find(expired, Video.class)) {
+			try {
+				if (video.getUploadId() != null) {
+					s3Service.abortMultipartUpload(video.getVideoKey(), video.getUploadId());
+				}
+				if (video.getVideoKey() != null) {
+					s3Service.delete(video.getVideoKey());
+				}
+				var result = mongoTemplate.updateFirst(
+						Query.query(Criteria.where("_id").is(video.getId()).and("uploadStatus").is(UploadStatus.PENDING)),
+						new Update().set("uploadStatus", UploadStatus.FAILED).unset("uploadId")
+								.currentDate("lastModifiedAt"),
+						Video.class);
+				if (result.getModifiedCount() > 0) {
+					videoCache.invalidate(video.getId());
+					failed++;
+				}
+			} catch (RuntimeException exception) {
+				LOGGER.warn("Could not expire the direct upload of video {}", video.getId(), exception);
+			}
+		}
+
+		int aborted = s3Service.abortMultipartUploadsInitiatedBefore(Date.from(cutoff));
+		if (failed > 0 || aborted > 0) {
+			LOGGER.info("Expired {} pending direct uploads and aborted {} stale multipart uploads", failed, aborted);
+		}
+	}
+
+	private void validate(UploadUrlRequest request) {
+		if (request.getContentType() == null || !request.getContentType().startsWith("video/")) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only video content types can be uploaded");
+		}
+		if (request.getContentLength() == null || request.getContentLength() <= 0
+				|| request.getContentLength() > maxUploadSize) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Content length must be between 1 and " + maxUploadSize + " bytes");
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.model.Reaction;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.ReactionRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Applies like / dislike reactions with a fixed number of round trips.
+ *
+ * <p>
+ * The state of a (user, video) pair lives in the {@code Reaction} collection. A
+ * reaction is toggled with a single atomic {@code findAndModify} that returns the
+ * previous state, and the resulting like / dislike deltas are applied to the
+ * {@link Video} counters with one {@code $inc}. Because the transition is decided
+ * by the database, two concurrent clicks from the same user are serialized on the
+ * reaction document and the counters stay consistent.
+ * </p>
+ * <p>
+ * The two writes are not combined into one bulk write: the counter deltas depend
+ * on the previous state, which only the first write returns, and the documents
+ * live in different collections. A counter update that is lost between the two
+ * writes is corrected by {@link #reconcileCounters()}.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactionService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactionService.class);
+
+	// Time left to a reaction to apply its counter update before it is reconciled
+	static final Duration RECONCILE_GRACE = Duration.ofSeconds(30);
+	// Changes made while the application was down are reconciled on the first run
+	private static final Duration STARTUP_LOOKBACK = Duration.ofHours(1);
+	private static final int RECONCILE_BATCH_SIZE = 500;
+
+	private final MongoTemplate mongoTemplate;
+	private final ReactionRepository reactionRepository;
+	private final VideoCache videoCache;
+	private final TrendingService trendingService;
+	private final RecommendationService recommendationService;
+
+	// Reactions changed before this time have been reconciled
+	private Instant reconciledUntil = Instant.now().minus(STARTUP_LOOKBACK);
+
+	/**
+	 * Toggles the given reaction of a user on a video.
+	 *
+	 * <p>
+	 * Reacting with the current reaction removes it; reacting with the opposite
+	 * reaction replaces it; otherwise the reaction is added.
+	 * </p>
+	 *
+	 * @param userId    the ID of the reacting user
+	 * @param videoId   the ID of the video
+	 * @param requested {@link ReactionType#LIKE} or {@link ReactionType#DISLIKE}
+	 * @return the {@link Video} with its updated counters
+	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 */
+	public Video react(String userId, String videoId, ReactionType requested) {
+		Reaction before = toggleReaction(userId, videoId, requested);
+		ReactionType previous = typeOf(before);
+		ReactionType next = previous == requested ? ReactionType.NONE : requested;
+		LOGGER.info("User {} reaction on video {} changed from {} to {}", userId, videoId, previous, next);
+
+		int likeDelta = delta(ReactionType.LIKE, previous, next);
+		int dislikeDelta = delta(ReactionType.DISLIKE, previous, next);
+		Update counters = new Update()
+				.inc("likes", likeDelta)
+				.inc("disLikes", dislikeDelta);
+
+		Video video = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(videoId)), counters,
+				FindAndModifyOptions.options().returnNew(true), Video.class);
+		videoCache.invalidate(videoId);
+
+		if (video == null) {
+			// The reaction points at a video that does not exist, undo the toggle
+			restoreReaction(userId, videoId, before, next);
+			LOGGER.error("Video not found for ID: {}", videoId);
+			throw new IllegalArgumentException("Cannot find video by id - " + videoId);
+		}
+		trendingService.recordReaction(videoId, likeDelta, dislikeDelta);
+		if (likeDelta > 0) {
+			recommendationService.recordLike(userId, videoId);
+		}
+		return video;
+	}
+
+	/**
+	 * Returns the IDs of the videos the user currently has the given reaction on.
+	 *
+	 * @param userId the ID of the user
+	 * @param type   the reaction type to look for
+	 * @return the IDs of the matching videos
+	 */
+	public List<String> getVideoIds(String userId, ReactionType type) {
+		return reactionRepository.findByUserIdAndType(userId, type).stream()
+				.map(Reaction::getVideoId)
+				.toList();
+	}
+
+	/**
+	 * Recounts the likes and dislikes of the videos whose reactions changed since
+	 * the previous run and corrects the counters that differ.
+	 */
+	@Scheduled(fixedDelayString = "${video.reactions.reconcile-interval-ms:60000}")
+	public synchronized void reconcileCounters() {
+		Instant until = Instant.now().minus(RECONCILE_GRACE);
+		if (!until.isAfter(reconciledUntil)) {
+			return;
+		}
+		Query changed = Query.query(Criteria.where("lastModifiedAt").gte(reconciledUntil).lt(until));
+		List<String> videoIds = mongoTemplate.findDistinct(changed, "videoId", Reaction.class, String.class);
+
+		int corrected = 0;
+		for (int from = 0; from < videoIds.size(); from += RECONCILE_BATCH_SIZE) {
+			corrected += reconcile(videoIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, videoIds.size())));
+		}
+		reconciledUntil = until;
+
+		if (corrected > 0) {
+			LOGGER.warn("Corrected the reaction counters of {} of {} videos", corrected, videoIds.size());
+		}
+	}
+
+	private int reconcile(List<String> videoIds) {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.match(Criteria.where("videoId").in(videoIds)
+						.and("type").in(ReactionType.LIKE, ReactionType.DISLIKE)),
+				Aggregation.group("videoId", "type").count().as("count"));
+		Map<String, int[]> counts = new HashMap<>();
+		for (Document row : mongoTemplate.aggregate(aggregation, Reaction.class, Document.class)) {
+			Document key = row.get("_id", Document.class);
+			int[] videoCounts = counts.computeIfAbsent(key.getString("videoId"), videoId -> new int[2]);
+			videoCounts[ReactionType.LIKE.name().equals(key.getString("type")) ? 0 : 1] = row.getInteger("count");
+		}
+
+		// Only the counters that differ from the recount are written
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Video.class);
+		for (String videoId : videoIds) {
+			int[] videoCounts = counts.getOrDefault(videoId, new int[2]);
+			bulkOperations.updateOne(
+					Query.query(Criteria.where("_id").is(videoId).orOperator(
+							Criteria.where("likes").ne(videoCounts[0]),
+							Criteria.where("disLikes").ne(videoCounts[1]))),
+					new Update().set("likes", videoCounts[0]).set("disLikes", videoCounts[1]));
+		}
+		int corrected = bulkOperations.execute().getModifiedCount();
+		if (corrected > 0) {
+			videoCache.invalidateAll(videoIds);
+		}
+		return corrected;
+	}
+
+	/**
+	 * Atomically moves the reaction document to its next state and returns the
+	 * document as it was before, or {@code null} if it was created.
+	 */
+	private Reaction toggleReaction(String userId, String videoId, ReactionType requested) {
+		AggregationUpdate update = AggregationUpdate.update()
+				.set("type").toValue(ConditionalOperators
+						.when(ComparisonOperators.valueOf("type").equalToValue(requested.name()))
+						.then(ReactionType.NONE.name())
+						.otherwise(requested.name()))
+				.set("lastModifiedAt").toValue(Instant.now());
+		FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(false);
+
+		Reaction before;
+		try {
+			before = mongoTemplate.findAndModify(reactionQuery(userId, videoId), update, options, Reaction.class);
+		} catch (DuplicateKeyException duplicateKeyException) {
+			// A concurrent upsert created the document first; it exists now, so retry once
+			LOGGER.debug("Concurrent reaction insert for user {} and video {}, retrying", userId, videoId);
+			before = mongoTemplate.findAndModify(reactionQuery(userId, videoId), update, options, Reaction.class);
+		}
+		return before;
+	}
+
+	/**
+	 * Undoes {@link #toggleReaction}: a created document is removed and an existing
+	 * one gets its previous state back. Nothing is changed if the reaction was
+	 * toggled again in the meantime.
+	 */
+	private void restoreReaction(String userId, String videoId, Reaction before, ReactionType next) {
+		Query toggled = reactionQuery(userId, videoId).addCriteria(Criteria.where("type").is(next));
+		if (before == null) {
+			mongoTemplate.remove(toggled, Reaction.class);
+		} else {
+			mongoTemplate.updateFirst(toggled, new Update().set("type", typeOf(before))
+					.set("lastModifiedAt", before.getLastModifiedAt()), Reaction.class);
+		}
+	}
+
+	private static ReactionType typeOf(Reaction reaction) {
+		return reaction == null || reaction.getType() == null ? ReactionType.NONE : reaction.getType();
+	}
+
+	private static Query reactionQuery(String userId, String videoId) {
+		return Query.query(Criteria.where("userId").is(userId).and("videoId").is(videoId));
+	}
+
+	private static int delta(ReactionType counter, ReactionType previous, ReactionType next) {
+		return (next == counter ? 1 : 0) - (previous == counter ? 1 : 0);
+	}
+}
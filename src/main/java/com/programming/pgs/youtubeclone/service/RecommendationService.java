@@ -0,0 +1,273 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.event.VideoViewed;
+import com.programming.pgs.youtubeclone.model.Reaction;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+import com.programming.pgs.youtubeclone.model.RelatedVideos;
+import com.programming.pgs.youtubeclone.model.WatchHistory;
+import com.programming.pgs.youtubeclone.recommendation.InteractionGraph;
+import com.programming.pgs.youtubeclone.recommendation.ItemSimilarity;
+import com.programming.pgs.youtubeclone.recommendation.SimilarItem;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Recommends related videos from the likes and watch history of all users.
+ *
+ * <p>
+ * Every {@code video.recommendations.rebuild-interval} the likes from the
+ * {@code Reaction} collection and the entries of the {@code WatchHistory}
+ * collection are streamed into an {@link InteractionGraph}, the
+ * {@link ItemSimilarity} of every video is computed in parallel on
+ * {@code video.recommendations.parallelism} threads, and the top
+ * {@code video.recommendations.top-n} are written to the {@code RelatedVideos}
+ * collection, from which requests are served.
+ * </p>
+ * <p>
+ * Between rebuilds, new likes and views are buffered and applied every
+ * {@code video.recommendations.apply-interval}: each new (user, video) pair is
+ * added to the graph, and the related videos of that video and of the other
+ * videos of the same user are recomputed and written. Removed likes only take
+ * effect on the next rebuild. The graph is only touched by one background
+ * thread, which runs both the rebuilds and the incremental updates.
+ * </p>
+ */
+@Service
+public class RecommendationService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RecommendationService.class);
+	private static final int WRITE_BATCH_SIZE = 1000;
+
+	private record Interaction(String userId, String videoId) {
+	}
+
+	private final MongoTemplate mongoTemplate;
+	private final int topN;
+	private final int maxItemsPerUser;
+	private final int minCooccurrence;
+	private final Duration rebuildInterval;
+	private final Duration applyInterval;
+	private final ForkJoinPool pool;
+	private final ScheduledExecutorService executor;
+	private final Timer buildTimer;
+
+	private final Set<Interaction> pending = ConcurrentHashMap.newKeySet();
+
+	// Confined to the executor thread
+	private InteractionGraph graph;
+	private ItemSimilarity similarity;
+
+	public RecommendationService(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+			@Value("${video.recommendations.top-n:20}") int topN,
+			@Value("${video.recommendations.max-items-per-user:200}") int maxItemsPerUser,
+			@Value("${video.recommendations.min-cooccurrence:2}") int minCooccurrence,
+			@Value("${video.recommendations.parallelism:0}") int parallelism,
+			@Value("${video.recommendations.rebuild-interval:6h}") Duration rebuildInterval,
+			@Value("${video.recommendations.apply-interval:10s}") Duration applyInterval) {
+		this.mongoTemplate = mongoTemplate;
+		this.topN = topN;
+		this.maxItemsPerUser = maxItemsPerUser;
+		this.minCooccurrence = minCooccurrence;
+		this.rebuildInterval = rebuildInterval;
+		this.applyInterval = applyInterval;
+		this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "recommendations");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.buildTimer = Timer.builder("video.recommendations.build")
+				.description("Time to rebuild the related videos of the whole catalog")
+				.register(meterRegistry);
+		Gauge.builder("video.recommendations.pending", pending, Set::size)
+				.description("New likes and views not yet applied to the related videos")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Records that a user liked a video.
+	 *
+	 * @param userId  the ID of the user
+	 * @param videoId the ID of the video
+	 */
+	public void recordLike(String userId, String videoId) {
+		pending.add(new Interaction(userId, videoId));
+	}
+
+	/**
+	 * Records a batch of views; views of anonymous users are ignored.
+	 *
+	 * @param views the views to record
+	 */
+	public void recordViews(Collection<VideoViewed> views) {
+		for (VideoViewed view : views) {
+			if (view.userId() != null) {
+				pending.add(new Interaction(view.userId(), view.videoId()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the precomputed related videos of a video.
+	 *
+	 * @param videoId the ID of the video
+	 * @param limit   the maximum number of videos
+	 * @return the IDs of the related videos, most similar first
+	 */
+	public List<String> getRelatedVideoIds(String videoId, int limit) {
+		Query query = Query.query(Criteria.where("_id").is(videoId));
+		query.fields().include("videoIds");
+		RelatedVideos relatedVideos = mongoTemplate.findOne(query, RelatedVideos.class);
+		if (relatedVideos == null || relatedVideos.getVideoIds() == null) {
+			return List.of();
+		}
+		List<String> videoIds = relatedVideos.getVideoIds();
+		return videoIds.subList(0, Math.min(Math.max(limit, 0), videoIds.size()));
+	}
+
+	/**
+	 * Schedules the periodic rebuilds, the first one right away, and the
+	 * incremental updates.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		executor.scheduleWithFixedDelay(this::rebuild, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+		executor.scheduleWithFixedDelay(this::applyPending, applyInterval.toMillis(), applyInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Loads all interactions and recomputes the related videos of every video.
+	 */
+	void rebuild() {
+		try {
+			buildTimer.record(() -> {
+				Instant computedAt = Instant.now();
+				InteractionGraph loaded = loadInteractions();
+				ItemSimilarity loadedSimilarity = new ItemSimilarity(loaded, topN, maxItemsPerUser, minCooccurrence);
+				List<List<SimilarItem>> related = loadedSimilarity.computeAll(pool);
+
+				List<RelatedVideos> updates = new ArrayList<>(related.size());
+				for (int item = 0; item < related.size(); item++) {
+					updates.add(relatedVideos(loadedSimilarity.itemId(item), related.get(item), computedAt));
+				}
+				write(updates);
+				// Videos that lost all their interactions since the last rebuild
+				mongoTemplate.remove(Query.query(Criteria.where("computedAt").lt(computedAt)), RelatedVideos.class);
+
+				graph = loaded;
+				similarity = loadedSimilarity;
+				LOGGER.info("Rebuilt the related videos of {} videos from {} users", loaded.itemCount(),
+						loaded.userCount());
+			});
+		} catch (RuntimeException exception) {
+			LOGGER.error("Could not rebuild the related videos", exception);
+		}
+	}
+
+	/**
+	 * Adds the buffered likes and views to the graph and recomputes the related
+	 * videos they affect.
+	 */
+	void applyPending() {
+		if (graph == null) {
+			// Everything pending is picked up by the first rebuild
+			return;
+		}
+		try {
+			Set<String> affected = new HashSet<>();
+			for (Interaction interaction : pending) {
+				pending.remove(interaction);
+				if (graph.add(interaction.userId(), interaction.videoId())) {
+					affected.add(interaction.videoId());
+					affected.addAll(graph.recentItemIds(interaction.userId(), maxItemsPerUser));
+				}
+			}
+			if (affected.isEmpty()) {
+				return;
+			}
+
+			Instant computedAt = Instant.now();
+			write(affected.stream()
+					.map(videoId -> relatedVideos(videoId, similarity.similarTo(videoId), computedAt))
+					.toList());
+			LOGGER.debug("Updated the related videos of {} videos", affected.size());
+		} catch (RuntimeException exception) {
+			LOGGER.error("Could not update the related videos", exception);
+		}
+	}
+
+	private InteractionGraph loadInteractions() {
+		InteractionGraph loaded = new InteractionGraph();
+
+		Query likes = Query.query(Criteria.where("type").is(ReactionType.LIKE));
+		likes.fields().include("userId", "videoId");
+		try (Stream<Reaction> reactions = mongoTemplate.stream(likes, Reaction.class)) {
+			reactions.forEach(reaction -> loaded.add(reaction.getUserId(), reaction.getVideoId()));
+		}
+
+		Query views = new Query();
+		views.fields().include("userId", "videoId");
+		try (Stream<WatchHistory> history = mongoTemplate.stream(views, WatchHistory.class)) {
+			history.forEach(entry -> loaded.add(entry.getUserId(), entry.getVideoId()));
+		}
+		return loaded;
+	}
+
+	private void write(List<RelatedVideos> updates) {
+		for (int from = 0; from < updates.size(); from += WRITE_BATCH_SIZE) {
+			BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, RelatedVideos.class);
+			for (RelatedVideos update : updates.subList(from, Math.min(from + WRITE_BATCH_SIZE, updates.size()))) {
+				bulkOperations.upsert(Query.query(Criteria.where("_id").is(update.getId())), new Update()
+						.set("videoIds", update.getVideoIds())
+						.set("scores", update.getScores())
+						.set("computedAt", update.getComputedAt()));
+			}
+			bulkOperations.execute();
+		}
+	}
+
+	private static RelatedVideos relatedVideos(String videoId, List<SimilarItem> similarItems, Instant computedAt) {
+		return new RelatedVideos(videoId,
+				similarItems.stream().map(SimilarItem::itemId).toList(),
+				similarItems.stream().map(SimilarItem::score).toList(),
+				computedAt);
+	}
+}
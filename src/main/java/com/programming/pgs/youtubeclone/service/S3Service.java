@@ -1,64 +1,389 @@
 package com.programming.pgs.youtubeclone.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 
 @Service
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
 public class S3Service implements FileService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3Service.class);
+
+    // S3 rejects multipart parts smaller than 5 MB (except the last one)
+    private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
     // Injected AmazonS3 client to interact with S3 bucket
     private final AmazonS3  awS3Client;
 
     // Name of the S3 bucket (Remove public access block"
-    private final static String BUCKET_NAME = "youtubeclone-102426687139";
+    private final String bucketName;
+
+    private final int partSize;
+    private final int partsInFlight;
+    private final int partRetries;
+
+    // Shared pool that uploads the parts of all multipart uploads
+    private final ExecutorService partUploadExecutor;
+
+    public S3Service(AmazonS3 awS3Client,
+            @Value("${storage.s3.bucket:youtubeclone-102426687139}") String bucketName,
+            @Value("${storage.s3.part-size:8MB}") DataSize partSize,
+            @Value("${storage.s3.parts-in-flight:4}") int partsInFlight,
+            @Value("${storage.s3.part-retries:3}") int partRetries,
+            @Value("${storage.s3.upload-threads:8}") int uploadThreads) {
+        if (partSize.toBytes() < MIN_PART_SIZE || partSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("storage.s3.part-size must be between 5MB and 2GB");
+        }
+        this.awS3Client = awS3Client;
+        this.bucketName = bucketName;
+        this.partSize = (int) partSize.toBytes();
+        this.partsInFlight = partsInFlight;
+        this.partRetries = partRetries;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.partUploadExecutor = Executors.newFixedThreadPool(uploadThreads,
+                runnable -> new Thread(runnable, "s3-part-upload-" + threadNumber.incrementAndGet()));
+    }
 
     /**
-     * Uploads a file to the configured S3 bucket and returns the public URL.
+     * Stores a stream in the configured S3 bucket under the given key and returns its public URL.
+     *
+     * <p>
+     * The stream is read one part at a time. Content that fits in a single part is
+     * uploaded with one PUT; anything larger is sent as a multipart upload whose
+     * parts are uploaded in parallel on a bounded pool while the next part is
+     * being read, so at most {@code storage.s3.parts-in-flight} parts are held in
+     * memory and nothing is copied to disk. Failed parts are retried; once a part
+     * has failed all its attempts the rest of the stream is not read and the
+     * multipart upload is aborted.
+     * </p>
      *
-     * @param file Multipart file to be uploaded.
-     * @return Public URL of the uploaded file.
+     * @param key           the key of the object
+     * @param inputStream   the content to upload
+     * @param contentType   the media type of the content
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return the key and public URL of the uploaded file
      * @throws ResponseStatusException if an error occurs during file upload.
      */
     @Override
-    public String uploadFile(MultipartFile file) {
-        // Extract the file extension (e.g., "jpg", "mp4")
-        var filenameExtension = StringUtils.getFilenameExtension(file.getOriginalFilename());
+    public StoredFile storeAs(String key, InputStream inputStream, String contentType, long contentLength) {
+        try {
+            byte[] firstPart = inputStream.readNBytes(partSize);
+            if (firstPart.length < partSize) {
+                putObject(key, firstPart, contentType);
+            } else {
+                multipartUpload(key, firstPart, inputStream, contentType);
+            }
+        } catch (IOException ioException) {
+            // Throw HTTP 500 if any error occurs while reading the file stream
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "An Exception occurred while uploading the file");
+        }
 
-        // Generate a unique key for the file to avoid collisions in the bucket
-        var key = UUID.randomUUID().toString() + "." + filenameExtension;
+        // Return the public URL of the uploaded file
+        return new StoredFile(key, getObjectUrl(key));
+    }
 
+    /**
+     * Uploads content that fits in a single part with one PUT.
+     */
+    private void putObject(String key, byte[] content, String contentType) {
         // Prepare metadata for the file (e.g., size, content type)
         var metadata = new ObjectMetadata();
-        metadata.setContentLength(file.getSize());
-        metadata.setContentType(file.getContentType());
+        metadata.setContentLength(content.length);
+        metadata.setContentType(contentType);
+
+        // Upload the file and make it publicly accessible in the same request
+        awS3Client.putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(content), metadata)
+                .withCannedAcl(CannedAccessControlList.PublicRead));
+    }
+
+    /**
+     * Uploads a stream as an S3 multipart upload, starting with an already read
+     * first part.
+     */
+    private void multipartUpload(String key, byte[] firstPart, InputStream inputStream, String contentType)
+            throws IOException {
+        String uploadId = initiateMultipartUpload(key, contentType);
+        LOGGER.debug("Started multipart upload {} for key {}", uploadId, key);
 
+        Semaphore freeSlots = new Semaphore(partsInFlight);
+        // The first part that failed all its attempts; stops reading the stream
+        AtomicReference<Throwable> failedPart = new AtomicReference<>();
+        List<Future<PartETag>> parts = new ArrayList<>();
         try {
-            // Upload the file to S3 using the bucket name, key, input stream, and metadata
-            awS3Client.putObject(BUCKET_NAME, key, file.getInputStream(), metadata);
-        } catch (IOException ioException) {
-            // Throw HTTP 500 if any error occurs while reading the file stream
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    "An Exception occurred while uploading the file");
+            byte[] part = firstPart;
+            int partNumber = 1;
+            while (part.length > 0) {
+                freeSlots.acquire();
+                if (failedPart.get() != null) {
+                    throw new ExecutionException(failedPart.get());
+                }
+                parts.add(submitPart(key, uploadId, partNumber++, part, freeSlots, failedPart));
+                part = inputStream.readNBytes(partSize);
+            }
+
+            List<PartETag> partETags = new ArrayList<>(parts.size());
+            for (Future<PartETag> future : parts) {
+                partETags.add(future.get());
+            }
+            completeMultipartUpload(key, uploadId, partETags);
+            LOGGER.info("Completed multipart upload of key {} in {} parts", key, partETags.size());
+        } catch (IOException | RuntimeException | InterruptedException | ExecutionException exception) {
+            parts.forEach(future -> future.cancel(true));
+            abortMultipartUpload(key, uploadId);
+            LOGGER.error("Aborted multipart upload {} for key {}", uploadId, key, exception);
+            if (exception instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Multipart upload of " + key + " failed", exception);
         }
+    }
 
-        // Make the uploaded file publicly accessible
-        awS3Client.setObjectAcl(BUCKET_NAME, key, CannedAccessControlList.PublicRead);
+    private Future<PartETag> submitPart(String key, String uploadId, int partNumber, byte[] content,
+            Semaphore freeSlots, AtomicReference<Throwable> failedPart) {
+        return partUploadExecutor.submit(() -> {
+            try {
+                return uploadPart(key, uploadId, partNumber, content);
+            } catch (InterruptedException | RuntimeException exception) {
+                failedPart.compareAndSet(null, exception);
+                throw exception;
+            } finally {
+                freeSlots.release();
+            }
+        });
+    }
 
-        // Return the public URL of the uploaded file
-        return "https://" + BUCKET_NAME + ".s3.eu-north-1.amazonaws.com/" + key;
+    /**
+     * Uploads one part, retrying with a linear backoff.
+     */
+    private PartETag uploadPart(String key, String uploadId, int partNumber, byte[] content)
+            throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return awS3Client.uploadPart(new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(content.length)
+                        .withInputStream(new ByteArrayInputStream(content)))
+                        .getPartETag();
+            } catch (RuntimeException exception) {
+                if (attempt > partRetries) {
+                    throw exception;
+                }
+                LOGGER.warn("Upload of part {} of key {} failed (attempt {}), retrying", partNumber, key, attempt);
+                Thread.sleep(200L * attempt);
+            }
+        }
+    }
+
+    /**
+     * Creates a presigned URL that lets a client {@code PUT} an object directly.
+     * <p>
+     * The URL is signed for the given content type and a public-read ACL, so the
+     * client must send the matching {@code Content-Type} and {@code x-amz-acl}
+     * headers.
+     * </p>
+     *
+     * @param key         the key of the object
+     * @param contentType the media type the client will upload
+     * @param expiration  when the URL stops working
+     * @return the presigned URL
+     */
+    public URL presignPut(String key, String contentType, Date expiration) {
+        var request = new GeneratePresignedUrlRequest(bucketName, key, HttpMethod.PUT)
+                .withExpiration(expiration)
+                .withContentType(contentType);
+        request.putCustomRequestHeader(Headers.S3_CANNED_ACL, CannedAccessControlList.PublicRead.toString());
+        return awS3Client.generatePresignedUrl(request);
+    }
+
+    /**
+     * Starts a public-read multipart upload whose parts are sent by the client.
+     *
+     * @param key         the key of the object
+     * @param contentType the media type of the object
+     * @return the ID of the multipart upload
+     */
+    public String initiateMultipartUpload(String key, String contentType) {
+        var metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+        return awS3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata)
+                .withCannedACL(CannedAccessControlList.PublicRead)).getUploadId();
+    }
+
+    /**
+     * Creates a presigned URL that lets a client {@code PUT} one part of a
+     * multipart upload.
+     *
+     * @param key        the key of the object
+     * @param uploadId   the ID of the multipart upload
+     * @param partNumber the 1-based number of the part
+     * @param expiration when the URL stops working
+     * @return the presigned URL
+     */
+    public URL presignPart(String key, String uploadId, int partNumber, Date expiration) {
+        var request = new GeneratePresignedUrlRequest(bucketName, key, HttpMethod.PUT)
+                .withExpiration(expiration);
+        request.addRequestParameter("uploadId", uploadId);
+        request.addRequestParameter("partNumber", String.valueOf(partNumber));
+        return awS3Client.generatePresignedUrl(request);
+    }
+
+    /**
+     * Completes a multipart upload from the ETags of its parts.
+     *
+     * @param key       the key of the object
+     * @param uploadId  the ID of the multipart upload
+     * @param partETags the ETags of all parts
+     */
+    public void completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+        awS3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+    }
+
+    /**
+     * Aborts a multipart upload and discards the parts uploaded so far.
+     *
+     * @param key      the key of the object
+     * @param uploadId the ID of the multipart upload
+     */
+    public void abortMultipartUpload(String key, String uploadId) {
+        awS3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+    }
+
+    /**
+     * Aborts every multipart upload in the bucket that was initiated before the
+     * given time, including uploads that no video refers to anymore, e.g. those
+     * left behind when a node died in the middle of {@link #storeAs}.
+     *
+     * @param initiatedBefore the cutoff
+     * @return the number of aborted uploads
+     */
+    public int abortMultipartUploadsInitiatedBefore(Date initiatedBefore) {
+        int aborted = 0;
+        var request = new ListMultipartUploadsRequest(bucketName);
+        MultipartUploadListing listing;
+        do {
+            listing = awS3Client.listMultipartUploads(request);
+            for (MultipartUpload upload : listing.getMultipartUploads()) {
+                if (upload.getInitiated().before(initiatedBefore)) {
+                    abortMultipartUpload(upload.getKey(), upload.getUploadId());
+                    aborted++;
+                }
+            }
+            request.setKeyMarker(listing.getNextKeyMarker());
+            request.setUploadIdMarker(listing.getNextUploadIdMarker());
+        } while (listing.isTruncated());
+        return aborted;
+    }
+
+    /**
+     * Reads the metadata of an object without downloading it.
+     *
+     * @param key the key of the object
+     * @return the metadata, or empty if the object does not exist
+     */
+    public Optional<ObjectMetadata> getObjectMetadata(String key) {
+        try {
+            return Optional.of(awS3Client.getObjectMetadata(bucketName, key));
+        } catch (AmazonS3Exception exception) {
+            if (exception.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                return Optional.empty();
+            }
+            throw exception;
+        }
+    }
+
+    @Override
+    public Optional<FileMetadata> stat(String key) {
+        return getObjectMetadata(key).map(metadata -> new FileMetadata(metadata.getContentLength(),
+                metadata.getContentType(), metadata.getLastModified().toInstant(), "\"" + metadata.getETag() + "\""));
+    }
+
+    /**
+     * Downloads only the requested range with a ranged {@code GET}, so seeking
+     * never reads the bytes before the range.
+     */
+    @Override
+    public void transfer(String key, long start, long length, OutputStream outputStream) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        var request = new GetObjectRequest(bucketName, key).withRange(start, start + length - 1);
+        try (S3Object object = awS3Client.getObject(request)) {
+            S3ObjectInputStream content = object.getObjectContent();
+            try {
+                content.transferTo(outputStream);
+            } catch (IOException ioException) {
+                // The client went away; drop the connection instead of draining the rest of the range
+                content.abort();
+                throw ioException;
+            }
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        awS3Client.deleteObject(bucketName, key);
+    }
+
+    public String getObjectUrl(String key) {
+        return awS3Client.getUrl(bucketName, key).toString();
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
 
+    @PreDestroy
+    void shutdown() {
+        partUploadExecutor.shutdown();
     }
 }
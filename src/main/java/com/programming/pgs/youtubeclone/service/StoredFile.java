@@ -0,0 +1,10 @@
+package com.programming.pgs.youtubeclone.service;
+
+/**
+ * A file written by a {@link FileService}.
+ *
+ * @param key the key of the object in the storage backend
+ * @param url the public URL of the object
+ */
+public record StoredFile(String key, String url) {
+}
@@ -0,0 +1,189 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mongodb.client.result.UpdateResult;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.model.Subscription;
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Maintains the subscriber graph with a fixed number of small writes.
+ *
+ * <p>
+ * Every subscription is one (follower, followee) document in the
+ * {@code Subscription} collection, and the {@link User} documents only keep the
+ * subscriber and subscription counters. Subscribing upserts the edge and, only
+ * if the upsert created it, increments both counters with {@code $inc};
+ * unsubscribing decrements them only if it deleted the edge. The database
+ * decides which request changed the edge, so repeated or concurrent clicks
+ * never count twice, and the cost does not depend on how many subscribers a
+ * channel has.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class SubscriptionService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionService.class);
+
+	private final MongoTemplate mongoTemplate;
+	private final CurrentUserResolver currentUserResolver;
+
+	/**
+	 * Subscribes a user to another user.
+	 *
+	 * @param followerId the ID of the subscribing user
+	 * @param followeeId the ID of the user to subscribe to
+	 * @return {@code true} if the subscription was created, {@code false} if it already existed
+	 * @throws ResponseStatusException  with {@code 400 Bad Request} if a user subscribes to themselves
+	 * @throws IllegalArgumentException if the user to subscribe to does not exist
+	 */
+	public boolean subscribe(String followerId, String followeeId) {
+		if (followerId.equals(followeeId)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Users cannot subscribe to themselves");
+		}
+		if (!mongoTemplate.exists(userQuery(followeeId), User.class)) {
+			LOGGER.error("Cannot find user with userId {}", followeeId);
+			throw new IllegalArgumentException("Cannot find user with userId " + followeeId);
+		}
+
+		Update update = new Update().setOnInsert("createdAt", Instant.now());
+		UpdateResult result;
+		try {
+			result = mongoTemplate.upsert(edgeQuery(followerId, followeeId), update, Subscription.class);
+		} catch (DuplicateKeyException duplicateKeyException) {
+			// A concurrent upsert created the edge first; it exists now, so retry once
+			LOGGER.debug("Concurrent subscription insert for {} and {}, retrying", followerId, followeeId);
+			result = mongoTemplate.upsert(edgeQuery(followerId, followeeId), update, Subscription.class);
+		}
+
+		boolean created = result.getUpsertedId() != null;
+		if (created) {
+			updateCounters(followerId, followeeId, 1);
+		}
+		return created;
+	}
+
+	/**
+	 * Unsubscribes a user from another user.
+	 *
+	 * @param followerId the ID of the unsubscribing user
+	 * @param followeeId the ID of the user to unsubscribe from
+	 * @return {@code true} if the subscription was removed, {@code false} if there was none
+	 */
+	public boolean unsubscribe(String followerId, String followeeId) {
+		boolean removed = mongoTemplate.remove(edgeQuery(followerId, followeeId), Subscription.class)
+				.getDeletedCount() > 0;
+		if (removed) {
+			updateCounters(followerId, followeeId, -1);
+		}
+		return removed;
+	}
+
+	/**
+	 * Retrieves one page of the subscribers of a user, most recent first.
+	 *
+	 * @param userId the ID of the user
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @return a page of subscriber IDs
+	 */
+	public CursorPage<String> getSubscribers(String userId, String after, Integer limit) {
+		return page("followeeId", userId, after, limit, Subscription::getFollowerId);
+	}
+
+	/**
+	 * Retrieves one page of the users a user is subscribed to, most recent first.
+	 *
+	 * @param userId the ID of the user
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @return a page of followed user IDs
+	 */
+	public CursorPage<String> getSubscriptions(String userId, String after, Integer limit) {
+		return page("followerId", userId, after, limit, Subscription::getFolloweeId);
+	}
+
+	/**
+	 * Returns the IDs of all users a user is subscribed to.
+	 *
+	 * @param userId the ID of the user
+	 * @return the IDs of the followed users
+	 */
+	public List<String> getSubscriptionIds(String userId) {
+		Query query = Query.query(Criteria.where("followerId").is(userId));
+		query.fields().include("followeeId");
+		return mongoTemplate.find(query, Subscription.class).stream()
+				.map(Subscription::getFolloweeId)
+				.toList();
+	}
+
+	private CursorPage<String> page(String userField, String userId, String after, Integer limit,
+			Function<Subscription, String> otherUser) {
+		int pageSize = CursorPage.normalizeLimit(limit);
+		PageCursor cursor = PageCursor.decode(after);
+
+		Criteria criteria = Criteria.where(userField).is(userId);
+		if (cursor != null) {
+			criteria = new Criteria().andOperator(criteria, cursor.after("createdAt"));
+		}
+
+		Query query = Query.query(criteria)
+				.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+				.limit(pageSize + 1);
+
+		var edges = mongoTemplate.find(query, Subscription.class);
+		LOGGER.debug("Fetched {} subscriptions by {} of user {}", edges.size(), userField, userId);
+
+		return CursorPage.of(edges, pageSize,
+				edge -> PageCursor.of(edge.getCreatedAt(), edge.getId()),
+				otherUser);
+	}
+
+	/**
+	 * Applies a subscription change to the counters of both users and evicts
+	 * them from the current user cache.
+	 */
+	private void updateCounters(String followerId, String followeeId, int delta) {
+		updateCounter(followerId, "subscriptionCount", delta);
+		updateCounter(followeeId, "subscriberCount", delta);
+		LOGGER.info("Subscription of user {} to user {} changed by {}", followerId, followeeId, delta);
+	}
+
+	private void updateCounter(String userId, String counter, int delta) {
+		Query query = userQuery(userId);
+		query.fields().include("sub");
+		User user = mongoTemplate.findAndModify(query, new Update().inc(counter, delta),
+				FindAndModifyOptions.options().returnNew(true), User.class);
+		if (user != null) {
+			currentUserResolver.evict(user);
+		}
+	}
+
+	private static Query userQuery(String userId) {
+		return Query.query(Criteria.where("_id").is(userId));
+	}
+
+	private static Query edgeQuery(String followerId, String followeeId) {
+		return Query.query(Criteria.where("followerId").is(followerId).and("followeeId").is(followeeId));
+	}
+}
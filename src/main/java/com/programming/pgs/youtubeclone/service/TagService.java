@@ -0,0 +1,107 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.dto.TagCountDto;
+import com.programming.pgs.youtubeclone.model.TagCount;
+import com.programming.pgs.youtubeclone.model.Video;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Maintains the number of videos per tag in the {@code TagCount} collection.
+ *
+ * <p>
+ * Only listed videos are counted, like on the pages of a tag: a video adds its
+ * tags when it becomes listed and removes them when it stops being listed.
+ * </p>
+ * <p>
+ * When the tags of a video change, only the difference between the old and the
+ * new set is applied, with one ordered bulk write: added tags are incremented
+ * (and created if needed), removed tags are decremented and deleted once no
+ * video carries them. The most used tags are then read from an index on the
+ * count, without aggregating over the videos.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class TagService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TagService.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	/**
+	 * Applies a change of the tags of one video to the tag counts.
+	 *
+	 * @param previousTags the tags before the change, may be {@code null}
+	 * @param tags         the tags after the change, may be {@code null}
+	 */
+	public void updateCounts(Set<String> previousTags, Set<String> tags) {
+		Set<String> added = difference(tags, previousTags);
+		Set<String> removed = difference(previousTags, tags);
+		if (added.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.ORDERED, TagCount.class);
+		for (String tag : added) {
+			bulkOperations.upsert(Query.query(Criteria.where("_id").is(tag)), new Update().inc("count", 1));
+		}
+		for (String tag : removed) {
+			bulkOperations.updateOne(Query.query(Criteria.where("_id").is(tag)), new Update().inc("count", -1));
+		}
+		if (!removed.isEmpty()) {
+			bulkOperations.remove(Query.query(Criteria.where("_id").in(removed).and("count").lte(0)));
+		}
+		bulkOperations.execute();
+		LOGGER.debug("Updated tag counts, added {} removed {}", added, removed);
+	}
+
+	/**
+	 * Retrieves the tags carried by the most videos.
+	 *
+	 * @param limit the requested number of tags, or {@code null} for the default
+	 * @return the tags with their video counts, most used first
+	 */
+	public List<TagCountDto> getTopTags(Integer limit) {
+		Query query = new Query()
+				.with(Sort.by(Sort.Order.desc("count"), Sort.Order.asc("_id")))
+				.limit(CursorPage.normalizeLimit(limit));
+		return mongoTemplate.find(query, TagCount.class).stream()
+				.map(tagCount -> new TagCountDto(tagCount.getId(), tagCount.getCount()))
+				.toList();
+	}
+
+	/**
+	 * Returns the tags a video contributes to the counts.
+	 *
+	 * @param video the video, may be {@code null}
+	 * @return the tags of the video if it is listed, otherwise {@code null}
+	 */
+	static Set<String> countedTags(Video video) {
+		return video != null && VideoService.isListed(video) ? video.getTags() : null;
+	}
+
+	private static Set<String> difference(Set<String> tags, Set<String> excluded) {
+		Set<String> difference = new HashSet<>(tags != null ? tags : Set.of());
+		if (excluded != null) {
+			difference.removeAll(excluded);
+		}
+		return difference;
+	}
+}
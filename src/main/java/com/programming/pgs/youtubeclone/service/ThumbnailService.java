@@ -0,0 +1,233 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.ThumbnailRendition;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Turns an uploaded thumbnail into a set of JPEG renditions of fixed widths, so
+ * clients can download the smallest image that fits.
+ *
+ * <p>
+ * The upload is decoded once; its dimensions are checked against
+ * {@code video.thumbnails.max-pixels} before any pixel data is read. Each width
+ * in {@code video.thumbnails.widths} that is smaller than the image is then
+ * scaled, encoded and stored in parallel on a pool of
+ * {@code video.thumbnails.threads} threads. Images narrower than the smallest
+ * width get a single rendition of their own size. When the pool is saturated
+ * the remaining renditions are produced on the calling thread. Processing time
+ * is recorded by {@code video.thumbnails.processing}.
+ * </p>
+ */
+@Service
+public class ThumbnailService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailService.class);
+	private static final String CONTENT_TYPE = "image/jpeg";
+
+	private final ContentStore contentStore;
+	private final List<Integer> widths;
+	private final float quality;
+	private final long maxPixels;
+	private final ThreadPoolExecutor executor;
+	private final Timer processingTimer;
+
+	public ThumbnailService(ContentStore contentStore, MeterRegistry meterRegistry,
+			@Value("${video.thumbnails.widths:160,320,640,1280}") List<Integer> widths,
+			@Value("${video.thumbnails.quality:0.85}") float quality,
+			@Value("${video.thumbnails.max-pixels:40000000}") long maxPixels,
+			@Value("${video.thumbnails.threads:4}") int threads) {
+		this.contentStore = contentStore;
+		this.widths = widths.stream().filter(width -> width > 0).distinct().sorted().toList();
+		if (this.widths.isEmpty()) {
+			throw new IllegalArgumentException("video.thumbnails.widths must contain a positive width");
+		}
+		this.quality = quality;
+		this.maxPixels = maxPixels;
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * 16),
+				runnable -> new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet()),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.processingTimer = Timer.builder("video.thumbnails.processing")
+				.description("Time to decode, scale and store the renditions of a thumbnail")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Decodes an uploaded image and stores its renditions.
+	 *
+	 * @param file the uploaded image
+	 * @return the stored renditions, ordered by ascending width
+	 * @throws ResponseStatusException with {@code 400 Bad Request} if the file is
+	 *                                 not a readable image or is too large, and
+	 *                                 {@code 500 Internal Server Error} if a
+	 *                                 rendition cannot be stored
+	 */
+	public List<ThumbnailRendition> createRenditions(MultipartFile file) {
+		Timer.Sample sample = Timer.start();
+		try {
+			BufferedImage source = decode(file);
+			List<CompletableFuture<ThumbnailRendition>> renditions = targetWidths(source.getWidth()).stream()
+					.map(width -> CompletableFuture.supplyAsync(() -> render(source, width), executor))
+					.toList();
+			awaitAll(renditions);
+			List<ThumbnailRendition> stored = renditions.stream().map(CompletableFuture::join).toList();
+			LOGGER.debug("Stored {} thumbnail renditions of a {}x{} image", stored.size(), source.getWidth(),
+					source.getHeight());
+			return stored;
+		} catch (CompletionException completionException) {
+			if (completionException.getCause() instanceof ResponseStatusException responseStatusException) {
+				throw responseStatusException;
+			}
+			LOGGER.error("Could not create thumbnail renditions", completionException.getCause());
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"An Exception occurred while uploading the file");
+		} finally {
+			sample.stop(processingTimer);
+		}
+	}
+
+	/**
+	 * Waits until every rendition has finished. If any failed, the renditions that
+	 * were stored are released, as nothing will refer to them.
+	 *
+	 * @throws CompletionException the failure of the first rendition that failed
+	 */
+	private void awaitAll(List<CompletableFuture<ThumbnailRendition>> renditions) {
+		try {
+			// Only completes once all renditions have, so none is stored after a failure is seen
+			CompletableFuture.allOf(renditions.toArray(CompletableFuture[]::new)).join();
+		} catch (CompletionException completionException) {
+			renditions.stream()
+					.filter(rendition -> !rendition.isCompletedExceptionally())
+					.forEach(rendition -> contentStore.release(rendition.join().getKey()));
+			throw completionException;
+		}
+	}
+
+	private BufferedImage decode(MultipartFile file) {
+		try (InputStream inputStream = file.getInputStream();
+				ImageInputStream imageInputStream = new MemoryCacheImageInputStream(inputStream)) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+			if (!readers.hasNext()) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported thumbnail image format");
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(imageInputStream, true, true);
+				long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+				if (pixels > maxPixels) {
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+							"Thumbnail image of " + reader.getWidth(0) + "x" + reader.getHeight(0) + " is too large");
+				}
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException ioException) {
+			LOGGER.debug("Could not decode thumbnail {}", file.getOriginalFilename(), ioException);
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Thumbnail is not a readable image");
+		}
+	}
+
+	private List<Integer> targetWidths(int sourceWidth) {
+		List<Integer> targets = widths.stream().filter(width -> width < sourceWidth).toList();
+		return targets.isEmpty() ? List.of(Math.min(sourceWidth, widths.get(0))) : targets;
+	}
+
+	private ThumbnailRendition render(BufferedImage source, int width) {
+		int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+		byte[] jpeg = encode(scale(source, width, height));
+		StoredFile storedFile = contentStore.store(jpeg, "thumbnail.jpg", CONTENT_TYPE);
+		return new ThumbnailRendition(width, height, storedFile.key(), storedFile.url());
+	}
+
+	/**
+	 * Scales an image with bilinear interpolation, halving it in steps first so
+	 * large reductions do not skip source pixels.
+	 */
+	private static BufferedImage scale(BufferedImage source, int width, int height) {
+		BufferedImage current = source;
+		int currentWidth = source.getWidth();
+		int currentHeight = source.getHeight();
+		do {
+			currentWidth = Math.max(width, currentWidth / 2);
+			currentHeight = Math.max(height, currentHeight / 2);
+			BufferedImage scaled = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = scaled.createGraphics();
+			try {
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+				graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+			} finally {
+				graphics.dispose();
+			}
+			current = scaled;
+		} while (currentWidth != width || currentHeight != height);
+		return current;
+	}
+
+	private byte[] encode(BufferedImage image) {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality);
+		var outputStream = new ByteArrayOutputStream();
+		try (var imageOutputStream = new MemoryCacheImageOutputStream(outputStream)) {
+			writer.setOutput(imageOutputStream);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} catch (IOException ioException) {
+			throw new CompletionException(ioException);
+		} finally {
+			writer.dispose();
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Stops the rendering pool once pending renditions have completed.
+	 */
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.model.TrendingScore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ranks videos by recent activity with exponentially time-decayed scores.
+ *
+ * <p>
+ * Views, reactions and comments add weighted points to the score of a video,
+ * and every point loses half its value per {@code video.trending.half-life}.
+ * Scores use forward decay: a point recorded at time {@code t} is stored as
+ * {@code weight * exp(lambda * (t - landmark))}, so stored scores never have to
+ * be decayed and their order is the order of the decayed scores at any time.
+ * Each event therefore costs one update of a sorted set and nothing is ever
+ * recomputed in bulk. When the exponent grows too large the scores are rebased
+ * on a new landmark, which only rescales them.
+ * </p>
+ * <p>
+ * Events are buffered per video and applied every
+ * {@code video.trending.apply-interval-ms}, after which the first
+ * {@code video.trending.top-k} videos are published as an immutable snapshot
+ * that readers use without locking. Videos whose decayed score falls below
+ * {@code video.trending.min-score}, or that exceed
+ * {@code video.trending.max-tracked}, are dropped from the end of the ranking.
+ * Changed scores are checkpointed to the {@code TrendingScore} collection every
+ * {@code video.trending.checkpoint-interval-ms} and on shutdown, and reloaded on
+ * startup.
+ * </p>
+ */
+@Service
+public class TrendingService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TrendingService.class);
+
+	// Stored scores grow by e^200 at most before a rebase, far from overflowing a double
+	private static final double MAX_EXPONENT = 200;
+
+	/** A stored score; ordered by descending score, then by video ID. */
+	private record Ranked(String videoId, double score) {
+	}
+
+	private static final Comparator<Ranked> BY_SCORE = Comparator.comparingDouble(Ranked::score)
+			.reversed()
+			.thenComparing(Ranked::videoId);
+
+	private final MongoTemplate mongoTemplate;
+	// Decay rate per millisecond
+	private final double lambda;
+	private final int topK;
+	private final int maxTracked;
+	private final double minScore;
+	private final double viewWeight;
+	private final double likeWeight;
+	private final double dislikeWeight;
+	private final double commentWeight;
+
+	// Weighted points recorded since the last apply
+	private final ConcurrentHashMap<String, Double> pendingPoints = new ConcurrentHashMap<>();
+
+	// Guarded by this
+	private final Map<String, Double> scores = new HashMap<>();
+	private NavigableSet<Ranked> ranking = new TreeSet<>(BY_SCORE);
+	private final Set<String> changed = new HashSet<>();
+	private final Set<String> dropped = new HashSet<>();
+	private Instant landmark = Instant.now();
+
+	private volatile List<String> topVideoIds = List.of();
+
+	public TrendingService(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+			@Value("${video.trending.half-life:6h}") Duration halfLife,
+			@Value("${video.trending.top-k:100}") int topK,
+			@Value("${video.trending.max-tracked:100000}") int maxTracked,
+			@Value("${video.trending.min-score:0.1}") double minScore,
+			@Value("${video.trending.weights.view:1}") double viewWeight,
+			@Value("${video.trending.weights.like:10}") double likeWeight,
+			@Value("${video.trending.weights.dislike:-5}") double dislikeWeight,
+			@Value("${video.trending.weights.comment:5}") double commentWeight) {
+		this.mongoTemplate = mongoTemplate;
+		this.lambda = Math.log(2) / halfLife.toMillis();
+		this.topK = topK;
+		this.maxTracked = maxTracked;
+		this.minScore = minScore;
+		this.viewWeight = viewWeight;
+		this.likeWeight = likeWeight;
+		this.dislikeWeight = dislikeWeight;
+		this.commentWeight = commentWeight;
+
+		Gauge.builder("video.trending.tracked", this, TrendingService::trackedCount)
+				.description("Videos with a trending score")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Adds views of a video.
+	 *
+	 * @param videoId the ID of the video
+	 * @param views   the number of views
+	 */
+	public void recordViews(String videoId, long views) {
+		record(videoId, views * viewWeight);
+	}
+
+	/**
+	 * Adds a change of the reactions on a video. Removing a like or dislike takes
+	 * its points away again.
+	 *
+	 * @param videoId      the ID of the video
+	 * @param likeDelta    the change of the like count
+	 * @param dislikeDelta the change of the dislike count
+	 */
+	public void recordReaction(String videoId, int likeDelta, int dislikeDelta) {
+		record(videoId, likeDelta * likeWeight + dislikeDelta * dislikeWeight);
+	}
+
+	/**
+	 * Adds a comment on a video.
+	 *
+	 * @param videoId the ID of the video
+	 */
+	public void recordComment(String videoId) {
+		record(videoId, commentWeight);
+	}
+
+	/**
+	 * Returns the IDs of the highest ranked videos as of the last apply.
+	 *
+	 * @param limit the maximum number of videos
+	 * @return at most {@code limit} video IDs, highest score first
+	 */
+	public List<String> getTopVideoIds(int limit) {
+		List<String> top = topVideoIds;
+		return top.subList(0, Math.min(Math.max(limit, 0), top.size()));
+	}
+
+	private void record(String videoId, double points) {
+		if (points != 0) {
+			pendingPoints.merge(videoId, points, Double::sum);
+		}
+	}
+
+	/**
+	 * Applies the buffered points to the ranking and publishes the new top videos.
+	 */
+	@Scheduled(fixedDelayString = "${video.trending.apply-interval-ms:1000}")
+	public synchronized void apply() {
+		Instant now = Instant.now();
+		if (exponent(now) > MAX_EXPONENT) {
+			rebase(now);
+		}
+		double growth = Math.exp(exponent(now));
+
+		for (String videoId : pendingPoints.keySet()) {
+			Double points = pendingPoints.remove(videoId);
+			if (points != null) {
+				add(videoId, points * growth);
+			}
+		}
+		prune(now);
+		topVideoIds = ranking.stream().limit(topK).map(Ranked::videoId).toList();
+	}
+
+	/**
+	 * Writes the scores that changed since the last checkpoint and removes those
+	 * that were dropped.
+	 */
+	@Scheduled(fixedDelayString = "${video.trending.checkpoint-interval-ms:60000}")
+	public void checkpoint() {
+		List<TrendingScore> changedScores = new ArrayList<>();
+		List<String> droppedIds;
+		synchronized (this) {
+			changed.forEach(videoId -> changedScores.add(new TrendingScore(videoId, scores.get(videoId), landmark)));
+			droppedIds = new ArrayList<>(dropped);
+			changed.clear();
+			dropped.clear();
+		}
+		if (changedScores.isEmpty() && droppedIds.isEmpty()) {
+			return;
+		}
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, TrendingScore.class);
+		for (TrendingScore trendingScore : changedScores) {
+			bulkOperations.upsert(Query.query(Criteria.where("_id").is(trendingScore.getId())),
+					new Update().set("score", trendingScore.getScore()).set("landmark", trendingScore.getLandmark()));
+		}
+		if (!droppedIds.isEmpty()) {
+			bulkOperations.remove(Query.query(Criteria.where("_id").in(droppedIds)));
+		}
+
+		try {
+			bulkOperations.execute();
+			LOGGER.debug("Checkpointed {} trending scores, removed {}", changedScores.size(), droppedIds.size());
+		} catch (RuntimeException exception) {
+			LOGGER.error("Failed to checkpoint {} trending scores, retrying on the next checkpoint",
+					changedScores.size(), exception);
+			synchronized (this) {
+				changedScores.stream().map(TrendingScore::getId).filter(scores::containsKey).forEach(changed::add);
+				droppedIds.stream().filter(videoId -> !scores.containsKey(videoId)).forEach(dropped::add);
+			}
+		}
+	}
+
+	/**
+	 * Restores the checkpointed scores, converted to a landmark of now.
+	 */
+	@PostConstruct
+	synchronized void load() {
+		landmark = Instant.now();
+		try (Stream<TrendingScore> checkpoint = mongoTemplate.stream(new Query(), TrendingScore.class)) {
+			checkpoint.forEach(trendingScore -> {
+				long age = landmark.toEpochMilli() - trendingScore.getLandmark().toEpochMilli();
+				double score = trendingScore.getScore() * Math.exp(-lambda * age);
+				scores.put(trendingScore.getId(), score);
+				ranking.add(new Ranked(trendingScore.getId(), score));
+			});
+		} catch (RuntimeException exception) {
+			LOGGER.error("Could not load trending scores, starting from scratch", exception);
+		}
+		prune(landmark);
+		topVideoIds = ranking.stream().limit(topK).map(Ranked::videoId).toList();
+		LOGGER.info("Loaded {} trending scores", scores.size());
+	}
+
+	/**
+	 * Applies the buffered points and checkpoints all changes before shutdown.
+	 */
+	@PreDestroy
+	void shutdown() {
+		apply();
+		checkpoint();
+	}
+
+	private void add(String videoId, double points) {
+		Double previous = scores.get(videoId);
+		if (previous != null) {
+			ranking.remove(new Ranked(videoId, previous));
+		}
+		double score = (previous != null ? previous : 0) + points;
+		scores.put(videoId, score);
+		ranking.add(new Ranked(videoId, score));
+		changed.add(videoId);
+		dropped.remove(videoId);
+	}
+
+	/**
+	 * Drops the lowest ranked videos while their decayed score is below the
+	 * minimum or too many videos are tracked. Only dropped videos are visited.
+	 */
+	private void prune(Instant now) {
+		double decay = Math.exp(-exponent(now));
+		while (!ranking.isEmpty()
+				&& (ranking.size() > maxTracked || ranking.last().score() * decay < minScore)) {
+			String videoId = ranking.pollLast().videoId();
+			scores.remove(videoId);
+			changed.remove(videoId);
+			dropped.add(videoId);
+		}
+	}
+
+	/**
+	 * Moves the landmark to now. Every score is scaled by the same factor, so the
+	 * order of the ranking does not change.
+	 */
+	private void rebase(Instant now) {
+		double factor = Math.exp(-exponent(now));
+		NavigableSet<Ranked> rebased = new TreeSet<>(BY_SCORE);
+		scores.replaceAll((videoId, score) -> score * factor);
+		scores.forEach((videoId, score) -> rebased.add(new Ranked(videoId, score)));
+		ranking = rebased;
+		landmark = now;
+		changed.addAll(scores.keySet());
+		LOGGER.info("Rebased {} trending scores on {}", scores.size(), now);
+	}
+
+	private double exponent(Instant now) {
+		return lambda * (now.toEpochMilli() - landmark.toEpochMilli());
+	}
+
+	private synchronized int trackedCount() {
+		return scores.size();
+	}
+}
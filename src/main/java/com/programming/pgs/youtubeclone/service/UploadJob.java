@@ -0,0 +1,66 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+
+import com.programming.pgs.youtubeclone.dto.UploadJobDto;
+import com.programming.pgs.youtubeclone.dto.UploadJobStatus;
+
+import lombok.Getter;
+
+/**
+ * A video upload handed off to {@link UploadJobService}. The payload has been
+ * spooled and hashed to a local file; the mutable state is written by the worker thread and
+ * read by status requests.
+ */
+@Getter
+class UploadJob {
+
+	private final String id;
+	private final String videoId;
+	private final String filename;
+	private final String contentType;
+	private final Instant createdAt = Instant.now();
+
+	// Replaced when the media stage rewrites the spooled file
+	private volatile ContentStore.SpooledContent content;
+	private volatile UploadJobStatus status = UploadJobStatus.QUEUED;
+	private volatile int attempts;
+	private volatile String videoUrl;
+	private volatile String error;
+	private volatile Instant updatedAt = createdAt;
+
+	UploadJob(String id, String videoId, ContentStore.SpooledContent content, String filename, String contentType) {
+		this.id = id;
+		this.videoId = videoId;
+		this.content = content;
+		this.filename = filename;
+		this.contentType = contentType;
+	}
+
+	void replaceContent(ContentStore.SpooledContent content) {
+		this.content = content;
+	}
+
+	void startAttempt() {
+		attempts++;
+		status = UploadJobStatus.RUNNING;
+		updatedAt = Instant.now();
+	}
+
+	void succeed(String videoUrl) {
+		this.videoUrl = videoUrl;
+		this.error = null;
+		status = UploadJobStatus.SUCCEEDED;
+		updatedAt = Instant.now();
+	}
+
+	void fail(String error) {
+		this.error = error;
+		status = UploadJobStatus.FAILED;
+		updatedAt = Instant.now();
+	}
+
+	UploadJobDto toDto() {
+		return new UploadJobDto(id, videoId, status, attempts, videoUrl, error, createdAt, updatedAt);
+	}
+}
@@ -0,0 +1,435 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.programming.pgs.youtubeclone.dto.UploadJobDto;
+import com.programming.pgs.youtubeclone.dto.UploadVideoResponse;
+import com.programming.pgs.youtubeclone.media.MediaInfo;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs video uploads in the background so request threads are not held for the
+ * duration of the transfer to storage.
+ *
+ * <p>
+ * A request only spools and hashes its payload to a local file, creates a
+ * {@link UploadStatus#PENDING} video and submits a job. A job first runs the
+ * {@link MediaProcessor} on the spooled file, rehashing it if it was rewritten
+ * for faststart, then transfers it to storage. Jobs run on a pool of
+ * {@code video.upload.jobs.concurrency} threads behind a queue of
+ * {@code video.upload.jobs.queue-capacity} jobs; when both are full the upload
+ * is rejected with {@code 503 Service Unavailable}. A failed transfer is retried
+ * up to {@code video.upload.jobs.max-attempts} times with a linear backoff
+ * before the video is marked {@link UploadStatus#FAILED}; once the content is
+ * stored, only the update of the video is retried. The video is only marked
+ * {@link UploadStatus#READY} while it is still pending.
+ * </p>
+ * <p>
+ * Job state is kept in memory for {@code video.upload.jobs.retention} after its
+ * last change. Queue depth and running jobs are exposed as
+ * {@code video.upload.jobs.*} meters.
+ * </p>
+ * <p>
+ * Spooling is what lets the request return before the transfer, and gives
+ * deduplication, media processing and retries a complete, re-readable copy.
+ * Clients that would rather wait for the transfer than pay for the local copy
+ * can use {@link #store(InputStream, String, String, long)} instead.
+ * </p>
+ * <p>
+ * Raw streams are limited to {@code storage.s3.presigned-max-upload-size}, the
+ * same limit as direct uploads. A stream that declares a larger length is
+ * rejected up front, and one that turns out larger is stopped as soon as it
+ * passes the limit; both are answered with {@code 413 Payload Too Large}.
+ * </p>
+ */
+@Service
+public class UploadJobService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UploadJobService.class);
+
+	private final ContentStore contentStore;
+	private final FileService fileService;
+	private final MediaProcessor mediaProcessor;
+	private final VideoRepository videoRepository;
+	private final MongoTemplate mongoTemplate;
+	private final VideoCache videoCache;
+	private final VideoSearchService videoSearchService;
+	private final TagService tagService;
+	private final UserService userService;
+
+	private final ThreadPoolExecutor executor;
+	private final Cache<String, UploadJob> jobs;
+	private final Path spoolDirectory;
+	private final int maxAttempts;
+	private final Duration retryBackoff;
+	private final long maxUploadSize;
+
+	public UploadJobService(ContentStore contentStore, FileService fileService, MediaProcessor mediaProcessor,
+			VideoRepository videoRepository, MongoTemplate mongoTemplate,
+			VideoCache videoCache, VideoSearchService videoSearchService, TagService tagService,
+			UserService userService, MeterRegistry meterRegistry,
+			@Value("${video.upload.jobs.concurrency:4}") int concurrency,
+			@Value("${video.upload.jobs.queue-capacity:100}") int queueCapacity,
+			@Value("${video.upload.jobs.max-attempts:3}") int maxAttempts,
+			@Value("${video.upload.jobs.retry-backoff:2s}") Duration retryBackoff,
+			@Value("${video.upload.jobs.retention:1h}") Duration retention,
+			@Value("${video.upload.jobs.spool-directory:}") String spoolDirectory,
+			@Value("${storage.s3.presigned-max-upload-size:5GB}") DataSize maxUploadSize) throws IOException {
+		this.contentStore = contentStore;
+		this.fileService = fileService;
+		this.mediaProcessor = mediaProcessor;
+		this.videoRepository = videoRepository;
+		this.mongoTemplate = mongoTemplate;
+		this.videoCache = videoCache;
+		this.videoSearchService = videoSearchService;
+		this.tagService = tagService;
+		this.userService = userService;
+		this.maxAttempts = maxAttempts;
+		this.retryBackoff = retryBackoff;
+		this.maxUploadSize = maxUploadSize.toBytes();
+		this.spoolDirectory = Files.createDirectories(StringUtils.hasText(spoolDirectory)
+				? Path.of(spoolDirectory)
+				: Path.of(System.getProperty("java.io.tmpdir"), "youtubeclone-uploads"));
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> new Thread(runnable, "upload-job-" + threadNumber.incrementAndGet()));
+		this.jobs = Caffeine.newBuilder().expireAfterWrite(retention).build();
+
+		Gauge.builder("video.upload.jobs.queue.depth", executor, pool -> pool.getQueue().size())
+				.description("Upload jobs waiting for a worker")
+				.register(meterRegistry);
+		Gauge.builder("video.upload.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+				.description("Upload jobs currently transferring to storage")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Queues the upload of a multipart file, which is first moved to the spool
+	 * directory and hashed there.
+	 *
+	 * @param multipartFile the video file to upload
+	 * @return the queued job
+	 * @throws ResponseStatusException with {@code 503 Service Unavailable} if the
+	 *                                 job queue is full
+	 */
+	public UploadJobDto submit(MultipartFile multipartFile) {
+		Path spoolFile = createSpoolFile();
+		ContentStore.SpooledContent content;
+		try {
+			content = ContentStore.spool(multipartFile, spoolFile);
+		} catch (IOException ioException) {
+			deleteSpoolFile(spoolFile);
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"An Exception occurred while uploading the file");
+		}
+		return submit(content, multipartFile.getOriginalFilename(), multipartFile.getContentType());
+	}
+
+	/**
+	 * Queues the upload of a raw stream, which is first copied to the spool
+	 * directory. The content is hashed on the way, so the job can skip the
+	 * transfer if the same content is already stored.
+	 *
+	 * @param inputStream   the content of the video
+	 * @param filename      the original file name of the video
+	 * @param contentType   the media type of the video
+	 * @param contentLength the declared length of the video, or -1 if unknown
+	 * @return the queued job
+	 * @throws ResponseStatusException with {@code 413 Payload Too Large} if the
+	 *                                 video is larger than the upload limit, or
+	 *                                 {@code 503 Service Unavailable} if the job
+	 *                                 queue is full
+	 */
+	public UploadJobDto submit(InputStream inputStream, String filename, String contentType, long contentLength) {
+		checkUploadSize(contentLength);
+		Path spoolFile = createSpoolFile();
+		var limitedStream = new LimitedInputStream(inputStream, maxUploadSize);
+		ContentStore.SpooledContent content;
+		try {
+			content = ContentStore.spool(limitedStream, spoolFile);
+		} catch (IOException ioException) {
+			deleteSpoolFile(spoolFile);
+			throw uploadFailure(limitedStream);
+		}
+		return submit(content, filename, contentType);
+	}
+
+	/**
+	 * Stores a raw stream right away, passing it through to storage as it is read.
+	 *
+	 * <p>
+	 * Nothing is copied to the spool directory, so large videos go straight from
+	 * the request body to storage. In exchange the request is held for the whole
+	 * transfer, and the content is neither deduplicated nor processed by the
+	 * {@link MediaProcessor}; a failed transfer is not retried.
+	 * </p>
+	 *
+	 * @param inputStream   the content of the video
+	 * @param filename      the original file name of the video
+	 * @param contentType   the media type of the video
+	 * @param contentLength the length of the video, or -1 if unknown
+	 * @return an {@link UploadVideoResponse} containing the ID and URL of the video
+	 * @throws ResponseStatusException with {@code 413 Payload Too Large} if the
+	 *                                 video is larger than the upload limit, or
+	 *                                 if the transfer to storage fails
+	 */
+	public UploadVideoResponse store(InputStream inputStream, String filename, String contentType,
+			long contentLength) {
+		checkUploadSize(contentLength);
+		String userId = userService.getCurrentUser().getId();
+		var limitedStream = new LimitedInputStream(inputStream, maxUploadSize);
+		StoredFile storedFile;
+		try {
+			storedFile = fileService.store(limitedStream, filename, contentType, contentLength);
+		} catch (RuntimeException exception) {
+			// The backends wrap read failures, so the limit is checked on the stream itself
+			if (limitedStream.isLimitExceeded()) {
+				throw uploadFailure(limitedStream);
+			}
+			throw exception;
+		}
+
+		var video = new Video();
+		video.setUserId(userId);
+		video.setVideoUrl(storedFile.url());
+		video.setVideoKey(storedFile.key());
+		video.setContentType(contentType);
+		if (contentLength >= 0) {
+			video.setContentLength(contentLength);
+		}
+		video.setUploadStatus(UploadStatus.READY);
+		var savedVideo = videoRepository.save(video);
+		LOGGER.info("Streamed video {} to storage as {}", savedVideo.getId(), storedFile.key());
+
+		return new UploadVideoResponse(savedVideo.getId(), savedVideo.getVideoUrl());
+	}
+
+	/**
+	 * Returns the current state of a job.
+	 *
+	 * @param jobId the ID of the job
+	 * @return the job, or empty if it is unknown or has expired
+	 */
+	public Optional<UploadJobDto> getJob(String jobId) {
+		return Optional.ofNullable(jobs.getIfPresent(jobId)).map(UploadJob::toDto);
+	}
+
+	private UploadJobDto submit(ContentStore.SpooledContent content, String filename, String contentType) {
+		Path spoolFile = content.file();
+		long contentLength = content.contentLength();
+		var video = new Video();
+		video.setUserId(userService.getCurrentUser().getId());
+		video.setContentType(contentType);
+		video.setContentLength(contentLength);
+		video.setUploadStatus(UploadStatus.PENDING);
+		var savedVideo = videoRepository.save(video);
+
+		var job = new UploadJob(UUID.randomUUID().toString(), savedVideo.getId(), content, filename, contentType);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(() -> run(job));
+		} catch (RejectedExecutionException rejectedExecutionException) {
+			jobs.invalidate(job.getId());
+			videoRepository.deleteById(savedVideo.getId());
+			deleteSpoolFile(spoolFile);
+			LOGGER.warn("Rejected upload of {} bytes, the upload job queue is full", contentLength);
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress");
+		}
+		LOGGER.info("Queued upload job {} for video {}", job.getId(), savedVideo.getId());
+		return job.toDto();
+	}
+
+	private void run(UploadJob job) {
+		try {
+			Optional<MediaInfo> mediaInfo;
+			try {
+				mediaInfo = processMedia(job);
+			} catch (IOException ioException) {
+				LOGGER.error("Upload job {} could not rehash its rewritten file", job.getId(), ioException);
+				markFailed(job, ioException.getMessage());
+				return;
+			}
+			// Kept across attempts, so a failed update does not store the content again
+			StoredFile storedFile = null;
+			while (true) {
+				job.startAttempt();
+				jobs.put(job.getId(), job);
+				try {
+					if (storedFile == null) {
+						storedFile = store(job);
+					}
+					if (!markReady(job, storedFile, mediaInfo)) {
+						// Expired by the sweep or deleted during the transfer; nothing refers to the content
+						contentStore.release(storedFile.key());
+						job.fail("The upload expired before it was stored");
+						LOGGER.warn("Upload job {} finished after video {} stopped being pending", job.getId(),
+								job.getVideoId());
+						return;
+					}
+					videoCache.invalidate(job.getVideoId());
+					job.succeed(storedFile.url());
+					LOGGER.info("Upload job {} stored video {} after {} attempt(s)", job.getId(), job.getVideoId(),
+							job.getAttempts());
+					return;
+				} catch (IOException | RuntimeException exception) {
+					if (job.getAttempts() >= maxAttempts) {
+						LOGGER.error("Upload job {} failed after {} attempts", job.getId(), job.getAttempts(), exception);
+						if (storedFile != null) {
+							contentStore.release(storedFile.key());
+						}
+						markFailed(job, exception.getMessage());
+						return;
+					}
+					LOGGER.warn("Upload job {} failed (attempt {}), retrying", job.getId(), job.getAttempts(), exception);
+					Thread.sleep(retryBackoff.toMillis() * job.getAttempts());
+				}
+			}
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			markFailed(job, "Upload was interrupted");
+		} finally {
+			jobs.put(job.getId(), job);
+			deleteSpoolFile(job.getContent().file());
+		}
+	}
+
+	/**
+	 * Runs the media stage once, before any attempt. If it rewrote the spooled
+	 * file, the hash taken while spooling no longer addresses the content, so the
+	 * file is hashed again.
+	 */
+	private Optional<MediaInfo> processMedia(UploadJob job) throws IOException {
+		Path file = job.getContent().file();
+		MediaProcessor.ProcessedMedia processedMedia = mediaProcessor.process(file);
+		if (processedMedia.rewritten()) {
+			job.replaceContent(ContentStore.hash(file));
+		}
+		return Optional.ofNullable(processedMedia.mediaInfo());
+	}
+
+	/**
+	 * Records the stored content on the video, only if it is still pending so that
+	 * a video expired by the sweep is not brought back, and indexes the video for
+	 * search now that it can be listed.
+	 *
+	 * @return whether the video was updated
+	 */
+	private boolean markReady(UploadJob job, StoredFile storedFile, Optional<MediaInfo> mediaInfo) {
+		Update update = new Update().set("videoUrl", storedFile.url())
+				.set("videoKey", storedFile.key())
+				.set("uploadStatus", UploadStatus.READY)
+				.currentDate("lastModifiedAt");
+		mediaInfo.ifPresent(info -> update.set("durationMillis", info.durationMillis())
+				.set("width", info.width())
+				.set("height", info.height())
+				.set("videoCodec", info.videoCodec())
+				.set("audioCodec", info.audioCodec()));
+		Query pending = Query.query(Criteria.where("_id").is(job.getVideoId())
+				.and("uploadStatus").is(UploadStatus.PENDING));
+		Video video = mongoTemplate.findAndModify(pending, update, FindAndModifyOptions.options().returnNew(true),
+				Video.class);
+		if (video == null) {
+			return false;
+		}
+		videoSearchService.update(video);
+		// A pending video is not counted, so its tags are counted once it is listed
+		tagService.updateCounts(null, TagService.countedTags(video));
+		return true;
+	}
+
+	private StoredFile store(UploadJob job) throws IOException {
+		return contentStore.store(job.getContent(), job.getFilename(), job.getContentType());
+	}
+
+	private void markFailed(UploadJob job, String error) {
+		job.fail(error);
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getVideoId())),
+				Update.update("uploadStatus", UploadStatus.FAILED), Video.class);
+		videoCache.invalidate(job.getVideoId());
+	}
+
+	private void checkUploadSize(long contentLength) {
+		if (contentLength > maxUploadSize) {
+			throw payloadTooLarge();
+		}
+	}
+
+	private ResponseStatusException uploadFailure(LimitedInputStream limitedStream) {
+		if (limitedStream.isLimitExceeded()) {
+			LOGGER.warn("Stopped an upload that went past {} bytes", maxUploadSize);
+			return payloadTooLarge();
+		}
+		return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+				"An Exception occurred while uploading the file");
+	}
+
+	private ResponseStatusException payloadTooLarge() {
+		return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+				"Videos can be at most " + maxUploadSize + " bytes");
+	}
+
+	private Path createSpoolFile() {
+		try {
+			return Files.createTempFile(spoolDirectory, "upload-", ".part");
+		} catch (IOException ioException) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"An Exception occurred while uploading the file");
+		}
+	}
+
+	private void deleteSpoolFile(Path spoolFile) {
+		try {
+			Files.deleteIfExists(spoolFile);
+		} catch (IOException ioException) {
+			LOGGER.warn("Could not delete spooled upload {}", spoolFile, ioException);
+		}
+	}
+
+	/**
+	 * Stops accepting jobs and waits for running ones to finish.
+	 */
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+			LOGGER.warn("{} upload jobs were still running at shutdown", executor.getActiveCount());
+			executor.shutdownNow();
+		}
+	}
+}
@@ -1,128 +1,44 @@
 package com.programming.pgs.youtubeclone.service;
 
-import java.util.Set;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 
+import com.programming.pgs.youtubeclone.dto.CursorPage;
 import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.model.WatchHistory;
 import com.programming.pgs.youtubeclone.repository.UserRepository;
 
 import lombok.RequiredArgsConstructor;
 
 /**
- * Service class for handling user-related operations such as managing liked videos, disliked videos, subscriptions, and video history.
+ * Service class for handling user-related operations such as managing subscriptions and video history.
  */
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final WatchHistoryService watchHistoryService;
+    private final SubscriptionService subscriptionService;
     private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
 
     /**
      * Retrieves the current authenticated user based on the JWT token.
+     * <p>
+     * The lookup goes through the {@link CurrentUserResolver}, so the user is
+     * fetched from the database at most once per request.
+     * </p>
      * 
      * @return the current authenticated user.
      * @throws IllegalArgumentException if the user cannot be found.
      */
     public User getCurrentUser() {
         String sub = ((Jwt) (SecurityContextHolder.getContext().getAuthentication().getPrincipal())).getClaim("sub");
-
-        LOGGER.debug("Fetching user with sub: {}", sub);
-        
-        return this.userRepository.findBySub(sub)
-                .orElseThrow(() -> {
-                    LOGGER.error("Cannot find user with sub - {}", sub);
-                    return new IllegalArgumentException("Cannot find user with sub - " + sub);
-                });
-    }
-
-    /**
-     * Adds a video to the liked videos list of the current user.
-     * 
-     * @param videoId the ID of the video to like.
-     */
-    public void addToLikedVideos(String videoId) {
-        User currentUser = getCurrentUser();
-        LOGGER.info("Adding video with ID {} to liked videos of user {}", videoId, currentUser.getId());
-        currentUser.addToLikeVideos(videoId);
-        this.userRepository.save(currentUser);
-    }
-
-    /**
-     * Checks if the current user has liked the specified video.
-     * 
-     * @param videoId the ID of the video to check.
-     * @return true if the video is liked by the user, false otherwise.
-     */
-    public boolean isLikedVideo(String videoId) {
-        boolean isLiked = getCurrentUser().getLikedVideos().stream().anyMatch(likedVideo -> likedVideo.equals(videoId));
-        LOGGER.debug("Is video with ID {} liked by the current user? {}", videoId, isLiked);
-        return isLiked;
-    }
-
-    /**
-     * Checks if the current user has disliked the specified video.
-     * 
-     * @param videoId the ID of the video to check.
-     * @return true if the video is disliked by the user, false otherwise.
-     */
-    public boolean isDislikedVideo(String videoId) {
-        boolean isDisliked = getCurrentUser().getDisLikedVideos().stream().anyMatch(likedVideo -> likedVideo.equals(videoId));
-        LOGGER.debug("Is video with ID {} disliked by the current user? {}", videoId, isDisliked);
-        return isDisliked;
-    }
-
-    /**
-     * Removes a video from the liked videos list of the current user.
-     * 
-     * @param videoId the ID of the video to remove from liked videos.
-     */
-    public void removeFromLikedVideos(String videoId) {
-        User currentUser = getCurrentUser();
-        LOGGER.info("Removing video with ID {} from liked videos of user {}", videoId, currentUser.getId());
-        currentUser.removeFromLikedVideos(videoId);
-        this.userRepository.save(currentUser);
-    }
-
-    /**
-     * Removes a video from the disliked videos list of the current user.
-     * 
-     * @param videoId the ID of the video to remove from disliked videos.
-     */
-    public void removeFromDislikedVideos(String videoId) {
-        User currentUser = getCurrentUser();
-        LOGGER.info("Removing video with ID {} from disliked videos of user {}", videoId, currentUser.getId());
-        currentUser.removeFromDislikedVideos(videoId);
-        this.userRepository.save(currentUser);
-    }
-
-    /**
-     * Adds a video to the disliked videos list of the current user.
-     * 
-     * @param videoId the ID of the video to dislike.
-     */
-    public void addToDislikedVideos(String videoId) {
-        User currentUser = getCurrentUser();
-        LOGGER.info("Adding video with ID {} to disliked videos of user {}", videoId, currentUser.getId());
-        currentUser.addToDislikedVideos(videoId);
-        this.userRepository.save(currentUser);
-    }
-
-    /**
-     * Adds a video to the current user's viewing history.
-     * 
-     * @param videoId the ID of the video to add to the history.
-     */
-    public void addVideoToHistory(String videoId) {
-        User currentUser = getCurrentUser();
-        LOGGER.info("Adding video with ID {} to history of user {}", videoId, currentUser.getId());
-        currentUser.addToVideoHistory(videoId);
-        this.userRepository.save(currentUser);
+        return this.currentUserResolver.resolve(sub);
     }
 
     /**
@@ -133,13 +49,7 @@ public class UserService {
     public void subscribeUser(String userId) {
         User currentUser = getCurrentUser();
         LOGGER.info("User {} is subscribing to user {}", currentUser.getId(), userId);
-        currentUser.addToSubscribedToUsers(userId);
-
-        User user = getUserById(userId);
-        user.addToSubscribers(currentUser.getId());
-
-        this.userRepository.save(currentUser);
-        this.userRepository.save(user);
+        this.subscriptionService.subscribe(currentUser.getId(), userId);
     }
 
     /**
@@ -150,51 +60,67 @@ public class UserService {
     public void unSubscribeUser(String userId) {
         User currentUser = getCurrentUser();
         LOGGER.info("User {} is unsubscribing from user {}", currentUser.getId(), userId);
-        currentUser.removeFromSubscribedToUsers(userId);
-
-        User user = getUserById(userId);
-        user.removeFromSubscribers(currentUser.getId());
+        this.subscriptionService.unsubscribe(currentUser.getId(), userId);
+    }
 
-        this.userRepository.save(currentUser);
-        this.userRepository.save(user);
+    /**
+     * Retrieves one page of the subscribers of a user, most recent first.
+     *
+     * @param userId the unique identifier of the user
+     * @param after  the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit  the requested page size, or {@code null} for the default
+     * @return a page of subscriber IDs
+     * @throws IllegalArgumentException if the user with the specified ID does not exist
+     */
+    public CursorPage<String> userSubscribers(String userId, String after, Integer limit) {
+        requireUser(userId);
+        return this.subscriptionService.getSubscribers(userId, after, limit);
     }
 
     /**
-     * Retrieves a user by their ID.
-     * 
-     * @param userId the ID of the user to retrieve.
-     * @return the user with the specified ID.
-     * @throws IllegalArgumentException if the user cannot be found.
+     * Retrieves one page of the users a user is subscribed to, most recent first.
+     *
+     * @param userId the unique identifier of the user
+     * @param after  the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit  the requested page size, or {@code null} for the default
+     * @return a page of followed user IDs
+     * @throws IllegalArgumentException if the user with the specified ID does not exist
      */
-    private User getUserById(String userId) {
-        LOGGER.debug("Fetching user with ID: {}", userId);
-        return this.userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    LOGGER.error("Cannot find user with userId {}", userId);
-                    return new IllegalArgumentException("Cannot find user with userId " + userId);
-                });
+    public CursorPage<String> userSubscriptions(String userId, String after, Integer limit) {
+        requireUser(userId);
+        return this.subscriptionService.getSubscriptions(userId, after, limit);
+    }
+
+    private void requireUser(String userId) {
+        if (!this.userRepository.existsById(userId)) {
+            LOGGER.error("Cannot find user with userId {}", userId);
+            throw new IllegalArgumentException("Cannot find user with userId " + userId);
+        }
     }
 
     /**
-     * Retrieves the video watch history for a specific user.
+     * Retrieves one page of the video watch history of a specific user.
      *
      * <p>
-     * This method fetches the {@link User} by ID and returns the set of video IDs
-     * that represent the user's watch history.
+     * The history is read from the watch history store, most recent first, and
+     * only the IDs of the watched videos are returned.
      * </p>
      *
      * @param userId the unique identifier of the user
-     * @return a {@link Set} of video IDs representing the user's watch history
+     * @param after  the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit  the requested page size, or {@code null} for the default
+     * @return a page of video IDs representing the user's watch history
      * @throws IllegalArgumentException if the user with the specified ID does not exist
      */
-    public Set<String> userHistory(String userId) {
+    public CursorPage<String> userHistory(String userId, String after, Integer limit) {
         LOGGER.info("Fetching video history for user ID: {}", userId);
-        
-        User user = getUserById(userId);
-        Set<String> history = user.getVideoHistory();
-        
-        LOGGER.debug("User ID: {} has {} videos in watch history", userId, history.size());
-        return history;
+
+        requireUser(userId);
+        CursorPage<WatchHistory> history = this.watchHistoryService.getHistory(userId, after, limit);
+
+        LOGGER.debug("Returning {} watch history entries of user ID: {}", history.getItems().size(), userId);
+        return new CursorPage<>(history.getItems().stream().map(WatchHistory::getVideoId).toList(),
+                history.getNextCursor());
     }
 
 }
@@ -0,0 +1,102 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Near-cache of {@link Video} documents for the read paths.
+ *
+ * <p>
+ * Videos are kept in a bounded, size-evicting cache with a short TTL. Concurrent
+ * misses for the same video are coalesced into a single load: the first caller
+ * reads the document while the others wait for its result, so a video that
+ * suddenly gets popular costs one query per TTL instead of one per request.
+ * Missing videos are not cached.
+ * </p>
+ * <p>
+ * Every service that writes a video invalidates it here. The TTL bounds how
+ * stale a video can be when it is written by another instance. Cached videos
+ * are shared and must not be modified; write paths read the document from the
+ * repository instead.
+ * </p>
+ * <p>
+ * Cache statistics are published to Micrometer as {@code cache.*} meters tagged
+ * {@code cache=video}, including hits, misses and evictions; load latencies are
+ * recorded by {@code video.cache.load}.
+ * </p>
+ */
+@Component
+public class VideoCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoCache.class);
+
+	private final VideoRepository videoRepository;
+	private final Cache<String, Video> videosById;
+	private final Timer loadTimer;
+
+	public VideoCache(VideoRepository videoRepository, MeterRegistry meterRegistry,
+			@Value("${video.cache.maximum-size:10000}") long maximumSize,
+			@Value("${video.cache.ttl:30s}") Duration ttl) {
+		this.videoRepository = videoRepository;
+		this.videosById = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.loadTimer = Timer.builder("video.cache.load")
+				.description("Time to load a video into the near-cache")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		CaffeineCacheMetrics.monitor(meterRegistry, videosById, "video");
+	}
+
+	/**
+	 * Returns a video, loading it from the database if it is not cached.
+	 *
+	 * @param videoId the ID of the video
+	 * @return the cached video, which must not be modified
+	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 */
+	public Video get(String videoId) {
+		return videosById.get(videoId, this::load);
+	}
+
+	/**
+	 * Drops a video after it has been written.
+	 *
+	 * @param videoId the ID of the video that was modified
+	 */
+	public void invalidate(String videoId) {
+		videosById.invalidate(videoId);
+	}
+
+	/**
+	 * Drops several videos after they have been written.
+	 *
+	 * @param videoIds the IDs of the videos that were modified
+	 */
+	public void invalidateAll(Iterable<String> videoIds) {
+		videosById.invalidateAll(videoIds);
+	}
+
+	private Video load(String videoId) {
+		LOGGER.debug("Loading video {} into the cache", videoId);
+		return loadTimer.record(() -> videoRepository.findById(videoId).orElseThrow(() -> {
+			LOGGER.error("Video not found for ID: {}", videoId);
+			return new IllegalArgumentException("Cannot find video by id - " + videoId);
+		}));
+	}
+}
@@ -0,0 +1,169 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+import com.programming.pgs.youtubeclone.search.InvertedIndex;
+import com.programming.pgs.youtubeclone.search.MinHashIndex;
+import com.programming.pgs.youtubeclone.search.SearchHit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Full-text search over the title, description and tags of listed videos, and
+ * "more like this" lookups by title and tags. Like the catalog, only
+ * {@link VideoStatus#PUBLIC} videos whose upload is neither pending nor failed
+ * are listed.
+ *
+ * <p>
+ * Videos are held in an {@link InvertedIndex} and a {@link MinHashIndex} that
+ * are built in the background
+ * once the application is ready, from a cursor over the listed videos that
+ * only reads the indexed fields. Until the build has completed,
+ * searches are answered with {@code 503 Service Unavailable}. Afterwards the
+ * indexes are kept current by {@link #update(Video)}, which is called whenever
+ * a video is edited or its upload completes; videos that stop being listed are
+ * removed. Changes made by other instances are only picked up by the next build.
+ * </p>
+ * <p>
+ * The number of indexed videos is exposed as {@code video.search.documents},
+ * and the latency of searches as {@code video.search.queries}.
+ * </p>
+ */
+@Service
+public class VideoSearchService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoSearchService.class);
+
+	private final MongoTemplate mongoTemplate;
+	private final InvertedIndex index = new InvertedIndex();
+	private final MinHashIndex similarityIndex = new MinHashIndex();
+	private final Timer queryTimer;
+	private volatile boolean ready;
+
+	public VideoSearchService(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+		this.mongoTemplate = mongoTemplate;
+		this.queryTimer = Timer.builder("video.search.queries")
+				.description("Latency of full-text video searches")
+				.register(meterRegistry);
+		Gauge.builder("video.search.documents", index, InvertedIndex::size)
+				.description("Videos in the full-text search index")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Starts building the index from all public videos.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void buildIndex() {
+		Thread builder = new Thread(this::build, "search-index-build");
+		builder.setDaemon(true);
+		builder.start();
+	}
+
+	/**
+	 * Searches the public videos.
+	 *
+	 * @param query the query text
+	 * @param limit the maximum number of results
+	 * @return the IDs of the matching videos, most relevant first
+	 * @throws ResponseStatusException with {@code 503 Service Unavailable} while
+	 *                                 the index is being built
+	 */
+	public List<String> search(String query, int limit) {
+		checkReady();
+		return queryTimer.record(() -> index.search(query, limit).stream().map(SearchHit::documentId).toList());
+	}
+
+	/**
+	 * Completes the last word of a partial query.
+	 *
+	 * @param query the partial query
+	 * @param limit the maximum number of suggestions
+	 * @return the completed queries, most frequent completion first
+	 * @throws ResponseStatusException with {@code 503 Service Unavailable} while
+	 *                                 the index is being built
+	 */
+	public List<String> suggest(String query, int limit) {
+		checkReady();
+		return index.suggest(query, limit);
+	}
+
+	/**
+	 * Finds the public videos whose title and tags are most similar to those of a
+	 * public video.
+	 *
+	 * @param videoId the ID of the video
+	 * @param limit   the maximum number of results
+	 * @return the IDs of the similar videos, most similar first; empty if the
+	 *         video is not public
+	 * @throws ResponseStatusException with {@code 503 Service Unavailable} while
+	 *                                 the index is being built
+	 */
+	public List<String> similarTo(String videoId, int limit) {
+		checkReady();
+		return similarityIndex.similarTo(videoId, limit).stream().map(SearchHit::documentId).toList();
+	}
+
+	/**
+	 * Indexes the current state of a video after it was saved, or removes it if it
+	 * is not listed.
+	 *
+	 * @param video the saved video
+	 */
+	public void update(Video video) {
+		long version = versionOf(video);
+		if (VideoService.isListed(video)) {
+			index.put(video.getId(), version, video.getTitle(), video.getDescription(), video.getTags());
+			similarityIndex.put(video.getId(), version, video.getTitle(), video.getTags());
+		} else {
+			index.remove(video.getId(), version);
+			similarityIndex.remove(video.getId(), version);
+		}
+	}
+
+	private void build() {
+		long start = System.nanoTime();
+		Query query = Query.query(VideoService.listed());
+		query.fields().include("_id", "title", "description", "tags", "lastModifiedAt");
+		try (Stream<Video> videos = mongoTemplate.stream(query, Video.class)) {
+			videos.forEach(video -> {
+				index.put(video.getId(), versionOf(video), video.getTitle(), video.getDescription(), video.getTags());
+				similarityIndex.put(video.getId(), versionOf(video), video.getTitle(), video.getTags());
+			});
+			// The build no longer puts older versions, so removed videos can be forgotten
+			index.clearTombstones();
+			similarityIndex.clearTombstones();
+			ready = true;
+			LOGGER.info("Indexed {} videos for search in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+		} catch (RuntimeException exception) {
+			LOGGER.error("Could not build the search index", exception);
+		}
+	}
+
+	private void checkReady() {
+		if (!ready) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The search index is being built");
+		}
+	}
+
+	private static long versionOf(Video video) {
+		Instant lastModifiedAt = video.getLastModifiedAt();
+		return lastModifiedAt != null ? lastModifiedAt.toEpochMilli() : Long.MIN_VALUE;
+	}
+}
@@ -1,18 +1,47 @@
 package com.programming.pgs.youtubeclone.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
-import com.programming.pgs.youtubeclone.dto.CommentDto;
-import com.programming.pgs.youtubeclone.dto.UploadVideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
 import com.programming.pgs.youtubeclone.dto.VideoDto;
-import com.programming.pgs.youtubeclone.model.Comment;
+import com.programming.pgs.youtubeclone.dto.VideoField;
+import com.programming.pgs.youtubeclone.event.VideoEventPipeline;
+import com.programming.pgs.youtubeclone.event.VideoViewed;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+import com.programming.pgs.youtubeclone.model.ThumbnailRendition;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
 import com.programming.pgs.youtubeclone.model.Video;
-import com.programming.pgs.youtubeclone.repository.VideoRepository;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+import com.programming.pgs.youtubeclone.model.WatchHistory;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+import com.programming.pgs.youtubeclone.util.ResourceVersion;
 
 import lombok.RequiredArgsConstructor;
 
@@ -20,120 +49,161 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class VideoService {
 
-	private final S3Service s3Service;
-	private final VideoRepository videoRepository;
+	private final ContentStore contentStore;
+	private final ThumbnailService thumbnailService;
+	private final VideoCache videoCache;
 	private final UserService userService;
+	private final ViewCountAggregator viewCountAggregator;
+	private final ReactionService reactionService;
+	private final MongoTemplate mongoTemplate;
+	private final ObjectMapper objectMapper;
+	private final WatchHistoryService watchHistoryService;
+	private final VideoEventPipeline videoEventPipeline;
+	private final TrendingService trendingService;
+	private final VideoSearchService videoSearchService;
+	private final TagService tagService;
+	private final RecommendationService recommendationService;
+	private final FeedService feedService;
+	private final SubscriptionService subscriptionService;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(VideoService.class);
-
-	/**
-	 * Uploads a video file to the storage service and saves a new Video entity in
-	 * the database.
-	 *
-	 * @param multipartFile the video file to upload
-	 * @return an {@link UploadVideoResponse} containing the ID and URL of the
-	 *         uploaded video
-	 * @throws RuntimeException if the file upload fails or saving the video fails
-	 */
-	public UploadVideoResponse uploadVideo(MultipartFile multipartFile) {
-
-		LOGGER.info("Starting video upload...");
-		String videoUrl = s3Service.uploadFile(multipartFile);
-		LOGGER.debug("Video uploaded to S3 with URL: {}", videoUrl);
-
-		var video = new Video();
-		video.setVideoUrl(videoUrl);
-
-		var savedVideo = videoRepository.save(video);
-		LOGGER.info("Video entity saved with ID: {}", savedVideo.getId());
-
-		return new UploadVideoResponse(savedVideo.getId(), savedVideo.getVideoUrl());
-
-	}
+	private static final int STREAM_BATCH_SIZE = 500;
+	// The document fields that determine the version of a video representation
+	private static final String[] VERSION_FIELDS = { "_id", "lastModifiedAt", "uploadStatus", "likes", "disLikes",
+			"viewCount", "commentCount" };
 
 	/**
 	 * Updates the metadata of an existing video based on the provided
 	 * {@link VideoDto}.
 	 *
 	 * <p>
-	 * It retrieves the video by its ID, updates its fields (title, description,
-	 * tags, thumbnail URL, and status), and saves the updated entity in the
-	 * database.
+	 * Only the edited fields (title, description, tags, thumbnail URL, and status)
+	 * are set, with a single {@code findAndModify} that returns the previous tags.
+	 * The rest of the document is not written, so counters incremented and upload
+	 * results recorded while the edit is in flight are kept.
 	 * </p>
 	 *
 	 * @param videoDto the data transfer object containing the updated video
 	 *                 information
 	 * @return the same {@link VideoDto} that was passed in, reflecting the updated
 	 *         values
-	 * @throws RuntimeException if the video is not found
+	 * @throws IllegalArgumentException if the video is not found
 	 */
 	public VideoDto editVideo(VideoDto videoDto) {
 		LOGGER.info("Editing video metadata for ID: {}", videoDto.getId());
-		var savedVideo = getVideoById(videoDto.getId());
-
-		savedVideo.setTitle(videoDto.getTitle());
-		savedVideo.setDescription(videoDto.getDescription());
-		savedVideo.setTags(videoDto.getTags());
-		savedVideo.setThumbnailUrl(videoDto.getThumbnailUrl());
-		savedVideo.setVideoStatus(videoDto.getVideoStatus());
-
-		videoRepository.save(savedVideo);
+		Instant now = Instant.now();
+		Update update = new Update().set("title", videoDto.getTitle())
+				.set("description", videoDto.getDescription())
+				.set("tags", videoDto.getTags())
+				.set("thumbnailUrl", videoDto.getThumbnailUrl())
+				.set("videoStatus", videoDto.getVideoStatus())
+				.set("lastModifiedAt", now);
+		Video video = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(videoDto.getId())), update,
+				Video.class);
+		if (video == null) {
+			throw videoNotFound(videoDto.getId());
+		}
+		var previousTags = TagService.countedTags(video);
+
+		// Apply the edit to the previous state for the in-memory indexes
+		video.setTitle(videoDto.getTitle());
+		video.setDescription(videoDto.getDescription());
+		video.setTags(videoDto.getTags());
+		video.setThumbnailUrl(videoDto.getThumbnailUrl());
+		video.setVideoStatus(videoDto.getVideoStatus());
+		video.setLastModifiedAt(now);
+
+		videoCache.invalidate(videoDto.getId());
+		videoSearchService.update(video);
+		tagService.updateCounts(previousTags, TagService.countedTags(video));
 		LOGGER.info("Video metadata updated for ID: {}", videoDto.getId());
 
 		return videoDto;
 	}
 
 	/**
-	 * Retrieves a {@link Video} entity from the database by its ID.
+	 * Uploads a thumbnail image for a given video, stores its resized renditions,
+	 * and sets them on the video. The thumbnail URL of the video points at the
+	 * largest rendition; the original image is not kept.
 	 *
 	 * <p>
-	 * If the video is not found, this method throws an
-	 * {@link IllegalArgumentException}.
+	 * Only the thumbnail fields are set, with a single {@code findAndModify} that
+	 * returns the previous renditions, so counters incremented meanwhile are kept.
 	 * </p>
 	 *
-	 * @param videoId the unique identifier of the video
-	 * @return the {@link Video} object corresponding to the given ID
-	 * @throws IllegalArgumentException if no video is found with the specified ID
-	 */
-	Video getVideoById(String videoId) {
-		LOGGER.debug("Fetching video by ID: {}", videoId);
-		return videoRepository.findById(videoId).orElseThrow(() -> {
-			LOGGER.error("Video not found for ID: {}", videoId);
-			return new IllegalArgumentException("Cannot find video by id - " + videoId);
-		});
-	}
-
-	/**
-	 * Uploads a thumbnail image for a given video, updates the video's thumbnail
-	 * URL, and saves the updated video in the repository.
-	 *
 	 * @param file    the thumbnail image file to upload
 	 * @param videoId the ID of the video to associate the thumbnail with
-	 * @return the URL of the uploaded thumbnail
-	 * @throws RuntimeException if the video is not found or the file upload fails
+	 * @return the URL of the largest rendition of the thumbnail
+	 * @throws IllegalArgumentException if the video is not found
+	 * @throws RuntimeException if the file upload fails
 	 */
 	public String uploadThumbnail(MultipartFile file, String videoId) {
 
 		LOGGER.info("Uploading thumbnail for video ID: {}", videoId);
-		var savedVideo = getVideoById(videoId);
-
-		String thumbnailUrl = s3Service.uploadFile(file);
-		LOGGER.debug("Thumbnail uploaded to S3 with URL: {}", thumbnailUrl);
+		Query byId = Query.query(Criteria.where("_id").is(videoId));
+		if (!mongoTemplate.exists(byId, Video.class)) {
+			throw videoNotFound(videoId);
+		}
 
-		savedVideo.setThumbnailUrl(thumbnailUrl);
-		videoRepository.save(savedVideo);
+		List<ThumbnailRendition> renditions = thumbnailService.createRenditions(file);
+		ThumbnailRendition largest = renditions.get(renditions.size() - 1);
+		LOGGER.debug("Thumbnail stored in {} renditions, largest at {}", renditions.size(), largest.getUrl());
+
+		Update update = new Update().set("thumbnailUrl", largest.getUrl())
+				.set("thumbnailKey", largest.getKey())
+				.set("thumbnails", renditions)
+				.currentDate("lastModifiedAt");
+		Video previousVideo;
+		try {
+			previousVideo = mongoTemplate.findAndModify(byId, update, Video.class);
+		} catch (RuntimeException exception) {
+			// Nothing refers to the new renditions
+			renditions.forEach(rendition -> contentStore.release(rendition.getKey()));
+			throw exception;
+		}
+		if (previousVideo == null) {
+			// Deleted while the renditions were stored
+			renditions.forEach(rendition -> contentStore.release(rendition.getKey()));
+			throw videoNotFound(videoId);
+		}
+		videoCache.invalidate(videoId);
+		// Every stored rendition added a reference, so the previous ones are released even if unchanged
+		thumbnailKeys(previousVideo).forEach(contentStore::release);
 		LOGGER.info("Thumbnail URL updated for video ID: {}", videoId);
 
-		return thumbnailUrl;
+		return largest.getUrl();
+	}
+
+	private static IllegalArgumentException videoNotFound(String videoId) {
+		LOGGER.error("Video not found for ID: {}", videoId);
+		return new IllegalArgumentException("Cannot find video by id - " + videoId);
+	}
+
+	/** Returns the keys of the stored objects referenced by the thumbnail of a video. */
+	private static List<String> thumbnailKeys(Video video) {
+		if (video.getThumbnails() != null && !video.getThumbnails().isEmpty()) {
+			return video.getThumbnails().stream().map(ThumbnailRendition::getKey).toList();
+		}
+		return video.getThumbnailKey() != null ? List.of(video.getThumbnailKey()) : List.of();
+	}
+
+	private static SortedMap<Integer, String> thumbnailUrls(Video video) {
+		if (video.getThumbnails() == null) {
+			return null;
+		}
+		return video.getThumbnails().stream().collect(Collectors.toMap(ThumbnailRendition::getWidth,
+				ThumbnailRendition::getUrl, (first, second) -> first, TreeMap::new));
 	}
 
 	/**
 	 * Retrieves detailed information about a video as a {@link VideoDto}.
 	 *
 	 * <p>
-	 * This method fetches the {@link Video} entity by its ID, increments the view
-	 * count, adds the video to the user's history, maps its fields to a
-	 * {@link VideoDto}, and returns the DTO containing the video's metadata.
+	 * This method fetches the {@link Video} entity by its ID, publishes a
+	 * {@link VideoViewed} event, maps its fields to a {@link VideoDto}, and returns
+	 * the DTO containing the video's metadata. The view count and the user's
+	 * history are updated in the background by the {@link VideoEventPipeline}. The
+	 * returned view count includes views that are still buffered.
 	 * </p>
 	 *
 	 * @param videoId the unique identifier of the video
@@ -144,33 +214,72 @@ public class VideoService {
 	public VideoDto getVideoDetails(String videoId) {
 		LOGGER.info("Fetching video details for video ID: {}", videoId);
 
-		Video savedVideo = getVideoById(videoId);
+		Video savedVideo = videoCache.get(videoId);
 
-		increaseVideoCount(savedVideo);
-		userService.addVideoToHistory(videoId);
+		recordView(videoId);
 		LOGGER.debug("Returning video details for video ID: {}", videoId);
 
-		return mapToVideoDto(savedVideo);
+		VideoDto videoDto = mapToVideoDto(savedVideo);
+		videoDto.setViewCount((int) (videoDto.getViewCount() + viewCountAggregator.getPendingViews(videoId)));
+		return videoDto;
 	}
 
 	/**
-	 * Increments the view count of the provided video and saves the updated video.
-	 * 
-	 * This method updates the view count of a video and persists the changes in the
-	 * repository. The view count is incremented by calling the
-	 * `incrementViewCount()` method on the `Video` object.
-	 * 
-	 * @param savedVideo the video whose view count is to be incremented.
+	 * Publishes a {@link VideoViewed} event for the current user.
+	 *
+	 * @param videoId the ID of the viewed video
 	 */
-	private void increaseVideoCount(Video savedVideo) {
-		LOGGER.info("Incrementing view count for video with ID: {}", savedVideo.getId());
+	public void recordView(String videoId) {
+		videoEventPipeline.publish(new VideoViewed(userService.getCurrentUser().getId(), videoId, Instant.now()));
+	}
 
-		savedVideo.incrementViewCount();
+	/**
+	 * Reads the version of the details of a video from the {@link VideoCache}.
+	 *
+	 * <p>
+	 * The entity tag covers the metadata and the stored counters; views that are
+	 * still buffered are not included, so revalidations within a flush interval
+	 * are answered with {@code 304 Not Modified}. {@code Last-Modified} only
+	 * tracks changes to the metadata, so clients that need current counters
+	 * should revalidate with {@code If-None-Match}.
+	 * </p>
+	 *
+	 * @param videoId the ID of the video
+	 * @return the version of the video details
+	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 */
+	public ResourceVersion getVideoVersion(String videoId) {
+		Video video = videoCache.get(videoId);
+		return ResourceVersion.of(video.getLastModifiedAt(), versionOf(video));
+	}
 
-		LOGGER.debug("New view count for video with ID {}: {}", savedVideo.getId(), savedVideo.getViewCount());
+	/**
+	 * Reads the version of one page of the video catalog. Only the fields that
+	 * change the version are read, so an unchanged page can be revalidated
+	 * without reading the requested fields.
+	 *
+	 * @param after the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit the requested page size, or {@code null} for the default
+	 * @return the version of the page, whose last modification is the latest of its videos
+	 * @see #getAllVideos(String, Integer, Set)
+	 */
+	public ResourceVersion getCatalogVersion(String after, Integer limit) {
+		Query query = catalogPageQuery(after, limit);
+		query.fields().include(VERSION_FIELDS);
+		List<Video> videos = mongoTemplate.find(query, Video.class);
+
+		Instant lastModified = videos.stream()
+				.map(Video::getLastModifiedAt)
+				.filter(Objects::nonNull)
+				.max(Instant::compareTo)
+				.orElse(null);
+		return ResourceVersion.of(lastModified, videos.stream().map(VideoService::versionOf).toArray());
+	}
 
-		this.videoRepository.save(savedVideo);
-		LOGGER.info("Video with ID {} successfully updated with new view count.", savedVideo.getId());
+	private static String versionOf(Video video) {
+		return video.getId() + ":" + video.getLastModifiedAt() + ":" + video.getUploadStatus() + ":"
+				+ video.getLikes() + ":" + video.getDisLikes() + ":" + video.getViewCount() + ":"
+				+ video.getCommentCount();
 	}
 
 	/**
@@ -179,31 +288,17 @@ public class VideoService {
 	 * <p>
 	 * If the user has already liked the video, it removes the like. If the user had
 	 * previously disliked the video, it removes the dislike and adds a like. If the
-	 * user had neither liked nor disliked the video, it simply adds a like.
+	 * user had neither liked nor disliked the video, it simply adds a like. The
+	 * transition and the counter update are applied atomically by the
+	 * {@link ReactionService}.
 	 * </p>
 	 *
 	 * @param videoId the ID of the video to be liked
 	 * @return a {@link VideoDto} representing the updated video information
 	 */
 	public VideoDto likeVideo(String videoId) {
-		Video videoById = getVideoById(videoId);
-
-		if (userService.isLikedVideo(videoId)) {
-			videoById.decrementLikes();
-			userService.removeFromLikedVideos(videoId);
-		} else if (userService.isDislikedVideo(videoId)) {
-			videoById.decrementDisLikes();
-			userService.removeFromDislikedVideos(videoId);
-			videoById.incrementLikes();
-			userService.addToLikedVideos(videoId);
-		} else {
-			videoById.incrementLikes();
-			userService.addToLikedVideos(videoId);
-		}
-
-		this.videoRepository.save(videoById);
-
-		return mapToVideoDto(videoById);
+		var currentUser = userService.getCurrentUser();
+		return mapToVideoDto(reactionService.react(currentUser.getId(), videoId, ReactionType.LIKE));
 	}
 
 	/**
@@ -212,31 +307,17 @@ public class VideoService {
 	 * If the user has already disliked the video, it removes the dislike.<br>
 	 * If the user had previously liked the video, it removes the like and adds a
 	 * dislike.<br>
-	 * If the user had no prior reaction, it simply adds a dislike.
+	 * If the user had no prior reaction, it simply adds a dislike.<br>
+	 * The transition and the counter update are applied atomically by the
+	 * {@link ReactionService}.
 	 * </p>
 	 *
 	 * @param videoId the ID of the video to dislike
 	 * @return a {@link VideoDto} containing the updated video data
 	 */
 	public VideoDto disLikeVideo(String videoId) {
-		Video videoById = getVideoById(videoId);
-
-		if (userService.isDislikedVideo(videoId)) {
-			videoById.decrementDisLikes();
-			userService.removeFromDislikedVideos(videoId);
-		} else if (userService.isLikedVideo(videoId)) {
-			videoById.decrementLikes();
-			userService.removeFromLikedVideos(videoId);
-			videoById.incrementDisLikes();
-			userService.addToDislikedVideos(videoId);
-		} else {
-			videoById.incrementDisLikes();
-			userService.addToDislikedVideos(videoId);
-		}
-
-		videoRepository.save(videoById);
-
-		return mapToVideoDto(videoById);
+		var currentUser = userService.getCurrentUser();
+		return mapToVideoDto(reactionService.react(currentUser.getId(), videoId, ReactionType.DISLIKE));
 	}
 
 	/**
@@ -249,6 +330,12 @@ public class VideoService {
 		VideoDto videoDto = new VideoDto();
 		videoDto.setVideoUrl(videoById.getVideoUrl());
 		videoDto.setThumbnailUrl(videoById.getThumbnailUrl());
+		videoDto.setThumbnails(thumbnailUrls(videoById));
+		videoDto.setDurationMillis(videoById.getDurationMillis());
+		videoDto.setWidth(videoById.getWidth());
+		videoDto.setHeight(videoById.getHeight());
+		videoDto.setVideoCodec(videoById.getVideoCodec());
+		videoDto.setAudioCodec(videoById.getAudioCodec());
 		videoDto.setId(videoById.getId());
 		videoDto.setTitle(videoById.getTitle());
 		videoDto.setDescription(videoById.getDescription());
@@ -257,118 +344,254 @@ public class VideoService {
 		videoDto.setLikeCount(videoById.getLikes().get());
 		videoDto.setDislikeCount(videoById.getDisLikes().get());
 		videoDto.setViewCount(videoById.getViewCount().get());
+		videoDto.setCommentCount(videoById.getCommentCount().get());
 		videoDto.setCreatedAt(videoById.getCreatedAt());
 		videoDto.setLastModifiedAt(videoById.getLastModifiedAt());
 		return videoDto;
 	}
 
 	/**
-	 * Adds a new comment to a video.
+	 * Maps the selected fields of a {@link Video} entity to a {@link VideoDto}.
+	 * Properties that were not selected are left {@code null} and therefore not
+	 * serialized.
+	 *
+	 * @param video  the video entity to map, typically read with {@link #projectedQuery(Set)}
+	 * @param fields the properties to map
+	 * @return a {@link VideoDto} containing only the selected properties
+	 */
+	private VideoDto mapToVideoDto(Video video, Set<VideoField> fields) {
+		VideoDto videoDto = new VideoDto();
+		for (VideoField field : fields) {
+			switch (field) {
+			case ID -> videoDto.setId(video.getId());
+			case TITLE -> videoDto.setTitle(video.getTitle());
+			case DESCRIPTION -> videoDto.setDescription(video.getDescription());
+			case TAGS -> videoDto.setTags(video.getTags());
+			case VIDEO_URL -> videoDto.setVideoUrl(video.getVideoUrl());
+			case VIDEO_STATUS -> videoDto.setVideoStatus(video.getVideoStatus());
+			case THUMBNAIL_URL -> videoDto.setThumbnailUrl(video.getThumbnailUrl());
+			case THUMBNAILS -> videoDto.setThumbnails(thumbnailUrls(video));
+			case DURATION_MILLIS -> videoDto.setDurationMillis(video.getDurationMillis());
+			case WIDTH -> videoDto.setWidth(video.getWidth());
+			case HEIGHT -> videoDto.setHeight(video.getHeight());
+			case VIDEO_CODEC -> videoDto.setVideoCodec(video.getVideoCodec());
+			case AUDIO_CODEC -> videoDto.setAudioCodec(video.getAudioCodec());
+			case LIKE_COUNT -> videoDto.setLikeCount(video.getLikes().get());
+			case DISLIKE_COUNT -> videoDto.setDislikeCount(video.getDisLikes().get());
+			case VIEW_COUNT -> videoDto.setViewCount(video.getViewCount().get());
+			case COMMENT_COUNT -> videoDto.setCommentCount(video.getCommentCount().get());
+			case CREATED_AT -> videoDto.setCreatedAt(video.getCreatedAt());
+			case LAST_MODIFIED_AT -> videoDto.setLastModifiedAt(video.getLastModifiedAt());
+			}
+		}
+		return videoDto;
+	}
+
+	/**
+	 * Builds a query that only reads the document fields backing the requested
+	 * properties, plus the (createdAt, _id) sort key used by cursors.
+	 *
+	 * @param fields the requested properties
+	 * @return a query with the matching field projection
+	 */
+	private Query projectedQuery(Set<VideoField> fields) {
+		Query query = new Query();
+		query.fields().include("_id", "createdAt");
+		fields.forEach(field -> query.fields().include(field.getDocumentField()));
+		return query;
+	}
+
+	/**
+	 * Reads the requested fields of the videos with the given IDs.
+	 *
+	 * @param videoIds the IDs of the videos
+	 * @param fields   the requested properties
+	 * @return the projected videos
+	 */
+	private List<Video> findVideosById(Collection<String> videoIds, Set<VideoField> fields) {
+		return mongoTemplate.find(projectedQuery(fields).addCriteria(Criteria.where("_id").in(videoIds)), Video.class);
+	}
+
+	/**
+	 * Reads the requested fields of the videos with the given IDs, with a single
+	 * query, and maps them in the order of the IDs. Only videos listed in the
+	 * catalog are returned, as rankings and histories may refer to private or
+	 * unfinished videos; IDs of other or missing videos are skipped.
+	 *
+	 * @param videoIds the IDs of the videos, in the order to return them
+	 * @param fields   the requested properties
+	 * @return the listed videos, in the order of their IDs
+	 */
+	private List<VideoDto> findVideoDtosInOrder(List<String> videoIds, Set<VideoField> fields) {
+		if (videoIds.isEmpty()) {
+			return List.of();
+		}
+		Map<String, Video> videos = mongoTemplate
+				.find(projectedQuery(fields).addCriteria(listed().and("_id").in(videoIds)), Video.class).stream()
+				.collect(Collectors.toMap(Video::getId, Function.identity()));
+		return videoIds.stream()
+				.map(videos::get)
+				.filter(Objects::nonNull)
+				.map(video -> mapToVideoDto(video, fields))
+				.toList();
+	}
+
+	/**
+	 * Retrieves one page of the video catalog, newest first. The catalog only
+	 * lists public videos whose upload is complete.
 	 *
 	 * <p>
-	 * This method retrieves the video by its ID, creates a new {@link Comment} from the
-	 * provided {@link CommentDto}, adds the comment to the video's comment list,
-	 * and saves the updated video to the repository.
+	 * Pages are delimited by an opaque keyset cursor over (createdAt, id), backed
+	 * by the {@code created_id} index, so every page costs the same regardless of
+	 * how deep into the catalog it is.
 	 * </p>
 	 *
-	 * @param videoId     the unique identifier of the video to which the comment is added
-	 * @param commentDto  the data transfer object containing the comment text and author ID
-	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return a page of {@link VideoDto}
 	 */
-	public void addComment(String videoId, CommentDto commentDto) {
-	    LOGGER.info("Adding comment to video with ID: {}", videoId);
-	    
-	    Video video = getVideoById(videoId);
-	    
-	    Comment comment = new Comment();
-	    comment.setText(commentDto.getCommentText());
-	    comment.setAuthorId(commentDto.getAuthorId());
-	    
-	    video.addComment(comment);
-	    LOGGER.debug("Added comment by user {} to video {}", comment.getAuthorId(), videoId);
-
-	    this.videoRepository.save(video);
-	    LOGGER.info("Saved updated video with new comment to repository for video ID: {}", videoId);
+	public CursorPage<VideoDto> getAllVideos(String after, Integer limit, Set<VideoField> fields) {
+	    LOGGER.info("Fetching a page of videos from the database");
+
+	    int pageSize = CursorPage.normalizeLimit(limit);
+	    Query query = catalogPageQuery(after, limit);
+	    fields.forEach(field -> query.fields().include(field.getDocumentField()));
+
+	    List<Video> videos = mongoTemplate.find(query, Video.class);
+	    LOGGER.debug("Found {} videos for the requested page", videos.size());
+
+	    return CursorPage.of(videos, pageSize,
+	            video -> PageCursor.of(video.getCreatedAt(), video.getId()),
+	            video -> mapToVideoDto(video, fields));
 	}
 
 	/**
-	 * Retrieves all comments associated with a specific video.
+	 * Retrieves one page of the videos carrying a tag, newest first.
 	 *
 	 * <p>
-	 * This method fetches the video by its ID, retrieves its list of comments, and maps
-	 * each {@link Comment} to a {@link CommentDto} to be returned to the client.
+	 * Uses the same keyset pagination as {@link #getAllVideos}, served by the
+	 * multikey index on {@code (tags, createdAt, _id)}.
 	 * </p>
 	 *
-	 * @param videoId the unique identifier of the video
-	 * @return a list of {@link CommentDto} representing all comments on the video
-	 * @throws IllegalArgumentException if no video is found with the specified ID
+	 * @param tag    the tag
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return a page of {@link VideoDto}
 	 */
-    public List<CommentDto> getAllComments(String videoId) {
-        Video video = getVideoById(videoId);
-        List<Comment> commentList = video.getCommentList();
-
-        return commentList.stream().map(this::mapToCommentDto).toList();
-    }
-    
-    /**
-     * Maps a {@link Comment} entity to a {@link CommentDto}.
-     *
-     * @param comment the {@link Comment} to be mapped
-     * @return the corresponding {@link CommentDto}
-     */
-    private CommentDto mapToCommentDto(Comment comment) {
-        CommentDto commentDto = new CommentDto();
-        commentDto.setCommentText(comment.getText());
-        commentDto.setAuthorId(comment.getAuthorId());
-        return commentDto;
-    }
-
-    /**
-     * Retrieves all videos from the database and maps them to {@link VideoDto} objects.
-     *
-     * <p>
-     * This method fetches all {@link Video} entities, maps each to a {@link VideoDto},
-     * and returns the resulting list.
-     * </p>
-     *
-     * @return a list of {@link VideoDto} representing all videos stored in the system
-     */
-	public List<VideoDto> getAllVideos() {
-	    LOGGER.info("Fetching all videos from the database");
-
-	    List<VideoDto> videoDtos = this.videoRepository.findAll().stream()
-	            .map(this::mapToVideoDto)
-	            .toList();
-
-	    LOGGER.debug("Found {} videos in total", videoDtos.size());
-
-	    return videoDtos;
+	public CursorPage<VideoDto> getVideosByTag(String tag, String after, Integer limit, Set<VideoField> fields) {
+	    LOGGER.info("Fetching a page of videos tagged {}", tag);
+
+	    int pageSize = CursorPage.normalizeLimit(limit);
+	    Query query = catalogPageQuery(after, limit).addCriteria(Criteria.where("tags").is(tag));
+	    fields.forEach(field -> query.fields().include(field.getDocumentField()));
+
+	    List<Video> videos = mongoTemplate.find(query, Video.class);
+	    LOGGER.debug("Found {} videos tagged {} for the requested page", videos.size(), tag);
+
+	    return CursorPage.of(videos, pageSize,
+	            video -> PageCursor.of(video.getCreatedAt(), video.getId()),
+	            video -> mapToVideoDto(video, fields));
 	}
-	
+
+	/**
+	 * Builds the criteria matching the videos listed in the catalog: public, and
+	 * neither awaiting nor having failed their upload. Videos stored before
+	 * upload statuses were recorded have none and are listed. The search index
+	 * holds the same videos.
+	 */
+	public static Criteria listed() {
+		return Criteria.where("videoStatus").is(VideoStatus.PUBLIC)
+				.and("uploadStatus").nin(UploadStatus.PENDING, UploadStatus.FAILED);
+	}
+
+	/** The in-memory counterpart of {@link #listed()}. */
+	static boolean isListed(Video video) {
+		return video.getVideoStatus() == VideoStatus.PUBLIC
+				&& video.getUploadStatus() != UploadStatus.PENDING
+				&& video.getUploadStatus() != UploadStatus.FAILED;
+	}
+
+	/**
+	 * Builds the query for one page of the catalog, including one extra video
+	 * that tells whether there is a next page. Only the sort key is projected.
+	 */
+	private static Query catalogPageQuery(String after, Integer limit) {
+		PageCursor cursor = PageCursor.decode(after);
+		Query query = Query.query(listed())
+				.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+				.limit(CursorPage.normalizeLimit(limit) + 1);
+		query.fields().include("_id", "createdAt");
+		if (cursor != null) {
+			query.addCriteria(cursor.after("createdAt"));
+		}
+		return query;
+	}
+
+	/**
+	 * Writes the whole video catalog as newline-delimited JSON, newest first.
+	 * Like {@link #getAllVideos}, only public videos whose upload is complete are
+	 * written.
+	 *
+	 * <p>
+	 * Videos are read from a Mongo cursor and written one at a time, so memory use
+	 * does not depend on the size of the catalog.
+	 * </p>
+	 *
+	 * @param fields       the {@link VideoDto} properties to read and write
+	 * @param outputStream the stream to write the {@link VideoDto} lines to
+	 * @throws IOException if writing to the stream fails
+	 */
+	public void streamAllVideos(Set<VideoField> fields, OutputStream outputStream) throws IOException {
+	    LOGGER.info("Streaming all videos from the database");
+
+	    Query query = projectedQuery(fields)
+	            .addCriteria(listed())
+	            .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+	            .cursorBatchSize(STREAM_BATCH_SIZE);
+
+	    long written = 0;
+	    try (Stream<Video> videos = mongoTemplate.stream(query, Video.class)) {
+	        Iterator<Video> iterator = videos.iterator();
+	        while (iterator.hasNext()) {
+	            outputStream.write(objectMapper.writeValueAsBytes(mapToVideoDto(iterator.next(), fields)));
+	            outputStream.write('\n');
+	            if (++written % STREAM_BATCH_SIZE == 0) {
+	                outputStream.flush();
+	            }
+	        }
+	    }
+	    outputStream.flush();
+
+	    LOGGER.debug("Streamed {} videos", written);
+	}
+
 	/**
 	 * Retrieves a list of videos liked by the currently authenticated user.
 	 *
 	 * <p>This method obtains the current user from the user service, fetches the list
-	 * of liked video IDs, retrieves the corresponding video entities from the repository,
+	 * of liked video IDs from the reaction store, retrieves the requested fields of the corresponding videos,
 	 * and converts them into DTOs to return to the client.</p>
 	 *
+	 * @param fields the {@link VideoDto} properties to read and return
 	 * @return a list of {@link VideoDto} representing the liked videos of the current user
 	 */
-	public List<VideoDto> getLikedVideos() {
+	public List<VideoDto> getLikedVideos(Set<VideoField> fields) {
 	    LOGGER.info("Fetching liked videos for the current user");
 
 	    // Get the authenticated user
 	    var currentUser = userService.getCurrentUser();
-	    var likedVideoIds = currentUser.getLikedVideos();
+	    var likedVideoIds = reactionService.getVideoIds(currentUser.getId(), ReactionType.LIKE);
 	    LOGGER.debug("Liked video IDs: {}", likedVideoIds);
 
 	    // Fetch the videos based on the IDs
-	    List<Video> likedVideos = videoRepository.findAllById(likedVideoIds);
+	    List<Video> likedVideos = findVideosById(likedVideoIds, fields);
 	    LOGGER.debug("Retrieved {} liked videos from the repository", likedVideos.size());
 
 	    // Convert to DTOs
 	    var likedVideoDtos = likedVideos.stream()
-	                                    .map(this::mapToVideoDto)
+	                                    .map(video -> mapToVideoDto(video, fields))
 	                                    .toList();
 
 	    LOGGER.info("Returning {} liked video DTOs", likedVideoDtos.size());
@@ -381,29 +604,30 @@ public class VideoService {
 	 * This method performs the following steps:
 	 * <ul>
 	 *     <li>Obtains the authenticated user from the {@code userService}.</li>
-	 *     <li>Retrieves the list of disliked video IDs associated with the user.</li>
-	 *     <li>Fetches the corresponding video entities from the {@code videoRepository} using those IDs.</li>
+	 *     <li>Retrieves the list of disliked video IDs of the user from the reaction store.</li>
+	 *     <li>Fetches the requested fields of the corresponding videos using those IDs.</li>
 	 *     <li>Maps the video entities to {@code VideoDto} objects.</li>
 	 *     <li>Returns the list of {@code VideoDto} objects representing the disliked videos.</li>
 	 * </ul>
 	 *
+	 * @param fields the {@link VideoDto} properties to read and return
 	 * @return a list of {@link VideoDto} objects representing the disliked videos of the current user
 	 */
-	public List<VideoDto> getDisLikedVideos() {
+	public List<VideoDto> getDisLikedVideos(Set<VideoField> fields) {
 	    LOGGER.info("Fetching liked videos for the current user");
 
 	    // Get the authenticated user
 	    var currentUser = userService.getCurrentUser();
-	    var dislikedVideoIds = currentUser.getDisLikedVideos();
+	    var dislikedVideoIds = reactionService.getVideoIds(currentUser.getId(), ReactionType.DISLIKE);
 	    LOGGER.debug("Disliked video IDs: {}", dislikedVideoIds);
 
 	    // Fetch the videos based on the IDs
-	    List<Video> dislikedVideos = videoRepository.findAllById(dislikedVideoIds);
+	    List<Video> dislikedVideos = findVideosById(dislikedVideoIds, fields);
 	    LOGGER.debug("Retrieved {} disliked videos from the repository", dislikedVideos.size());
 
 	    // Convert to DTOs
 	    var dislikedVideoDtos = dislikedVideos.stream()
-	                                    .map(this::mapToVideoDto)
+	                                    .map(video -> mapToVideoDto(video, fields))
 	                                    .toList();
 
 	    LOGGER.info("Returning {} disliked video DTOs", dislikedVideoDtos.size());
@@ -411,38 +635,139 @@ public class VideoService {
 	}
 	
 	/**
-	 * Retrieves the list of videos from the viewing history of the currently authenticated user.
+	 * Retrieves one page of the viewing history of the currently authenticated user,
+	 * most recent first.
 	 *
 	 * This method performs the following steps:
 	 * <ul>
 	 *     <li>Obtains the authenticated user from the {@code userService}.</li>
-	 *     <li>Retrieves the list of video IDs from the user's history.</li>
-	 *     <li>Fetches the corresponding video entities from the {@code videoRepository}.</li>
-	 *     <li>Maps the video entities to {@code VideoDto} objects.</li>
-	 *     <li>Returns the list of {@code VideoDto} objects representing the history.</li>
+	 *     <li>Reads one page of history entries from the {@code watchHistoryService}.</li>
+	 *     <li>Fetches the requested fields of the corresponding videos that are listed in the catalog.</li>
+	 *     <li>Maps the video entities to {@code VideoDto} objects in history order.</li>
 	 * </ul>
 	 *
-	 * @return a list of {@link VideoDto} objects representing the user's video history
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return a page of {@link VideoDto} objects representing the user's video history
 	 */
-	public List<VideoDto> getVideoHistory() {
+	public CursorPage<VideoDto> getVideoHistory(String after, Integer limit, Set<VideoField> fields) {
 	    LOGGER.info("Fetching video history for the current user");
 
 	    // Get the authenticated user
 	    var currentUser = userService.getCurrentUser();
-	    var videoHistoryIds = currentUser.getVideoHistory();
+	    var history = watchHistoryService.getHistory(currentUser.getId(), after, limit);
+	    var videoHistoryIds = history.getItems().stream().map(WatchHistory::getVideoId).toList();
 	    LOGGER.debug("History video IDs: {}", videoHistoryIds);
 
-	    // Fetch the videos based on the IDs
-	    List<Video> historyVideos = videoRepository.findAllById(videoHistoryIds);
-	    LOGGER.debug("Retrieved {} history videos from the repository", historyVideos.size());
-
-	    // Convert to DTOs
-	    List<VideoDto> historyVideoDtos = historyVideos.stream()
-	            .map(this::mapToVideoDto)
-	            .toList();
+	    // Fetch the videos based on the IDs, keeping the history order
+	    List<VideoDto> historyVideoDtos = findVideoDtosInOrder(videoHistoryIds, fields);
 
 	    LOGGER.info("Returning {} video DTOs from history", historyVideoDtos.size());
-	    return historyVideoDtos;
+	    return new CursorPage<>(historyVideoDtos, history.getNextCursor());
+	}
+
+	/**
+	 * Retrieves the currently trending videos, highest score first.
+	 *
+	 * <p>
+	 * The ranking is read from the in-memory snapshot of the
+	 * {@link TrendingService}; only the requested fields of the ranked videos are
+	 * then fetched. The ranking counts views of any video, so videos that are not
+	 * listed in the catalog are left out here, and the ranking is read in batches
+	 * until the requested number of listed videos is found or it runs out.
+	 * </p>
+	 *
+	 * @param limit  the requested number of videos, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return the trending videos in ranking order
+	 */
+	public List<VideoDto> getTrendingVideos(Integer limit, Set<VideoField> fields) {
+	    int pageSize = CursorPage.normalizeLimit(limit);
+	    var rankedVideoIds = trendingService.getTopVideoIds(Integer.MAX_VALUE);
+	    List<VideoDto> trendingVideos = new ArrayList<>(pageSize);
+	    for (int from = 0; from < rankedVideoIds.size() && trendingVideos.size() < pageSize;) {
+	        // Twice the missing videos, so a few unlisted ones rarely cost another query
+	        int to = Math.min(rankedVideoIds.size(), from + 2 * (pageSize - trendingVideos.size()));
+	        trendingVideos.addAll(findVideoDtosInOrder(rankedVideoIds.subList(from, to), fields));
+	        from = to;
+	    }
+	    return trendingVideos.size() > pageSize ? trendingVideos.subList(0, pageSize) : trendingVideos;
+	}
+
+	/**
+	 * Searches the title, description and tags of public videos.
+	 *
+	 * <p>
+	 * The matching IDs are ranked by the in-memory index of the
+	 * {@link VideoSearchService}; only the requested fields of those videos are
+	 * then fetched, with a single query.
+	 * </p>
+	 *
+	 * @param query  the query text; its last word also matches as a prefix
+	 * @param limit  the requested number of videos, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return the matching videos, most relevant first
+	 */
+	public List<VideoDto> searchVideos(String query, Integer limit, Set<VideoField> fields) {
+	    var matchingVideoIds = videoSearchService.search(query, CursorPage.normalizeLimit(limit));
+	    return findVideoDtosInOrder(matchingVideoIds, fields);
+	}
+
+	/**
+	 * Retrieves the videos most often liked or watched by the users who liked or
+	 * watched the given video.
+	 *
+	 * <p>
+	 * The related video IDs are read from the table precomputed by the
+	 * {@link RecommendationService}; only the requested fields of those videos are
+	 * then fetched, with a single query. The table is built from all likes and
+	 * views, so videos that are not listed in the catalog are left out here.
+	 * </p>
+	 *
+	 * @param videoId the ID of the video
+	 * @param limit   the requested number of videos, or {@code null} for the default
+	 * @param fields  the {@link VideoDto} properties to read and return
+	 * @return the related videos, most similar first
+	 */
+	public List<VideoDto> getRelatedVideos(String videoId, Integer limit, Set<VideoField> fields) {
+	    var relatedVideoIds = recommendationService.getRelatedVideoIds(videoId, CursorPage.normalizeLimit(limit));
+	    return findVideoDtosInOrder(relatedVideoIds, fields);
+	}
+
+	/**
+	 * Retrieves the public videos whose title and tags are most similar to those
+	 * of the given video. Unlike {@link #getRelatedVideos}, this needs no views or
+	 * likes, so it also works for new uploads.
+	 *
+	 * @param videoId the ID of the video
+	 * @param limit   the requested number of videos, or {@code null} for the default
+	 * @param fields  the {@link VideoDto} properties to read and return
+	 * @return the similar videos, most similar first
+	 */
+	public List<VideoDto> getSimilarVideos(String videoId, Integer limit, Set<VideoField> fields) {
+	    var similarVideoIds = videoSearchService.similarTo(videoId, CursorPage.normalizeLimit(limit));
+	    return findVideoDtosInOrder(similarVideoIds, fields);
+	}
+
+	/**
+	 * Retrieves one page of the subscription feed of the current user: the public
+	 * videos of the channels they follow, newest first.
+	 *
+	 * <p>
+	 * The page of video IDs is merged by the {@link FeedService}; only the
+	 * requested fields of those videos are then fetched, with a single query.
+	 * </p>
+	 *
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @param fields the {@link VideoDto} properties to read and return
+	 * @return a page of {@link VideoDto}
+	 */
+	public CursorPage<VideoDto> getFeed(String after, Integer limit, Set<VideoField> fields) {
+	    var currentUser = userService.getCurrentUser();
+	    var feedPage = feedService.getFeed(subscriptionService.getSubscriptionIds(currentUser.getId()), after, limit);
+	    return new CursorPage<>(findVideoDtosInOrder(feedPage.getItems(), fields), feedPage.getNextCursor());
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,367 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+import com.programming.pgs.youtubeclone.util.Sendfile;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the content of videos over HTTP with byte range support, so players can
+ * start anywhere and seek without downloading the whole file.
+ *
+ * <p>
+ * Requests are answered with {@code 200 OK} for the whole video, {@code 206
+ * Partial Content} for one range or a {@code multipart/byteranges} body for
+ * several, and {@code 416 Range Not Satisfiable} when no range overlaps the
+ * video. {@code If-Range} falls back to the whole video when the stored object
+ * has changed, and conditional requests are answered with {@code 304 Not
+ * Modified}. Overlapping and adjacent ranges are coalesced before anything is
+ * read.
+ * </p>
+ * <p>
+ * Public videos can be streamed by anyone; other videos only by their owner,
+ * and everyone else is answered {@code 404 Not Found} as if they did not exist.
+ * </p>
+ * <p>
+ * Only the requested ranges are read from the storage backend, through bounded
+ * buffers or, for the local backend, with sendfile. Bytes served are counted by
+ * {@code video.stream.bytes} and per video in the {@code bytesServed} field;
+ * transfer rates are recorded by {@code video.stream.throughput} and, per video,
+ * as the {@code timedBytesServed} and {@code transferNanos} fields.
+ * </p>
+ */
+@Service
+public class VideoStreamService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoStreamService.class);
+	private static final String CRLF = "\r\n";
+
+	private final FileService fileService;
+	private final MongoTemplate mongoTemplate;
+	private final ViewCountAggregator viewCountAggregator;
+	private final CurrentUserResolver currentUserResolver;
+	private final MeterRegistry meterRegistry;
+	private final Counter bytesServed;
+	private final DistributionSummary throughput;
+
+	/** An inclusive range of bytes that lies within the video. */
+	private record ByteRange(long start, long end) {
+
+		long length() {
+			return end - start + 1;
+		}
+
+		String contentRange(long totalLength) {
+			return "bytes " + start + "-" + end + "/" + totalLength;
+		}
+	}
+
+	public VideoStreamService(FileService fileService, MongoTemplate mongoTemplate,
+			ViewCountAggregator viewCountAggregator, CurrentUserResolver currentUserResolver,
+			MeterRegistry meterRegistry) {
+		this.fileService = fileService;
+		this.mongoTemplate = mongoTemplate;
+		this.viewCountAggregator = viewCountAggregator;
+		this.currentUserResolver = currentUserResolver;
+		this.meterRegistry = meterRegistry;
+		this.bytesServed = Counter.builder("video.stream.bytes")
+				.baseUnit("bytes")
+				.description("Video bytes sent to clients")
+				.register(meterRegistry);
+		this.throughput = DistributionSummary.builder("video.stream.throughput")
+				.baseUnit("bytes/s")
+				.description("Transfer rate of video responses written by the application")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Writes the requested part of a video to the response.
+	 *
+	 * @param videoId  the ID of the video to stream
+	 * @param request  the current request, whose {@code Range}, {@code If-Range}
+	 *                 and conditional headers are honored
+	 * @param response the response to write to
+	 * @throws ResponseStatusException with {@code 404 Not Found} if the video does
+	 *                                 not exist, has no playable content or is
+	 *                                 not public and the caller is not its owner
+	 * @throws IOException             if writing the response fails
+	 */
+	public void stream(String videoId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String key = findVideoKey(videoId);
+		FileMetadata metadata = fileService.stat(key).orElseThrow(() -> {
+			LOGGER.error("Content {} of video {} is missing from storage", key, videoId);
+			return new ResponseStatusException(HttpStatus.NOT_FOUND, "Video content not found - " + videoId);
+		});
+		long length = metadata.contentLength();
+		String contentType = metadata.contentType() != null ? metadata.contentType()
+				: MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+		// Also sets the ETag and Last-Modified headers
+		if (new ServletWebRequest(request, response).checkNotModified(metadata.eTag(),
+				metadata.lastModified().toEpochMilli())) {
+			countResponse(response.getStatus());
+			return;
+		}
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		List<ByteRange> ranges = requestedRanges(request, metadata);
+		if (ranges == null) {
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(contentType);
+			response.setContentLengthLong(length);
+			send(videoId, key, new ByteRange(0, length - 1), request, response);
+		} else if (ranges.isEmpty()) {
+			response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+		} else if (ranges.size() == 1) {
+			ByteRange range = ranges.get(0);
+			response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+			response.setContentType(contentType);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+			response.setContentLengthLong(range.length());
+			send(videoId, key, range, request, response);
+		} else {
+			sendMultipart(videoId, key, ranges, contentType, length, request, response);
+		}
+		countResponse(response.getStatus());
+	}
+
+	private String findVideoKey(String videoId) {
+		Query query = Query.query(Criteria.where("_id").is(videoId));
+		query.fields().include("videoKey", "uploadStatus", "videoStatus", "userId");
+		Video video = mongoTemplate.findOne(query, Video.class);
+
+		if (video == null || video.getVideoKey() == null || video.getUploadStatus() == UploadStatus.PENDING
+				|| video.getUploadStatus() == UploadStatus.FAILED
+				|| (video.getVideoStatus() != VideoStatus.PUBLIC && !isCallerOwner(video))) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No playable video found - " + videoId);
+		}
+		return video.getVideoKey();
+	}
+
+	/**
+	 * Tells whether the request carries the token of the owner of the video. The
+	 * stream endpoint is open to anonymous callers, so there may be no token.
+	 */
+	private boolean isCallerOwner(Video video) {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (video.getUserId() == null || authentication == null
+				|| !(authentication.getPrincipal() instanceof Jwt jwt)) {
+			return false;
+		}
+		try {
+			return video.getUserId().equals(currentUserResolver.resolve(jwt.getSubject()).getId());
+		} catch (IllegalArgumentException unknownUser) {
+			return false;
+		}
+	}
+
+	/**
+	 * Resolves the {@code Range} header against the length of the video.
+	 *
+	 * @return {@code null} to send the whole video, otherwise the coalesced
+	 *         satisfiable ranges in ascending order, which is empty if none of the
+	 *         requested ranges overlaps the video
+	 */
+	private List<ByteRange> requestedRanges(HttpServletRequest request, FileMetadata metadata) {
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader == null || !ifRangeMatches(request, metadata)) {
+			return null;
+		}
+
+		List<HttpRange> httpRanges;
+		try {
+			httpRanges = HttpRange.parseRanges(rangeHeader);
+		} catch (IllegalArgumentException invalidRange) {
+			// Malformed or excessive range headers are ignored
+			LOGGER.debug("Ignoring range header {}: {}", rangeHeader, invalidRange.getMessage());
+			return null;
+		}
+
+		long length = metadata.contentLength();
+		List<ByteRange> satisfiable = new ArrayList<>();
+		for (HttpRange httpRange : httpRanges) {
+			try {
+				long start = httpRange.getRangeStart(length);
+				long end = httpRange.getRangeEnd(length);
+				if (start <= end) {
+					satisfiable.add(new ByteRange(start, end));
+				}
+			} catch (IllegalArgumentException unsatisfiable) {
+				// Starts beyond the end of the video
+			}
+		}
+		return coalesce(satisfiable);
+	}
+
+	private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+		ranges.sort(Comparator.comparingLong(ByteRange::start));
+		List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+		for (ByteRange range : ranges) {
+			int last = coalesced.size() - 1;
+			if (last >= 0 && range.start() <= coalesced.get(last).end() + 1) {
+				ByteRange previous = coalesced.get(last);
+				coalesced.set(last, new ByteRange(previous.start(), Math.max(previous.end(), range.end())));
+			} else {
+				coalesced.add(range);
+			}
+		}
+		return coalesced;
+	}
+
+	/**
+	 * Evaluates {@code If-Range}: an entity tag must match strongly, a date must
+	 * equal the last modification time of the object.
+	 */
+	private static boolean ifRangeMatches(HttpServletRequest request, FileMetadata metadata) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return ifRange.equals(metadata.eTag());
+		}
+		try {
+			return request.getDateHeader(HttpHeaders.IF_RANGE) == metadata.lastModified()
+					.truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+		} catch (IllegalArgumentException invalidDate) {
+			return false;
+		}
+	}
+
+	private void send(String videoId, String key, ByteRange range, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		if (isHead(request) || range.length() <= 0) {
+			return;
+		}
+
+		Optional<Path> localFile = fileService.localPath(key);
+		if (localFile.isPresent() && Sendfile.offer(request, localFile.get(), range.start(), range.end() + 1)) {
+			recordBytes(videoId, range.length(), 0);
+			return;
+		}
+
+		var outputStream = new CountingOutputStream(response.getOutputStream());
+		long startNanos = System.nanoTime();
+		try {
+			fileService.transfer(key, range.start(), range.length(), outputStream);
+		} finally {
+			recordBytes(videoId, outputStream.count, System.nanoTime() - startNanos);
+		}
+	}
+
+	private void sendMultipart(String videoId, String key, List<ByteRange> ranges, String contentType, long length,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+		List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+		long contentLength = 0;
+		for (ByteRange range : ranges) {
+			byte[] partHeader = (CRLF + "--" + boundary + CRLF
+					+ HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+					+ HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(length) + CRLF + CRLF)
+					.getBytes(StandardCharsets.US_ASCII);
+			partHeaders.add(partHeader);
+			contentLength += partHeader.length + range.length();
+		}
+		byte[] trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+		contentLength += trailer.length;
+
+		response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+		response.setContentType("multipart/byteranges; boundary=" + boundary);
+		response.setContentLengthLong(contentLength);
+		if (isHead(request)) {
+			return;
+		}
+
+		var outputStream = new CountingOutputStream(response.getOutputStream());
+		long startNanos = System.nanoTime();
+		try {
+			for (int i = 0; i < ranges.size(); i++) {
+				outputStream.write(partHeaders.get(i));
+				fileService.transfer(key, ranges.get(i).start(), ranges.get(i).length(), outputStream);
+			}
+			outputStream.write(trailer);
+		} finally {
+			recordBytes(videoId, outputStream.count, System.nanoTime() - startNanos);
+		}
+	}
+
+	private void recordBytes(String videoId, long bytes, long elapsedNanos) {
+		if (bytes <= 0) {
+			return;
+		}
+		bytesServed.increment(bytes);
+		viewCountAggregator.addBytesServed(videoId, bytes);
+		// Transfers handed to sendfile complete after the request and are not timed
+		if (elapsedNanos > 0) {
+			throughput.record(bytes * 1e9 / elapsedNanos);
+			viewCountAggregator.addTransfer(videoId, bytes, elapsedNanos);
+		}
+	}
+
+	private void countResponse(int status) {
+		meterRegistry.counter("video.stream.responses", "status", String.valueOf(status)).increment();
+	}
+
+	private static boolean isHead(HttpServletRequest request) {
+		return HttpMethod.HEAD.matches(request.getMethod());
+	}
+
+	/** Counts the bytes written to the response, including those of aborted transfers. */
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		CountingOutputStream(OutputStream outputStream) {
+			super(outputStream);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.model.Video;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Write-behind aggregator for video view counts, bytes served by playback and
+ * transfer times.
+ *
+ * <p>
+ * Increments are absorbed in memory by one {@link LongAdder} per video and
+ * counter, so concurrent viewers of the same video increment striped cells
+ * instead of racing on a read-modify-write of the whole {@link Video} document.
+ * A scheduled task drains the counters and applies them to Mongo as a single
+ * unordered bulk write of {@code $inc} operations, and the affected videos are
+ * dropped from the {@link VideoCache}. Buffered counts are also flushed when the
+ * application shuts down.
+ * </p>
+ * <p>
+ * {@code viewCount} is an {@code int} field; its increments are sent as
+ * {@code int} so Mongo keeps the stored type, since an {@code int64} increment
+ * would promote the field to a long that can no longer be read into the
+ * {@link Video}. A batched view delta above {@link Integer#MAX_VALUE} is split
+ * and the remainder is flushed on the next run.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class ViewCountAggregator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ViewCountAggregator.class);
+
+	private final MongoTemplate mongoTemplate;
+	private final VideoCache videoCache;
+
+	private static final String VIEW_COUNT = "viewCount";
+	private static final String BYTES_SERVED = "bytesServed";
+	private static final String TIMED_BYTES_SERVED = "timedBytesServed";
+	private static final String TRANSFER_NANOS = "transferNanos";
+
+	/** A buffered counter: the video and the document field it is flushed to. */
+	private record CounterKey(String videoId, String field) {
+	}
+
+	private final ConcurrentHashMap<CounterKey, LongAdder> pendingCounts = new ConcurrentHashMap<>();
+
+	// Idle counters removed on the previous flush; drained once more in case a
+	// viewer still held a reference to them when they were removed
+	private final Queue<Map.Entry<CounterKey, LongAdder>> retiredCounters = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Records a single view of the given video.
+	 *
+	 * @param videoId the ID of the viewed video
+	 */
+	public void recordView(String videoId) {
+		addViews(videoId, 1);
+	}
+
+	/**
+	 * Adds a number of views to the buffered counter of the given video.
+	 *
+	 * @param videoId the ID of the viewed video
+	 * @param views   the number of views to add
+	 */
+	public void addViews(String videoId, long views) {
+		add(new CounterKey(videoId, VIEW_COUNT), views);
+	}
+
+	/**
+	 * Adds a number of bytes to the buffered playback counter of the given video.
+	 *
+	 * @param videoId the ID of the streamed video
+	 * @param bytes   the number of bytes sent to a client
+	 */
+	public void addBytesServed(String videoId, long bytes) {
+		add(new CounterKey(videoId, BYTES_SERVED), bytes);
+	}
+
+	/**
+	 * Adds a timed transfer to the buffered transfer rate counters of the given
+	 * video.
+	 *
+	 * @param videoId      the ID of the streamed video
+	 * @param bytes        the number of bytes sent by the transfer
+	 * @param elapsedNanos the duration of the transfer in nanoseconds
+	 */
+	public void addTransfer(String videoId, long bytes, long elapsedNanos) {
+		add(new CounterKey(videoId, TIMED_BYTES_SERVED), bytes);
+		add(new CounterKey(videoId, TRANSFER_NANOS), elapsedNanos);
+	}
+
+	private void add(CounterKey key, long delta) {
+		LongAdder counter = pendingCounts.get(key);
+		if (counter == null) {
+			counter = pendingCounts.computeIfAbsent(key, k -> new LongAdder());
+		}
+		counter.add(delta);
+	}
+
+	/**
+	 * Returns the number of views recorded for a video that have not been flushed
+	 * to the database yet.
+	 *
+	 * @param videoId the ID of the video
+	 * @return the buffered view count, or 0 if there is none
+	 */
+	public long getPendingViews(String videoId) {
+		LongAdder counter = pendingCounts.get(new CounterKey(videoId, VIEW_COUNT));
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Drains all buffered counters and applies them to the {@code Video}
+	 * collection as one bulk write of {@code $inc} operations.
+	 *
+	 * <p>
+	 * Counters that had nothing to flush are removed from the buffer so it only
+	 * holds recently watched videos. If the bulk write fails, the increments that
+	 * were not applied are put back into the buffer and retried on the next flush.
+	 * </p>
+	 */
+	@Scheduled(fixedDelayString = "${video.views.flush-interval-ms:5000}")
+	public synchronized void flush() {
+		List<CounterKey> keys = new ArrayList<>();
+		List<Long> deltas = new ArrayList<>();
+
+		Map.Entry<CounterKey, LongAdder> retired;
+		while ((retired = retiredCounters.poll()) != null) {
+			long delta = cap(retired.getKey(), retired.getValue().sumThenReset());
+			if (delta > 0) {
+				keys.add(retired.getKey());
+				deltas.add(delta);
+			}
+		}
+
+		for (Map.Entry<CounterKey, LongAdder> entry : pendingCounts.entrySet()) {
+			long delta = cap(entry.getKey(), entry.getValue().sumThenReset());
+			if (delta > 0) {
+				keys.add(entry.getKey());
+				deltas.add(delta);
+			} else if (pendingCounts.remove(entry.getKey(), entry.getValue())) {
+				retiredCounters.add(Map.entry(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		if (keys.isEmpty()) {
+			return;
+		}
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Video.class);
+		for (int i = 0; i < keys.size(); i++) {
+			bulkOperations.updateOne(Query.query(Criteria.where("_id").is(keys.get(i).videoId())),
+					new Update().inc(keys.get(i).field(), increment(keys.get(i), deltas.get(i))));
+		}
+
+		try {
+			bulkOperations.execute();
+			LOGGER.debug("Flushed {} video counters", keys.size());
+		} catch (BulkOperationException bulkException) {
+			LOGGER.error("Failed to flush {} of {} video counter updates, re-queuing them",
+					bulkException.getErrors().size(), keys.size(), bulkException);
+			bulkException.getErrors().forEach(error -> add(keys.get(error.getIndex()), deltas.get(error.getIndex())));
+		} catch (RuntimeException exception) {
+			LOGGER.error("Failed to flush {} video counters, re-queuing them", keys.size(), exception);
+			for (int i = 0; i < keys.size(); i++) {
+				add(keys.get(i), deltas.get(i));
+			}
+		} finally {
+			// Cached videos would otherwise miss the views that just left the buffer
+			videoCache.invalidateAll(keys.stream()
+					.filter(key -> key.field().equals(VIEW_COUNT))
+					.map(CounterKey::videoId)
+					.toList());
+		}
+	}
+
+	/**
+	 * Keeps a view count delta within the {@code int} range, putting the rest back
+	 * into the buffer.
+	 */
+	private long cap(CounterKey key, long delta) {
+		if (key.field().equals(VIEW_COUNT) && delta > Integer.MAX_VALUE) {
+			add(key, delta - Integer.MAX_VALUE);
+			return Integer.MAX_VALUE;
+		}
+		return delta;
+	}
+
+	/**
+	 * Returns the increment with the BSON type of the counter field.
+	 */
+	private static Number increment(CounterKey key, long delta) {
+		if (key.field().equals(VIEW_COUNT)) {
+			return Math.toIntExact(delta);
+		}
+		return delta;
+	}
+
+	/**
+	 * Flushes any buffered counts before the application shuts down.
+	 */
+	@PreDestroy
+	public void flushOnShutdown() {
+		LOGGER.info("Flushing buffered video counters before shutdown");
+		flush();
+	}
+}
@@ -0,0 +1,106 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.event.VideoViewed;
+import com.programming.pgs.youtubeclone.model.WatchHistory;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Service for the per-user, time-ordered watch history.
+ *
+ * <p>
+ * History entries live in the {@code WatchHistory} collection with one entry per
+ * (user, video) pair, so watching a video again only moves it to the top.
+ * Entries expire through a TTL index and are read most recent first, one page at
+ * a time, using the (userId, watchedAt) index.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class WatchHistoryService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WatchHistoryService.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	/**
+	 * Records a batch of views with a single bulk upsert.
+	 *
+	 * <p>
+	 * Views of the same video by the same user are collapsed into one write that
+	 * keeps the latest view time.
+	 * </p>
+	 *
+	 * @param views the views to record
+	 */
+	public void recordViews(Collection<VideoViewed> views) {
+		Map<List<String>, Instant> latestViews = new HashMap<>();
+		for (VideoViewed view : views) {
+			if (view.userId() != null) {
+				latestViews.merge(List.of(view.userId(), view.videoId()), view.timestamp(),
+						(first, second) -> first.isAfter(second) ? first : second);
+			}
+		}
+		if (latestViews.isEmpty()) {
+			return;
+		}
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, WatchHistory.class);
+		latestViews.forEach((key, watchedAt) -> bulkOperations.upsert(historyQuery(key.get(0), key.get(1)),
+				new Update().max("watchedAt", watchedAt)));
+		bulkOperations.execute();
+		LOGGER.debug("Recorded {} watch history entries", latestViews.size());
+	}
+
+	/**
+	 * Retrieves one page of the watch history of a user, most recent first.
+	 *
+	 * @param userId the ID of the user
+	 * @param after  the cursor returned with the previous page, or {@code null} for the first page
+	 * @param limit  the requested page size, or {@code null} for the default
+	 * @return a page of history entries
+	 */
+	public CursorPage<WatchHistory> getHistory(String userId, String after, Integer limit) {
+		int pageSize = CursorPage.normalizeLimit(limit);
+		PageCursor cursor = PageCursor.decode(after);
+
+		Criteria criteria = Criteria.where("userId").is(userId);
+		if (cursor != null) {
+			criteria = new Criteria().andOperator(criteria, cursor.after("watchedAt"));
+		}
+
+		Query query = Query.query(criteria)
+				.with(Sort.by(Sort.Direction.DESC, "watchedAt", "_id"))
+				.limit(pageSize + 1);
+
+		var entries = mongoTemplate.find(query, WatchHistory.class);
+		LOGGER.debug("Fetched {} history entries of user {}", entries.size(), userId);
+
+		return CursorPage.of(entries, pageSize,
+				entry -> PageCursor.of(entry.getWatchedAt(), entry.getId()),
+				entry -> entry);
+	}
+
+	private static Query historyQuery(String userId, String videoId) {
+		return Query.query(Criteria.where("userId").is(userId).and("videoId").is(videoId));
+	}
+}
@@ -0,0 +1,80 @@
+package com.programming.pgs.youtubeclone.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Opaque keyset cursor over a (timestamp, id) sort key.
+ *
+ * <p>
+ * Pages are sorted by the timestamp and then the document ID, both descending.
+ * The cursor identifies the last element of a page and is handed to clients as
+ * an URL-safe Base64 string, so its format can change without breaking them.
+ * </p>
+ */
+public record PageCursor(Instant timestamp, String id) {
+
+	/**
+	 * Builds the cursor pointing at the given element.
+	 *
+	 * @param timestamp the sort timestamp of the element
+	 * @param id        the ID of the element
+	 * @return the cursor
+	 */
+	public static PageCursor of(Instant timestamp, String id) {
+		return new PageCursor(timestamp == null ? Instant.EPOCH : timestamp, id);
+	}
+
+	/**
+	 * Encodes this cursor into its opaque string form.
+	 *
+	 * @return the encoded cursor
+	 */
+	public String encode() {
+		String raw = timestamp.toEpochMilli() + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor previously produced by {@link #encode()}.
+	 *
+	 * @param cursor the encoded cursor, may be {@code null} or blank
+	 * @return the decoded cursor, or {@code null} if none was given
+	 * @throws ResponseStatusException with {@code 400 Bad Request} if the cursor is malformed
+	 */
+	public static PageCursor decode(String cursor) {
+		if (cursor == null || cursor.isBlank()) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = raw.indexOf(':');
+			String id = raw.substring(separator + 1);
+			if (separator < 0 || !ObjectId.isValid(id)) {
+				throw new IllegalArgumentException("Malformed cursor");
+			}
+			return new PageCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))), id);
+		} catch (IllegalArgumentException exception) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor - " + cursor);
+		}
+	}
+
+	/**
+	 * Builds the criteria matching the elements that come after this cursor in a
+	 * descending (timestamp, _id) order.
+	 *
+	 * @param timestampField the name of the timestamp field
+	 * @return the keyset criteria
+	 */
+	public Criteria after(String timestampField) {
+		return new Criteria().orOperator(
+				Criteria.where(timestampField).lt(timestamp),
+				Criteria.where(timestampField).is(timestamp).and("_id").lt(new ObjectId(id)));
+	}
+}
@@ -0,0 +1,53 @@
+package com.programming.pgs.youtubeclone.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.StringJoiner;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Validators of a representation, used to answer conditional {@code GET}
+ * requests without building the representation.
+ *
+ * <p>
+ * The entity tag is weak, as it is derived from the stored values the
+ * representation is built from rather than from its bytes.
+ * </p>
+ *
+ * @param eTag         the quoted weak entity tag
+ * @param lastModified when the representation last changed, or {@code null} if
+ *                     unknown
+ */
+public record ResourceVersion(String eTag, Instant lastModified) {
+
+	/**
+	 * Builds a version whose entity tag is a digest of the given values.
+	 *
+	 * @param lastModified when the representation last changed, may be {@code null}
+	 * @param parts        the values that determine the representation
+	 * @return the version
+	 */
+	public static ResourceVersion of(Instant lastModified, Object... parts) {
+		var joiner = new StringJoiner("\u0000");
+		for (Object part : parts) {
+			joiner.add(String.valueOf(part));
+		}
+		String digest = DigestUtils.md5DigestAsHex(joiner.toString().getBytes(StandardCharsets.UTF_8));
+		return new ResourceVersion("W/\"" + digest + "\"", lastModified);
+	}
+
+	/**
+	 * Sets the {@code ETag} and {@code Last-Modified} headers and evaluates
+	 * {@code If-None-Match} and {@code If-Modified-Since}. If the client's copy is
+	 * current, the response status is set to {@code 304 Not Modified} and the
+	 * caller must not write a body.
+	 *
+	 * @param webRequest the current request
+	 * @return {@code true} if the client's copy is current
+	 */
+	public boolean checkNotModified(WebRequest webRequest) {
+		return webRequest.checkNotModified(eTag, lastModified != null ? lastModified.toEpochMilli() : -1);
+	}
+}
@@ -0,0 +1,43 @@
+package com.programming.pgs.youtubeclone.util;
+
+import java.nio.file.Path;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Hands files to the servlet container's sendfile support, which sends them from
+ * the page cache straight to the socket once the request has been handled.
+ */
+public final class Sendfile {
+
+	// Request attributes of Tomcat's sendfile support (see org.apache.catalina.Globals)
+	private static final String SUPPORTED = "org.apache.tomcat.sendfile.support";
+	private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String START = "org.apache.tomcat.sendfile.start";
+	private static final String END = "org.apache.tomcat.sendfile.end";
+
+	private Sendfile() {
+	}
+
+	/**
+	 * Asks the container to send a range of a file as the response body. The
+	 * caller must have set the status and headers, including the content length,
+	 * and must not write a body itself if this returns {@code true}.
+	 *
+	 * @param request the current request
+	 * @param file    the file to send
+	 * @param start   the offset of the first byte to send
+	 * @param end     the offset after the last byte to send
+	 * @return {@code true} if the container will send the file, {@code false} if
+	 *         sendfile is not available and the caller has to write the body
+	 */
+	public static boolean offer(HttpServletRequest request, Path file, long start, long end) {
+		if (!Boolean.TRUE.equals(request.getAttribute(SUPPORTED))) {
+			return false;
+		}
+		request.setAttribute(FILENAME, file.toString());
+		request.setAttribute(START, start);
+		request.setAttribute(END, end);
+		return true;
+	}
+}
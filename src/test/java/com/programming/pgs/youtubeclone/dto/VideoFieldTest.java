@@ -0,0 +1,31 @@
+package com.programming.pgs.youtubeclone.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class VideoFieldTest {
+
+	@Test
+	void parsesRequestedProperties() {
+		assertThat(VideoField.parse(" title, likeCount ,id")).containsExactlyInAnyOrder(VideoField.TITLE,
+				VideoField.LIKE_COUNT, VideoField.ID);
+		assertThat(VideoField.LIKE_COUNT.getDocumentField()).isEqualTo("likes");
+	}
+
+	@Test
+	void defaultsToTheSummaryFields() {
+		assertThat(VideoField.parse(null)).isEqualTo(VideoField.SUMMARY);
+		assertThat(VideoField.parse("  ")).isEqualTo(VideoField.SUMMARY);
+		assertThat(VideoField.SUMMARY).doesNotContain(VideoField.DESCRIPTION, VideoField.TAGS);
+	}
+
+	@Test
+	void rejectsUnknownProperties() {
+		assertThatThrownBy(() -> VideoField.parse("title,secret"))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("secret");
+	}
+}
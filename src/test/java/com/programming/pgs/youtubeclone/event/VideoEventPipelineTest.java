@@ -0,0 +1,88 @@
+package com.programming.pgs.youtubeclone.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.programming.pgs.youtubeclone.service.RecommendationService;
+import com.programming.pgs.youtubeclone.service.TrendingService;
+import com.programming.pgs.youtubeclone.service.ViewCountAggregator;
+import com.programming.pgs.youtubeclone.service.WatchHistoryService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VideoEventPipelineTest {
+
+	private final ViewCountAggregator viewCountAggregator = mock(ViewCountAggregator.class);
+	private final WatchHistoryService watchHistoryService = mock(WatchHistoryService.class);
+	private final TrendingService trendingService = mock(TrendingService.class);
+	private final RecommendationService recommendationService = mock(RecommendationService.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	// The sizes of the batches handed to the watch history, copied since the batch list is reused
+	private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+	@Test
+	void appliesViewsInBatches() throws Exception {
+		VideoEventPipeline pipeline = pipeline(100, 5, Duration.ofSeconds(5));
+		recordBatchSizes();
+
+		pipeline.start();
+		try {
+			for (int i = 0; i < 5; i++) {
+				pipeline.publish(new VideoViewed("user-" + i, i < 3 ? "popular" : "other", Instant.now()));
+			}
+
+			// A full batch is applied without waiting for the linger time
+			verify(viewCountAggregator, timeout(2000)).addViews("popular", 3L);
+			verify(viewCountAggregator, timeout(2000)).addViews("other", 2L);
+			verify(trendingService, timeout(2000)).recordViews("popular", 3L);
+			verify(recommendationService, timeout(2000)).recordViews(anyCollection());
+			assertThat(batchSizes).containsExactly(5);
+		} finally {
+			pipeline.stop();
+		}
+	}
+
+	@Test
+	void dropsEventsWhenTheQueueIsFullAndDrainsOnStop() throws Exception {
+		// Not started, so every event stays queued until the pipeline stops
+		VideoEventPipeline pipeline = pipeline(2, 10, Duration.ofMillis(10));
+		recordBatchSizes();
+
+		assertThat(pipeline.publish(new VideoViewed("user", "video", Instant.now()))).isTrue();
+		assertThat(pipeline.publish(new VideoViewed("user", "video", Instant.now()))).isTrue();
+		assertThat(pipeline.publish(new VideoViewed("user", "video", Instant.now()))).isFalse();
+		assertThat(meterRegistry.get("video.events.dropped").counter().count()).isEqualTo(1);
+
+		pipeline.stop();
+
+		verify(viewCountAggregator).addViews("video", 2L);
+		assertThat(batchSizes).containsExactly(2);
+	}
+
+	private VideoEventPipeline pipeline(int queueCapacity, int batchSize, Duration linger) {
+		return new VideoEventPipeline(viewCountAggregator, watchHistoryService, trendingService,
+				recommendationService, meterRegistry, queueCapacity, batchSize, linger, Duration.ZERO,
+				Duration.ofSeconds(5));
+	}
+
+	private void recordBatchSizes() {
+		doAnswer(invocation -> {
+			Collection<VideoViewed> batch = invocation.getArgument(0);
+			batchSizes.add(new ArrayList<>(batch).size());
+			return null;
+		}).when(watchHistoryService).recordViews(anyCollection());
+	}
+}
@@ -0,0 +1,132 @@
+package com.programming.pgs.youtubeclone.media;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class Mp4FileTest {
+
+	private static final byte[] MEDIA = "frame-0frame-1".getBytes(StandardCharsets.US_ASCII);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void extractsMediaInfo() throws Exception {
+		Path file = write("clip.mp4", ftyp(), moov(0), mdat());
+
+		try (Mp4File mp4File = Mp4File.open(file)) {
+			assertThat(mp4File.mediaInfo()).isEqualTo(new MediaInfo(12_500L, 1280, 720, "avc1", "mp4a"));
+			assertThat(mp4File.isFaststart()).isTrue();
+		}
+	}
+
+	@Test
+	void movesMoovBeforeMdatAndShiftsChunkOffsets() throws Exception {
+		byte[] ftyp = ftyp();
+		byte[] mdat = mdat();
+		// The first chunk starts right after the mdat header
+		long chunkOffset = ftyp.length + 8;
+		Path file = write("tail.mp4", ftyp, mdat, moov(chunkOffset));
+		Path target = directory.resolve("faststart.mp4");
+
+		try (Mp4File mp4File = Mp4File.open(file)) {
+			assertThat(mp4File.isFaststart()).isFalse();
+			mp4File.writeFaststart(target);
+		}
+
+		byte[] rewritten = Files.readAllBytes(target);
+		assertThat(rewritten).hasSameSizeAs(Files.readAllBytes(file));
+		try (Mp4File mp4File = Mp4File.open(target)) {
+			assertThat(mp4File.isFaststart()).isTrue();
+			assertThat(mp4File.mediaInfo().videoCodec()).isEqualTo("avc1");
+		}
+
+		int moovSize = moov(0).length;
+		assertThat(new String(rewritten, ftyp.length + 4, 4, StandardCharsets.US_ASCII)).isEqualTo("moov");
+		long shiftedOffset = readChunkOffset(rewritten, ftyp.length);
+		assertThat(shiftedOffset).isEqualTo(chunkOffset + moovSize);
+		assertThat(new String(rewritten, (int) shiftedOffset, 7, StandardCharsets.US_ASCII)).isEqualTo("frame-0");
+	}
+
+	@Test
+	void rejectsFilesThatAreNotMp4() throws Exception {
+		Path file = directory.resolve("notes.txt");
+		Files.writeString(file, "definitely not a video file");
+
+		assertThatThrownBy(() -> Mp4File.open(file)).isInstanceOf(Mp4FormatException.class);
+	}
+
+	private Path write(String name, byte[]... boxes) throws Exception {
+		var out = new ByteArrayOutputStream();
+		for (byte[] box : boxes) {
+			out.write(box);
+		}
+		Path file = directory.resolve(name);
+		Files.write(file, out.toByteArray());
+		return file;
+	}
+
+	/** Finds the first stco entry in the moov box that starts at the given offset. */
+	private static long readChunkOffset(byte[] file, int moovOffset) {
+		String content = new String(file, StandardCharsets.ISO_8859_1);
+		int stco = content.indexOf("stco", moovOffset);
+		return Integer.toUnsignedLong(ByteBuffer.wrap(file).getInt(stco + 4 + 8));
+	}
+
+	private static byte[] ftyp() {
+		return box("ftyp", bytes("isom"), ints(512), bytes("isomavc1"));
+	}
+
+	private static byte[] mdat() {
+		return box("mdat", MEDIA);
+	}
+
+	private static byte[] moov(long chunkOffset) {
+		// Version 0 mvhd: timescale 1000, duration 12.5 s
+		byte[] mvhd = box("mvhd", ints(0, 0, 0, 1000, 12_500), new byte[80]);
+		return box("moov", mvhd, track("vide", "avc1", 1280, 720, chunkOffset), track("soun", "mp4a", 0, 0, 0));
+	}
+
+	private static byte[] track(String handler, String codec, int width, int height, long chunkOffset) {
+		// Version 0 tkhd: fields before the 16.16 width and height take 76 bytes
+		byte[] tkhd = box("tkhd", new byte[76], ints(width << 16, height << 16));
+		byte[] hdlr = box("hdlr", ints(0, 0), bytes(handler), new byte[12], new byte[] { 0 });
+		byte[] stsd = box("stsd", ints(0, 1), box(codec, new byte[8]));
+		byte[] stco = box("stco", ints(0, 1, (int) chunkOffset));
+		byte[] minf = box("minf", box("stbl", stsd, stco));
+		return box("trak", tkhd, box("mdia", hdlr, minf));
+	}
+
+	private static byte[] box(String type, byte[]... parts) {
+		var content = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			content.writeBytes(part);
+		}
+		return ByteBuffer.allocate(8 + content.size())
+				.putInt(8 + content.size())
+				.put(bytes(type))
+				.put(content.toByteArray())
+				.array();
+	}
+
+	private static byte[] ints(int... values) {
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+		for (int value : values) {
+			buffer.putInt(value);
+		}
+		return buffer.array();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,72 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.model.Comment;
+
+class CommentMigrationTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulkOperations = mock(BulkOperations.class);
+	private final CommentMigration migration = new CommentMigration(mongoTemplate);
+
+	@Test
+	void repeatedRunsWriteTheSameComments() {
+		ObjectId videoId = new ObjectId();
+		Document legacyVideo = new Document("_id", videoId).append("commentList", List.of(
+				new Document("text", "first").append("authorId", "a"),
+				new Document("text", "second").append("authorId", "b")));
+		// The video keeps its commentList when a run is interrupted before the final update
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("Video")))
+				.thenAnswer(invocation -> Stream.of(legacyVideo));
+		when(mongoTemplate.getCollectionName(Comment.class)).thenReturn("Comment");
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, "Comment")).thenReturn(bulkOperations);
+		when(mongoTemplate.count(any(Query.class), eq(Comment.class))).thenReturn(3L);
+
+		migration.run(null);
+		migration.run(null);
+
+		ArgumentCaptor<Query> keys = ArgumentCaptor.forClass(Query.class);
+		verify(bulkOperations, times(4)).upsert(keys.capture(), any(Update.class));
+		assertThat(keys.getAllValues().subList(0, 2)).isEqualTo(keys.getAllValues().subList(2, 4));
+		assertThat(keys.getAllValues().get(0)).isNotEqualTo(keys.getAllValues().get(1));
+
+		// The count includes comments added since, and only a legacy video is updated
+		verify(mongoTemplate, times(2)).updateFirst(
+				Query.query(Criteria.where("_id").is(videoId).and("commentList").exists(true)),
+				new Update().unset("commentList").set("commentCount", 3), "Video");
+	}
+
+	@Test
+	void skipsTheBulkWriteForVideosWithoutComments() {
+		Document legacyVideo = new Document("_id", new ObjectId()).append("commentList", List.of());
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("Video")))
+				.thenReturn(Stream.of(legacyVideo));
+
+		migration.run(null);
+
+		verify(mongoTemplate, times(0)).bulkOps(any(BulkMode.class), anyString());
+		verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq("Video"));
+	}
+}
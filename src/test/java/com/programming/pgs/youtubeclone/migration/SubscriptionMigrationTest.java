@@ -0,0 +1,62 @@
+package com.programming.pgs.youtubeclone.migration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.model.Subscription;
+
+class SubscriptionMigrationTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulkOperations = mock(BulkOperations.class);
+	private final SubscriptionMigration migration = new SubscriptionMigration(mongoTemplate);
+
+	@Test
+	void recomputesTheCountersBeforeRemovingTheEmbeddedSets() {
+		Document legacyUser = new Document("_id", new ObjectId()).append("subscribedToUsers", List.of("followee"))
+				.append("subscribers", List.of("follower"));
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("User")))
+				.thenReturn(Stream.of(legacyUser));
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Subscription.class)).thenReturn(bulkOperations);
+
+		migration.run(null);
+
+		// A run interrupted before the sets are removed is redone with its counters
+		InOrder order = inOrder(bulkOperations, mongoTemplate);
+		order.verify(bulkOperations).execute();
+		order.verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(Subscription.class),
+				eq(Document.class));
+		order.verify(mongoTemplate).updateMulti(any(Query.class),
+				eq(new Update().unset("subscribedToUsers").unset("subscribers")), eq("User"));
+	}
+
+	@Test
+	void leavesTheCountersAloneWithoutLegacyUsers() {
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("User"))).thenReturn(Stream.empty());
+
+		migration.run(null);
+
+		verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(Subscription.class), eq(Document.class));
+		verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq("User"));
+	}
+}
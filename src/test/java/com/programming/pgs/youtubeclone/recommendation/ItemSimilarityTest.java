@@ -0,0 +1,116 @@
+package com.programming.pgs.youtubeclone.recommendation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+class ItemSimilarityTest {
+
+	@Test
+	void ranksItemsByCosineOfTheirUsers() {
+		InteractionGraph graph = new InteractionGraph();
+		// a and b share three users, a and c share two, but c is watched by everyone
+		for (String user : List.of("u1", "u2", "u3")) {
+			graph.add(user, "a");
+			graph.add(user, "b");
+		}
+		for (String user : List.of("u1", "u2", "u4", "u5", "u6", "u7")) {
+			graph.add(user, "c");
+		}
+
+		List<SimilarItem> similarItems = new ItemSimilarity(graph, 10, 100, 1).similarTo("a");
+
+		assertThat(similarItems).extracting(SimilarItem::itemId).containsExactly("b", "c");
+		assertThat(similarItems.get(0).score()).isCloseTo(1.0, within(1e-9));
+		assertThat(similarItems.get(1).score()).isCloseTo(2 / Math.sqrt(3 * 6), within(1e-9));
+	}
+
+	@Test
+	void ignoresRareCooccurrencesAndUnknownItems() {
+		InteractionGraph graph = new InteractionGraph();
+		graph.add("u1", "a");
+		graph.add("u1", "b");
+		graph.add("u1", "c");
+		graph.add("u2", "a");
+		graph.add("u2", "b");
+
+		ItemSimilarity similarity = new ItemSimilarity(graph, 10, 100, 2);
+
+		assertThat(similarity.similarTo("a")).extracting(SimilarItem::itemId).containsExactly("b");
+		assertThat(similarity.similarTo("missing")).isEmpty();
+	}
+
+	@Test
+	void countsEachInteractionOnce() {
+		InteractionGraph graph = new InteractionGraph();
+
+		assertThat(graph.add("u1", "a")).isTrue();
+		assertThat(graph.add("u1", "a")).isFalse();
+		assertThat(graph.add("u1", "b")).isTrue();
+		assertThat(graph.recentItemIds("u1", 1)).containsExactly("b");
+		assertThat(graph.recentItemIds("missing", 1)).isEmpty();
+	}
+
+	@Test
+	void parallelBuildMatchesSingleItems() {
+		InteractionGraph graph = syntheticGraph(2_000, 500, 20, new Random(7));
+		ItemSimilarity similarity = new ItemSimilarity(graph, 10, 50, 2);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<List<SimilarItem>> related = similarity.computeAll(pool);
+			assertThat(related).hasSize(graph.itemCount());
+			for (int item = 0; item < related.size(); item++) {
+				assertThat(related.get(item)).isEqualTo(similarity.similarTo(similarity.itemId(item)));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Build time at 100k users, sequential and on every core. Run with
+	 * {@code mvn test -Dtest=ItemSimilarityTest -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkBuild() {
+		InteractionGraph graph = syntheticGraph(100_000, 50_000, 40, new Random(42));
+		ItemSimilarity similarity = new ItemSimilarity(graph, 20, 200, 2);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for (int parallelism : new int[] { 1, cores }) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				similarity.computeAll(pool);
+				long start = System.nanoTime();
+				similarity.computeAll(pool);
+				System.out.printf("%d users, %d items, %d threads: %d ms%n", graph.userCount(), graph.itemCount(),
+						parallelism, (System.nanoTime() - start) / 1_000_000);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Users with a random number of interactions, skewed towards popular items.
+	 */
+	private static InteractionGraph syntheticGraph(int users, int items, int meanItemsPerUser, Random random) {
+		InteractionGraph graph = new InteractionGraph();
+		for (int user = 0; user < users; user++) {
+			int count = 1 + random.nextInt(2 * meanItemsPerUser);
+			for (int i = 0; i < count; i++) {
+				int item = (int) Math.min(items - 1, Math.exp(random.nextDouble() * Math.log(items)) - 1);
+				graph.add("user-" + user, "video-" + item);
+			}
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,158 @@
+package com.programming.pgs.youtubeclone.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+class InvertedIndexTest {
+
+	private final InvertedIndex index = new InvertedIndex();
+
+	@Test
+	void ranksTitleMatchesAboveDescriptionMatches() {
+		index.put("described", 1, "Weekend vlog", "Baking sourdough bread at home", List.of());
+		index.put("titled", 1, "Sourdough bread", "A weekend at home", List.of());
+		index.put("unrelated", 1, "Guitar lesson", "Learning chords", List.of("music"));
+
+		assertThat(ids(index.search("sourdough", 10))).containsExactly("titled", "described");
+		assertThat(ids(index.search("Music", 10))).containsExactly("unrelated");
+		assertThat(index.search("", 10)).isEmpty();
+	}
+
+	@Test
+	void matchesTheLastTermAsAPrefix() {
+		index.put("guitar", 1, "Guitar lesson", null, List.of());
+		index.put("guide", 1, "Travel guide", null, List.of());
+
+		assertThat(ids(index.search("gui", 10))).containsExactlyInAnyOrder("guitar", "guide");
+		assertThat(ids(index.search("guitar less", 10))).containsExactly("guitar");
+		assertThat(ids(index.search("guid", 10))).containsExactly("guide");
+	}
+
+	@Test
+	void normalizesCaseAndAccents() {
+		index.put("video", 1, "Crème Brûlée", null, List.of());
+
+		assertThat(ids(index.search("CREME brulee", 10))).containsExactly("video");
+	}
+
+	@Test
+	void suggestsCompletionsByDocumentFrequency() {
+		index.put("a", 1, "Cooking pasta", null, List.of());
+		index.put("b", 1, "Cooking rice", null, List.of());
+		index.put("c", 1, "Cookies", null, List.of());
+
+		assertThat(index.suggest("easy coo", 10)).containsExactly("easy cooking", "easy cookies");
+		assertThat(index.suggest("coo", 1)).containsExactly("cooking");
+		assertThat(index.suggest("xyz", 10)).isEmpty();
+	}
+
+	@Test
+	void replacesAndRemovesDocumentsByVersion() {
+		index.put("video", 2, "Old title", null, List.of());
+		index.put("video", 3, "New title", null, List.of());
+		index.put("video", 1, "Stale title", null, List.of());
+
+		assertThat(index.search("old", 10)).isEmpty();
+		assertThat(index.search("stale", 10)).isEmpty();
+		assertThat(ids(index.search("new", 10))).containsExactly("video");
+
+		assertThat(index.remove("video", 2)).isFalse();
+		assertThat(index.remove("video", 4)).isTrue();
+		assertThat(index.put("video", 3, "New title", null, List.of())).isFalse();
+		assertThat(index.search("new", 10)).isEmpty();
+		assertThat(index.size()).isZero();
+	}
+
+	@Test
+	void forgetsRemovedDocumentsOnceTombstonesAreCleared() {
+		index.put("live", 5, "Live title", null, List.of());
+		index.remove("removed", 5);
+
+		index.clearTombstones();
+
+		assertThat(index.put("live", 4, "Stale title", null, List.of())).isFalse();
+		assertThat(index.put("removed", 1, "Indexed again", null, List.of())).isTrue();
+		assertThat(ids(index.search("again", 10))).containsExactly("removed");
+	}
+
+	@Test
+	void keepsSearchingAfterCompaction() {
+		for (int i = 0; i < 4000; i++) {
+			index.put("video-" + i, 1, "Common title " + i, null, List.of());
+		}
+		for (int i = 0; i < 2000; i++) {
+			index.remove("video-" + i, 2);
+		}
+
+		assertThat(index.size()).isEqualTo(2000);
+		assertThat(ids(index.search("title 3999", 1))).containsExactly("video-3999");
+		assertThat(index.search("1999", 10)).isEmpty();
+		assertThat(index.search("common", 5000)).hasSize(2000);
+	}
+
+	/**
+	 * Build time and query latency for one million documents. Run with
+	 * {@code mvn test -Dtest=InvertedIndexTest -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkBuildAndSearch() {
+		String[] vocabulary = new String[20_000];
+		Random random = new Random(42);
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+		}
+		int documents = 1_000_000;
+		InvertedIndex largeIndex = new InvertedIndex();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < documents; i++) {
+			largeIndex.put("video-" + i, 1, words(vocabulary, random, 6), words(vocabulary, random, 30),
+					List.of(vocabulary[zipf(random, vocabulary.length)], vocabulary[zipf(random, vocabulary.length)]));
+		}
+		System.out.printf("Indexed %d documents in %d ms%n", documents, (System.nanoTime() - start) / 1_000_000);
+
+		int queries = 10_000;
+		start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			largeIndex.search(words(vocabulary, random, 2), 20);
+		}
+		System.out.printf("Two-term search, frequent terms: %.3f ms%n", (System.nanoTime() - start) / 1e6 / queries);
+
+		start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			largeIndex.search(vocabulary[random.nextInt(vocabulary.length)] + " "
+					+ vocabulary[random.nextInt(vocabulary.length)], 20);
+		}
+		System.out.printf("Two-term search, uniform terms: %.3f ms%n", (System.nanoTime() - start) / 1e6 / queries);
+
+		start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			String word = vocabulary[zipf(random, vocabulary.length)];
+			largeIndex.suggest(word.substring(0, Math.min(2, word.length())), 10);
+		}
+		System.out.printf("Suggestions: %.3f ms%n", (System.nanoTime() - start) / 1e6 / queries);
+	}
+
+	private static String words(String[] vocabulary, Random random, int count) {
+		StringBuilder words = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			words.append(vocabulary[zipf(random, vocabulary.length)]).append(' ');
+		}
+		return words.toString();
+	}
+
+	// Skews the word choice towards the start of the vocabulary, like natural text
+	private static int zipf(Random random, int size) {
+		return (int) Math.min(size - 1, Math.exp(random.nextDouble() * Math.log(size)) - 1);
+	}
+
+	private static List<String> ids(List<SearchHit> hits) {
+		return hits.stream().map(SearchHit::documentId).toList();
+	}
+}
@@ -0,0 +1,152 @@
+package com.programming.pgs.youtubeclone.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+class MinHashIndexTest {
+
+	private final MinHashIndex index = new MinHashIndex();
+
+	@Test
+	void findsVideosWithSimilarTitlesAndTags() {
+		index.put("original", 1, "How to bake sourdough bread at home", List.of("baking", "bread"));
+		index.put("close", 1, "How to bake sourdough bread", List.of("baking", "bread"));
+		index.put("related", 1, "Sourdough bread starter", List.of("bread"));
+		index.put("unrelated", 1, "Learning guitar chords", List.of("music"));
+
+		List<SearchHit> hits = index.similarTo("original", 10);
+
+		assertThat(hits).extracting(SearchHit::documentId).startsWith("close").doesNotContain("original", "unrelated");
+		assertThat(hits.get(0).score()).isGreaterThan(0.5);
+	}
+
+	@Test
+	void ignoresCaseAndAccentsOfTags() {
+		index.put("a", 1, null, List.of("Crème Brûlée", "Dessert"));
+		index.put("b", 1, null, List.of("creme brulee", "dessert"));
+
+		assertThat(index.similarTo("a", 10)).extracting(SearchHit::documentId).containsExactly("b");
+		assertThat(index.similarTo("a", 10).get(0).score()).isEqualTo(1.0);
+	}
+
+	@Test
+	void replacesAndRemovesDocumentsByVersion() {
+		index.put("a", 1, "Guitar lesson for beginners", List.of("music"));
+		index.put("b", 1, "Guitar lesson for beginners", List.of("music"));
+		index.put("b", 2, "Sourdough bread", List.of("baking"));
+		index.put("b", 1, "Guitar lesson for beginners", List.of("music"));
+
+		assertThat(index.similarTo("a", 10)).isEmpty();
+
+		index.put("c", 1, "Guitar lesson for beginners", List.of("music"));
+		assertThat(index.remove("c", 2)).isTrue();
+		assertThat(index.similarTo("a", 10)).isEmpty();
+		assertThat(index.similarTo("c", 10)).isEmpty();
+		assertThat(index.put("d", 1, null, List.of())).isTrue();
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	@Test
+	void forgetsRemovedDocumentsOnceTombstonesAreCleared() {
+		index.put("live", 5, "Guitar lesson for beginners", List.of("music"));
+		index.remove("removed", 5);
+
+		index.clearTombstones();
+
+		assertThat(index.put("live", 4, "Sourdough bread", List.of("baking"))).isFalse();
+		assertThat(index.put("removed", 1, "Guitar lesson for beginners", List.of("music"))).isTrue();
+		assertThat(index.similarTo("live", 10)).extracting(SearchHit::documentId).containsExactly("removed");
+	}
+
+	/**
+	 * Recall and latency against a brute-force Jaccard scan over 100k videos. Run
+	 * with {@code mvn test -Dtest=MinHashIndexTest -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkAgainstBruteForce() {
+		int documents = 100_000;
+		int topics = 5_000;
+		Random random = new Random(42);
+		List<Set<String>> features = new ArrayList<>(documents);
+		for (int i = 0; i < documents; i++) {
+			// Videos of a topic vary the words of a common title and pick from the same tags
+			int topic = random.nextInt(topics);
+			StringBuilder title = new StringBuilder();
+			for (int word = 0; word < 6; word++) {
+				title.append(random.nextInt(4) == 0 ? "word" + random.nextInt(10_000) : topic + "w" + word).append(' ');
+			}
+			List<String> tags = List.of(topic + "t" + random.nextInt(2), topic + "t" + (2 + random.nextInt(2)),
+					"common" + random.nextInt(50));
+			index.put("video-" + i, 1, title.toString(), tags);
+			features.add(MinHashIndex.features(title.toString(), tags));
+		}
+
+		int queries = 200;
+		int k = 10;
+		double recall = 0;
+		long lshNanos = 0;
+		long bruteForceNanos = 0;
+		for (int q = 0; q < queries; q++) {
+			int query = random.nextInt(documents);
+
+			long start = System.nanoTime();
+			List<SearchHit> hits = index.similarTo("video-" + query, k);
+			lshNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<Integer> exact = bruteForce(features, query, k);
+			bruteForceNanos += System.nanoTime() - start;
+
+			// Many videos tie on the k-th similarity, any of them counts as a correct hit
+			if (!exact.isEmpty()) {
+				Set<String> queryFeatures = features.get(query);
+				double kthSimilarity = jaccard(queryFeatures, features.get(exact.get(exact.size() - 1)));
+				long correct = hits.stream()
+						.map(hit -> features.get(Integer.parseInt(hit.documentId().substring("video-".length()))))
+						.filter(hitFeatures -> jaccard(queryFeatures, hitFeatures) >= kthSimilarity)
+						.count();
+				recall += (double) correct / exact.size();
+			} else {
+				recall++;
+			}
+		}
+
+		System.out.printf("Recall@%d: %.3f%n", k, recall / queries);
+		System.out.printf("LSH: %.3f ms, brute force: %.3f ms%n", lshNanos / 1e6 / queries,
+				bruteForceNanos / 1e6 / queries);
+	}
+
+	private static List<Integer> bruteForce(List<Set<String>> features, int query, int k) {
+		Set<String> queryFeatures = features.get(query);
+		List<double[]> scored = new ArrayList<>();
+		for (int document = 0; document < features.size(); document++) {
+			if (document != query) {
+				double similarity = jaccard(queryFeatures, features.get(document));
+				if (similarity > 0) {
+					scored.add(new double[] { similarity, document });
+				}
+			}
+		}
+		scored.sort(Comparator.comparingDouble((double[] entry) -> entry[0]).reversed());
+		return scored.stream().limit(k).map(entry -> (int) entry[1]).toList();
+	}
+
+	private static double jaccard(Set<String> first, Set<String> second) {
+		int intersection = 0;
+		for (String feature : first) {
+			if (second.contains(feature)) {
+				intersection++;
+			}
+		}
+		return (double) intersection / (first.size() + second.size() - intersection);
+	}
+}
@@ -0,0 +1,83 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.UpdateResult;
+import com.programming.pgs.youtubeclone.dto.CommentDto;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.model.Comment;
+import com.programming.pgs.youtubeclone.model.Video;
+
+class CommentServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final VideoCache videoCache = mock(VideoCache.class);
+	private final TrendingService trendingService = mock(TrendingService.class);
+	private final CommentService commentService = new CommentService(mongoTemplate, videoCache, trendingService);
+
+	@Test
+	void rollsTheCountBackWhenTheInsertFails() {
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Video.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+		when(mongoTemplate.insert(any(Comment.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+		assertThatThrownBy(() -> commentService.addComment("video", comment("Nice")))
+				.isInstanceOf(DataAccessResourceFailureException.class);
+
+		verify(mongoTemplate).updateFirst(any(Query.class), eq(new Update().inc("commentCount", -1)),
+				eq(Video.class));
+		verifyNoInteractions(trendingService);
+	}
+
+	@Test
+	void rejectsCommentsOnMissingVideos() {
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Video.class)))
+				.thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+		assertThatThrownBy(() -> commentService.addComment("missing", comment("Nice")))
+				.isInstanceOf(IllegalArgumentException.class);
+		verify(mongoTemplate, never()).insert(any(Comment.class));
+	}
+
+	@Test
+	void pagesThroughCommentsWithACursor() {
+		List<Comment> fetched = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			fetched.add(new Comment(new ObjectId().toHexString(), "video", "comment " + i, "author", null, null,
+					Instant.ofEpochSecond(100 - i)));
+		}
+		when(mongoTemplate.find(any(Query.class), eq(Comment.class))).thenReturn(fetched);
+
+		CursorPage<CommentDto> page = commentService.getComments("video", null, 2);
+
+		// The extra comment only tells that there is a next page
+		assertThat(page.getItems()).extracting(CommentDto::getCommentText).containsExactly("comment 0", "comment 1");
+		assertThat(page.getNextCursor()).isNotNull();
+	}
+
+	private static CommentDto comment(String text) {
+		var commentDto = new CommentDto();
+		commentDto.setCommentText(text);
+		commentDto.setAuthorId("author");
+		return commentDto;
+	}
+}
@@ -0,0 +1,129 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.programming.pgs.youtubeclone.model.ContentObject;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ContentStoreTest {
+
+	// SHA-256 of "content"
+	private static final String SHA256 = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+	private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	Path directory;
+
+	private final FileService fileService = mock(FileService.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ContentStore contentStore = new ContentStore(fileService, mongoTemplate, meterRegistry);
+
+	@Test
+	void hashesStreamsAndMultipartFilesAlike() throws Exception {
+		var streamed = ContentStore.spool(new ByteArrayInputStream(CONTENT), directory.resolve("streamed"));
+		var transferred = ContentStore.spool(new MockMultipartFile("file", "clip.mp4", "video/mp4", CONTENT),
+				directory.resolve("transferred"));
+
+		assertThat(streamed.sha256()).isEqualTo(SHA256);
+		assertThat(transferred.sha256()).isEqualTo(SHA256);
+		assertThat(transferred.contentLength()).isEqualTo(CONTENT.length);
+	}
+
+	@Test
+	void storesUnknownContentUnderItsHash() {
+		when(fileService.storeAs(eq(SHA256 + ".jpg"), any(InputStream.class), eq("image/jpeg"), eq(7L)))
+				.thenReturn(new StoredFile(SHA256 + ".jpg", "http://files.test/" + SHA256 + ".jpg"));
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(ContentObject.class)))
+				.thenReturn(null)
+				.thenReturn(contentObject(SHA256 + ".jpg", 1));
+
+		StoredFile storedFile = contentStore.store(CONTENT, "thumbnail.JPG", "image/jpeg");
+
+		assertThat(storedFile.key()).isEqualTo(SHA256 + ".jpg");
+		ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+		verify(mongoTemplate, times(2)).findAndModify(any(Query.class),
+				any(UpdateDefinition.class), options.capture(), eq(ContentObject.class));
+		// Only the registration of the new object may insert
+		assertThat(options.getAllValues()).extracting(FindAndModifyOptions::isUpsert).containsExactly(false, true);
+		assertThat(meterRegistry.counter("storage.dedup.hits").count()).isZero();
+	}
+
+	@Test
+	void addsAReferenceToKnownContentWithoutWritingIt() {
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(ContentObject.class)))
+				.thenReturn(contentObject(SHA256 + ".png", 2));
+
+		StoredFile storedFile = contentStore.store(CONTENT, "thumbnail.jpg", "image/jpeg");
+
+		assertThat(storedFile.key()).isEqualTo(SHA256 + ".png");
+		verifyNoInteractions(fileService);
+		assertThat(meterRegistry.counter("storage.dedup.hits").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("storage.dedup.bytes.saved").count()).isEqualTo(CONTENT.length);
+	}
+
+	@Test
+	void yieldsToAConcurrentUploadOfTheSameContent() {
+		when(fileService.storeAs(anyString(), any(InputStream.class), anyString(), anyLong()))
+				.thenReturn(new StoredFile(SHA256 + ".jpg", "http://files.test/" + SHA256 + ".jpg"));
+		// Both uploads missed, then both upserted the same hash and this one lost
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(ContentObject.class)))
+				.thenReturn(null)
+				.thenThrow(new DuplicateKeyException("E11000 duplicate key"))
+				.thenReturn(contentObject(SHA256 + ".jpeg", 2));
+
+		StoredFile storedFile = contentStore.store(CONTENT, "thumbnail.jpg", "image/jpeg");
+
+		assertThat(storedFile.key()).isEqualTo(SHA256 + ".jpeg");
+		verify(fileService).delete(SHA256 + ".jpg");
+		verify(fileService, never()).delete(SHA256 + ".jpeg");
+	}
+
+	@Test
+	void releasesOneReferenceWithoutGoingNegative() {
+		contentStore.release(SHA256 + ".jpg");
+		contentStore.release(null);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+		verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(ContentObject.class));
+		assertThat(query.getValue().getQueryObject().toString()).contains(SHA256 + ".jpg").contains("$gt");
+		assertThat(update.getValue()).isEqualTo(new Update().inc("refCount", -1));
+	}
+
+	private static ContentObject contentObject(String key, long refCount) {
+		return new ContentObject(SHA256, key, "http://files.test/" + key, "image/jpeg", CONTENT.length, refCount,
+				Instant.EPOCH);
+	}
+}
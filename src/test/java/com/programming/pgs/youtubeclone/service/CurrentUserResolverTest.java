@@ -0,0 +1,87 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CurrentUserResolverTest {
+
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private CurrentUserResolver resolver;
+
+	@BeforeEach
+	void setUp() {
+		resolver = new CurrentUserResolver(userRepository, meterRegistry, 100, Duration.ofMinutes(1));
+	}
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void loadsAUserOnceAcrossRequestsUntilEvicted() {
+		User user = user("auth0|1");
+		when(userRepository.findBySub("auth0|1")).thenReturn(Optional.of(user));
+
+		startRequest();
+		assertThat(resolver.resolve("auth0|1")).isSameAs(user);
+		assertThat(resolver.resolve("auth0|1")).isSameAs(user);
+		startRequest();
+		assertThat(resolver.resolve("auth0|1")).isSameAs(user);
+		verify(userRepository, times(1)).findBySub("auth0|1");
+		assertThat(meterRegistry.get("user.current.request.hits").counter().count()).isEqualTo(1);
+
+		// A write drops the user from the request memo and the shared cache
+		resolver.evict(user);
+		resolver.resolve("auth0|1");
+		verify(userRepository, times(2)).findBySub("auth0|1");
+	}
+
+	@Test
+	void doesNotServeTheMemoOfAnotherSubject() {
+		when(userRepository.findBySub("auth0|1")).thenReturn(Optional.of(user("auth0|1")));
+		when(userRepository.findBySub("auth0|2")).thenReturn(Optional.of(user("auth0|2")));
+
+		startRequest();
+		resolver.resolve("auth0|1");
+
+		assertThat(resolver.resolve("auth0|2").getSub()).isEqualTo("auth0|2");
+	}
+
+	@Test
+	void rejectsUnknownSubjects() {
+		when(userRepository.findBySub("auth0|missing")).thenReturn(Optional.empty());
+
+		assertThatThrownBy(() -> resolver.resolve("auth0|missing")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static void startRequest() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+	}
+
+	private static User user(String sub) {
+		var user = new User();
+		user.setSub(sub);
+		return user;
+	}
+}
@@ -0,0 +1,135 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.util.PageCursor;
+
+class FeedServiceTest {
+
+	private final List<Video> videos = new ArrayList<>();
+	private final List<Integer> fetchSizes = new ArrayList<>();
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private FeedService feedService;
+
+	@BeforeEach
+	void setUp() {
+		feedService = spy(new FeedService(mongoTemplate, 100));
+		// Serves fetches from memory, like the aggregation would
+		doAnswer(invocation -> {
+			List<String> channelIds = invocation.getArgument(0);
+			PageCursor after = invocation.getArgument(1);
+			int size = invocation.getArgument(2);
+			fetchSizes.add(size);
+			List<Video> fetched = new ArrayList<>();
+			for (String channelId : channelIds) {
+				videos.stream()
+						.filter(video -> video.getUserId().equals(channelId))
+						.filter(video -> after == null || isAfter(video, after))
+						.sorted(newestFirst())
+						.limit(size)
+						.forEach(fetched::add);
+			}
+			return fetched;
+		}).when(feedService).fetch(anyList(), any(), anyInt());
+	}
+
+	@Test
+	void mergesChannelsNewestFirstAcrossPages() {
+		Random random = new Random(3);
+		List<String> channels = new ArrayList<>();
+		for (int channel = 0; channel < 50; channel++) {
+			channels.add("channel-" + channel);
+			// A few channels upload far more than the others
+			int uploads = channel < 3 ? 200 : random.nextInt(5);
+			for (int i = 0; i < uploads; i++) {
+				addVideo("channel-" + channel, Instant.ofEpochSecond(random.nextInt(1_000_000)));
+			}
+		}
+		addVideo("not-followed", Instant.ofEpochSecond(2_000_000));
+
+		List<String> merged = new ArrayList<>();
+		String cursor = null;
+		do {
+			CursorPage<String> page = feedService.getFeed(channels, cursor, 20);
+			assertThat(page.getItems()).hasSizeLessThanOrEqualTo(20);
+			merged.addAll(page.getItems());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+
+		List<String> expected = videos.stream()
+				.filter(video -> !video.getUserId().equals("not-followed"))
+				.sorted(newestFirst())
+				.map(Video::getId)
+				.toList();
+		assertThat(merged).isEqualTo(expected);
+		assertThat(fetchSizes).allMatch(size -> size <= 21);
+	}
+
+	@Test
+	void returnsAnEmptyPageWithoutChannels() {
+		CursorPage<String> page = feedService.getFeed(List.of(), null, 20);
+
+		assertThat(page.getItems()).isEmpty();
+		assertThat(page.getNextCursor()).isNull();
+		assertThat(fetchSizes).isEmpty();
+	}
+
+	@Test
+	void fetchesListedVideosOnly() {
+		when(mongoTemplate.getCollectionName(Video.class)).thenReturn("Video");
+		when(mongoTemplate.aggregate(any(Aggregation.class), eq("Video"), eq(Video.class)))
+				.thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+		new FeedService(mongoTemplate, 100).fetch(List.of("first", "second"), null, 5);
+
+		ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+		verify(mongoTemplate).aggregate(aggregation.capture(), eq("Video"), eq(Video.class));
+		// Pending and failed uploads would otherwise take the places of playable videos
+		assertThat(aggregation.getValue().toString())
+				.contains("\"userId\" : \"first\"").contains("\"userId\" : \"second\"")
+				.contains("videoStatus").contains("uploadStatus").contains("$nin");
+	}
+
+	private void addVideo(String userId, Instant createdAt) {
+		var video = new Video();
+		video.setId(new ObjectId().toHexString());
+		video.setUserId(userId);
+		video.setCreatedAt(createdAt);
+		videos.add(video);
+	}
+
+	private static boolean isAfter(Video video, PageCursor cursor) {
+		int byTime = video.getCreatedAt().compareTo(cursor.timestamp());
+		return byTime < 0 || byTime == 0 && video.getId().compareTo(cursor.id()) < 0;
+	}
+
+	private static Comparator<Video> newestFirst() {
+		return Comparator.comparing(Video::getCreatedAt).thenComparing(Video::getId).reversed();
+	}
+}
@@ -0,0 +1,77 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class LocalFileServiceTest {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void storesObjectsInShardedDirectories() throws Exception {
+		var fileService = newFileService(LocalFileService.FsyncPolicy.DATA);
+		byte[] content = randomBytes(1_000_000);
+
+		StoredFile storedFile = fileService.store(new ByteArrayInputStream(content), "clip.mp4", "video/mp4",
+				content.length);
+
+		String key = storedFile.key();
+		assertThat(key).endsWith(".mp4");
+		assertThat(storedFile.url()).isEqualTo("http://files.test/" + key);
+		Path path = fileService.resolve(key).orElseThrow();
+		assertThat(path).isEqualTo(root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key));
+		assertThat(Files.readAllBytes(path)).isEqualTo(content);
+		try (var temporaryFiles = Files.list(root.resolve(".tmp"))) {
+			assertThat(temporaryFiles).isEmpty();
+		}
+	}
+
+	@Test
+	void rejectsKeysOutsideTheRoot() throws Exception {
+		var fileService = newFileService(LocalFileService.FsyncPolicy.NONE);
+
+		assertThat(fileService.resolve("../../etc/passwd")).isEmpty();
+		assertThat(fileService.resolve(".tmp")).isEmpty();
+		assertThat(fileService.resolve("0000-missing.mp4")).isEmpty();
+	}
+
+	/**
+	 * Write throughput per fsync policy. Run with
+	 * {@code mvn test -Dtest=LocalFileServiceTest -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkWriteThroughput() throws Exception {
+		byte[] content = randomBytes((int) DataSize.ofMegabytes(64).toBytes());
+		for (LocalFileService.FsyncPolicy policy : LocalFileService.FsyncPolicy.values()) {
+			var fileService = newFileService(policy);
+			int files = 16;
+			long start = System.nanoTime();
+			for (int i = 0; i < files; i++) {
+				fileService.store(new ByteArrayInputStream(content), "clip.mp4", "video/mp4", content.length);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("fsync=%s: %.1f MB/s%n", policy, files * 64 / seconds);
+		}
+	}
+
+	private LocalFileService newFileService(LocalFileService.FsyncPolicy fsyncPolicy) throws Exception {
+		return new LocalFileService(root.toString(), "http://files.test/", fsyncPolicy, DataSize.ofKilobytes(256));
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+}
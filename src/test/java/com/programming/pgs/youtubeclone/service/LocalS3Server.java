@@ -0,0 +1,215 @@
+package com.programming.pgs.youtubeclone.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process S3-compatible server for tests, speaking the REST protocol
+ * with path-style addressing: single PUTs and the multipart upload calls
+ * (initiate, upload part, complete, abort). Requests signed with streaming
+ * SigV4 ({@code aws-chunked}) are decoded; signatures are not checked.
+ *
+ * <p>
+ * {@link #failPart(int, int)} makes the next uploads of a part fail with
+ * {@code 500 InternalError}, to exercise retries and aborts.
+ * </p>
+ */
+class LocalS3Server implements AutoCloseable {
+
+	private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+	private final HttpServer server;
+	private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+	private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+	private final Map<Integer, AtomicInteger> partFailures = new ConcurrentHashMap<>();
+	private final AtomicInteger partAttempts = new AtomicInteger();
+	private final AtomicInteger abortedUploads = new AtomicInteger();
+	private final AtomicInteger completedUploads = new AtomicInteger();
+
+	LocalS3Server() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	String endpoint() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/** Makes the next {@code times} uploads of the given part fail. */
+	void failPart(int partNumber, int times) {
+		partFailures.put(partNumber, new AtomicInteger(times));
+	}
+
+	byte[] object(String bucket, String key) {
+		return objects.get(bucket + "/" + key);
+	}
+
+	int openUploads() {
+		return uploads.size();
+	}
+
+	int partAttempts() {
+		return partAttempts.get();
+	}
+
+	int abortedUploads() {
+		return abortedUploads.get();
+	}
+
+	int completedUploads() {
+		return completedUploads.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8)
+					.substring(1);
+			Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+			byte[] body = body(exchange);
+			String method = exchange.getRequestMethod();
+
+			if (method.equals("POST") && parameters.containsKey("uploads")) {
+				String uploadId = UUID.randomUUID().toString();
+				uploads.put(uploadId, new ConcurrentHashMap<>());
+				String[] bucketAndKey = path.split("/", 2);
+				respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + bucketAndKey[0]
+						+ "</Bucket><Key>" + bucketAndKey[1] + "</Key><UploadId>" + uploadId
+						+ "</UploadId></InitiateMultipartUploadResult>");
+			} else if (method.equals("PUT") && parameters.containsKey("uploadId")) {
+				uploadPart(exchange, parameters, body);
+			} else if (method.equals("POST") && parameters.containsKey("uploadId")) {
+				completeUpload(exchange, path, parameters.get("uploadId"), body);
+			} else if (method.equals("DELETE") && parameters.containsKey("uploadId")) {
+				uploads.remove(parameters.get("uploadId"));
+				abortedUploads.incrementAndGet();
+				exchange.sendResponseHeaders(204, -1);
+			} else if (method.equals("PUT")) {
+				objects.put(path, body);
+				exchange.getResponseHeaders().add("ETag", "\"" + md5(body) + "\"");
+				exchange.sendResponseHeaders(200, -1);
+			} else {
+				respond(exchange, 501, "<Error><Code>NotImplemented</Code></Error>");
+			}
+		}
+	}
+
+	private void uploadPart(HttpExchange exchange, Map<String, String> parameters, byte[] body) throws IOException {
+		partAttempts.incrementAndGet();
+		int partNumber = Integer.parseInt(parameters.get("partNumber"));
+		AtomicInteger failures = partFailures.get(partNumber);
+		if (failures != null && failures.getAndDecrement() > 0) {
+			respond(exchange, 500, "<Error><Code>InternalError</Code><Message>Injected failure</Message></Error>");
+			return;
+		}
+		Map<Integer, byte[]> parts = uploads.get(parameters.get("uploadId"));
+		if (parts == null) {
+			respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+			return;
+		}
+		parts.put(partNumber, body);
+		exchange.getResponseHeaders().add("ETag", "\"" + md5(body) + "\"");
+		exchange.sendResponseHeaders(200, -1);
+	}
+
+	private void completeUpload(HttpExchange exchange, String path, String uploadId, byte[] body) throws IOException {
+		Map<Integer, byte[]> parts = uploads.remove(uploadId);
+		if (parts == null) {
+			respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+			return;
+		}
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		Matcher partNumbers = PART_NUMBER.matcher(new String(body, StandardCharsets.UTF_8));
+		while (partNumbers.find()) {
+			content.writeBytes(parts.get(Integer.parseInt(partNumbers.group(1))));
+		}
+		objects.put(path, content.toByteArray());
+		completedUploads.incrementAndGet();
+		String[] bucketAndKey = path.split("/", 2);
+		respond(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + bucketAndKey[0] + "</Bucket><Key>"
+				+ bucketAndKey[1] + "</Key><ETag>\"" + md5(content.toByteArray()) + "-" + parts.size()
+				+ "\"</ETag></CompleteMultipartUploadResult>");
+	}
+
+	/** Reads the request body, decoding the {@code aws-chunked} framing of streaming signatures. */
+	private static byte[] body(HttpExchange exchange) throws IOException {
+		byte[] raw = exchange.getRequestBody().readAllBytes();
+		String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+		if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+			return raw;
+		}
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		int position = 0;
+		while (true) {
+			int lineEnd = indexOfCrlf(raw, position);
+			String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+			int size = Integer.parseInt(header.split(";", 2)[0], 16);
+			position = lineEnd + 2;
+			if (size == 0) {
+				return decoded.toByteArray();
+			}
+			decoded.write(raw, position, size);
+			position += size + 2;
+		}
+	}
+
+	private static int indexOfCrlf(byte[] bytes, int from) {
+		for (int i = from; i < bytes.length - 1; i++) {
+			if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Malformed aws-chunked body");
+	}
+
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				String[] nameAndValue = parameter.split("=", 2);
+				parameters.put(URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8),
+						nameAndValue.length > 1 ? URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8) : "");
+			}
+		}
+		return parameters;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+		byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/xml");
+		exchange.sendResponseHeaders(status, body.length);
+		try (InputStream ignored = exchange.getRequestBody()) {
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	private static String md5(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.mongodb.client.result.UpdateResult;
+import com.programming.pgs.youtubeclone.dto.CompleteUploadRequest;
+import com.programming.pgs.youtubeclone.dto.UploadUrlRequest;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+class PresignedUploadServiceTest {
+
+	private static final long PART_SIZE = DataSize.ofMegabytes(8).toBytes();
+
+	private final S3Service s3Service = mock(S3Service.class);
+	private final VideoRepository videoRepository = mock(VideoRepository.class);
+	private final VideoCache videoCache = mock(VideoCache.class);
+	private final VideoSearchService videoSearchService = mock(VideoSearchService.class);
+	private final UserService userService = mock(UserService.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final PresignedUploadService presignedUploadService = new PresignedUploadService(s3Service,
+			videoRepository, videoCache, videoSearchService, mock(TagService.class), userService, mongoTemplate, Duration.ofMinutes(15), DataSize.ofGigabytes(5),
+			Duration.ofHours(24));
+
+	@BeforeEach
+	void signIn() {
+		var user = new User();
+		user.setId("owner");
+		when(userService.getCurrentUser()).thenReturn(user);
+		when(s3Service.getPartSize()).thenReturn(PART_SIZE);
+		when(videoRepository.save(any(Video.class))).thenAnswer(invocation -> invocation.getArgument(0));
+	}
+
+	@Test
+	void persistsTheMultipartUploadIdWithThePendingVideo() throws Exception {
+		when(s3Service.initiateMultipartUpload(any(), eq("video/mp4"))).thenReturn("upload-1");
+		when(s3Service.presignPart(any(), eq("upload-1"), any(Integer.class), any(Date.class)))
+				.thenReturn(new URL("http://s3.test/part"));
+
+		var response = presignedUploadService.createUpload(new UploadUrlRequest("clip.mp4", "video/mp4", 2 * PART_SIZE));
+
+		ArgumentCaptor<Video> saved = ArgumentCaptor.forClass(Video.class);
+		verify(videoRepository).save(saved.capture());
+		assertThat(saved.getValue().getUploadStatus()).isEqualTo(UploadStatus.PENDING);
+		assertThat(saved.getValue().getUploadId()).isEqualTo("upload-1");
+		assertThat(response.getUploadId()).isEqualTo("upload-1");
+		assertThat(response.getPartUrls()).hasSize(2);
+	}
+
+	@Test
+	void leavesTheExtensionOffKeysOfFilesWithoutOne() throws Exception {
+		when(s3Service.presignPut(any(), eq("video/mp4"), any(Date.class))).thenReturn(new URL("http://s3.test/put"));
+
+		presignedUploadService.createUpload(new UploadUrlRequest("clip", "video/mp4", PART_SIZE));
+
+		ArgumentCaptor<Video> saved = ArgumentCaptor.forClass(Video.class);
+		verify(videoRepository).save(saved.capture());
+		assertThat(saved.getValue().getVideoKey()).doesNotContain(".");
+	}
+
+	@Test
+	void rejectsCompletionByAnotherUser() {
+		when(videoRepository.findById("video")).thenReturn(Optional.of(pendingVideo("someone-else", "upload-1")));
+
+		assertThatThrownBy(() -> presignedUploadService.completeUpload("video",
+				new CompleteUploadRequest("upload-1", List.of())))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+		verify(s3Service, never()).completeMultipartUpload(any(), any(), any());
+	}
+
+	@Test
+	void rejectsAnUploadIdOfAnotherUpload() {
+		when(videoRepository.findById("video")).thenReturn(Optional.of(pendingVideo("owner", "upload-1")));
+
+		assertThatThrownBy(() -> presignedUploadService.completeUpload("video",
+				new CompleteUploadRequest("upload-2", List.of())))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+		verify(s3Service, never()).completeMultipartUpload(any(), any(), any());
+	}
+
+	@Test
+	void completesTheMultipartUploadOfTheOwner() {
+		Video video = pendingVideo("owner", "upload-1");
+		when(videoRepository.findById("video")).thenReturn(Optional.of(video));
+		var metadata = new ObjectMetadata();
+		metadata.setContentLength(video.getContentLength());
+		metadata.setContentType(video.getContentType());
+		when(s3Service.getObjectMetadata("key.mp4")).thenReturn(Optional.of(metadata));
+		when(s3Service.getObjectUrl("key.mp4")).thenReturn("http://s3.test/key.mp4");
+		var completed = new Video();
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class))).thenReturn(completed);
+
+		var response = presignedUploadService.completeUpload("video",
+				new CompleteUploadRequest("upload-1", List.of(new CompleteUploadRequest.Part(1, "etag"))));
+
+		verify(s3Service).completeMultipartUpload(eq("key.mp4"), eq("upload-1"), any());
+		assertThat(response.getVideoUrl()).isEqualTo("http://s3.test/key.mp4");
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+		verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+				eq(Video.class));
+		assertThat(query.getValue().getQueryObject().get("uploadStatus")).isEqualTo(UploadStatus.PENDING);
+		// Only the upload fields are written, not metadata edited since the video was read
+		Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+		assertThat(set.keySet()).containsExactlyInAnyOrder("videoUrl", "uploadStatus");
+		assertThat(set.get("uploadStatus")).isEqualTo(UploadStatus.READY);
+		assertThat(update.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("uploadId");
+		verify(videoRepository, never()).save(video);
+		verify(videoSearchService).update(completed);
+	}
+
+	@Test
+	void expiresAbandonedUploads() {
+		Video abandoned = pendingVideo("owner", "upload-1");
+		Video lostJob = new Video();
+		lostJob.setId("job-video");
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(List.of(abandoned, lostJob));
+		when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Video.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+		presignedUploadService.sweepExpiredUploads();
+
+		verify(s3Service).abortMultipartUpload("key.mp4", "upload-1");
+		verify(s3Service).delete("key.mp4");
+		verify(videoCache).invalidate("video");
+		verify(videoCache).invalidate("job-video");
+		verify(s3Service).abortMultipartUploadsInitiatedBefore(any(Date.class));
+	}
+
+	private static Video pendingVideo(String userId, String uploadId) {
+		var video = new Video();
+		video.setId("video");
+		video.setUserId(userId);
+		video.setVideoKey("key.mp4");
+		video.setContentType("video/mp4");
+		video.setContentLength(2 * PART_SIZE);
+		video.setUploadStatus(UploadStatus.PENDING);
+		video.setUploadId(uploadId);
+		return video;
+	}
+}
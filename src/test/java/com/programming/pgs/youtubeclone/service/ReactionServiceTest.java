@@ -0,0 +1,126 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.programming.pgs.youtubeclone.model.Reaction;
+import com.programming.pgs.youtubeclone.model.ReactionType;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.ReactionRepository;
+
+class ReactionServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final VideoCache videoCache = mock(VideoCache.class);
+	private final TrendingService trendingService = mock(TrendingService.class);
+	private final RecommendationService recommendationService = mock(RecommendationService.class);
+	private final ReactionService reactionService = new ReactionService(mongoTemplate,
+			mock(ReactionRepository.class), videoCache, trendingService, recommendationService);
+
+	@Test
+	void togglesLikeToDislikeToNone() {
+		// The previous states the reaction document goes through
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Reaction.class)))
+				.thenReturn(null)
+				.thenReturn(reaction(ReactionType.LIKE))
+				.thenReturn(reaction(ReactionType.DISLIKE));
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class))).thenReturn(new Video());
+
+		reactionService.react("user", "video", ReactionType.LIKE);
+		reactionService.react("user", "video", ReactionType.DISLIKE);
+		reactionService.react("user", "video", ReactionType.DISLIKE);
+
+		ArgumentCaptor<UpdateDefinition> counters = ArgumentCaptor.forClass(UpdateDefinition.class);
+		verify(mongoTemplate, times(3)).findAndModify(any(Query.class), counters.capture(),
+				any(FindAndModifyOptions.class), eq(Video.class));
+		assertThat(counters.getAllValues()).containsExactly(
+				new Update().inc("likes", 1).inc("disLikes", 0),
+				new Update().inc("likes", -1).inc("disLikes", 1),
+				new Update().inc("likes", 0).inc("disLikes", -1));
+		verify(trendingService).recordReaction("video", -1, 1);
+		verify(recommendationService).recordLike("user", "video");
+	}
+
+	@Test
+	void dropsTheReactionCreatedForAMissingVideo() {
+		assertThatThrownBy(() -> reactionService.react("user", "missing", ReactionType.LIKE))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		verify(mongoTemplate).remove(any(Query.class), eq(Reaction.class));
+	}
+
+	@Test
+	void restoresTheExistingReactionForAMissingVideo() {
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Reaction.class))).thenReturn(reaction(ReactionType.DISLIKE));
+
+		assertThatThrownBy(() -> reactionService.react("user", "missing", ReactionType.LIKE))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(Reaction.class));
+		// Only undone if nothing toggled it since
+		assertThat(query.getValue().getQueryObject().get("type")).isEqualTo(ReactionType.LIKE);
+		assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("type"))
+				.isEqualTo(ReactionType.DISLIKE);
+		verify(mongoTemplate, never()).remove(any(Query.class), eq(Reaction.class));
+	}
+
+	@Test
+	void reconcilesCountersWithTheReactions() {
+		BulkOperations bulkOperations = mock(BulkOperations.class);
+		BulkWriteResult result = mock(BulkWriteResult.class);
+		when(result.getModifiedCount()).thenReturn(1);
+		when(bulkOperations.execute()).thenReturn(result);
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Video.class)).thenReturn(bulkOperations);
+		when(mongoTemplate.findDistinct(any(Query.class), eq("videoId"), eq(Reaction.class), eq(String.class)))
+				.thenReturn(List.of("liked", "unliked"));
+		Document likes = new Document("_id", new Document("videoId", "liked").append("type", "LIKE"))
+				.append("count", 3);
+		Document dislikes = new Document("_id", new Document("videoId", "liked").append("type", "DISLIKE"))
+				.append("count", 1);
+		when(mongoTemplate.aggregate(any(Aggregation.class), eq(Reaction.class), eq(Document.class)))
+				.thenReturn(new AggregationResults<>(List.of(likes, dislikes), new Document()));
+
+		reactionService.reconcileCounters();
+
+		ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+		verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+		assertThat(updates.getAllValues()).containsExactly(
+				new Update().set("likes", 3).set("disLikes", 1),
+				new Update().set("likes", 0).set("disLikes", 0));
+		verify(videoCache).invalidateAll(List.of("liked", "unliked"));
+	}
+
+	private static Reaction reaction(ReactionType type) {
+		var reaction = new Reaction();
+		reaction.setType(type);
+		return reaction;
+	}
+}
@@ -0,0 +1,149 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+
+/**
+ * Runs {@link S3Service} through the real SDK client against
+ * {@link LocalS3Server}. SDK retries are disabled so part retries are the
+ * service's own.
+ */
+class S3ServiceTest {
+
+	private static final String BUCKET = "videos";
+	private static final int PART_SIZE = (int) DataSize.ofMegabytes(5).toBytes();
+
+	private LocalS3Server server;
+	private S3Service s3Service;
+
+	@BeforeEach
+	void startServer() throws Exception {
+		server = new LocalS3Server();
+		AmazonS3 client = AmazonS3ClientBuilder.standard()
+				.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(server.endpoint(), "us-east-1"))
+				.withPathStyleAccessEnabled(true)
+				.withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("test", "test")))
+				.withClientConfiguration(new ClientConfiguration().withMaxErrorRetry(0))
+				.build();
+		s3Service = new S3Service(client, BUCKET, DataSize.ofMegabytes(5), 2, 2, 2);
+	}
+
+	@AfterEach
+	void stopServer() {
+		s3Service.shutdown();
+		server.close();
+	}
+
+	@Test
+	void uploadsSmallContentWithOnePut() {
+		byte[] content = randomBytes(PART_SIZE - 1);
+
+		StoredFile storedFile = s3Service.storeAs("small.mp4", new ByteArrayInputStream(content), "video/mp4",
+				content.length);
+
+		assertThat(storedFile.key()).isEqualTo("small.mp4");
+		assertThat(server.object(BUCKET, "small.mp4")).isEqualTo(content);
+		assertThat(server.partAttempts()).isZero();
+	}
+
+	@Test
+	void completesAMultipartUploadAfterRetryingAFailedPart() {
+		byte[] content = randomBytes(2 * PART_SIZE + 1_000_000);
+		server.failPart(2, 1);
+
+		s3Service.storeAs("large.mp4", new ByteArrayInputStream(content), "video/mp4", content.length);
+
+		assertThat(server.object(BUCKET, "large.mp4")).isEqualTo(content);
+		assertThat(server.completedUploads()).isEqualTo(1);
+		// Three parts of 5 MB, 5 MB and 1 MB, plus one retry of the second
+		assertThat(server.partAttempts()).isEqualTo(4);
+		assertThat(server.openUploads()).isZero();
+		assertThat(server.abortedUploads()).isZero();
+	}
+
+	@Test
+	void abortsTheMultipartUploadWhenAPartKeepsFailing() {
+		byte[] content = randomBytes(2 * PART_SIZE);
+		server.failPart(1, Integer.MAX_VALUE);
+
+		assertThatThrownBy(() -> s3Service.storeAs("broken.mp4", new ByteArrayInputStream(content), "video/mp4",
+				content.length))
+				.isInstanceOf(ResponseStatusException.class);
+
+		assertThat(server.object(BUCKET, "broken.mp4")).isNull();
+		assertThat(server.abortedUploads()).isEqualTo(1);
+		assertThat(server.openUploads()).isZero();
+		assertThat(server.completedUploads()).isZero();
+	}
+
+	@Test
+	void stopsReadingTheStreamOnceAPartHasFailed() {
+		int parts = 40;
+		for (int partNumber = 1; partNumber <= parts; partNumber++) {
+			server.failPart(partNumber, Integer.MAX_VALUE);
+		}
+		CountingInputStream content = new CountingInputStream((long) parts * PART_SIZE);
+
+		assertThatThrownBy(() -> s3Service.storeAs("broken.mp4", content, "video/mp4", -1))
+				.isInstanceOf(ResponseStatusException.class);
+
+		// The first part, the parts in flight, and at most one read ahead
+		assertThat(content.read).isLessThanOrEqualTo(4L * PART_SIZE);
+		assertThat(server.abortedUploads()).isEqualTo(1);
+	}
+
+	/** Produces zero bytes lazily and counts how many were read. */
+	private static final class CountingInputStream extends InputStream {
+
+		private final long length;
+		private long read;
+
+		CountingInputStream(long length) {
+			this.length = length;
+		}
+
+		@Override
+		public int read() {
+			if (read >= length) {
+				return -1;
+			}
+			read++;
+			return 0;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) {
+			if (read >= length) {
+				return -1;
+			}
+			int chunk = (int) Math.min(count, length - read);
+			Arrays.fill(buffer, offset, offset + chunk, (byte) 0);
+			read += chunk;
+			return chunk;
+		}
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+}
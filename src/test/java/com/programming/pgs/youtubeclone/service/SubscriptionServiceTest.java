@@ -0,0 +1,70 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.bson.BsonObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.programming.pgs.youtubeclone.model.Subscription;
+import com.programming.pgs.youtubeclone.model.User;
+
+class SubscriptionServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final CurrentUserResolver currentUserResolver = mock(CurrentUserResolver.class);
+	private final SubscriptionService subscriptionService = new SubscriptionService(mongoTemplate,
+			currentUserResolver);
+
+	@Test
+	void countsANewSubscriptionOnce() {
+		when(mongoTemplate.exists(any(Query.class), eq(User.class))).thenReturn(true);
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Subscription.class)))
+				.thenReturn(UpdateResult.acknowledged(0, 0L, new BsonObjectId()))
+				.thenReturn(UpdateResult.acknowledged(1, 0L, null));
+
+		assertThat(subscriptionService.subscribe("follower", "channel")).isTrue();
+		assertThat(subscriptionService.subscribe("follower", "channel")).isFalse();
+
+		verify(mongoTemplate).findAndModify(any(Query.class), eq(new Update().inc("subscriptionCount", 1)),
+				any(FindAndModifyOptions.class), eq(User.class));
+		verify(mongoTemplate).findAndModify(any(Query.class), eq(new Update().inc("subscriberCount", 1)),
+				any(FindAndModifyOptions.class), eq(User.class));
+	}
+
+	@Test
+	void decrementsOnlyWhenTheSubscriptionExisted() {
+		when(mongoTemplate.remove(any(Query.class), eq(Subscription.class)))
+				.thenReturn(DeleteResult.acknowledged(0));
+
+		assertThat(subscriptionService.unsubscribe("follower", "channel")).isFalse();
+
+		verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+				any(FindAndModifyOptions.class), eq(User.class));
+	}
+
+	@Test
+	void rejectsSelfSubscriptionsAndMissingUsers() {
+		assertThatThrownBy(() -> subscriptionService.subscribe("user", "user"))
+				.isInstanceOf(ResponseStatusException.class);
+		verifyNoInteractions(mongoTemplate);
+
+		assertThatThrownBy(() -> subscriptionService.subscribe("follower", "missing"))
+				.isInstanceOf(IllegalArgumentException.class);
+		verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(Subscription.class));
+	}
+}
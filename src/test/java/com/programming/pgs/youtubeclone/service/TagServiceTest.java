@@ -0,0 +1,83 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.model.TagCount;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+
+class TagServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulkOperations = mock(BulkOperations.class);
+	private final TagService tagService = new TagService(mongoTemplate);
+
+	@Test
+	void appliesOnlyTheChangedTags() {
+		when(mongoTemplate.bulkOps(BulkMode.ORDERED, TagCount.class)).thenReturn(bulkOperations);
+
+		tagService.updateCounts(Set.of("music", "live"), Set.of("music", "jazz"));
+
+		InOrder order = inOrder(bulkOperations);
+		order.verify(bulkOperations).upsert(Query.query(Criteria.where("_id").is("jazz")), new Update().inc("count", 1));
+		order.verify(bulkOperations).updateOne(Query.query(Criteria.where("_id").is("live")),
+				new Update().inc("count", -1));
+		order.verify(bulkOperations).remove(Query.query(Criteria.where("_id").in(Set.of("live")).and("count").lte(0)));
+		order.verify(bulkOperations).execute();
+		verify(bulkOperations, never()).upsert(Query.query(Criteria.where("_id").is("music")),
+				new Update().inc("count", 1));
+	}
+
+	@Test
+	void countsTheTagsOfAnUntaggedVideo() {
+		when(mongoTemplate.bulkOps(BulkMode.ORDERED, TagCount.class)).thenReturn(bulkOperations);
+
+		tagService.updateCounts(null, Set.of("music"));
+
+		verify(bulkOperations).upsert(Query.query(Criteria.where("_id").is("music")), new Update().inc("count", 1));
+		verify(bulkOperations, never()).remove(any(Query.class));
+		verify(bulkOperations).execute();
+	}
+
+	@Test
+	void countsTheTagsOfListedVideosOnly() {
+		var video = new Video();
+		video.setTags(Set.of("music"));
+		video.setVideoStatus(VideoStatus.PUBLIC);
+		video.setUploadStatus(UploadStatus.PENDING);
+		assertThat(TagService.countedTags(video)).isNull();
+
+		video.setUploadStatus(UploadStatus.READY);
+		assertThat(TagService.countedTags(video)).containsExactly("music");
+
+		video.setVideoStatus(VideoStatus.PRIVATE);
+		assertThat(TagService.countedTags(video)).isNull();
+	}
+
+	@Test
+	void skipsTheWriteWhenTagsAreUnchanged() {
+		tagService.updateCounts(Set.of("music"), Set.of("music"));
+		tagService.updateCounts(null, Set.of());
+
+		verifyNoInteractions(mongoTemplate);
+	}
+}
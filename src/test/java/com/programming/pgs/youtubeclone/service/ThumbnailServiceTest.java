@@ -0,0 +1,109 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.ThumbnailRendition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ThumbnailServiceTest {
+
+	private final ContentStore contentStore = mock(ContentStore.class);
+	private ThumbnailService thumbnailService;
+
+	@BeforeEach
+	void setUp() {
+		when(contentStore.store(any(byte[].class), anyString(), anyString())).thenAnswer(invocation -> {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(invocation.getArgument(0)));
+			String key = image.getWidth() + "x" + image.getHeight() + ".jpg";
+			return new StoredFile(key, "https://cdn.example.com/" + key);
+		});
+		thumbnailService = new ThumbnailService(contentStore, new SimpleMeterRegistry(), List.of(640, 160, 320, 1280),
+				0.8f, 1_000_000, 2);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		thumbnailService.shutdown();
+	}
+
+	@Test
+	void createsRenditionsNarrowerThanTheImage() throws Exception {
+		List<ThumbnailRendition> renditions = thumbnailService.createRenditions(png(800, 450));
+
+		assertThat(renditions).extracting(ThumbnailRendition::getWidth).containsExactly(160, 320, 640);
+		assertThat(renditions).extracting(ThumbnailRendition::getHeight).containsExactly(90, 180, 360);
+		assertThat(renditions).extracting(ThumbnailRendition::getKey)
+				.containsExactly("160x90.jpg", "320x180.jpg", "640x360.jpg");
+	}
+
+	@Test
+	void keepsSmallImagesAtTheirOwnSize() throws Exception {
+		List<ThumbnailRendition> renditions = thumbnailService.createRenditions(png(120, 90));
+
+		assertThat(renditions).extracting(ThumbnailRendition::getKey).containsExactly("120x90.jpg");
+	}
+
+	@Test
+	void releasesTheStoredRenditionsWhenOneFails() throws Exception {
+		when(contentStore.store(any(byte[].class), anyString(), anyString())).thenAnswer(invocation -> {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(invocation.getArgument(0)));
+			if (image.getWidth() == 320) {
+				throw new IllegalStateException("storage unavailable");
+			}
+			String key = image.getWidth() + "x" + image.getHeight() + ".jpg";
+			return new StoredFile(key, "https://cdn.example.com/" + key);
+		});
+
+		assertThatThrownBy(() -> thumbnailService.createRenditions(png(800, 450)))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("500");
+
+		verify(contentStore).release("160x90.jpg");
+		verify(contentStore).release("640x360.jpg");
+		verify(contentStore, times(2)).release(anyString());
+	}
+
+	@Test
+	void rejectsFilesThatAreNotImages() {
+		var file = new MockMultipartFile("file", "thumbnail.png", "image/png", "not an image".getBytes());
+
+		assertThatThrownBy(() -> thumbnailService.createRenditions(file)).isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("400");
+	}
+
+	@Test
+	void rejectsImagesWithTooManyPixels() throws Exception {
+		var file = png(2000, 1000);
+
+		assertThatThrownBy(() -> thumbnailService.createRenditions(file)).isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("too large");
+	}
+
+	private static MockMultipartFile png(int width, int height) throws Exception {
+		var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		var outputStream = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", outputStream);
+		return new MockMultipartFile("file", "thumbnail.png", "image/png", outputStream.toByteArray());
+	}
+}
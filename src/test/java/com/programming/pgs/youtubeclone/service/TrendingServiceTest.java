@@ -0,0 +1,88 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.model.TrendingScore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TrendingServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private TrendingService trendingService;
+
+	@BeforeEach
+	void setUp() {
+		trendingService = new TrendingService(mongoTemplate, new SimpleMeterRegistry(), Duration.ofHours(6), 2, 3,
+				0.1, 1, 10, -5, 5);
+	}
+
+	@Test
+	void ranksVideosByWeightedActivity() {
+		trendingService.recordViews("viewed", 12);
+		trendingService.recordReaction("liked", 1, 0);
+		trendingService.recordComment("commented");
+		trendingService.apply();
+
+		assertThat(trendingService.getTopVideoIds(10)).containsExactly("viewed", "liked");
+		assertThat(trendingService.getTopVideoIds(1)).containsExactly("viewed");
+	}
+
+	@Test
+	void takesPointsAwayWhenReactionsAreRemoved() {
+		trendingService.recordReaction("first", 1, 0);
+		trendingService.recordViews("second", 8);
+		trendingService.apply();
+		assertThat(trendingService.getTopVideoIds(2)).containsExactly("first", "second");
+
+		trendingService.recordReaction("first", -1, 1);
+		trendingService.apply();
+
+		assertThat(trendingService.getTopVideoIds(2)).containsExactly("second");
+	}
+
+	@Test
+	void publishesRankingOnlyOnApply() {
+		trendingService.recordViews("video", 1);
+
+		assertThat(trendingService.getTopVideoIds(10)).isEmpty();
+		trendingService.apply();
+		assertThat(trendingService.getTopVideoIds(10)).containsExactly("video");
+	}
+
+	@Test
+	void checkpointsChangedAndDroppedScores() {
+		BulkOperations bulkOperations = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, TrendingScore.class)).thenReturn(bulkOperations);
+
+		for (int i = 1; i <= 4; i++) {
+			trendingService.recordViews("video-" + i, i);
+		}
+		trendingService.apply();
+		trendingService.checkpoint();
+
+		// At most three videos are tracked, the lowest ranked one is dropped
+		verify(bulkOperations, times(3)).upsert(any(Query.class), any(Update.class));
+		verify(bulkOperations).remove(any(Query.class));
+		verify(bulkOperations).execute();
+
+		trendingService.checkpoint();
+		verify(mongoTemplate, times(1)).bulkOps(eq(BulkMode.UNORDERED), eq(TrendingScore.class));
+	}
+}
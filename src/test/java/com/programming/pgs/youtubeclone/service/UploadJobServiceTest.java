@@ -0,0 +1,217 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.dto.UploadJobStatus;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UploadJobServiceTest {
+
+	private static final int MAX_UPLOAD_SIZE = 1024;
+
+	@TempDir
+	Path spoolDirectory;
+
+	private final ContentStore contentStore = mock(ContentStore.class);
+	private final FileService fileService = mock(FileService.class);
+	private final MediaProcessor mediaProcessor = mock(MediaProcessor.class);
+	private final VideoRepository videoRepository = mock(VideoRepository.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final UserService userService = mock(UserService.class);
+	private final VideoSearchService videoSearchService = mock(VideoSearchService.class);
+	private UploadJobService uploadJobService;
+
+	@BeforeEach
+	void createService() throws Exception {
+		var user = new User();
+		user.setId("owner");
+		when(userService.getCurrentUser()).thenReturn(user);
+		when(videoRepository.save(any(Video.class))).thenAnswer(invocation -> {
+			Video video = invocation.getArgument(0);
+			video.setId("video");
+			return video;
+		});
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class))).thenReturn(new Video());
+		uploadJobService = new UploadJobService(contentStore, fileService, mediaProcessor, videoRepository,
+				mongoTemplate, mock(VideoCache.class), videoSearchService, mock(TagService.class), userService, new SimpleMeterRegistry(), 1, 10, 3,
+				Duration.ZERO, Duration.ofMinutes(1), spoolDirectory.toString(), DataSize.ofBytes(MAX_UPLOAD_SIZE));
+	}
+
+	@AfterEach
+	void shutdown() throws Exception {
+		uploadJobService.shutdown();
+	}
+
+	@Test
+	void rehashesFilesRewrittenByTheMediaStage() throws Exception {
+		byte[] rewritten = "rewritten".getBytes(StandardCharsets.UTF_8);
+		when(mediaProcessor.process(any(Path.class))).thenAnswer(invocation -> {
+			Files.write(invocation.<Path>getArgument(0), rewritten);
+			return new MediaProcessor.ProcessedMedia(null, true);
+		});
+		ArgumentCaptor<ContentStore.SpooledContent> stored = ArgumentCaptor.forClass(ContentStore.SpooledContent.class);
+		when(contentStore.store(stored.capture(), eq("clip.mp4"), eq("video/mp4")))
+				.thenReturn(new StoredFile("key.mp4", "http://files.test/key.mp4"));
+
+		var job = uploadJobService.submit(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)),
+				"clip.mp4", "video/mp4", -1);
+		await(job.getJobId(), UploadJobStatus.SUCCEEDED);
+
+		String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(rewritten));
+		assertThat(stored.getValue().sha256()).isEqualTo(expected);
+		assertThat(stored.getValue().contentLength()).isEqualTo(rewritten.length);
+	}
+
+	@Test
+	void retriesOnlyTheUpdateOnceTheContentIsStored() throws Exception {
+		when(mediaProcessor.process(any(Path.class))).thenReturn(new MediaProcessor.ProcessedMedia(null, false));
+		when(contentStore.store(any(ContentStore.SpooledContent.class), eq("clip.mp4"), eq("video/mp4")))
+				.thenReturn(new StoredFile("key.mp4", "http://files.test/key.mp4"));
+		var ready = new Video();
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class)))
+				.thenThrow(new IllegalStateException("write failed"))
+				.thenReturn(ready);
+
+		var job = uploadJobService.submit(new ByteArrayInputStream(new byte[] { 1 }), "clip.mp4", "video/mp4", 1);
+		await(job.getJobId(), UploadJobStatus.SUCCEEDED);
+
+		verify(contentStore).store(any(ContentStore.SpooledContent.class), eq("clip.mp4"), eq("video/mp4"));
+		verify(contentStore, never()).release(any());
+		// Listed now, so indexed with any metadata edited while it was pending
+		verify(videoSearchService).update(ready);
+	}
+
+	@Test
+	void releasesTheContentOfVideosThatStoppedBeingPending() throws Exception {
+		when(mediaProcessor.process(any(Path.class))).thenReturn(new MediaProcessor.ProcessedMedia(null, false));
+		when(contentStore.store(any(ContentStore.SpooledContent.class), eq("clip.mp4"), eq("video/mp4")))
+				.thenReturn(new StoredFile("key.mp4", "http://files.test/key.mp4"));
+		when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class))).thenReturn(null);
+
+		var job = uploadJobService.submit(new ByteArrayInputStream(new byte[] { 1 }), "clip.mp4", "video/mp4", 1);
+		await(job.getJobId(), UploadJobStatus.FAILED);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).findAndModify(query.capture(), any(UpdateDefinition.class),
+				any(FindAndModifyOptions.class), eq(Video.class));
+		// An upload expired by the sweep is not brought back
+		assertThat(query.getValue().getQueryObject().get("uploadStatus")).isEqualTo(UploadStatus.PENDING);
+		verify(contentStore).release("key.mp4");
+		verifyNoInteractions(videoSearchService);
+	}
+
+	@Test
+	void streamsRawBodiesStraightToStorage() throws Exception {
+		InputStream body = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+		when(fileService.store(any(InputStream.class), eq("clip.mp4"), eq("video/mp4"), eq(3L)))
+				.thenAnswer(invocation -> {
+					// Read through the size limit rather than copied
+					assertThat(invocation.<InputStream>getArgument(0).readAllBytes()).containsExactly(1, 2, 3);
+					return new StoredFile("key.mp4", "http://files.test/key.mp4");
+				});
+
+		var response = uploadJobService.store(body, "clip.mp4", "video/mp4", 3);
+
+		assertThat(response.getVideoUrl()).isEqualTo("http://files.test/key.mp4");
+		ArgumentCaptor<Video> saved = ArgumentCaptor.forClass(Video.class);
+		verify(videoRepository).save(saved.capture());
+		assertThat(saved.getValue().getUploadStatus()).isEqualTo(UploadStatus.READY);
+		assertThat(saved.getValue().getUserId()).isEqualTo("owner");
+		verifyNoInteractions(contentStore, mediaProcessor);
+		try (var spooledFiles = Files.list(spoolDirectory)) {
+			assertThat(spooledFiles).isEmpty();
+		}
+	}
+
+	@Test
+	void rejectsBodiesDeclaredLargerThanTheLimit() {
+		assertThatThrownBy(() -> uploadJobService.submit(new ByteArrayInputStream(new byte[0]), "clip.mp4",
+				"video/mp4", MAX_UPLOAD_SIZE + 1))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+		verifyNoInteractions(videoRepository);
+	}
+
+	@Test
+	void stopsSpoolingBodiesThatGoPastTheLimit() throws Exception {
+		var body = new ByteArrayInputStream(new byte[64 * MAX_UPLOAD_SIZE]);
+
+		assertThatThrownBy(() -> uploadJobService.submit(body, "clip.mp4", "video/mp4", -1))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+		assertThat(body.available()).isPositive();
+		verifyNoInteractions(videoRepository);
+		try (var spooledFiles = Files.list(spoolDirectory)) {
+			assertThat(spooledFiles).isEmpty();
+		}
+	}
+
+	@Test
+	void stopsStreamingBodiesThatGoPastTheLimit() {
+		when(fileService.store(any(InputStream.class), eq("clip.mp4"), eq("video/mp4"), eq(-1L)))
+				.thenAnswer(invocation -> {
+					try {
+						invocation.<InputStream>getArgument(0).readAllBytes();
+						return new StoredFile("key.mp4", "http://files.test/key.mp4");
+					} catch (IOException ioException) {
+						// As the storage backends report read failures
+						throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "upload failed");
+					}
+				});
+
+		assertThatThrownBy(() -> uploadJobService.store(new ByteArrayInputStream(new byte[4 * MAX_UPLOAD_SIZE]),
+				"clip.mp4", "video/mp4", -1))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+		verifyNoInteractions(videoRepository);
+	}
+
+	private void await(String jobId, UploadJobStatus status) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			if (uploadJobService.getJob(jobId).orElseThrow().getStatus() == status) {
+				return;
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError("Upload job " + jobId + " did not reach " + status);
+	}
+}
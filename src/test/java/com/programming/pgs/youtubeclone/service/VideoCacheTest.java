@@ -0,0 +1,96 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.repository.VideoRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VideoCacheTest {
+
+	private final VideoRepository videoRepository = mock(VideoRepository.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private VideoCache videoCache;
+
+	@BeforeEach
+	void setUp() {
+		videoCache = new VideoCache(videoRepository, meterRegistry, 100, Duration.ofMinutes(1));
+	}
+
+	@Test
+	void coalescesConcurrentMissesIntoOneLoad() throws Exception {
+		var video = video("video-1");
+		var loadStarted = new CountDownLatch(1);
+		var releaseLoad = new CountDownLatch(1);
+		when(videoRepository.findById("video-1")).thenAnswer(invocation -> {
+			loadStarted.countDown();
+			releaseLoad.await(5, TimeUnit.SECONDS);
+			return Optional.of(video);
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Video>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> videoCache.get("video-1")));
+			}
+			assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+			releaseLoad.countDown();
+			for (Future<Video> result : results) {
+				assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(video);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		verify(videoRepository, times(1)).findById("video-1");
+		assertThat(meterRegistry.get("video.cache.load").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void reloadsInvalidatedVideos() {
+		when(videoRepository.findById("video-1")).thenReturn(Optional.of(video("video-1")));
+
+		videoCache.get("video-1");
+		videoCache.get("video-1");
+		videoCache.invalidate("video-1");
+		videoCache.get("video-1");
+
+		verify(videoRepository, times(2)).findById("video-1");
+	}
+
+	@Test
+	void doesNotCacheMissingVideos() {
+		when(videoRepository.findById("missing")).thenReturn(Optional.empty());
+
+		assertThatThrownBy(() -> videoCache.get("missing")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> videoCache.get("missing")).isInstanceOf(IllegalArgumentException.class);
+
+		verify(videoRepository, times(2)).findById("missing");
+	}
+
+	private static Video video(String id) {
+		var video = new Video();
+		video.setId(id);
+		return video;
+	}
+}
@@ -0,0 +1,81 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VideoSearchServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final VideoSearchService videoSearchService = new VideoSearchService(mongoTemplate,
+			new SimpleMeterRegistry());
+
+	@BeforeEach
+	void buildIndex() throws Exception {
+		when(mongoTemplate.stream(any(Query.class), eq(Video.class))).thenReturn(Stream.empty());
+		videoSearchService.buildIndex();
+		// Searches are rejected until the background build has completed
+		for (int i = 0; i < 500; i++) {
+			try {
+				videoSearchService.search("anything", 1);
+				return;
+			} catch (ResponseStatusException notReady) {
+				Thread.sleep(10);
+			}
+		}
+		throw new AssertionError("The search index was not built");
+	}
+
+	@Test
+	void buildsTheIndexFromListedVideos() {
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).stream(query.capture(), eq(Video.class));
+
+		assertThat(query.getValue().getQueryObject().get("videoStatus")).isEqualTo(VideoStatus.PUBLIC);
+		assertThat(query.getValue().getQueryObject().toString()).contains("uploadStatus").contains("$nin");
+	}
+
+	@Test
+	void indexesPublicVideosOnlyOnceTheirUploadIsReady() {
+		var video = new Video();
+		video.setId("video");
+		video.setTitle("surfing lessons");
+		video.setTags(Set.of("surf"));
+		video.setVideoStatus(VideoStatus.PUBLIC);
+		video.setUploadStatus(UploadStatus.PENDING);
+		video.setLastModifiedAt(Instant.ofEpochSecond(10));
+
+		videoSearchService.update(video);
+		assertThat(videoSearchService.search("surfing", 10)).isEmpty();
+
+		video.setUploadStatus(UploadStatus.READY);
+		video.setLastModifiedAt(Instant.ofEpochSecond(20));
+		videoSearchService.update(video);
+		assertThat(videoSearchService.search("surfing", 10)).containsExactly("video");
+
+		video.setUploadStatus(UploadStatus.FAILED);
+		video.setLastModifiedAt(Instant.ofEpochSecond(30));
+		videoSearchService.update(video);
+		assertThat(videoSearchService.search("surfing", 10)).isEmpty();
+	}
+}
@@ -0,0 +1,330 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.dto.VideoDto;
+import com.programming.pgs.youtubeclone.dto.VideoField;
+import com.programming.pgs.youtubeclone.event.VideoEventPipeline;
+import com.programming.pgs.youtubeclone.model.ThumbnailRendition;
+import com.programming.pgs.youtubeclone.model.UploadStatus;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+
+class VideoServiceTest {
+
+	private final ContentStore contentStore = mock(ContentStore.class);
+	private final ThumbnailService thumbnailService = mock(ThumbnailService.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final TrendingService trendingService = mock(TrendingService.class);
+	private final RecommendationService recommendationService = mock(RecommendationService.class);
+	private final TagService tagService = mock(TagService.class);
+	private final VideoService videoService = new VideoService(contentStore, thumbnailService, mock(VideoCache.class),
+			mock(UserService.class), mock(ViewCountAggregator.class), mock(ReactionService.class), mongoTemplate,
+			new ObjectMapper(), mock(WatchHistoryService.class), mock(VideoEventPipeline.class),
+			trendingService, mock(VideoSearchService.class), tagService,
+			recommendationService, mock(FeedService.class), mock(SubscriptionService.class));
+
+	@Test
+	void pagesThroughTheCatalogWithAKeysetCursor() {
+		List<Video> videos = List.of(video("first", 30), video("second", 20), video("third", 10));
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(videos);
+
+		CursorPage<VideoDto> firstPage = videoService.getAllVideos(null, 2, EnumSet.of(VideoField.TITLE));
+		videoService.getAllVideos(firstPage.getNextCursor(), 2, EnumSet.of(VideoField.TITLE));
+
+		assertThat(firstPage.getItems()).extracting(VideoDto::getTitle).containsExactly("first", "second");
+		ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate, times(2)).find(queries.capture(), eq(Video.class));
+		Query firstQuery = queries.getAllValues().get(0);
+		Query nextQuery = queries.getAllValues().get(1);
+		// One extra video tells whether there is a next page
+		assertThat(firstQuery.getLimit()).isEqualTo(3);
+		assertThat(firstQuery.getSortObject()).isEqualTo(new Document("createdAt", -1).append("_id", -1));
+		// Only public videos whose upload is complete are listed
+		assertThat(firstQuery.getQueryObject().get("videoStatus")).isEqualTo(VideoStatus.PUBLIC);
+		assertThat(firstQuery.getQueryObject().toString()).contains("uploadStatus").contains("$nin");
+		// The next page starts after the last video of the first one
+		assertThat(nextQuery.getQueryObject().toString()).contains("$or").contains(videos.get(1).getId());
+	}
+
+	@Test
+	void streamsTheCatalogAsNewlineDelimitedJson() throws Exception {
+		when(mongoTemplate.stream(any(Query.class), eq(Video.class)))
+				.thenReturn(Stream.of(video("first", 20), video("second", 10)));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		videoService.streamAllVideos(EnumSet.of(VideoField.TITLE), output);
+
+		assertThat(output.toString(StandardCharsets.UTF_8))
+				.isEqualTo("{\"title\":\"first\"}\n{\"title\":\"second\"}\n");
+	}
+
+	@Test
+	void readsOnlyTheRequestedFields() {
+		var video = video("first", 10);
+		video.setDescription("not requested");
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(List.of(video));
+
+		CursorPage<VideoDto> page = videoService.getAllVideos(null, 10, EnumSet.of(VideoField.TITLE,
+				VideoField.LIKE_COUNT));
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).find(query.capture(), eq(Video.class));
+		assertThat(query.getValue().getFieldsObject().keySet())
+				.containsExactlyInAnyOrder("_id", "createdAt", "title", "likes");
+		assertThat(page.getItems().get(0).getLikeCount()).isZero();
+		assertThat(page.getItems().get(0).getDescription()).isNull();
+	}
+
+	@Test
+	void leavesUnlistedVideosOutOfTheTrendingVideos() {
+		var first = video("first", 20);
+		var second = video("second", 10);
+		when(trendingService.getTopVideoIds(Integer.MAX_VALUE))
+				.thenReturn(List.of(second.getId(), "private", first.getId()));
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(List.of(first, second));
+
+		List<VideoDto> trending = videoService.getTrendingVideos(20, EnumSet.of(VideoField.TITLE));
+
+		assertThat(trending).extracting(VideoDto::getTitle).containsExactly("second", "first");
+		assertListedQuery();
+	}
+
+	@Test
+	void readsTheRankingUntilTheTrendingVideosAreComplete() {
+		var first = video("first", 20);
+		var second = video("second", 10);
+		var third = video("third", 5);
+		when(trendingService.getTopVideoIds(Integer.MAX_VALUE)).thenReturn(List.of("private-1", "private-2",
+				"pending", "failed", first.getId(), second.getId(), third.getId()));
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(List.of(), List.of(first, second));
+
+		List<VideoDto> trending = videoService.getTrendingVideos(2, EnumSet.of(VideoField.TITLE));
+
+		assertThat(trending).extracting(VideoDto::getTitle).containsExactly("first", "second");
+		verify(mongoTemplate, times(2)).find(any(Query.class), eq(Video.class));
+	}
+
+	@Test
+	void leavesUnlistedVideosOutOfTheRelatedVideos() {
+		var related = video("related", 10);
+		when(recommendationService.getRelatedVideoIds("video", 20)).thenReturn(List.of("pending", related.getId()));
+		when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenReturn(List.of(related));
+
+		List<VideoDto> relatedVideos = videoService.getRelatedVideos("video", 20, EnumSet.of(VideoField.TITLE));
+
+		assertThat(relatedVideos).extracting(VideoDto::getTitle).containsExactly("related");
+		assertListedQuery();
+	}
+
+	@Test
+	void editsOnlyTheMetadataOfAVideo() {
+		var pending = video("before", 10);
+		pending.setUploadStatus(UploadStatus.PENDING);
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Video.class))).thenReturn(pending);
+		var videoDto = new VideoDto();
+		videoDto.setId(pending.getId());
+		videoDto.setTitle("after");
+		videoDto.setVideoStatus(VideoStatus.PUBLIC);
+
+		videoService.editVideo(videoDto);
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), eq(Video.class));
+		// The upload result and the counters are left to their own writers
+		assertThat(update.getValue().getUpdateObject().keySet()).containsExactly("$set");
+		assertThat(update.getValue().getUpdateObject().get("$set", Document.class).keySet())
+				.containsExactlyInAnyOrder("title", "description", "tags", "thumbnailUrl", "videoStatus",
+						"lastModifiedAt");
+	}
+
+	@Test
+	void countsTheTagsOfListedVideosOnly() {
+		var listed = video("before", 10);
+		listed.setVideoStatus(VideoStatus.PUBLIC);
+		listed.setTags(Set.of("music", "live"));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Video.class))).thenReturn(listed);
+		var videoDto = new VideoDto();
+		videoDto.setId(listed.getId());
+		videoDto.setTags(Set.of("music", "jazz"));
+		videoDto.setVideoStatus(VideoStatus.PRIVATE);
+
+		videoService.editVideo(videoDto);
+
+		// Made private, the video no longer counts for any of its tags
+		verify(tagService).updateCounts(Set.of("music", "live"), null);
+	}
+
+	@Test
+	void rejectsEditsOfUnknownVideos() {
+		var videoDto = new VideoDto();
+		videoDto.setId("missing");
+
+		assertThatThrownBy(() -> videoService.editVideo(videoDto)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void keepsIncrementsMadeWhileAVideoIsEdited() throws Exception {
+		var video = video("first", 10);
+		Document stored = new Document();
+		converter().write(video, stored);
+		when(mongoTemplate.exists(any(Query.class), eq(Video.class))).thenReturn(true);
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Video.class)))
+				.thenAnswer(invocation -> apply(stored, invocation.getArgument(1)));
+		when(thumbnailService.createRenditions(any()))
+				.thenReturn(List.of(new ThumbnailRendition(320, 180, "small.jpg", "/small.jpg")));
+		var videoDto = new VideoDto();
+		videoDto.setId(video.getId());
+		videoDto.setTitle("edited");
+
+		// Stands in for the flushes of the ViewCountAggregator
+		ExecutorService incrementer = Executors.newSingleThreadExecutor();
+		Future<?> increments = incrementer.submit(() -> {
+			for (int i = 0; i < 1000; i++) {
+				apply(stored, new Update().inc("viewCount", 1));
+			}
+		});
+		for (int i = 0; i < 100; i++) {
+			videoService.editVideo(videoDto);
+			videoService.uploadThumbnail(new MockMultipartFile("file", new byte[0]), video.getId());
+		}
+		increments.get();
+		incrementer.shutdown();
+
+		Video read = converter().read(Video.class, stored);
+		assertThat(read.getViewCount()).hasValue(1000);
+		assertThat(read.getTitle()).isEqualTo("edited");
+		assertThat(read.getThumbnailUrl()).isEqualTo("/small.jpg");
+	}
+
+	@Test
+	void balancesReferencesWhenTheSameThumbnailIsUploadedAgain() {
+		List<ThumbnailRendition> renditions = List.of(new ThumbnailRendition(320, 180, "small.jpg", "/small.jpg"),
+				new ThumbnailRendition(640, 360, "large.jpg", "/large.jpg"));
+		var video = video("first", 10);
+		video.setThumbnails(renditions);
+		when(mongoTemplate.exists(any(Query.class), eq(Video.class))).thenReturn(true);
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Video.class))).thenReturn(video);
+		when(thumbnailService.createRenditions(any())).thenReturn(renditions);
+		MockMultipartFile file = new MockMultipartFile("file", new byte[0]);
+
+		videoService.uploadThumbnail(file, video.getId());
+
+		// Storing the renditions again added one reference to each key
+		verify(contentStore).release("small.jpg");
+		verify(contentStore).release("large.jpg");
+	}
+
+	@Test
+	void releasesNewThumbnailsThatCouldNotBeSaved() {
+		var video = video("first", 10);
+		when(mongoTemplate.exists(any(Query.class), eq(Video.class))).thenReturn(true);
+		when(thumbnailService.createRenditions(any()))
+				.thenReturn(List.of(new ThumbnailRendition(320, 180, "small.jpg", "/small.jpg")));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Video.class)))
+				.thenThrow(new IllegalStateException("write failed"));
+
+		assertThatThrownBy(() -> videoService.uploadThumbnail(new MockMultipartFile("file", new byte[0]),
+				video.getId())).isInstanceOf(IllegalStateException.class);
+
+		verify(contentStore).release("small.jpg");
+	}
+
+	@Test
+	void releasesNewThumbnailsOfVideosDeletedMeanwhile() {
+		when(mongoTemplate.exists(any(Query.class), eq(Video.class))).thenReturn(true);
+		when(thumbnailService.createRenditions(any()))
+				.thenReturn(List.of(new ThumbnailRendition(320, 180, "small.jpg", "/small.jpg")));
+
+		assertThatThrownBy(() -> videoService.uploadThumbnail(new MockMultipartFile("file", new byte[0]),
+				"deleted")).isInstanceOf(IllegalArgumentException.class);
+
+		verify(contentStore).release("small.jpg");
+	}
+
+	private void assertListedQuery() {
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).find(query.capture(), eq(Video.class));
+		assertThat(query.getValue().getQueryObject().get("videoStatus")).isEqualTo(VideoStatus.PUBLIC);
+		assertThat(query.getValue().getQueryObject().toString()).contains("uploadStatus").contains("$nin");
+	}
+
+	/**
+	 * Applies the {@code $set}, {@code $inc} and {@code $currentDate} operators of
+	 * an update to a stored document atomically, the way Mongo does, and returns
+	 * the document as it was before.
+	 */
+	private static Video apply(Document stored, Update update) {
+		MappingMongoConverter converter = converter();
+		synchronized (stored) {
+			Video before = converter.read(Video.class, new Document(stored));
+			Document operators = update.getUpdateObject();
+			if (operators.containsKey("$set")) {
+				operators.get("$set", Document.class)
+						.forEach((field, value) -> stored.put(field, converter.convertToMongoType(value)));
+			}
+			if (operators.containsKey("$inc")) {
+				operators.get("$inc", Document.class).forEach((field, delta) -> stored.put(field,
+						((Number) stored.get(field)).intValue() + ((Number) delta).intValue()));
+			}
+			if (operators.containsKey("$currentDate")) {
+				operators.get("$currentDate", Document.class).keySet()
+						.forEach(field -> stored.put(field, new Date()));
+			}
+			return before;
+		}
+	}
+
+	private static MappingMongoConverter converter() {
+		MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	private static Video video(String title, long createdAt) {
+		var video = new Video();
+		video.setId(new ObjectId().toHexString());
+		video.setTitle(title);
+		video.setCreatedAt(Instant.ofEpochSecond(createdAt));
+		return video;
+	}
+}
@@ -0,0 +1,226 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.programming.pgs.youtubeclone.model.User;
+import com.programming.pgs.youtubeclone.model.Video;
+import com.programming.pgs.youtubeclone.model.VideoStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VideoStreamServiceTest {
+
+	private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+	private static final String ETAG = "\"v1\"";
+
+	private final ViewCountAggregator viewCountAggregator = mock(ViewCountAggregator.class);
+	private final CurrentUserResolver currentUserResolver = mock(CurrentUserResolver.class);
+	private final Video video = new Video();
+	private VideoStreamService videoStreamService;
+
+	@BeforeEach
+	void setUp() {
+		video.setId("video-1");
+		video.setUserId("owner");
+		video.setVideoKey("key.mp4");
+		video.setVideoStatus(VideoStatus.PUBLIC);
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.findOne(any(Query.class), eq(Video.class))).thenReturn(video);
+
+		videoStreamService = new VideoStreamService(new InMemoryFileService(), mongoTemplate, viewCountAggregator,
+				currentUserResolver, new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void clearSecurityContext() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void sendsWholeVideoWithoutRange() throws Exception {
+		MockHttpServletResponse response = stream(new MockHttpServletRequest("GET", "/"));
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+		assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+		verify(viewCountAggregator).addBytesServed("video-1", CONTENT.length);
+	}
+
+	@Test
+	void sendsSingleRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=5-9");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 5-9/20");
+		assertThat(response.getContentAsString()).isEqualTo("56789");
+	}
+
+	@Test
+	void sendsSuffixRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=-3");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 17-19/20");
+		assertThat(response.getContentAsString()).isEqualTo("hij");
+	}
+
+	@Test
+	void coalescesOverlappingRanges() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=2-4,3-6,7-8");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-8/20");
+		assertThat(response.getContentAsString()).isEqualTo("2345678");
+	}
+
+	@Test
+	void sendsMultipleRangesAsMultipart() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=0-1,10-12");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+		String body = response.getContentAsString();
+		assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n")
+				.contains("Content-Range: bytes 10-12/20\r\n\r\nabc\r\n");
+		assertThat((long) response.getContentAsByteArray().length).isEqualTo(response.getContentLengthLong());
+	}
+
+	@Test
+	void rejectsUnsatisfiableRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=50-60");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */20");
+	}
+
+	@Test
+	void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("Range", "bytes=5-9");
+		request.addHeader("If-Range", "\"v0\"");
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+	}
+
+	@Test
+	void answersNotModifiedForMatchingETag() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		request.addHeader("If-None-Match", ETAG);
+
+		MockHttpServletResponse response = stream(request);
+
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	void hidesPrivateVideoFromAnonymousCallers() {
+		video.setVideoStatus(VideoStatus.PRIVATE);
+
+		assertThatThrownBy(() -> stream(new MockHttpServletRequest("GET", "/")))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("404");
+	}
+
+	@Test
+	void hidesPrivateVideoFromOtherUsers() {
+		video.setVideoStatus(VideoStatus.PRIVATE);
+		authenticateAs("other-sub", "other");
+
+		assertThatThrownBy(() -> stream(new MockHttpServletRequest("GET", "/")))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("404");
+	}
+
+	@Test
+	void streamsPrivateVideoToItsOwner() throws Exception {
+		video.setVideoStatus(VideoStatus.PRIVATE);
+		authenticateAs("owner-sub", "owner");
+
+		MockHttpServletResponse response = stream(new MockHttpServletRequest("GET", "/"));
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+	}
+
+	private void authenticateAs(String sub, String userId) {
+		var user = new User();
+		user.setId(userId);
+		when(currentUserResolver.resolve(sub)).thenReturn(user);
+		Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(sub).build();
+		SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+	}
+
+	private MockHttpServletResponse stream(MockHttpServletRequest request) throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		videoStreamService.stream("video-1", request, response);
+		return response;
+	}
+
+	private static final class InMemoryFileService implements FileService {
+
+		@Override
+		public StoredFile storeAs(String key, InputStream inputStream, String contentType, long contentLength) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void delete(String key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Optional<FileMetadata> stat(String key) {
+			return Optional.of(new FileMetadata(CONTENT.length, "video/mp4", Instant.parse("2024-01-01T00:00:00Z"),
+					ETAG));
+		}
+
+		@Override
+		public void transfer(String key, long start, long length, OutputStream outputStream) throws IOException {
+			outputStream.write(Arrays.copyOfRange(CONTENT, (int) start, (int) (start + length)));
+		}
+	}
+}
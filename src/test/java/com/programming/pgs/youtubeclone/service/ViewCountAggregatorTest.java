@@ -0,0 +1,98 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.model.Video;
+
+class ViewCountAggregatorTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulkOperations = mock(BulkOperations.class);
+	private final ViewCountAggregator aggregator = new ViewCountAggregator(mongoTemplate, mock(VideoCache.class));
+	private MappingMongoConverter converter;
+
+	@BeforeEach
+	void setUp() {
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Video.class)).thenReturn(bulkOperations);
+		// Same conversions as the application's MongoTemplate
+		MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+	}
+
+	@Test
+	void flushedVideoCanStillBeRead() {
+		var video = new Video();
+		video.setId("video-1");
+		Document stored = new Document();
+		converter.write(video, stored);
+
+		aggregator.recordView("video-1");
+		aggregator.addViews("video-1", 2);
+		aggregator.addBytesServed("video-1", 1024);
+		aggregator.flush();
+
+		// Applies the $inc operators the way Mongo does, keeping int32 only for int32 + int32
+		for (Update update : capturedUpdates(2)) {
+			Document increments = update.getUpdateObject().get("$inc", Document.class);
+			increments.forEach((field, delta) -> stored.put(field, increment(stored.get(field), (Number) delta)));
+		}
+
+		Video read = converter.read(Video.class, stored);
+		assertThat(read.getViewCount()).hasValue(3);
+		assertThat(read.getBytesServed()).hasValue(1024);
+		assertThat(stored.get("viewCount")).isInstanceOf(Integer.class);
+	}
+
+	@Test
+	void splitsViewDeltasAboveTheIntRange() {
+		aggregator.addViews("video-1", Integer.MAX_VALUE + 5L);
+
+		aggregator.flush();
+		assertThat(aggregator.getPendingViews("video-1")).isEqualTo(5);
+		aggregator.flush();
+
+		List<Object> deltas = capturedUpdates(2).stream()
+				.map(update -> update.getUpdateObject().get("$inc", Document.class).get("viewCount"))
+				.toList();
+		assertThat(deltas).containsExactly(Integer.MAX_VALUE, 5);
+	}
+
+	private List<Update> capturedUpdates(int count) {
+		ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+		verify(bulkOperations, times(count)).updateOne(any(Query.class), updates.capture());
+		return updates.getAllValues();
+	}
+
+	private static Number increment(Object current, Number delta) {
+		if (current instanceof Integer value && delta instanceof Integer increment) {
+			return value + increment;
+		}
+		return (current == null ? 0L : ((Number) current).longValue()) + delta.longValue();
+	}
+}
@@ -0,0 +1,86 @@
+package com.programming.pgs.youtubeclone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.programming.pgs.youtubeclone.dto.CursorPage;
+import com.programming.pgs.youtubeclone.event.VideoViewed;
+import com.programming.pgs.youtubeclone.model.WatchHistory;
+
+class WatchHistoryServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final WatchHistoryService watchHistoryService = new WatchHistoryService(mongoTemplate);
+
+	@Test
+	void readsTheHistoryMostRecentFirst() {
+		List<WatchHistory> entries = List.of(entry("recent", 30), entry("older", 20), entry("oldest", 10));
+		when(mongoTemplate.find(any(Query.class), eq(WatchHistory.class))).thenReturn(entries);
+
+		CursorPage<WatchHistory> page = watchHistoryService.getHistory("user", null, 2);
+
+		assertThat(page.getItems()).extracting(WatchHistory::getVideoId).containsExactly("recent", "older");
+		assertThat(page.getNextCursor()).isNotNull();
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).find(query.capture(), eq(WatchHistory.class));
+		assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("userId", "user"));
+		assertThat(query.getValue().getSortObject()).isEqualTo(new Document("watchedAt", -1).append("_id", -1));
+		assertThat(query.getValue().getLimit()).isEqualTo(3);
+	}
+
+	@Test
+	void continuesAfterTheCursor() {
+		List<WatchHistory> entries = List.of(entry("recent", 30), entry("older", 20));
+		when(mongoTemplate.find(any(Query.class), eq(WatchHistory.class))).thenReturn(entries);
+		String cursor = watchHistoryService.getHistory("user", null, 1).getNextCursor();
+
+		watchHistoryService.getHistory("user", cursor, 1);
+
+		ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate, times(2)).find(queries.capture(), eq(WatchHistory.class));
+		assertThat(queries.getAllValues().get(1).getQueryObject().toString())
+				.contains("$or").contains(entries.get(0).getId());
+	}
+
+	@Test
+	void collapsesRepeatedViewsIntoOneUpsert() {
+		BulkOperations bulkOperations = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, WatchHistory.class)).thenReturn(bulkOperations);
+
+		watchHistoryService.recordViews(List.of(
+				new VideoViewed("user", "video", Instant.ofEpochSecond(20)),
+				new VideoViewed("user", "video", Instant.ofEpochSecond(10)),
+				new VideoViewed(null, "video", Instant.ofEpochSecond(30))));
+
+		// Anonymous views have no history; the latest view of the pair wins
+		verify(bulkOperations).upsert(
+				Query.query(Criteria.where("userId").is("user").and("videoId").is("video")),
+				new Update().max("watchedAt", Instant.ofEpochSecond(20)));
+		verify(bulkOperations).execute();
+		verifyNoMoreInteractions(bulkOperations);
+	}
+
+	private static WatchHistory entry(String videoId, long watchedAt) {
+		return new WatchHistory(new ObjectId().toHexString(), "user", videoId, Instant.ofEpochSecond(watchedAt));
+	}
+}
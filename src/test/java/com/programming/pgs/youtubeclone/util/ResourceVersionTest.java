@@ -0,0 +1,69 @@
+package com.programming.pgs.youtubeclone.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+class ResourceVersionTest {
+
+	private static final Instant LAST_MODIFIED = Instant.parse("2024-05-01T10:15:30Z");
+
+	@Test
+	void derivesWeakEntityTagFromParts() {
+		ResourceVersion version = ResourceVersion.of(LAST_MODIFIED, "video-1", 3);
+
+		assertThat(version.eTag()).startsWith("W/\"").endsWith("\"");
+		assertThat(version.eTag()).isEqualTo(ResourceVersion.of(LAST_MODIFIED, "video-1", 3).eTag());
+		assertThat(version.eTag()).isNotEqualTo(ResourceVersion.of(LAST_MODIFIED, "video-1", 4).eTag());
+	}
+
+	@Test
+	void setsValidatorsOnFullResponses() {
+		var request = new MockHttpServletRequest("GET", "/api/videos/video-1");
+		var response = new MockHttpServletResponse();
+		ResourceVersion version = ResourceVersion.of(LAST_MODIFIED, "video-1", 3);
+
+		assertThat(version.checkNotModified(new ServletWebRequest(request, response))).isFalse();
+		assertThat(response.getHeader("ETag")).isEqualTo(version.eTag());
+		assertThat(response.getDateHeader("Last-Modified")).isEqualTo(LAST_MODIFIED.toEpochMilli());
+	}
+
+	@Test
+	void answersMatchingEntityTagWithNotModified() {
+		ResourceVersion version = ResourceVersion.of(LAST_MODIFIED, "video-1", 3);
+		var request = new MockHttpServletRequest("GET", "/api/videos/video-1");
+		request.addHeader("If-None-Match", version.eTag());
+		var response = new MockHttpServletResponse();
+
+		assertThat(version.checkNotModified(new ServletWebRequest(request, response))).isTrue();
+		assertThat(response.getStatus()).isEqualTo(304);
+	}
+
+	@Test
+	void answersUnchangedDateWithNotModified() {
+		var request = new MockHttpServletRequest("GET", "/api/videos/video-1");
+		request.addHeader("If-Modified-Since", LAST_MODIFIED.toEpochMilli());
+		var response = new MockHttpServletResponse();
+
+		assertThat(ResourceVersion.of(LAST_MODIFIED, "video-1").checkNotModified(new ServletWebRequest(request, response)))
+				.isTrue();
+		assertThat(response.getStatus()).isEqualTo(304);
+	}
+
+	@Test
+	void ignoresDateWhenEntityTagDiffers() {
+		var request = new MockHttpServletRequest("GET", "/api/videos/video-1");
+		request.addHeader("If-None-Match", ResourceVersion.of(LAST_MODIFIED, "video-1", 3).eTag());
+		request.addHeader("If-Modified-Since", LAST_MODIFIED.toEpochMilli());
+		var response = new MockHttpServletResponse();
+
+		assertThat(ResourceVersion.of(LAST_MODIFIED, "video-1", 4)
+				.checkNotModified(new ServletWebRequest(request, response))).isFalse();
+		assertThat(response.getStatus()).isEqualTo(200);
+	}
+}